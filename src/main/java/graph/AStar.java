@@ -0,0 +1,150 @@
+package graph;
+
+import java.util.Arrays;
+
+/**
+ * Point-to-point shortest path engine over an IntAdjacency, using the A* algorithm:
+ * Dijkstra's algorithm with the heap ordered by distance plus a lower bound on the
+ * distance left to the target, so vertices leading away from the target are settled late.
+ * An engine is not safe for use by several threads at once.
+ */
+final class AStar {
+
+    /**
+     * A lower bound on the distance from each vertex to a fixed target.
+     */
+    @FunctionalInterface
+    interface LowerBound {
+
+        /**
+         * Bound the distance from a vertex to the target
+         *
+         * @param v the index of the vertex
+         * @return a lower bound on the distance from v to the target, which is >= 0
+         */
+        long toTarget(int v);
+    }
+
+    /** Graph to search */
+    private IntAdjacency graph;
+
+    /** Best known distance from the source to each vertex reached by the current search */
+    private long[] dist;
+
+    /** Previous vertex on the best known path to each vertex reached by the current search */
+    private int[] prev;
+
+    /** Search in which dist and prev of each vertex were last written */
+    private int[] stamp;
+
+    /** Vertices to expand, keyed by distance plus the lower bound to the target */
+    private IndexedMinHeap heap;
+
+    /** Number of the current search */
+    private int search = 0;
+
+    // Representation Invariant
+    //      dist, prev and stamp have one length, at least graph.vertexCount() when graph is not
+    //      null, heap has that capacity and stamp[v] <= search for every v.
+    //      vertex v is reached by the current search iff stamp[v] == search, and then dist[v]
+    //      is the length of a path from the source to v whose previous vertex is prev[v].
+    //
+    // Abstraction Function:
+    //      represents the state of a goal-directed search over graph
+
+    /**
+     * Create an engine for searching graph.
+     *
+     * @param graph the graph to search
+     */
+    AStar(IntAdjacency graph) {
+        int n = graph.vertexCount();
+        this.graph = graph;
+        this.dist = new long[n];
+        this.prev = new int[n];
+        this.stamp = new int[n];
+        this.heap = new IndexedMinHeap(n);
+    }
+
+    /**
+     * Point the engine at another graph, keeping its scratch space if it is large enough,
+     * so that one engine serves many graphs without allocating again. Scratch space more
+     * than Dijkstra.SLACK times the size of the graph is given up, so that an engine that once
+     * searched a large graph does not keep its arrays while serving small ones.
+     *
+     * @param graph the graph to search next, or null to forget the last graph while idle
+     */
+    void retarget(IntAdjacency graph) {
+        this.graph = graph;
+        if (graph != null && (graph.vertexCount() > dist.length
+                || graph.vertexCount() < dist.length / Dijkstra.SLACK)) {
+            int n = graph.vertexCount();
+            dist = new long[n];
+            prev = new int[n];
+            stamp = new int[n];
+            heap = new IndexedMinHeap(n);
+            search = 0;
+        }
+    }
+
+    /**
+     * Compute a shortest path from source to target.
+     * A bound that is admissible but not consistent is allowed, in which case
+     * vertices are reopened when a shorter path to them is found.
+     *
+     * @param source the index of the start vertex
+     * @param target the index of the end vertex
+     * @param bound a lower bound on the distance from each vertex to target
+     * @return the indices of the vertices on a shortest path, in order from source to target,
+     *              or an empty array if there is no path
+     */
+    int[] path(int source, int target, LowerBound bound) {
+        heap.clear();
+        if (search == Integer.MAX_VALUE) {
+            Arrays.fill(stamp, 0);
+            search = 0;
+        }
+        search++;
+        stamp[source] = search;
+        dist[source] = 0;
+        prev[source] = -1;
+        heap.offer(source, bound.toTarget(source));
+
+        while (!heap.isEmpty()) {
+            int u = heap.pollMin();
+            if (u == target) {
+                return trace(target);
+            }
+            long du = dist[u];
+            for (int arc = graph.begin(u), end = graph.end(u); arc < end; arc++) {
+                int w = graph.target(arc);
+                long dw = du + graph.length(arc);
+                if (stamp[w] != search || dw < dist[w]) {
+                    stamp[w] = search;
+                    dist[w] = dw;
+                    prev[w] = u;
+                    heap.offer(w, dw + bound.toTarget(w));
+                }
+            }
+        }
+        return new int[0];
+    }
+
+    /**
+     * Walk the previous vertices back from target.
+     *
+     * @param target the index of a vertex reached by the current search
+     * @return the indices of the vertices on the path, in order from the source to target
+     */
+    private int[] trace(int target) {
+        int length = 1;
+        for (int v = target; prev[v] >= 0; v = prev[v]) {
+            length++;
+        }
+        int[] path = new int[length];
+        for (int v = target; v >= 0; v = prev[v]) {
+            path[--length] = v;
+        }
+        return path;
+    }
+}
@@ -0,0 +1,54 @@
+package graph;
+
+/**
+ * An IntAdjacency backed by compressed sparse row arrays on the heap.
+ */
+final class ArrayAdjacency implements IntAdjacency {
+
+    /** Row of each vertex: the arcs of vertex u are at slots offsets[u] to offsets[u + 1] - 1 */
+    private final int[] offsets;
+
+    /** Index of the vertex at the far end of each arc */
+    private final int[] targets;
+
+    /** Length of each arc */
+    private final int[] lengths;
+
+    /**
+     * Create a view over the given arrays, which are shared and not copied.
+     *
+     * @param offsets the row offsets, of length vertexCount() + 1
+     * @param targets the far end of each arc
+     * @param lengths the length of each arc
+     */
+    ArrayAdjacency(int[] offsets, int[] targets, int[] lengths) {
+        this.offsets = offsets;
+        this.targets = targets;
+        this.lengths = lengths;
+    }
+
+    @Override
+    public int vertexCount() {
+        return offsets.length - 1;
+    }
+
+    @Override
+    public int begin(int u) {
+        return offsets[u];
+    }
+
+    @Override
+    public int end(int u) {
+        return offsets[u + 1];
+    }
+
+    @Override
+    public int target(int arc) {
+        return targets[arc];
+    }
+
+    @Override
+    public int length(int arc) {
+        return lengths[arc];
+    }
+}
@@ -0,0 +1,221 @@
+package graph;
+
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.function.Function;
+
+/**
+ * Runs the queries of a Graph on an executor and hands back their results as
+ * CompletableFutures, so that callers are not blocked by long queries.
+ * Each query runs over the snapshot of the graph taken when it is submitted, so the
+ * graph may change while queries are running without affecting their results.
+ * At most maxInFlight queries are submitted but not finished at a time; a caller that
+ * submits one more waits until a query finishes, which bounds the work queued on
+ * the executor.
+ * The graph itself must only be changed on the threads that submit queries.
+ *
+ * @param <V> represents a vertex type
+ * @param <E> represents an edge type
+ */
+public final class AsyncGraph<V extends Vertex, E extends Edge<V>> implements AutoCloseable {
+
+    /** Graph the queries are asked of */
+    private final Graph<V, E> graph;
+
+    /** Runs the queries */
+    private final Executor executor;
+
+    /** Executor created by this facade and shut down by close(), or null */
+    private final ExecutorService owned;
+
+    /** One permit for each query that may still be submitted without waiting */
+    private final Semaphore inFlight;
+
+    // Representation Invariant
+    //      graph != null, executor != null.
+    //      owned is null or is executor.
+    //      inFlight has maxInFlight permits less the number of queries submitted but not finished.
+    //
+    // Abstraction Function:
+    //      represents asynchronous access to the queries of graph, run by executor
+
+    /**
+     * Create a facade that runs queries on executor, which is left running by close().
+     *
+     * @param graph       the graph to query
+     * @param executor    runs the queries
+     * @param maxInFlight the most queries that may be submitted but not finished at a time
+     * @throws IllegalArgumentException if maxInFlight is not positive
+     */
+    public AsyncGraph(Graph<V, E> graph, Executor executor, int maxInFlight) {
+        this(graph, executor, null, maxInFlight);
+    }
+
+    /**
+     * Create a facade.
+     *
+     * @param graph       the graph to query
+     * @param executor    runs the queries
+     * @param owned       executor if it is to be shut down by close(), otherwise null
+     * @param maxInFlight the most queries that may be submitted but not finished at a time
+     * @throws IllegalArgumentException if maxInFlight is not positive
+     */
+    private AsyncGraph(Graph<V, E> graph, Executor executor, ExecutorService owned, int maxInFlight) {
+        if (maxInFlight <= 0) {
+            throw new IllegalArgumentException("At least one query must be allowed in flight");
+        }
+        this.graph = graph;
+        this.executor = executor;
+        this.owned = owned;
+        this.inFlight = new Semaphore(maxInFlight);
+    }
+
+    /**
+     * Create a facade that runs each query on a thread of its own, using virtual threads
+     * when the running JDK has them and a pool of one platform thread per processor otherwise.
+     *
+     * @param graph       the graph to query
+     * @param maxInFlight the most queries that may be submitted but not finished at a time
+     * @param <V> represents a vertex type
+     * @param <E> represents an edge type
+     * @return a facade whose executor is shut down by close()
+     * @throws IllegalArgumentException if maxInFlight is not positive
+     */
+    public static <V extends Vertex, E extends Edge<V>> AsyncGraph<V, E> withVirtualThreads(Graph<V, E> graph,
+                                                                                             int maxInFlight) {
+        if (maxInFlight <= 0) {
+            throw new IllegalArgumentException("At least one query must be allowed in flight");
+        }
+        ExecutorService executor = virtualThreadExecutor();
+        if (executor == null) {
+            executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        }
+        return new AsyncGraph<>(graph, executor, executor, maxInFlight);
+    }
+
+    /**
+     * Create a facade that runs queries on a fixed pool of platform threads.
+     *
+     * @param graph       the graph to query
+     * @param threads     the number of threads in the pool
+     * @param maxInFlight the most queries that may be submitted but not finished at a time
+     * @param <V> represents a vertex type
+     * @param <E> represents an edge type
+     * @return a facade whose executor is shut down by close()
+     * @throws IllegalArgumentException if threads or maxInFlight is not positive
+     */
+    public static <V extends Vertex, E extends Edge<V>> AsyncGraph<V, E> withThreads(Graph<V, E> graph,
+                                                                                      int threads, int maxInFlight) {
+        if (maxInFlight <= 0) {
+            throw new IllegalArgumentException("At least one query must be allowed in flight");
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        return new AsyncGraph<>(graph, executor, executor, maxInFlight);
+    }
+
+    /**
+     * Compute the shortest path from source to sink
+     *
+     * @param source the start vertex
+     * @param sink   the end vertex
+     * @return a future of the vertices, in order, on the shortest path from source to sink
+     *              (both end points are part of the list), or of an empty list if no
+     *              shortest path exists
+     * @throws InterruptedException if interrupted while waiting to submit
+     */
+    public CompletableFuture<List<V>> shortestPathAsync(V source, V sink) throws InterruptedException {
+        return submit(snapshot -> snapshot.shortestPath(source, sink));
+    }
+
+    /**
+     * Compute the shortest path between each pair of vertices, searching once from each source
+     *
+     * @param pairs the source and sink of each query
+     * @return a future of the shortest path of each pair, in the order of pairs
+     * @throws InterruptedException if interrupted while waiting to submit
+     */
+    public CompletableFuture<List<List<V>>> shortestPathsAsync(Collection<VertexPair<V>> pairs)
+            throws InterruptedException {
+        return submit(snapshot -> snapshot.shortestPaths(pairs, Runnable::run));
+    }
+
+    /**
+     * Compute the minimum spanning tree of the graph
+     *
+     * @return a future of a list of edges that forms a minimum spanning tree of each
+     *              component of the graph
+     * @throws InterruptedException if interrupted while waiting to submit
+     */
+    public CompletableFuture<List<E>> minimumSpanningTreeAsync() throws InterruptedException {
+        return submit(CsrGraph::minimumSpanningTree);
+    }
+
+    /**
+     * Compute the diameter of the graph
+     *
+     * @return a future of the diameter of the largest component of the graph
+     * @throws InterruptedException if interrupted while waiting to submit
+     */
+    public CompletableFuture<Integer> diameterAsync() throws InterruptedException {
+        return submit(CsrGraph::diameter);
+    }
+
+    /**
+     * Shut down the executor if this facade created it. Queries already submitted
+     * still complete.
+     */
+    @Override
+    public void close() {
+        if (owned != null) {
+            owned.shutdown();
+        }
+    }
+
+
+
+    ////////// helper methods //////////
+    /**
+     * Run a query over the current snapshot of the graph on the executor, waiting first
+     * for a query in flight to finish if too many are.
+     *
+     * @param query the query to run
+     * @param <T> represents the type of the result of the query
+     * @return a future of the result of the query
+     * @throws InterruptedException if interrupted while waiting to submit
+     */
+    private <T> CompletableFuture<T> submit(Function<CsrGraph<V, E>, T> query) throws InterruptedException {
+        //the snapshot is taken here so the query sees the graph as it is now
+        CsrGraph<V, E> snapshot = graph.freeze();
+        inFlight.acquire();
+        CompletableFuture<T> result;
+        try {
+            result = CompletableFuture.supplyAsync(() -> query.apply(snapshot), executor);
+        } catch (RuntimeException e) {
+            //the executor refused the query
+            inFlight.release();
+            throw e;
+        }
+        return result.whenComplete((value, failure) -> inFlight.release());
+    }
+
+    /**
+     * Create an executor that starts a virtual thread for each task, if the running JDK
+     * supports virtual threads
+     *
+     * @return the executor, or null if virtual threads are not available
+     */
+    private static ExecutorService virtualThreadExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package graph;
+
+/**
+ * Point-to-point shortest path engine over an IntAdjacency that runs Dijkstra's
+ * algorithm from both ends at once and stops when the two searches meet, so a query
+ * settles roughly the vertices within half the source-sink distance of either end.
+ * An engine is not safe for use by several threads at once.
+ */
+final class BidirectionalDijkstra {
+
+    /** Graph to search */
+    private IntAdjacency graph;
+
+    /** Search from the source */
+    private final Dijkstra forward;
+
+    /** Search from the sink */
+    private final Dijkstra backward;
+
+    /**
+     * Create an engine for searching graph.
+     *
+     * @param graph the graph to search
+     */
+    BidirectionalDijkstra(IntAdjacency graph) {
+        this.graph = graph;
+        this.forward = new Dijkstra(graph);
+        this.backward = new Dijkstra(graph);
+    }
+
+    /**
+     * Point the engine at another graph, keeping its scratch space if it is large enough.
+     *
+     * @param graph the graph to search next, or null to forget the last graph while idle
+     */
+    void retarget(IntAdjacency graph) {
+        this.graph = graph;
+        forward.retarget(graph);
+        backward.retarget(graph);
+    }
+
+    /**
+     * Compute a shortest path from source to target.
+     *
+     * @param source the index of the start vertex
+     * @param target the index of the end vertex
+     * @return the indices of the vertices on a shortest path, in order from source to target,
+     *              or an empty array if there is no path
+     */
+    int[] path(int source, int target) {
+        if (source == target) {
+            return new int[] {source};
+        }
+        forward.start(source);
+        backward.start(target);
+
+        //best path found so far runs source ~> meetForward - meetBackward ~> target
+        long best = Dijkstra.UNREACHED;
+        int meetForward = -1;
+        int meetBackward = -1;
+
+        //no path through an unsettled vertex can beat best once the frontiers sum to it
+        while (forward.hasFrontier() && backward.hasFrontier()
+                && forward.frontier() + backward.frontier() < best) {
+            boolean fromSource = forward.frontier() <= backward.frontier();
+            Dijkstra near = fromSource ? forward : backward;
+            Dijkstra far = fromSource ? backward : forward;
+
+            int u = near.settle();
+            long du = near.distance(u);
+            if (far.distance(u) != Dijkstra.UNREACHED && du + far.distance(u) < best) {
+                best = du + far.distance(u);
+                meetForward = u;
+                meetBackward = u;
+            }
+            for (int arc = graph.begin(u), end = graph.end(u); arc < end; arc++) {
+                int w = graph.target(arc);
+                long dw = far.distance(w);
+                if (dw != Dijkstra.UNREACHED && du + graph.length(arc) + dw < best) {
+                    best = du + graph.length(arc) + dw;
+                    meetForward = fromSource ? u : w;
+                    meetBackward = fromSource ? w : u;
+                }
+            }
+        }
+        if (best == Dijkstra.UNREACHED) {
+            return new int[0];
+        }
+
+        //join the forward path to the meeting point with the reversed backward path
+        int[] head = forward.path(meetForward);
+        int[] tail = backward.path(meetBackward);
+        int shared = meetForward == meetBackward ? 1 : 0;
+        int[] path = new int[head.length + tail.length - shared];
+        System.arraycopy(head, 0, path, 0, head.length);
+        for (int i = tail.length - 1 - shared, p = head.length; i >= 0; i--, p++) {
+            path[p] = tail[i];
+        }
+        return path;
+    }
+}
@@ -0,0 +1,159 @@
+package graph;
+
+/**
+ * Computes the diameter of an IntAdjacency from a few single-source searches per
+ * component, in the style of iFUB with the eccentricity bounds of Takes and Kosters.
+ * A double sweep finds a long shortest path, and the vertex u in its middle serves
+ * as the center of the component. Vertices are then visited from furthest to closest
+ * to u. Once every vertex further than r from u has had its eccentricity bounded, any
+ * longer path must join two vertices within r of u, so the diameter is known as soon
+ * as the largest eccentricity found reaches 2r.
+ * A vertex is only searched from if its upper bound ecc(v) + d(v, w), taken over all
+ * earlier sources v, could beat the largest eccentricity found so far.
+ */
+final class BoundingDiameter {
+
+    /** Engine that runs the searches */
+    private final Dijkstra engine;
+
+    /** Allowed relative error */
+    private final double epsilon;
+
+    /** Upper bound on the eccentricity of each vertex of the current component */
+    private final long[] upper;
+
+    /** Vertices of the current component, in the order the last search settled them */
+    private final int[] order;
+
+    /** Number of vertices in the current component */
+    private int size = 0;
+
+    /** Largest eccentricity found so far */
+    private long diam = 0;
+
+    // Representation Invariant
+    //      order[0] to order[size - 1] are the vertices of one component of the graph.
+    //      diam is the eccentricity of some vertex, and upper[w] >= the eccentricity
+    //      of w for each vertex w of the current component.
+    //
+    // Abstraction Function:
+    //      represents a diameter computation part way through, having found diam
+
+    /**
+     * Create a computation that has measured nothing yet.
+     *
+     * @param graph the graph to measure
+     * @param engine a search engine over graph
+     * @param epsilon the allowed relative error, is >= 0
+     */
+    private BoundingDiameter(IntAdjacency graph, Dijkstra engine, double epsilon) {
+        int n = graph.vertexCount();
+        this.engine = engine;
+        this.epsilon = epsilon;
+        this.upper = new long[n];
+        this.order = new int[n];
+    }
+
+    /**
+     * Compute the largest finite distance between two vertices, to within a factor.
+     *
+     * @param graph the graph to measure
+     * @param engine a search engine over graph, whose state is overwritten
+     * @param epsilon the allowed relative error, is >= 0; 0 asks for the exact diameter
+     * @return a distance that is at most the diameter and at least the diameter
+     *              divided by 1 + epsilon, or 0 if the graph has no edges
+     */
+    static long diameter(IntAdjacency graph, Dijkstra engine, double epsilon) {
+        BoundingDiameter computation = new BoundingDiameter(graph, engine, epsilon);
+        boolean[] measured = new boolean[graph.vertexCount()];
+        for (int s = 0; s < measured.length; s++) {
+            if (!measured[s]) {
+                computation.measure(s);
+                for (int i = 0; i < computation.size; i++) {
+                    measured[computation.order[i]] = true;
+                }
+            }
+        }
+        return computation.diam;
+    }
+
+    /**
+     * Raise diam to at least the diameter of the component of s, divided by 1 + epsilon.
+     *
+     * @param s the index of a vertex of the component
+     */
+    private void measure(int s) {
+        int far = sweep(s);
+        if (size == 1) {
+            return;
+        }
+        for (int i = 0; i < size; i++) {
+            upper[order[i]] = Dijkstra.UNREACHED;
+        }
+        tighten(far);
+
+        //the middle of the longest path found is close to the center of the component
+        int end = sweep(far);
+        tighten(end);
+        long length = engine.distance(end);
+        int center = far;
+        long radius = length;
+        for (int v : engine.path(end)) {
+            long d = engine.distance(v);
+            if (Math.max(d, length - d) < radius) {
+                center = v;
+                radius = Math.max(d, length - d);
+            }
+        }
+        tighten(sweep(center));
+
+        //copy the fringe order out, since the searches below overwrite it
+        int[] fringe = new int[size];
+        long[] level = new long[size];
+        for (int i = 0; i < size; i++) {
+            fringe[i] = order[size - 1 - i];
+            level[i] = engine.distance(fringe[i]);
+        }
+        for (int i = 0; i < fringe.length; i++) {
+            long enough = diam + (long) (diam * epsilon);
+            if (2 * level[i] <= enough) {
+                return;
+            }
+            int w = fringe[i];
+            if (upper[w] > enough) {
+                tighten(sweep(w));
+            }
+        }
+    }
+
+    /**
+     * Search from v, filling order with the vertices of its component.
+     *
+     * @param v the index of the source
+     * @return the last vertex settled, which is furthest from v
+     */
+    private int sweep(int v) {
+        engine.start(v);
+        size = 0;
+        int last = v;
+        while (engine.hasFrontier()) {
+            last = engine.settle();
+            order[size++] = last;
+        }
+        return last;
+    }
+
+    /**
+     * Record the eccentricity found by the last sweep and tighten the upper bounds with it.
+     *
+     * @param far the vertex furthest from the source of the last sweep
+     */
+    private void tighten(int far) {
+        long ecc = engine.distance(far);
+        diam = Math.max(diam, ecc);
+        for (int i = 0; i < size; i++) {
+            int w = order[i];
+            upper[w] = Math.min(upper[w], ecc + engine.distance(w));
+        }
+    }
+}
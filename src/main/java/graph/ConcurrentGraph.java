@@ -0,0 +1,736 @@
+package graph;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Represents a mutable graph with vertices of type V that may be read and changed
+ * by many threads at once.
+ * The adjacency of each vertex is guarded by one of a fixed set of read/write locks,
+ * chosen by vertex id. Queries about a vertex or an edge take the read lock of one
+ * stripe, so they run alongside each other and alongside changes elsewhere in the graph;
+ * a change takes the write locks of the stripes of the vertices it touches only.
+ * Locks are always taken in increasing stripe order, so writers never deadlock.
+ * Whole-graph queries such as shortestPath and diameter run over an immutable snapshot,
+ * copied under the read locks of every stripe and reused until the graph changes. Only
+ * one snapshot is built at a time; queries arriving meanwhile wait for it and share it.
+ *
+ * @param <V> represents a vertex type
+ * @param <E> represents an edge type
+ */
+public class ConcurrentGraph<V extends Vertex, E extends Edge<V>> implements ImGraph<V, E>, IGraph<V, E> {
+
+    /** Number of stripes of a graph created without a stripe count */
+    private static final int DEFAULT_STRIPES = 64;
+
+    /** All vertices in graph, keyed by vertex id */
+    private final Map<Integer, V> vertices = new ConcurrentHashMap<>();
+
+    /** Edges incident on each vertex, keyed by vertex id and then by the id of the other end */
+    private final Map<Integer, Map<Integer, E>> adjacency = new ConcurrentHashMap<>();
+
+    /** Locks guarding the adjacency of the vertices of each stripe */
+    private final ReentrantReadWriteLock[] stripes;
+
+    /** Number of low bits of a mixed id dropped to get its stripe */
+    private final int shift;
+
+    /** Sum of the lengths of all edges */
+    private final AtomicInteger lengthSum = new AtomicInteger();
+
+    /** Number of mutations made so far */
+    private final AtomicLong modifications = new AtomicLong();
+
+    /** Last snapshot taken, or null */
+    private volatile Snapshot<V, E> snapshot = null;
+
+    /** Snapshot being built, or null if no snapshot is being built */
+    private final AtomicReference<CompletableFuture<Snapshot<V, E>>> building = new AtomicReference<>();
+
+    // Representation Invariant
+    //      E instanceof Edge<V> && V instanceof Vertex.
+    //      vertices.get(i).id() == i for every key i of vertices.
+    //      adjacency has exactly the same keys as vertices, and
+    //      adjacency.get(a).get(b) == adjacency.get(b).get(a) for every stored edge.
+    //      stripes.length is a power of two, and the entries of vertices and adjacency
+    //      under id i are only read under a lock of stripes[stripe(i)] and only changed under
+    //      its write lock, except that vertices is also read without locks.
+    //      lengthSum and modifications only change under the write lock of a stripe.
+    //      when no write lock is held, lengthSum is the sum of the lengths of all edges, and
+    //      snapshot is null or has exactly the vertices and edges of the graph if its
+    //      version equals modifications.
+    //      building is only set by the thread that builds the snapshot, and cleared by it.
+    //
+    // Abstraction Function:
+    //      represents a simple, undirected graph g where
+    //      g.vertices.values() represents all the nodes in g and
+    //      the edges stored in g.adjacency represent all the node-to-node
+    //      connections that exist in g
+
+    /**
+     * A snapshot of the graph and the number of mutations made before it was taken.
+     *
+     * @param <V> represents a vertex type
+     * @param <E> represents an edge type
+     */
+    private static final class Snapshot<V extends Vertex, E extends Edge<V>> {
+
+        /** Value of modifications when the snapshot was taken */
+        private final long version;
+
+        /** The snapshot */
+        private final CsrGraph<V, E> graph;
+
+        /**
+         * Create a snapshot entry.
+         *
+         * @param version the number of mutations made before the snapshot was taken
+         * @param graph the snapshot
+         */
+        private Snapshot(long version, CsrGraph<V, E> graph) {
+            this.version = version;
+            this.graph = graph;
+        }
+    }
+
+    /**
+     * Create an empty graph with the default number of lock stripes.
+     */
+    public ConcurrentGraph() {
+        this(DEFAULT_STRIPES);
+    }
+
+    /**
+     * Create an empty graph.
+     *
+     * @param concurrency the number of lock stripes, rounded up to a power of two;
+     *                    more stripes let more writers work at once
+     * @throws IllegalArgumentException if concurrency is not positive
+     */
+    public ConcurrentGraph(int concurrency) {
+        if (concurrency <= 0) {
+            throw new IllegalArgumentException("There must be at least one lock stripe");
+        }
+        int bits = 32 - Integer.numberOfLeadingZeros(Math.min(concurrency, 1 << 16) - 1);
+        stripes = new ReentrantReadWriteLock[1 << bits];
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new ReentrantReadWriteLock();
+        }
+        shift = 32 - bits;
+    }
+
+
+
+    ////////// methods from IGraph Interface //////////
+    /**
+     * Add vertex to the graph if no vertex with the same id already exists in graph.
+     *
+     * @param v vertex to add
+     * @return true if the vertex was added successfully and false otherwise
+     */
+    public boolean addVertex(V v) {
+        if (v == null) {
+            return false;
+        }
+        ReentrantReadWriteLock.WriteLock lock = stripes[stripe(v.id())].writeLock();
+        lock.lock();
+        try {
+            if (vertices.containsKey(v.id())) {
+                return false;
+            }
+            adjacency.put(v.id(), new HashMap<>());
+            vertices.put(v.id(), v);
+            modifications.incrementAndGet();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Checks if a vertex is part of the graph
+     *
+     * @param v vertex to check in the graph
+     * @return true of v is part of the graph and false otherwise
+     */
+    public boolean vertex(V v) {
+        if (v == null) {
+            return false;
+        }
+        V stored = vertices.get(v.id());
+        return stored != null && stored.equals(v);
+    }
+
+    /**
+     * Add an edge of the graph and check if added successfully.
+     *
+     * @param e the edge to add to the graph
+     * @return true if the edge was successfully added and false otherwise
+     */
+    public boolean addEdge(E e) {
+        if (e == null) {
+            return false;
+        }
+        int a = e.v1().id();
+        int b = e.v2().id();
+        lockWrite(a, b);
+        try {
+            if (!vertex(e.v1()) || !vertex(e.v2()) || adjacency.get(a).containsKey(b)) {
+                return false;
+            }
+            adjacency.get(a).put(b, e);
+            adjacency.get(b).put(a, e);
+            lengthSum.addAndGet(e.length());
+            modifications.incrementAndGet();
+            return true;
+        } finally {
+            unlockWrite(a, b);
+        }
+    }
+
+    /**
+     * Check if an edge is part of the graph
+     *
+     * @param e the edge to check in the graph
+     * @return true if e is an edge in the graoh and false otherwise
+     */
+    public boolean edge(E e) {
+        if (e == null) {
+            return false;
+        }
+        return findEdge(e.v1(), e.v2()) != null;
+    }
+
+    /**
+     * Check if v1-v2 or v2-v1 is an edge in the graph
+     *
+     * @param v1 the first vertex of the edge
+     * @param v2 the second vertex of the edge
+     * @return true if the v1-v2 or v2-v1 edge is part of the graph and false otherwise
+     */
+    public boolean edge(V v1, V v2) {
+        return findEdge(v1, v2) != null;
+    }
+
+    /**
+     * Determine the length on an edge in the graph
+     *
+     * @param v1 the first vertex of the edge
+     * @param v2 the second vertex of the edge
+     * @return the length of the v1-v2 or v2-v1 edge, if this edge is part of the graph
+     *              and 0 otherwise
+     */
+    public int edgeLength(V v1, V v2) {
+        E e = findEdge(v1, v2);
+        if (e == null) {
+            return 0;
+        }
+        return e.length();
+    }
+
+    /**
+     * Obtain the sum of the lengths of all edges in the graph
+     *
+     * @return the sum of the lengths of all edges in the graph
+     */
+    public int edgeLengthSum() {
+        return lengthSum.get();
+    }
+
+    /**
+     * Remove an edge from the graph and check if removed successfully.
+     *
+     * @param e the edge to remove
+     * @return true if e was successfully removed and false otherwise
+     */
+    public boolean remove(E e) {
+        if (e == null) {
+            return false;
+        }
+        int a = e.v1().id();
+        int b = e.v2().id();
+        lockWrite(a, b);
+        try {
+            E stored = storedEdge(e.v1(), e.v2());
+            if (stored == null) {
+                return false;
+            }
+            adjacency.get(a).remove(b);
+            adjacency.get(b).remove(a);
+            lengthSum.addAndGet(-stored.length());
+            modifications.incrementAndGet();
+            return true;
+        } finally {
+            unlockWrite(a, b);
+        }
+    }
+
+    /**
+     * Replace the edge between the ends of e with e, for example to change its length.
+     *
+     * @param e the edge to put in place of the edge between its ends
+     * @return true if the edge was replaced and false if there was no edge between its ends
+     */
+    public boolean replace(E e) {
+        if (e == null) {
+            return false;
+        }
+        int a = e.v1().id();
+        int b = e.v2().id();
+        lockWrite(a, b);
+        try {
+            E stored = storedEdge(e.v1(), e.v2());
+            if (stored == null) {
+                return false;
+            }
+            adjacency.get(a).put(b, e);
+            adjacency.get(b).put(a, e);
+            lengthSum.addAndGet(e.length() - stored.length());
+            modifications.incrementAndGet();
+            return true;
+        } finally {
+            unlockWrite(a, b);
+        }
+    }
+
+    /**
+     * Remove a vertex from the graph and check if removed successfully.
+     * Also remove all edges associated with that vertex if removed successfully.
+     *
+     * @param v the vertex to remove
+     * @return true if v was successfully removed and false otherwise
+     */
+    public boolean remove(V v) {
+        while (vertex(v)) {
+            //the stripes of the neighbours are only known by looking, and an edge to a
+            //vertex of another stripe may be added before they are locked, so check again
+            int[] locked = stripesAround(v.id());
+            for (int s : locked) {
+                stripes[s].writeLock().lock();
+            }
+            try {
+                if (!vertex(v)) {
+                    return false;
+                }
+                Map<Integer, E> incident = adjacency.get(v.id());
+                boolean covered = true;
+                for (int w : incident.keySet()) {
+                    covered &= Arrays.binarySearch(locked, stripe(w)) >= 0;
+                }
+                if (covered) {
+                    vertices.remove(v.id());
+                    adjacency.remove(v.id());
+                    for (Map.Entry<Integer, E> entry : incident.entrySet()) {
+                        adjacency.get(entry.getKey()).remove(v.id());
+                        lengthSum.addAndGet(-entry.getValue().length());
+                    }
+                    modifications.incrementAndGet();
+                    return true;
+                }
+            } finally {
+                for (int i = locked.length - 1; i >= 0; i--) {
+                    stripes[locked[i]].writeLock().unlock();
+                }
+            }
+        }
+        return false;
+    }
+
+
+    /**
+     * Obtain a set of all vertices in the graph.
+     * Access to this set does not permit graph mutations.
+     *
+     * @return a set of all vertices in the graph
+     */
+    public Set<V> allVertices() {
+        lockAllRead();
+        try {
+            return new HashSet<>(vertices.values());
+        } finally {
+            unlockAllRead();
+        }
+    }
+
+    /**
+     * Obtain a set of all edges incident on v.
+     * Access to this set does not permit graph mutations.
+     *
+     * @param v the vertex of interest
+     * @return all edges incident on v
+     */
+    public Set<E> allEdges(V v) {
+        if (v == null) {
+            return new HashSet<>();
+        }
+        ReentrantReadWriteLock.ReadLock lock = stripes[stripe(v.id())].readLock();
+        lock.lock();
+        try {
+            return new HashSet<>(incidence(v).values());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Obtain a set of all edges in the graph.
+     * Access to this set does not permit graph mutations.
+     *
+     * @return all edges in the graph
+     */
+    public Set<E> allEdges() {
+        lockAllRead();
+        try {
+            return allStoredEdges();
+        } finally {
+            unlockAllRead();
+        }
+    }
+
+    /**
+     * Obtain all the neighbours of vertex v.
+     * Access to this map does not permit graph mutations.
+     *
+     * @param v is the vertex whose neighbourhood we want.
+     * @return a map containing each vertex w that neighbors v and the edge between v and w.
+     */
+    public Map<V, E> getNeighbours(V v) {
+        Map<V, E> neighbourMap = new HashMap<>();
+        if (v == null) {
+            return neighbourMap;
+        }
+        ReentrantReadWriteLock.ReadLock lock = stripes[stripe(v.id())].readLock();
+        lock.lock();
+        try {
+            for (E e : incidence(v).values()) {
+                neighbourMap.put(e.distinctVertex(v), e);
+            }
+        } finally {
+            lock.unlock();
+        }
+        return neighbourMap;
+    }
+
+
+
+    ////////// methods from ImGraph Interface //////////
+    /**
+     * Compute the shortest path from source to sink, using Dijkstra's algorithm
+     * over a snapshot of the graph
+     *
+     * @param source the start vertex
+     * @param sink   the end vertex
+     * @return the vertices, in order, on the shortest path from source to sink
+     *              (both end points are part of the list) and returns empty list
+     *              if no shortest path exists
+     */
+    public List<V> shortestPath(V source, V sink) {
+        return freeze().shortestPath(source, sink);
+    }
+
+    /**
+     * Compute the shortest paths from source to each of sinks with one search over
+     * a snapshot of the graph
+     *
+     * @param source the start vertex
+     * @param sinks  the end vertices
+     * @return the shortest path from source to each sink, in the order of sinks
+     */
+    @Override
+    public List<List<V>> shortestPaths(V source, List<V> sinks) {
+        return freeze().shortestPaths(source, sinks);
+    }
+
+    /**
+     * Compute the minimum spanning tree of the graph over a snapshot of the graph
+     *
+     * @return a list of edges that forms a minimum spanning tree of each component of the graph
+     */
+    public List<E> minimumSpanningTree() {
+        return freeze().minimumSpanningTree();
+    }
+
+    /**
+     * Compute the length of a given path
+     *
+     * @param path is a List of Vertices that indicate the vertices of a given path (order matters)
+     * @return integer that represents the length of path
+     */
+    public int pathLength(List<V> path) {
+        int pathLength = 0;
+
+        for (int i = 0; i < path.size() - 1; i++) {
+            pathLength += edgeLength(path.get(i), path.get(i + 1));
+        }
+
+        return pathLength;
+    }
+
+    /**
+     * Compute the diameter of the graph over a snapshot of the graph
+     *
+     * @return the diameter of the graph. (diameter of the largest component
+     *              if graph has multiple components)
+     */
+    public int diameter() {
+        return freeze().diameter();
+    }
+
+    /**
+     * Finds the edge that connects two vertices if such an edge exists.
+     *
+     * @param v1 one end of the edge
+     * @param v2 the other end of the edge
+     * @return the edge connecting v1 and v2, and returns null
+     *              if edge does not exist in graph
+     */
+    public E getEdge(V v1, V v2) {
+        return findEdge(v1, v2);
+    }
+
+
+
+    ////////// snapshots //////////
+    /**
+     * Take an immutable compressed sparse row snapshot of the graph.
+     * The vertices and edges are copied while holding the read locks of every stripe, so
+     * the snapshot shows the graph between two mutations; the same snapshot is returned
+     * again until the graph changes. If another thread is already building a snapshot,
+     * this waits for and returns that one, as long as it was copied after this call began.
+     *
+     * @return a snapshot with the vertices and edges in the graph at some point since the call
+     */
+    public CsrGraph<V, E> freeze() {
+        while (true) {
+            long wanted = modifications.get();
+            Snapshot<V, E> current = snapshot;
+            if (current != null && current.version >= wanted) {
+                return current.graph;
+            }
+            CompletableFuture<Snapshot<V, E>> pending = building.get();
+            if (pending == null) {
+                CompletableFuture<Snapshot<V, E>> mine = new CompletableFuture<>();
+                if (building.compareAndSet(null, mine)) {
+                    try {
+                        Snapshot<V, E> built = build();
+                        mine.complete(built);
+                        return built.graph;
+                    } catch (RuntimeException | Error e) {
+                        mine.completeExceptionally(e);
+                        throw e;
+                    } finally {
+                        building.set(null);
+                    }
+                }
+            } else {
+                //a build that copied the graph before this call began may miss a mutation
+                // this thread already saw, so wait for the next one instead
+                Snapshot<V, E> shared = pending.join();
+                if (shared.version >= wanted) {
+                    return shared.graph;
+                }
+            }
+        }
+    }
+
+    /**
+     * Copy the graph and build a snapshot of it, publishing it for later queries.
+     *
+     * @return the new snapshot
+     */
+    private Snapshot<V, E> build() {
+        long version;
+        List<V> vertexList;
+        List<E> edgeList = new ArrayList<>();
+        lockAllRead();
+        try {
+            version = modifications.get();
+            vertexList = new ArrayList<>(vertices.values());
+            collectEdges(edgeList);
+        } finally {
+            unlockAllRead();
+        }
+        //the copy is built into a snapshot without holding up writers
+        Snapshot<V, E> built = new Snapshot<>(version, new CsrGraph<>(vertexList, edgeList));
+        Snapshot<V, E> current = snapshot;
+        if (current == null || current.version < version) {
+            snapshot = built;
+        }
+        return built;
+    }
+
+
+
+    ////////// helper methods //////////
+    /**
+     * Find the stripe guarding a vertex
+     *
+     * @param id the id of the vertex
+     * @return the index in stripes of the lock of the vertex
+     */
+    private int stripe(int id) {
+        //spread consecutive ids over all stripes
+        return shift == 32 ? 0 : (id * 0x9E3779B9) >>> shift;
+    }
+
+    /**
+     * Find the stripes of a vertex and of its current neighbours
+     *
+     * @param id the id of the vertex
+     * @return the distinct indices of those stripes, in increasing order
+     */
+    private int[] stripesAround(int id) {
+        ReentrantReadWriteLock.ReadLock lock = stripes[stripe(id)].readLock();
+        lock.lock();
+        try {
+            Map<Integer, E> incident = adjacency.get(id);
+            int[] found = new int[1 + (incident == null ? 0 : incident.size())];
+            int count = 0;
+            found[count++] = stripe(id);
+            if (incident != null) {
+                for (int w : incident.keySet()) {
+                    found[count++] = stripe(w);
+                }
+            }
+            return Arrays.stream(found).distinct().sorted().toArray();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Take the write locks of the stripes of two vertices, in increasing stripe order
+     *
+     * @param a the id of one vertex
+     * @param b the id of the other vertex
+     */
+    private void lockWrite(int a, int b) {
+        int sa = stripe(a);
+        int sb = stripe(b);
+        stripes[Math.min(sa, sb)].writeLock().lock();
+        if (sa != sb) {
+            stripes[Math.max(sa, sb)].writeLock().lock();
+        }
+    }
+
+    /**
+     * Release the write locks taken by lockWrite(a, b)
+     *
+     * @param a the id of one vertex
+     * @param b the id of the other vertex
+     */
+    private void unlockWrite(int a, int b) {
+        int sa = stripe(a);
+        int sb = stripe(b);
+        if (sa != sb) {
+            stripes[Math.max(sa, sb)].writeLock().unlock();
+        }
+        stripes[Math.min(sa, sb)].writeLock().unlock();
+    }
+
+    /**
+     * Take the read locks of every stripe, in increasing stripe order
+     */
+    private void lockAllRead() {
+        for (ReentrantReadWriteLock stripe : stripes) {
+            stripe.readLock().lock();
+        }
+    }
+
+    /**
+     * Release the read locks taken by lockAllRead()
+     */
+    private void unlockAllRead() {
+        for (int i = stripes.length - 1; i >= 0; i--) {
+            stripes[i].readLock().unlock();
+        }
+    }
+
+    /**
+     * Collect every edge of the graph. The caller holds the locks of every stripe.
+     *
+     * @return every edge of the graph, each once
+     */
+    private Set<E> allStoredEdges() {
+        Set<E> edges = new HashSet<>();
+        collectEdges(edges);
+        return edges;
+    }
+
+    /**
+     * Add every edge of the graph to a collection. The caller holds the locks of every stripe.
+     *
+     * @param edges the collection to add each edge of the graph to once
+     */
+    private void collectEdges(Collection<E> edges) {
+        for (Map.Entry<Integer, Map<Integer, E>> entry : adjacency.entrySet()) {
+            //each edge is stored under both of its ends, so keep only the copy under the smaller id
+            int id = entry.getKey();
+            for (Map.Entry<Integer, E> incident : entry.getValue().entrySet()) {
+                if (id < incident.getKey()) {
+                    edges.add(incident.getValue());
+                }
+            }
+        }
+    }
+
+    /**
+     * Finds the edges incident on v. The caller holds the lock of the stripe of v.
+     *
+     * @param v the vertex of interest
+     * @return a map from the id of each neighbour of v to the edge connecting it to v,
+     *              or an empty map if v is not part of the graph
+     */
+    private Map<Integer, E> incidence(V v) {
+        if (!vertex(v)) {
+            return Collections.emptyMap();
+        }
+        return adjacency.get(v.id());
+    }
+
+    /**
+     * Finds the edge stored in the graph between v1 and v2, taking the read lock of
+     * the stripe of v1.
+     *
+     * @param v1 one end of the edge
+     * @param v2 the other end of the edge
+     * @return the edge connecting v1 and v2, or null if there is no such edge in the graph
+     */
+    private E findEdge(V v1, V v2) {
+        if (v1 == null || v2 == null) {
+            return null;
+        }
+        ReentrantReadWriteLock.ReadLock lock = stripes[stripe(v1.id())].readLock();
+        lock.lock();
+        try {
+            return storedEdge(v1, v2);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Finds the edge stored in the graph between v1 and v2. The caller holds the lock of
+     * the stripe of v1.
+     *
+     * @param v1 one end of the edge, not null
+     * @param v2 the other end of the edge, not null
+     * @return the edge connecting v1 and v2, or null if there is no such edge in the graph
+     */
+    private E storedEdge(V v1, V v2) {
+        Map<Integer, E> incident = adjacency.get(v1.id());
+        if (incident == null) {
+            return null;
+        }
+        E e = incident.get(v2.id());
+        if (e != null && e.incident(v1) && e.incident(v2)) {
+            return e;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,702 @@
+package graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A contraction hierarchy over a CsrGraph, for answering many exact shortest path
+ * queries on a graph that does not change.
+ * Preprocessing contracts the vertices one by one in order of importance, adding a
+ * shortcut edge between two neighbours of a contracted vertex whenever the path
+ * through it is the only shortest path between them. A query then runs Dijkstra's
+ * algorithm from both ends using only edges that lead to more important vertices,
+ * which settles a tiny fraction of the graph, and unpacks the shortcuts on the
+ * resulting path back into edges of the graph.
+ *
+ * @param <V> represents a vertex type
+ * @param <E> represents an edge type
+ */
+public final class ContractionHierarchy<V extends Vertex, E extends Edge<V>> {
+
+    /** Most vertices a witness search may settle before giving up and keeping the shortcut */
+    private static final int WITNESS_SETTLE_LIMIT = 100;
+
+    /** Graph the hierarchy was built on */
+    private final CsrGraph<V, E> graph;
+
+    /** Upward arcs of each vertex: those of vertex u are at slots upOffsets[u] to upOffsets[u + 1] - 1 */
+    private final int[] upOffsets;
+
+    /** Dense index of the more important vertex at the far end of each upward arc */
+    private final int[] upTargets;
+
+    /** Length of each upward arc */
+    private final long[] upLengths;
+
+    /** Vertex each upward arc is a shortcut through, or -1 if the arc is an edge of the graph */
+    private final int[] upMiddles;
+
+    /** Number of upward arcs that are shortcuts */
+    private final int shortcuts;
+
+    /** Idle query engines, taken by a query for its duration and then given back */
+    private final EnginePool<Query> queries;
+
+    // Representation Invariant
+    //      upOffsets has length graph.vertexCount() + 1, is non-decreasing, starts at 0 and
+    //      ends at upTargets.length == upLengths.length == upMiddles.length.
+    //      the vertices can be ranked so that every upward arc leads to a higher rank, and for
+    //      each pair of vertices some shortest path between them in graph, with every shortcut
+    //      unpacked, first only climbs and then only descends in rank.
+    //      an upward arc u -> w with upMiddles m >= 0 has length equal to the sum of the lengths
+    //      of the upward arcs m -> u and m -> w, and an arc with upMiddles -1 is the edge u - w.
+    //
+    // Abstraction Function:
+    //      represents an index answering shortest path queries on graph
+
+    /**
+     * Create a hierarchy from its upward arcs.
+     *
+     * @param graph the graph the hierarchy was built on
+     * @param upOffsets the row offsets of the upward arcs
+     * @param upTargets the far end of each upward arc
+     * @param upLengths the length of each upward arc
+     * @param upMiddles the middle vertex of each upward arc, or -1
+     */
+    private ContractionHierarchy(CsrGraph<V, E> graph, int[] upOffsets, int[] upTargets,
+                                 long[] upLengths, int[] upMiddles) {
+        this.graph = graph;
+        this.upOffsets = upOffsets;
+        this.upTargets = upTargets;
+        this.upLengths = upLengths;
+        this.upMiddles = upMiddles;
+        int count = 0;
+        for (int middle : upMiddles) {
+            if (middle >= 0) {
+                count++;
+            }
+        }
+        this.shortcuts = count;
+        //every engine is sized to this hierarchy, so there is never any retargeting to do
+        this.queries = new EnginePool<>(rows -> new Query(), (query, rows) -> { });
+    }
+
+    /**
+     * Build a contraction hierarchy over graph.
+     * For a mutable Graph g, build it over g.freeze().
+     *
+     * @param graph the graph to build the hierarchy on
+     * @param <V> represents a vertex type
+     * @param <E> represents an edge type
+     * @return a contraction hierarchy answering shortest path queries on graph
+     */
+    public static <V extends Vertex, E extends Edge<V>> ContractionHierarchy<V, E> build(CsrGraph<V, E> graph) {
+        Contractor contractor = new Contractor(graph.adjacency());
+        contractor.contractAll();
+        return new ContractionHierarchy<>(graph, contractor.upOffsets, contractor.upTargets,
+                contractor.upLengths, contractor.upMiddles);
+    }
+
+    /**
+     * Obtain the number of shortcuts the hierarchy added to the graph
+     *
+     * @return the number of shortcut arcs
+     */
+    public int shortcutCount() {
+        return shortcuts;
+    }
+
+    /**
+     * Compute the length of the shortest path from source to sink
+     *
+     * @param source the start vertex
+     * @param sink   the end vertex
+     * @return the length of the shortest path from source to sink, or -1 if there is no
+     *              path or either vertex is not part of the graph
+     */
+    public long distance(V source, V sink) {
+        int s = graph.indexOf(source);
+        int t = graph.indexOf(sink);
+        if (s < 0 || t < 0) {
+            return -1;
+        }
+        Query query = queries.acquire(graph.adjacency());
+        try {
+            return query.run(s, t) ? query.best : -1;
+        } finally {
+            queries.release(query);
+        }
+    }
+
+    /**
+     * Compute the shortest path from source to sink
+     *
+     * @param source the start vertex
+     * @param sink   the end vertex
+     * @return the vertices, in order, on the shortest path from source to sink
+     *              (both end points are part of the list) and returns empty list
+     *              if no shortest path exists
+     */
+    public List<V> shortestPath(V source, V sink) {
+        int s = graph.indexOf(source);
+        int t = graph.indexOf(sink);
+        List<V> path = new ArrayList<>();
+        if (s < 0 || t < 0) {
+            return path;
+        }
+        Query query = queries.acquire(graph.adjacency());
+        try {
+            if (!query.run(s, t)) {
+                return path;
+            }
+
+            //climb from the source to the meeting vertex, then descend to the sink
+            int[] up = query.forward.chain(query.meet);
+            int[] down = query.backward.chain(query.meet);
+            path.add(graph.vertex(s));
+            for (int i = 1; i < up.length; i++) {
+                unpack(up[i - 1], up[i], upMiddles[query.forward.via[up[i]]], path);
+            }
+            for (int i = down.length - 1; i > 0; i--) {
+                unpack(down[i], down[i - 1], upMiddles[query.backward.via[down[i]]], path);
+            }
+            return path;
+        } finally {
+            queries.release(query);
+        }
+    }
+
+
+
+    ////////// helper methods //////////
+    /**
+     * Append the vertices of an arc, with all its shortcuts unpacked, to path.
+     *
+     * @param from the dense index of the end of the arc already on path
+     * @param to the dense index of the other end of the arc
+     * @param middle the vertex the arc is a shortcut through, or -1
+     * @param path the path to append to, whose last vertex is from
+     */
+    private void unpack(int from, int to, int middle, List<V> path) {
+        //stack of pending (from, to, middle) triples, the next one to unpack on top
+        int[] stack = new int[48];
+        int top = 0;
+        stack[top++] = from;
+        stack[top++] = to;
+        stack[top++] = middle;
+        while (top > 0) {
+            int m = stack[--top];
+            int b = stack[--top];
+            int a = stack[--top];
+            if (m < 0) {
+                path.add(graph.vertex(b));
+                continue;
+            }
+            if (top + 6 > stack.length) {
+                stack = Arrays.copyOf(stack, 2 * stack.length);
+            }
+            //both halves of a shortcut are upward arcs of the vertex it goes through
+            stack[top++] = m;
+            stack[top++] = b;
+            stack[top++] = upMiddles[upArc(m, b)];
+            stack[top++] = a;
+            stack[top++] = m;
+            stack[top++] = upMiddles[upArc(m, a)];
+        }
+    }
+
+    /**
+     * Find the upward arc from u to w.
+     *
+     * @param u the dense index of the less important vertex
+     * @param w the dense index of the more important vertex
+     * @return the slot of the upward arc from u to w
+     */
+    private int upArc(int u, int w) {
+        for (int arc = upOffsets[u]; arc < upOffsets[u + 1]; arc++) {
+            if (upTargets[arc] == w) {
+                return arc;
+            }
+        }
+        throw new IllegalStateException("Missing half of a shortcut");
+    }
+
+    /**
+     * State of one upward search of a query.
+     */
+    private final class Search {
+
+        /** Best known upward distance to each reached vertex */
+        private final long[] dist;
+
+        /** Upward arc used to reach each reached vertex, or -1 for the start */
+        private final int[] via;
+
+        /** Vertex each reached vertex was reached from, or -1 for the start */
+        private final int[] parent;
+
+        /** Search in which dist and via of each vertex were last written */
+        private final int[] stamp;
+
+        /** Reached vertices that are not settled, keyed by distance */
+        private final IndexedMinHeap heap;
+
+        /** Number of the current search */
+        private int search = 0;
+
+        /**
+         * Create scratch space for searching the hierarchy.
+         */
+        Search() {
+            int n = graph.vertexCount();
+            dist = new long[n];
+            via = new int[n];
+            parent = new int[n];
+            stamp = new int[n];
+            heap = new IndexedMinHeap(n);
+        }
+
+        /**
+         * Forget the previous search and reach only start, at distance 0.
+         *
+         * @param start the dense index of the start vertex
+         */
+        void start(int start) {
+            heap.clear();
+            if (search == Integer.MAX_VALUE) {
+                Arrays.fill(stamp, 0);
+                search = 0;
+            }
+            search++;
+            stamp[start] = search;
+            dist[start] = 0;
+            via[start] = -1;
+            parent[start] = -1;
+            heap.offer(start, 0);
+        }
+
+        /**
+         * Obtain the distance of the next vertex to settle
+         *
+         * @return the smallest distance in the heap, or Dijkstra.UNREACHED if it is empty
+         */
+        long frontier() {
+            return heap.isEmpty() ? Dijkstra.UNREACHED : heap.minKey();
+        }
+
+        /**
+         * Obtain the best known upward distance to a vertex
+         *
+         * @param v the dense index of the vertex
+         * @return the distance, or Dijkstra.UNREACHED if v is not reached
+         */
+        long distance(int v) {
+            return stamp[v] == search ? dist[v] : Dijkstra.UNREACHED;
+        }
+
+        /**
+         * Settle the closest unsettled vertex and relax its upward arcs.
+         *
+         * @return the dense index of the settled vertex
+         */
+        int settle() {
+            int u = heap.pollMin();
+            long du = dist[u];
+            for (int arc = upOffsets[u]; arc < upOffsets[u + 1]; arc++) {
+                int w = upTargets[arc];
+                long dw = du + upLengths[arc];
+                if (stamp[w] != search || (dw < dist[w] && heap.contains(w))) {
+                    stamp[w] = search;
+                    dist[w] = dw;
+                    via[w] = arc;
+                    parent[w] = u;
+                    heap.offer(w, dw);
+                }
+            }
+            return u;
+        }
+
+        /**
+         * Obtain the vertices on the upward path found to v.
+         *
+         * @param v the dense index of a vertex reached by the current search
+         * @return the dense indices of the vertices on the path, in order from the start to v
+         */
+        int[] chain(int v) {
+            int count = 0;
+            for (int u = v; u >= 0; u = parent[u]) {
+                count++;
+            }
+            int[] chain = new int[count];
+            for (int u = v; u >= 0; u = parent[u]) {
+                chain[--count] = u;
+            }
+            return chain;
+        }
+    }
+
+    /**
+     * Scratch space for running one query at a time on the hierarchy.
+     */
+    private final class Query {
+
+        /** Search climbing from the source */
+        private final Search forward = new Search();
+
+        /** Search climbing from the sink */
+        private final Search backward = new Search();
+
+        /** Length of the shortest path found by the last query */
+        private long best;
+
+        /** Vertex where the shortest path found by the last query changes from climbing to descending */
+        private int meet;
+
+        /**
+         * Search for the shortest path from s to t.
+         *
+         * @param s the dense index of the start vertex
+         * @param t the dense index of the end vertex
+         * @return true if a path was found and false otherwise
+         */
+        boolean run(int s, int t) {
+            forward.start(s);
+            backward.start(t);
+            best = Dijkstra.UNREACHED;
+            meet = -1;
+
+            //a side stops once nothing it could still settle can improve on best
+            while (forward.frontier() < best || backward.frontier() < best) {
+                Search near = forward.frontier() <= backward.frontier() ? forward : backward;
+                Search far = near == forward ? backward : forward;
+                int u = near.settle();
+                long du = near.distance(u);
+                long other = far.distance(u);
+                if (other != Dijkstra.UNREACHED && du + other < best) {
+                    best = du + other;
+                    meet = u;
+                }
+            }
+            return meet >= 0;
+        }
+    }
+
+    /**
+     * Contracts the vertices of a graph and collects the upward arcs of each of them.
+     */
+    private static final class Contractor {
+
+        /** Number of vertices */
+        private final int n;
+
+        /** Uncontracted neighbours of each uncontracted vertex */
+        private final int[][] neighbours;
+
+        /** Length of the arc to each neighbour */
+        private final long[][] lengths;
+
+        /** Vertex the arc to each neighbour is a shortcut through, or -1 */
+        private final int[][] middles;
+
+        /** Number of uncontracted neighbours of each vertex */
+        private final int[] degree;
+
+        /** Number of contracted neighbours of each vertex */
+        private final int[] contractedNeighbours;
+
+        /** Length of the longest chain of contracted vertices below each vertex */
+        private final int[] level;
+
+        /** Far end of the upward arcs of each contracted vertex, recorded when it is contracted */
+        private final int[][] upTargetRows;
+
+        /** Length of the upward arcs of each contracted vertex */
+        private final long[][] upLengthRows;
+
+        /** Middle vertex of the upward arcs of each contracted vertex */
+        private final int[][] upMiddleRows;
+
+        /** Upward arcs of all vertices in compressed sparse row form, once all are contracted */
+        private int[] upOffsets;
+        private int[] upTargets;
+        private long[] upLengths;
+        private int[] upMiddles;
+
+        /** Best distance found to each vertex by the current witness search */
+        private final long[] witnessDist;
+
+        /** Witness search in which witnessDist of each vertex was last written */
+        private final int[] witnessStamp;
+
+        /** Witness search in which each vertex was last a target */
+        private final int[] witnessTarget;
+
+        /** Vertices reached but not settled by the current witness search */
+        private final IndexedMinHeap witnessHeap;
+
+        /** Number of the current witness search */
+        private int witnessSearch = 0;
+
+        /**
+         * Create a contractor for the given graph.
+         *
+         * @param graph the graph to contract
+         */
+        Contractor(IntAdjacency graph) {
+            n = graph.vertexCount();
+            neighbours = new int[n][];
+            lengths = new long[n][];
+            middles = new int[n][];
+            degree = new int[n];
+            contractedNeighbours = new int[n];
+            level = new int[n];
+            upTargetRows = new int[n][];
+            upLengthRows = new long[n][];
+            upMiddleRows = new int[n][];
+            witnessDist = new long[n];
+            witnessStamp = new int[n];
+            witnessTarget = new int[n];
+            witnessHeap = new IndexedMinHeap(n);
+            for (int u = 0; u < n; u++) {
+                int d = graph.end(u) - graph.begin(u);
+                neighbours[u] = new int[Math.max(d, 2)];
+                lengths[u] = new long[Math.max(d, 2)];
+                middles[u] = new int[Math.max(d, 2)];
+                for (int arc = graph.begin(u); arc < graph.end(u); arc++) {
+                    neighbours[u][degree[u]] = graph.target(arc);
+                    lengths[u][degree[u]] = graph.length(arc);
+                    middles[u][degree[u]] = -1;
+                    degree[u]++;
+                }
+            }
+        }
+
+        /**
+         * Contract every vertex, least important first, and flatten the upward arcs.
+         */
+        void contractAll() {
+            IndexedMinHeap order = new IndexedMinHeap(n);
+            for (int v = 0; v < n; v++) {
+                order.offer(v, priority(v));
+            }
+            while (!order.isEmpty()) {
+                int v = order.pollMin();
+                //priorities go stale as neighbours are contracted, so recheck before contracting
+                long p = priority(v);
+                if (!order.isEmpty() && p > order.minKey()) {
+                    order.offer(v, p);
+                    continue;
+                }
+                contract(v);
+            }
+
+            upOffsets = new int[n + 1];
+            for (int v = 0; v < n; v++) {
+                upOffsets[v + 1] = upOffsets[v] + upTargetRows[v].length;
+            }
+            upTargets = new int[upOffsets[n]];
+            upLengths = new long[upOffsets[n]];
+            upMiddles = new int[upOffsets[n]];
+            for (int v = 0; v < n; v++) {
+                int length = upTargetRows[v].length;
+                System.arraycopy(upTargetRows[v], 0, upTargets, upOffsets[v], length);
+                System.arraycopy(upLengthRows[v], 0, upLengths, upOffsets[v], length);
+                System.arraycopy(upMiddleRows[v], 0, upMiddles, upOffsets[v], length);
+                upTargetRows[v] = null;
+                upLengthRows[v] = null;
+                upMiddleRows[v] = null;
+            }
+        }
+
+        /**
+         * Estimate how much contracting v would grow the graph; lower is contracted first.
+         *
+         * @param v the index of an uncontracted vertex
+         * @return twice the number of shortcuts contracting v would add less the arcs it would
+         *              remove, plus the number of neighbours of v already contracted and
+         *              the level of v, which spread contraction evenly over the graph
+         */
+        private long priority(int v) {
+            return 2L * (shortcuts(v, false) - degree[v]) + contractedNeighbours[v] + level[v];
+        }
+
+        /**
+         * Contract v: record its upward arcs, add the shortcuts it needs and remove it.
+         *
+         * @param v the index of an uncontracted vertex
+         */
+        private void contract(int v) {
+            int d = degree[v];
+            upTargetRows[v] = Arrays.copyOf(neighbours[v], d);
+            upLengthRows[v] = Arrays.copyOf(lengths[v], d);
+            upMiddleRows[v] = Arrays.copyOf(middles[v], d);
+            shortcuts(v, true);
+            for (int i = 0; i < d; i++) {
+                int u = upTargetRows[v][i];
+                removeArc(u, v);
+                contractedNeighbours[u]++;
+                level[u] = Math.max(level[u], level[v] + 1);
+            }
+            neighbours[v] = null;
+            lengths[v] = null;
+            middles[v] = null;
+            degree[v] = 0;
+        }
+
+        /**
+         * Find the pairs of neighbours of v whose only shortest path goes through v.
+         *
+         * @param v the index of an uncontracted vertex
+         * @param add true to add a shortcut between each such pair
+         * @return the number of such pairs
+         */
+        private int shortcuts(int v, boolean add) {
+            int d = degree[v];
+            int[] around = Arrays.copyOf(neighbours[v], d);
+            long[] through = Arrays.copyOf(lengths[v], d);
+            int count = 0;
+            for (int i = 0; i + 1 < d; i++) {
+                long longest = 0;
+                for (int j = i + 1; j < d; j++) {
+                    longest = Math.max(longest, through[j]);
+                }
+                witness(around[i], v, through[i] + longest, around, i + 1, d);
+                for (int j = i + 1; j < d; j++) {
+                    long via = through[i] + through[j];
+                    if (witnessDistance(around[j]) > via) {
+                        count++;
+                        if (add) {
+                            connect(around[i], around[j], via, v);
+                        }
+                    }
+                }
+            }
+            return count;
+        }
+
+        /**
+         * Search for short paths from source that avoid skip, settling no vertex further than
+         * limit and stopping early once every target is settled.
+         *
+         * @param source the index of the start vertex
+         * @param skip the index of the vertex to avoid
+         * @param limit the longest path length of interest
+         * @param targets holds the indices of the vertices of interest
+         * @param from the position of the first target in targets
+         * @param to one past the position of the last target in targets
+         */
+        private void witness(int source, int skip, long limit, int[] targets, int from, int to) {
+            witnessHeap.clear();
+            if (witnessSearch == Integer.MAX_VALUE) {
+                Arrays.fill(witnessStamp, 0);
+                Arrays.fill(witnessTarget, 0);
+                witnessSearch = 0;
+            }
+            witnessSearch++;
+            witnessStamp[source] = witnessSearch;
+            witnessDist[source] = 0;
+            witnessHeap.offer(source, 0);
+            for (int i = from; i < to; i++) {
+                witnessTarget[targets[i]] = witnessSearch;
+            }
+
+            int settled = 0;
+            int remaining = to - from;
+            while (!witnessHeap.isEmpty() && witnessHeap.minKey() <= limit
+                    && settled++ < WITNESS_SETTLE_LIMIT) {
+                int u = witnessHeap.pollMin();
+                if (witnessTarget[u] == witnessSearch && --remaining == 0) {
+                    return;
+                }
+                long du = witnessDist[u];
+                for (int i = 0; i < degree[u]; i++) {
+                    int w = neighbours[u][i];
+                    long dw = du + lengths[u][i];
+                    if (w == skip || dw > limit) {
+                        continue;
+                    }
+                    if (witnessStamp[w] != witnessSearch) {
+                        witnessStamp[w] = witnessSearch;
+                        witnessDist[w] = dw;
+                        witnessHeap.offer(w, dw);
+                    } else if (dw < witnessDist[w] && witnessHeap.contains(w)) {
+                        witnessDist[w] = dw;
+                        witnessHeap.offer(w, dw);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Obtain the best distance the last witness search found to a vertex
+         *
+         * @param v the index of the vertex
+         * @return the distance found, or Dijkstra.UNREACHED if the search did not reach v
+         */
+        private long witnessDistance(int v) {
+            return witnessStamp[v] == witnessSearch ? witnessDist[v] : Dijkstra.UNREACHED;
+        }
+
+        /**
+         * Add an arc between u and w in both directions, unless an arc at least as short exists.
+         *
+         * @param u the index of one end
+         * @param w the index of the other end
+         * @param length the length of the arc
+         * @param middle the vertex the arc is a shortcut through, or -1
+         */
+        private void connect(int u, int w, long length, int middle) {
+            setArc(u, w, length, middle);
+            setArc(w, u, length, middle);
+        }
+
+        /**
+         * Add or shorten the arc from u to w.
+         *
+         * @param u the index of the vertex whose list holds the arc
+         * @param w the index of the far end
+         * @param length the length of the arc
+         * @param middle the vertex the arc is a shortcut through, or -1
+         */
+        private void setArc(int u, int w, long length, int middle) {
+            for (int i = 0; i < degree[u]; i++) {
+                if (neighbours[u][i] == w) {
+                    if (length < lengths[u][i]) {
+                        lengths[u][i] = length;
+                        middles[u][i] = middle;
+                    }
+                    return;
+                }
+            }
+            if (degree[u] == neighbours[u].length) {
+                int grown = 2 * degree[u];
+                neighbours[u] = Arrays.copyOf(neighbours[u], grown);
+                lengths[u] = Arrays.copyOf(lengths[u], grown);
+                middles[u] = Arrays.copyOf(middles[u], grown);
+            }
+            neighbours[u][degree[u]] = w;
+            lengths[u][degree[u]] = length;
+            middles[u][degree[u]] = middle;
+            degree[u]++;
+        }
+
+        /**
+         * Remove the arc from u to w.
+         *
+         * @param u the index of the vertex whose list holds the arc
+         * @param w the index of the far end
+         */
+        private void removeArc(int u, int w) {
+            for (int i = 0; i < degree[u]; i++) {
+                if (neighbours[u][i] == w) {
+                    int last = --degree[u];
+                    neighbours[u][i] = neighbours[u][last];
+                    lengths[u][i] = lengths[u][last];
+                    middles[u][i] = middles[u][last];
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,563 @@
+package graph;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.LongAccumulator;
+
+
+/**
+ * Represents an immutable snapshot of a graph in compressed sparse row form.
+ * Vertices are numbered densely in order of id, and the neighbours of each vertex
+ * are stored as a contiguous row of int arrays, so queries touch flat primitive
+ * arrays instead of hash maps and edge objects.
+ *
+ * @param <V> represents a vertex type
+ * @param <E> represents an edge type
+ */
+public final class CsrGraph<V extends Vertex, E extends Edge<V>> implements ImGraph<V, E> {
+
+    /** Vertex at each dense index */
+    private final Object[] vertices;
+
+    /** Id of the vertex at each dense index, in increasing order */
+    private final int[] ids;
+
+    /** Row of each vertex: the arcs of vertex i are at slots offsets[i] to offsets[i + 1] - 1 */
+    private final int[] offsets;
+
+    /** Dense index of the vertex at the far end of each arc */
+    private final int[] targets;
+
+    /** Length of the edge behind each arc */
+    private final int[] lengths;
+
+    /** Dense index of each id at position id - ids[0], or null if ids are too spread out */
+    private final int[] dense;
+
+    /** Index into edges of the edge behind each arc */
+    private final int[] edgeIds;
+
+    /** Every edge of the graph, once each */
+    private final Object[] edges;
+
+    /** View of the rows for the search engines, which queries take from EnginePool */
+    private final IntAdjacency rows;
+
+    // Representation Invariant
+    //      ids is strictly increasing and ids[i] == vertices[i].id().
+    //      dense is null or dense[ids[i] - ids[0]] == i for every i and -1 elsewhere.
+    //      offsets[0] == 0, offsets is non-decreasing and offsets[n] == targets.length == 2 * edges.length.
+    //      targets in each row are strictly increasing, so no row holds two arcs to one vertex.
+    //      every edge k appears as exactly two arcs, u -> w in row u and w -> u in row w, where
+    //      edgeIds of both arcs is k, both lengths equal edges[k].length(), and
+    //      {vertices[u], vertices[w]} are the two ends of edges[k].
+    //
+    // Abstraction Function:
+    //      represents the simple, undirected graph whose nodes are the elements of vertices
+    //      and whose node-to-node connections are the elements of edges
+
+    /**
+     * Create a snapshot of the graph with the given vertices and edges.
+     *
+     * @param vertexList all vertices of the graph, with distinct ids
+     * @param edgeList all edges of the graph, whose ends are in vertexList and
+     *                 with no two edges connecting the same vertices
+     */
+    CsrGraph(Collection<V> vertexList, Collection<E> edgeList) {
+        int n = vertexList.size();
+        int m = edgeList.size();
+
+        List<V> sorted = new ArrayList<>(vertexList);
+        sorted.sort(Comparator.comparingInt(Vertex::id));
+        vertices = sorted.toArray();
+        ids = new int[n];
+        for (int i = 0; i < n; i++) {
+            ids[i] = sorted.get(i).id();
+        }
+        dense = denseIndex(ids);
+
+        //first pass: bucket the arcs of every edge by their source vertex
+        edges = edgeList.toArray();
+        int[] ends = new int[2 * m];
+        int[] degree = new int[n + 1];
+        for (int k = 0; k < m; k++) {
+            @SuppressWarnings("unchecked")
+            E e = (E) edges[k];
+            ends[2 * k] = indexOfId(e.v1().id());
+            ends[2 * k + 1] = indexOfId(e.v2().id());
+            degree[ends[2 * k]]++;
+            degree[ends[2 * k + 1]]++;
+        }
+        int[] start = new int[n + 1];
+        for (int i = 0; i < n; i++) {
+            start[i + 1] = start[i] + degree[i];
+        }
+        int[] unsorted = new int[2 * m];
+        int[] fill = Arrays.copyOf(start, n);
+        for (int k = 0; k < m; k++) {
+            unsorted[fill[ends[2 * k]]++] = 2 * k;
+            unsorted[fill[ends[2 * k + 1]]++] = 2 * k + 1;
+        }
+
+        //second pass: visiting the buckets in order of vertex index and appending each arc
+        // to the row of its other end leaves every row sorted by target
+        offsets = start;
+        targets = new int[2 * m];
+        lengths = new int[2 * m];
+        edgeIds = new int[2 * m];
+        fill = Arrays.copyOf(start, n);
+        for (int w = 0; w < n; w++) {
+            for (int slot = start[w]; slot < start[w + 1]; slot++) {
+                int end = unsorted[slot];
+                int k = end >>> 1;
+                int u = ends[end ^ 1];
+                int arc = fill[u]++;
+                targets[arc] = w;
+                lengths[arc] = ((Edge<?>) edges[k]).length();
+                edgeIds[arc] = k;
+            }
+        }
+        rows = new ArrayAdjacency(offsets, targets, lengths);
+    }
+
+    /**
+     * Obtain the number of vertices in the graph
+     *
+     * @return the number of vertices in the graph
+     */
+    public int vertexCount() {
+        return vertices.length;
+    }
+
+    /**
+     * Obtain the number of edges in the graph
+     *
+     * @return the number of edges in the graph
+     */
+    public int edgeCount() {
+        return edges.length;
+    }
+
+
+
+    ////////// methods from ImGraph Interface //////////
+    /**
+     * Compute the shortest path from source to sink, using Dijkstra's algorithm
+     * with an indexed heap over the dense vertex indices.
+     * The search stops as soon as sink is settled.
+     *
+     * @param source the start vertex
+     * @param sink   the end vertex
+     * @return the vertices, in order, on the shortest path from source to sink
+     *              (both end points are part of the list) and returns empty list
+     *              if no shortest path exists
+     */
+    public List<V> shortestPath(V source, V sink) {
+        if (source != null && source.equals(sink)) {
+            List<V> path = new ArrayList<>();
+            path.add(sink);
+            return path;
+        }
+        int s = indexOf(source);
+        int t = indexOf(sink);
+        if (s < 0 || t < 0) {
+            return new ArrayList<>();
+        }
+
+        Dijkstra engine = EnginePool.DIJKSTRA.acquire(rows);
+        try {
+            engine.runTo(s, t);
+            return toPath(engine.path(t));
+        } finally {
+            EnginePool.DIJKSTRA.release(engine);
+        }
+    }
+
+    /**
+     * Compute the shortest paths from source to each of sinks with a single run of
+     * Dijkstra's algorithm, which stops as soon as every sink is settled.
+     *
+     * @param source the start vertex
+     * @param sinks  the end vertices
+     * @return the shortest path from source to each sink, in the order of sinks,
+     *              each as shortestPath(source, sink) would return it
+     */
+    @Override
+    public List<List<V>> shortestPaths(V source, List<V> sinks) {
+        int s = indexOf(source);
+        Dijkstra engine = EnginePool.DIJKSTRA.acquire(rows);
+        try {
+            if (s >= 0) {
+                BitSet wanted = new BitSet(vertexCount());
+                for (V sink : sinks) {
+                    int t = indexOf(sink);
+                    if (t >= 0) {
+                        wanted.set(t);
+                    }
+                }
+                int remaining = wanted.cardinality();
+                engine.start(s);
+                while (remaining > 0 && engine.hasFrontier()) {
+                    if (wanted.get(engine.settle())) {
+                        remaining--;
+                    }
+                }
+            }
+
+            List<List<V>> paths = new ArrayList<>(sinks.size());
+            for (V sink : sinks) {
+                int t = indexOf(sink);
+                if (source != null && source.equals(sink)) {
+                    List<V> path = new ArrayList<>();
+                    path.add(sink);
+                    paths.add(path);
+                } else if (s < 0 || t < 0) {
+                    paths.add(new ArrayList<>());
+                } else {
+                    paths.add(toPath(engine.path(t)));
+                }
+            }
+            return paths;
+        } finally {
+            EnginePool.DIJKSTRA.release(engine);
+        }
+    }
+
+    /**
+     * Compute the shortest paths from source to every vertex, using Dijkstra's algorithm
+     *
+     * @param source the start vertex
+     * @return the tree of shortest paths from source, or null if source is not part of the graph
+     */
+    public ShortestPathTree<V, E> shortestPathTree(V source) {
+        int s = indexOf(source);
+        if (s < 0) {
+            return null;
+        }
+        Dijkstra engine = EnginePool.DIJKSTRA.acquire(rows);
+        try {
+            engine.run(s);
+            return new ShortestPathTree<>(this, engine);
+        } finally {
+            EnginePool.DIJKSTRA.release(engine);
+        }
+    }
+
+    /**
+     * Compute the shortest path from source to sink, using Dijkstra's algorithm from
+     * both ends at once. This settles far fewer vertices than shortestPath when the
+     * graph is large and the two ends are close together.
+     *
+     * @param source the start vertex
+     * @param sink   the end vertex
+     * @return the vertices, in order, on a shortest path from source to sink
+     *              (both end points are part of the list) and returns empty list
+     *              if no shortest path exists
+     */
+    public List<V> bidirectionalShortestPath(V source, V sink) {
+        if (source != null && source.equals(sink)) {
+            List<V> path = new ArrayList<>();
+            path.add(sink);
+            return path;
+        }
+        int s = indexOf(source);
+        int t = indexOf(sink);
+        if (s < 0 || t < 0) {
+            return new ArrayList<>();
+        }
+        BidirectionalDijkstra engine = EnginePool.BIDIRECTIONAL.acquire(rows);
+        try {
+            return toPath(engine.path(s, t));
+        } finally {
+            EnginePool.BIDIRECTIONAL.release(engine);
+        }
+    }
+
+    /**
+     * Compute the shortest path from source to sink, using the A* algorithm guided by
+     * a heuristic. Landmarks selected on this graph are used directly on the dense indices.
+     *
+     * @param source    the start vertex
+     * @param sink      the end vertex
+     * @param heuristic estimates the distance between vertices without ever exceeding it
+     * @return the vertices, in order, on a shortest path from source to sink
+     *              (both end points are part of the list) and returns empty list
+     *              if no shortest path exists
+     * @throws IllegalArgumentException if heuristic is Landmarks selected on another graph,
+     *              whose distances may overestimate on this one
+     */
+    public List<V> shortestPath(V source, V sink, Heuristic<V> heuristic) {
+        if (heuristic instanceof Landmarks && !((Landmarks<?, ?>) heuristic).selectedOn(this)) {
+            throw new IllegalArgumentException("landmarks were selected on another snapshot");
+        }
+        if (source != null && source.equals(sink)) {
+            List<V> path = new ArrayList<>();
+            path.add(sink);
+            return path;
+        }
+        int s = indexOf(source);
+        int t = indexOf(sink);
+        if (s < 0 || t < 0) {
+            return new ArrayList<>();
+        }
+
+        AStar.LowerBound bound;
+        if (heuristic instanceof Landmarks) {
+            Landmarks<?, ?> landmarks = (Landmarks<?, ?>) heuristic;
+            bound = v -> landmarks.bound(v, t);
+        } else {
+            bound = v -> heuristic.estimate(vertex(v), sink);
+        }
+        AStar engine = EnginePool.A_STAR.acquire(rows);
+        try {
+            return toPath(engine.path(s, t, bound));
+        } finally {
+            EnginePool.A_STAR.release(engine);
+        }
+    }
+
+    /**
+     * Compute a minimum spanning forest of the graph, using Kruskal's algorithm with
+     * union-find on sparse graphs and Prim's algorithm with an indexed heap on dense ones
+     *
+     * @return a list of edges, in order of non-decreasing length, that forms a
+     *              minimum spanning tree of each component of the graph
+     */
+    public List<E> minimumSpanningTree() {
+        return toEdges(SpanningForest.minimum(rows));
+    }
+
+    /**
+     * Compute a minimum spanning forest of the graph using Boruvka's algorithm,
+     * with each round's edge scan, relabelling and filtering spread over a pool
+     *
+     * @param pool the pool to run on
+     * @return a list of edges, in order of non-decreasing length, that forms a
+     *              minimum spanning tree of each component of the graph, the same
+     *              list minimumSpanningTree() returns
+     */
+    public List<E> minimumSpanningTree(ForkJoinPool pool) {
+        return toEdges(SpanningForest.boruvka(rows, pool));
+    }
+
+    /**
+     * Compute the length of a given path
+     *
+     * @param path is a List of Vertices that indicate the vertices of a given path (order matters)
+     * @return integer that represents the length of path
+     */
+    public int pathLength(List<V> path) {
+        int pathLength = 0;
+        for (int i = 0; i < path.size() - 1; i++) {
+            int arc = arc(indexOf(path.get(i)), indexOf(path.get(i + 1)));
+            if (arc >= 0) {
+                pathLength += lengths[arc];
+            }
+        }
+        return pathLength;
+    }
+
+    /**
+     * Compute the diameter of the graph, namely the length of the longest shortest
+     * path in the graph. Eccentricity bounds from each search rule out most vertices,
+     * so sparse graphs usually need only a handful of single-source searches.
+     *
+     * @return the diameter of the graph. (diameter of the largest component
+     *              if graph has multiple components)
+     */
+    public int diameter() {
+        return approximateDiameter(0);
+    }
+
+    /**
+     * Compute the diameter of the graph to within a relative error, which often
+     * takes far fewer single-source searches than the exact diameter
+     *
+     * @param epsilon the allowed relative error, is >= 0
+     * @return a length d such that d <= diameter() <= (1 + epsilon) * d
+     */
+    public int approximateDiameter(double epsilon) {
+        if (!(epsilon >= 0)) {
+            throw new IllegalArgumentException("Relative error must be non-negative");
+        }
+        Dijkstra engine = EnginePool.DIJKSTRA.acquire(rows);
+        try {
+            return (int) BoundingDiameter.diameter(rows, engine, epsilon);
+        } finally {
+            EnginePool.DIJKSTRA.release(engine);
+        }
+    }
+
+    /**
+     * Compute the diameter of the graph as its largest eccentricity, running one
+     * single-source search per vertex with the sources spread over a pool.
+     * This does not depend on how well eccentricity bounds prune, unlike diameter().
+     *
+     * @param pool the pool to run on
+     * @return the diameter of the graph. (diameter of the largest component
+     *              if graph has multiple components)
+     */
+    public int diameter(ForkJoinPool pool) {
+        int n = vertices.length;
+        LongAccumulator diam = new LongAccumulator(Math::max, 0);
+        //every source costs a whole search, so split all the way to a few sources per chunk
+        ParallelRange.forEach(pool, 0, n, Math.max(1, n / (8 * pool.getParallelism())), (lo, hi) -> {
+            Dijkstra engine = EnginePool.DIJKSTRA.acquire(rows);
+            try {
+                long local = 0;
+                for (int s = lo; s < hi; s++) {
+                    local = Math.max(local, engine.eccentricity(s));
+                }
+                diam.accumulate(local);
+            } finally {
+                EnginePool.DIJKSTRA.release(engine);
+            }
+        });
+        return (int) diam.get();
+    }
+
+    /**
+     * Finds the edge that connects two vertices if such an edge exists.
+     *
+     * @param v1 one end of the edge
+     * @param v2 the other end of the edge
+     * @return the edge connecting v1 and v2, and returns null
+     *              if edge does not exist in graph
+     */
+    public E getEdge(V v1, V v2) {
+        int arc = arc(indexOf(v1), indexOf(v2));
+        if (arc < 0) {
+            return null;
+        }
+        return edge(edgeIds[arc]);
+    }
+
+
+
+    ////////// helper methods //////////
+    /**
+     * Obtain the rows of the graph for the search engines
+     *
+     * @return a view of the rows of the graph
+     */
+    IntAdjacency adjacency() {
+        return rows;
+    }
+
+    /**
+     * Convert a path of dense indices into a path of vertices.
+     *
+     * @param indices the dense indices of the vertices on the path, in order
+     * @return the vertices on the path, in the same order
+     */
+    private List<V> toPath(int[] indices) {
+        List<V> path = new ArrayList<>(indices.length);
+        for (int i : indices) {
+            path.add(vertex(i));
+        }
+        return path;
+    }
+
+    /**
+     * Convert arcs into the edges behind them.
+     *
+     * @param arcs the slots of the arcs
+     * @return the edge behind each arc, in the same order
+     */
+    private List<E> toEdges(int[] arcs) {
+        List<E> list = new ArrayList<>(arcs.length);
+        for (int arc : arcs) {
+            list.add(edge(edgeIds[arc]));
+        }
+        return list;
+    }
+
+    /**
+     * Find the arc from u to w.
+     *
+     * @param u the dense index of one vertex, or -1
+     * @param w the dense index of the other vertex, or -1
+     * @return the slot of the arc from u to w, or -1 if there is no such arc
+     */
+    private int arc(int u, int w) {
+        if (u < 0 || w < 0) {
+            return -1;
+        }
+        int arc = Arrays.binarySearch(targets, offsets[u], offsets[u + 1], w);
+        return arc < 0 ? -1 : arc;
+    }
+
+    /**
+     * Find the dense index of a vertex of the graph.
+     *
+     * @param v the vertex to look up
+     * @return the dense index of v, or -1 if v is not part of the graph
+     */
+    int indexOf(V v) {
+        if (v == null) {
+            return -1;
+        }
+        int i = indexOfId(v.id());
+        if (i < 0 || (vertices[i] != v && !vertices[i].equals(v))) {
+            return -1;
+        }
+        return i;
+    }
+
+    /**
+     * Find the dense index of the vertex with a given id.
+     *
+     * @param id the id to look up
+     * @return the dense index of the vertex with that id, or a negative value if there is none
+     */
+    private int indexOfId(int id) {
+        if (dense != null) {
+            long offset = (long) id - ids[0];
+            return offset >= 0 && offset < dense.length ? dense[(int) offset] : -1;
+        }
+        int i = Arrays.binarySearch(ids, id);
+        return i < 0 ? -1 : i;
+    }
+
+    /**
+     * Map ids directly to indices if they are packed closely enough
+     *
+     * @param ids distinct ids in increasing order
+     * @return an array holding at position id - ids[0] the index of each id and -1
+     *              between them, or null if that array would be much longer than ids
+     */
+    static int[] denseIndex(int[] ids) {
+        int n = ids.length;
+        if (n == 0 || (long) ids[n - 1] - ids[0] >= 4L * n) {
+            return null;
+        }
+        int[] dense = new int[ids[n - 1] - ids[0] + 1];
+        Arrays.fill(dense, -1);
+        for (int i = 0; i < n; i++) {
+            dense[ids[i] - ids[0]] = i;
+        }
+        return dense;
+    }
+
+    /**
+     * Obtain the vertex at a dense index.
+     *
+     * @param i the dense index, 0 <= i < vertexCount()
+     * @return the vertex at index i
+     */
+    @SuppressWarnings("unchecked")
+    V vertex(int i) {
+        return (V) vertices[i];
+    }
+
+    /**
+     * Obtain the edge at an edge index.
+     *
+     * @param k the edge index, 0 <= k < edgeCount()
+     * @return the edge at index k
+     */
+    @SuppressWarnings("unchecked")
+    E edge(int k) {
+        return (E) edges[k];
+    }
+}
@@ -0,0 +1,257 @@
+package graph;
+
+import java.util.Arrays;
+
+/**
+ * Single-source shortest path engine over an IntAdjacency, using Dijkstra's
+ * algorithm with an indexed heap. Distances are kept in primitive arrays that are
+ * reused from one search to the next, so a search costs time proportional to the
+ * part of the graph it reaches rather than to the whole graph.
+ * An engine is not safe for use by several threads at once.
+ */
+final class Dijkstra {
+
+    /** Distance reported for vertices that the last search did not reach */
+    static final long UNREACHED = Long.MAX_VALUE;
+
+    /** Factor by which the scratch space of an engine may exceed the graph it searches */
+    static final int SLACK = 4;
+
+    /** Graph to search */
+    private IntAdjacency graph;
+
+    /** Best known distance from the source to each vertex reached by the current search */
+    private long[] dist;
+
+    /** Previous vertex on the best known path to each vertex reached by the current search */
+    private int[] prev;
+
+    /** Search in which dist and prev of each vertex were last written */
+    private int[] stamp;
+
+    /** Vertices reached but not yet settled, keyed by distance */
+    private IndexedMinHeap heap;
+
+    /** Number of the current search */
+    private int search = 0;
+
+    /** Source of the current search, or -1 before the first search */
+    private int source = -1;
+
+    // Representation Invariant
+    //      dist, prev and stamp have one length, at least graph.vertexCount() when graph is not
+    //      null, heap has that capacity and stamp[v] <= search for every v.
+    //      vertex v is reached by the current search iff stamp[v] == search, and then dist[v]
+    //      is the length of a path from source to v whose previous vertex is prev[v]
+    //      (prev[source] == -1).
+    //      reached vertices not in heap are settled: dist is their exact distance from source.
+    //
+    // Abstraction Function:
+    //      represents the state of a shortest path search from source over graph, in which
+    //      the settled vertices and their shortest path tree are known
+
+    /**
+     * Create an engine for searching graph.
+     *
+     * @param graph the graph to search
+     */
+    Dijkstra(IntAdjacency graph) {
+        int n = graph.vertexCount();
+        this.graph = graph;
+        this.dist = new long[n];
+        this.prev = new int[n];
+        this.stamp = new int[n];
+        this.heap = new IndexedMinHeap(n);
+    }
+
+    /**
+     * Point the engine at another graph, keeping its scratch space if it is large enough,
+     * so that one engine serves many graphs without allocating again. Scratch space more
+     * than SLACK times the size of the graph is given up, so that an engine that once
+     * searched a large graph does not keep its arrays while serving small ones.
+     *
+     * @param graph the graph to search next, or null to forget the last graph while idle
+     */
+    void retarget(IntAdjacency graph) {
+        this.graph = graph;
+        if (graph != null && (graph.vertexCount() > dist.length
+                || graph.vertexCount() < dist.length / SLACK)) {
+            int n = graph.vertexCount();
+            dist = new long[n];
+            prev = new int[n];
+            stamp = new int[n];
+            heap = new IndexedMinHeap(n);
+            search = 0;
+        }
+    }
+
+    /**
+     * Compute the distance from source to every vertex of the graph.
+     *
+     * @param source the index of the start vertex
+     */
+    void run(int source) {
+        start(source);
+        while (!heap.isEmpty()) {
+            settle();
+        }
+    }
+
+    /**
+     * Compute the distance from source to target, settling no vertex that is
+     * further from source than target.
+     *
+     * @param source the index of the start vertex
+     * @param target the index of the end vertex
+     * @return the distance from source to target, or UNREACHED if there is no path
+     */
+    long runTo(int source, int target) {
+        start(source);
+        while (!heap.isEmpty()) {
+            if (settle() == target) {
+                return dist[target];
+            }
+        }
+        return UNREACHED;
+    }
+
+    /**
+     * Compute the distance from source to the vertex furthest from it.
+     *
+     * @param source the index of the start vertex
+     * @return the largest distance from source to a vertex it reaches, which is 0
+     *              if source reaches no other vertex
+     */
+    long eccentricity(int source) {
+        start(source);
+        int last = source;
+        while (!heap.isEmpty()) {
+            last = settle();
+        }
+        return dist[last];
+    }
+
+    /**
+     * Obtain the source of the last search
+     *
+     * @return the index of the start vertex of the last search, or -1 if there was none
+     */
+    int source() {
+        return source;
+    }
+
+    /**
+     * Obtain the distance of a vertex from the source of the last search
+     *
+     * @param v the index of the vertex
+     * @return the best distance found from the source to v, which is exact if v is settled,
+     *              or UNREACHED if the search did not reach v
+     */
+    long distance(int v) {
+        return stamp[v] == search ? dist[v] : UNREACHED;
+    }
+
+    /**
+     * Obtain the previous vertex on the best path found to a vertex
+     *
+     * @param v the index of a vertex reached by the last search
+     * @return the index of the vertex before v on that path, or -1 if v is the source
+     */
+    int previous(int v) {
+        return prev[v];
+    }
+
+    /**
+     * Obtain the best path found from the source of the last search to target
+     *
+     * @param target the index of the end vertex
+     * @return the indices of the vertices on the path, in order from source to target,
+     *              or an empty array if the search did not reach target
+     */
+    int[] path(int target) {
+        if (distance(target) == UNREACHED) {
+            return new int[0];
+        }
+        int length = 1;
+        for (int v = target; prev[v] >= 0; v = prev[v]) {
+            length++;
+        }
+        int[] path = new int[length];
+        for (int v = target; v >= 0; v = prev[v]) {
+            path[--length] = v;
+        }
+        return path;
+    }
+
+    /**
+     * Check if the current search has vertices left to settle
+     *
+     * @return true if some reached vertex is not settled and false otherwise
+     */
+    boolean hasFrontier() {
+        return !heap.isEmpty();
+    }
+
+    /**
+     * Obtain the distance of the next vertex to be settled
+     *
+     * @return the smallest distance of a reached but unsettled vertex,
+     *              or UNREACHED if every reached vertex is settled
+     */
+    long frontier() {
+        return heap.isEmpty() ? UNREACHED : heap.minKey();
+    }
+
+    /**
+     * Forget the previous search and reach only source, at distance 0.
+     *
+     * @param source the index of the start vertex
+     */
+    void start(int source) {
+        heap.clear();
+        if (search == Integer.MAX_VALUE) {
+            Arrays.fill(stamp, 0);
+            search = 0;
+        }
+        search++;
+        this.source = source;
+        reach(source, 0, -1);
+    }
+
+    /**
+     * Settle the unsettled vertex closest to the source and relax its arcs.
+     * The current search has a frontier.
+     *
+     * @return the index of the settled vertex
+     */
+    int settle() {
+        int u = heap.pollMin();
+        long du = dist[u];
+        for (int arc = graph.begin(u), end = graph.end(u); arc < end; arc++) {
+            int w = graph.target(arc);
+            long dw = du + graph.length(arc);
+            if (stamp[w] != search) {
+                reach(w, dw, u);
+            } else if (dw < dist[w] && heap.contains(w)) {
+                dist[w] = dw;
+                prev[w] = u;
+                heap.offer(w, dw);
+            }
+        }
+        return u;
+    }
+
+    /**
+     * Record the first path found to a vertex.
+     *
+     * @param v the index of the newly reached vertex
+     * @param d the length of the path
+     * @param from the index of the vertex before v on the path, or -1
+     */
+    private void reach(int v, long d, int from) {
+        stamp[v] = search;
+        dist[v] = d;
+        prev[v] = from;
+        heap.offer(v, d);
+    }
+}
@@ -0,0 +1,92 @@
+package graph;
+
+/**
+ * Union-find over the ints 0 to size - 1, with union by rank and path compression,
+ * so any sequence of operations runs in nearly constant amortized time each.
+ */
+final class DisjointSets {
+
+    /** Parent of each element in its set's tree; roots are their own parent */
+    private final int[] parent;
+
+    /** Upper bound on the height of the tree below each root */
+    private final byte[] rank;
+
+    // Representation Invariant
+    //      parent.length == rank.length, and following parent from any element reaches a root r
+    //      with parent[r] == r. rank[r] >= 1 + rank[c] for each child c of a root r.
+    //
+    // Abstraction Function:
+    //      represents the partition of 0 to size - 1 into the sets of elements sharing a root
+
+    /**
+     * Create size singleton sets.
+     *
+     * @param size the number of elements, is >= 0
+     */
+    DisjointSets(int size) {
+        parent = new int[size];
+        rank = new byte[size];
+        for (int i = 0; i < size; i++) {
+            parent[i] = i;
+        }
+    }
+
+    /**
+     * Find the representative of the set containing i.
+     *
+     * @param i an element
+     * @return the root of the set containing i
+     */
+    int find(int i) {
+        int root = i;
+        while (parent[root] != root) {
+            root = parent[root];
+        }
+        //point every element on the way directly at the root
+        while (parent[i] != root) {
+            int next = parent[i];
+            parent[i] = root;
+            i = next;
+        }
+        return root;
+    }
+
+    /**
+     * Find the representative of the set containing i without compressing any path,
+     * so that several threads may call it at once while no union is running.
+     *
+     * @param i an element
+     * @return the root of the set containing i
+     */
+    int root(int i) {
+        while (parent[i] != i) {
+            i = parent[i];
+        }
+        return i;
+    }
+
+    /**
+     * Merge the sets containing a and b.
+     *
+     * @param a an element
+     * @param b another element
+     * @return true if a and b were in different sets and false otherwise
+     */
+    boolean union(int a, int b) {
+        int ra = find(a);
+        int rb = find(b);
+        if (ra == rb) {
+            return false;
+        }
+        if (rank[ra] < rank[rb]) {
+            parent[ra] = rb;
+        } else if (rank[ra] > rank[rb]) {
+            parent[rb] = ra;
+        } else {
+            parent[rb] = ra;
+            rank[ra]++;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,377 @@
+package graph;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.LongAccumulator;
+
+import static graph.TiledIntMatrix.TILE;
+import static graph.TiledIntMatrix.TILE_AREA;
+
+/**
+ * The distance between every pair of vertices of a CsrGraph, with the first vertex
+ * after the source on a shortest path between them, so that distances, paths and the
+ * diameter are answered by lookups.
+ * Dense graphs are filled by a blocked Floyd-Warshall whose tiles fit in cache, and
+ * sparse graphs by one Dijkstra search per source, both spread over a ForkJoinPool.
+ * Both matrices take 4 bytes per ordered pair of vertices each, and are kept off the
+ * heap when they would take more than the heap budget.
+ *
+ * @param <V> represents a vertex type
+ * @param <E> represents an edge type
+ */
+public final class DistanceMatrix<V extends Vertex, E extends Edge<V>> {
+
+    /** Distance stored for pairs with no path; every shortest path must be shorter */
+    private static final int NO_PATH = Integer.MAX_VALUE / 2;
+
+    /** Floyd-Warshall is used once at least one in this many ordered pairs is an arc */
+    private static final int DENSE_PAIRS_PER_ARC = 32;
+
+    /** Graph the matrix was computed on */
+    private final CsrGraph<V, E> graph;
+
+    /** Distance from each vertex to each vertex, or NO_PATH */
+    private final TiledIntMatrix dist;
+
+    /** First vertex after each source on a shortest path to each target, or -1 */
+    private final TiledIntMatrix next;
+
+    /** Largest distance between two vertices with a path between them */
+    private final long diameter;
+
+    // Representation Invariant
+    //      dist and next are at least graph.vertexCount() square.
+    //      for vertices s and t of graph, dist(s, t) is the length of the shortest path from
+    //      s to t, or NO_PATH if there is none. next(s, s) == s, and if s != t has a path to t
+    //      then dist(s, t) == length of edge s - next(s, t) + dist(next(s, t), t); following
+    //      next from s toward t may circle forever only through edges of length 0.
+    //      diameter is the largest dist(s, t) below NO_PATH.
+    //
+    // Abstraction Function:
+    //      represents the shortest path between every pair of vertices of graph
+
+    /**
+     * Create a distance matrix from filled matrices.
+     *
+     * @param graph the graph the matrices were computed on
+     * @param dist the distances, as described for the field
+     * @param next the next hops, as described for the field
+     * @param diameter the largest finite distance in dist
+     */
+    private DistanceMatrix(CsrGraph<V, E> graph, TiledIntMatrix dist, TiledIntMatrix next, long diameter) {
+        this.graph = graph;
+        this.dist = dist;
+        this.next = next;
+        this.diameter = diameter;
+    }
+
+    /**
+     * Compute the distance matrix of graph on the common pool, off the heap if it would
+     * take more than half of the maximum heap size.
+     * For a mutable Graph g, compute it over g.freeze().
+     *
+     * @param graph the graph to measure, whose shortest paths are shorter than
+     *              Integer.MAX_VALUE / 2
+     * @param <V> represents a vertex type
+     * @param <E> represents an edge type
+     * @return the distance matrix of graph
+     */
+    public static <V extends Vertex, E extends Edge<V>> DistanceMatrix<V, E> compute(CsrGraph<V, E> graph) {
+        return compute(graph, ForkJoinPool.commonPool(), Runtime.getRuntime().maxMemory() / 2);
+    }
+
+    /**
+     * Compute the distance matrix of graph.
+     *
+     * @param graph the graph to measure, whose shortest paths are shorter than
+     *              Integer.MAX_VALUE / 2
+     * @param pool the pool to run on
+     * @param heapBudget the most bytes the matrices may take on the heap
+     * @param <V> represents a vertex type
+     * @param <E> represents an edge type
+     * @return the distance matrix of graph
+     */
+    public static <V extends Vertex, E extends Edge<V>> DistanceMatrix<V, E> compute(CsrGraph<V, E> graph,
+                                                                                     ForkJoinPool pool,
+                                                                                     long heapBudget) {
+        IntAdjacency rows = graph.adjacency();
+        int n = rows.vertexCount();
+        long side = (long) ((n + TILE - 1) / TILE) * TILE;
+        boolean offHeap = 2 * side * side * Integer.BYTES > heapBudget;
+        TiledIntMatrix dist = new TiledIntMatrix(n, NO_PATH, offHeap);
+        TiledIntMatrix next = new TiledIntMatrix(n, -1, offHeap);
+
+        long arcs = n == 0 ? 0 : rows.end(n - 1);
+        if (arcs * DENSE_PAIRS_PER_ARC >= (long) n * n) {
+            floydWarshall(rows, dist, next, pool);
+        } else {
+            searchFromEach(rows, dist, next, pool);
+        }
+        return new DistanceMatrix<>(graph, dist, next, longest(dist, pool));
+    }
+
+    /**
+     * Check where the matrices are stored
+     *
+     * @return true if the matrices are stored off the heap and false otherwise
+     */
+    public boolean isOffHeap() {
+        return dist.isOffHeap();
+    }
+
+    /**
+     * Obtain the length of the shortest path from source to sink
+     *
+     * @param source the start vertex
+     * @param sink   the end vertex
+     * @return the length of the shortest path from source to sink, or -1 if there is no
+     *              path or either vertex is not part of the graph
+     */
+    public long distance(V source, V sink) {
+        int s = graph.indexOf(source);
+        int t = graph.indexOf(sink);
+        if (s < 0 || t < 0) {
+            return -1;
+        }
+        int d = dist.get(s, t);
+        return d == NO_PATH ? -1 : d;
+    }
+
+    /**
+     * Obtain the shortest path from source to sink
+     *
+     * @param source the start vertex
+     * @param sink   the end vertex
+     * @return the vertices, in order, on the shortest path from source to sink
+     *              (both end points are part of the list) and returns empty list
+     *              if no shortest path exists
+     */
+    public List<V> shortestPath(V source, V sink) {
+        int s = graph.indexOf(source);
+        int t = graph.indexOf(sink);
+        List<V> path = new ArrayList<>();
+        if (s < 0 || t < 0 || dist.get(s, t) == NO_PATH) {
+            return path;
+        }
+        path.add(graph.vertex(s));
+        while (s != t) {
+            int hop = next.get(s, t);
+            //next hops may circle through edges of length 0, so a search finishes such paths
+            if (dist.get(hop, t) == dist.get(s, t)) {
+                List<V> rest = graph.shortestPath(graph.vertex(s), graph.vertex(t));
+                path.addAll(rest.subList(1, rest.size()));
+                return path;
+            }
+            s = hop;
+            path.add(graph.vertex(s));
+        }
+        return path;
+    }
+
+    /**
+     * Obtain the diameter of the graph, namely the length of the longest shortest path
+     *
+     * @return the diameter of the graph. (diameter of the largest component
+     *              if graph has multiple components)
+     */
+    public long diameter() {
+        return diameter;
+    }
+
+
+
+    ////////// helper methods //////////
+    /**
+     * Fill the matrices with blocked Floyd-Warshall. Round kt first closes the diagonal
+     * tile (kt, kt) over itself, then every other tile of row and column kt over it, and
+     * then every remaining tile (ti, tj) over tiles (ti, kt) and (kt, tj), which no longer
+     * change in that round. The tiles of the last two phases are independent and run in
+     * parallel. Each chunk takes its scratch tiles from a shared stack and gives them back
+     * when done, so only as many sets are allocated as chunks ever run at once.
+     *
+     * @param rows the graph to measure
+     * @param dist the distance matrix, all NO_PATH
+     * @param next the next hop matrix, all -1
+     * @param pool the pool to run on
+     */
+    private static void floydWarshall(IntAdjacency rows, TiledIntMatrix dist, TiledIntMatrix next,
+                                      ForkJoinPool pool) {
+        int n = rows.vertexCount();
+        for (int u = 0; u < n; u++) {
+            dist.set(u, u, 0);
+            next.set(u, u, u);
+            for (int arc = rows.begin(u), end = rows.end(u); arc < end; arc++) {
+                int w = rows.target(arc);
+                if (rows.length(arc) < dist.get(u, w)) {
+                    dist.set(u, w, rows.length(arc));
+                    next.set(u, w, w);
+                }
+            }
+        }
+
+        int tiles = dist.tiles();
+        //each set holds five tiles: distances, next hops, and the column, its hops and the row
+        ConcurrentLinkedQueue<int[][]> spare = new ConcurrentLinkedQueue<>();
+        int[] pivot = new int[TILE_AREA];
+        int[] pivotNext = new int[TILE_AREA];
+        for (int k = 0; k < tiles; k++) {
+            int kt = k;
+            dist.read(kt, kt, pivot);
+            next.read(kt, kt, pivotNext);
+            relax(pivot, pivotNext, pivot, pivotNext, pivot);
+            dist.write(kt, kt, pivot);
+            next.write(kt, kt, pivotNext);
+
+            //tiles 0 to tiles - 1 are row kt and tiles to 2 * tiles - 1 are column kt
+            ParallelRange.forEach(pool, 0, 2 * tiles, 1, (lo, hi) -> {
+                int[][] scratch = takeScratch(spare);
+                int[] d = scratch[0];
+                int[] h = scratch[1];
+                for (int t = lo; t < hi; t++) {
+                    int ti = t < tiles ? kt : t - tiles;
+                    int tj = t < tiles ? t : kt;
+                    if (ti == kt && tj == kt) {
+                        continue;
+                    }
+                    dist.read(ti, tj, d);
+                    next.read(ti, tj, h);
+                    if (ti == kt) {
+                        relax(d, h, pivot, pivotNext, d);
+                    } else {
+                        relax(d, h, d, h, pivot);
+                    }
+                    dist.write(ti, tj, d);
+                    next.write(ti, tj, h);
+                }
+                spare.offer(scratch);
+            });
+
+            ParallelRange.forEach(pool, 0, tiles * tiles, 1, (lo, hi) -> {
+                int[][] scratch = takeScratch(spare);
+                int[] d = scratch[0];
+                int[] h = scratch[1];
+                int[] column = scratch[2];
+                int[] columnNext = scratch[3];
+                int[] row = scratch[4];
+                for (int t = lo; t < hi; t++) {
+                    int ti = t / tiles;
+                    int tj = t % tiles;
+                    if (ti == kt || tj == kt) {
+                        continue;
+                    }
+                    dist.read(ti, kt, column);
+                    next.read(ti, kt, columnNext);
+                    dist.read(kt, tj, row);
+                    dist.read(ti, tj, d);
+                    next.read(ti, tj, h);
+                    relax(d, h, column, columnNext, row);
+                    dist.write(ti, tj, d);
+                    next.write(ti, tj, h);
+                }
+                spare.offer(scratch);
+            });
+        }
+    }
+
+    /**
+     * Take a set of scratch tiles that no other chunk is using
+     *
+     * @param spare the sets given back by chunks that are done
+     * @return a set of five tiles, with arbitrary contents
+     */
+    private static int[][] takeScratch(ConcurrentLinkedQueue<int[][]> spare) {
+        int[][] scratch = spare.poll();
+        return scratch != null ? scratch : new int[5][TILE_AREA];
+    }
+
+    /**
+     * Relax every path i -> k -> j of one tile through the vertices of another, in order
+     * of k. The tiles may be the same array when k lies in the tile being relaxed.
+     *
+     * @param d the distances i -> j of the tile being relaxed
+     * @param h the next hops i -> j of the tile being relaxed
+     * @param ik the distances from the rows of the tile to the intermediate vertices
+     * @param ikNext the next hops from the rows of the tile to the intermediate vertices
+     * @param kj the distances from the intermediate vertices to the columns of the tile
+     */
+    private static void relax(int[] d, int[] h, int[] ik, int[] ikNext, int[] kj) {
+        for (int k = 0; k < TILE; k++) {
+            int kRow = k * TILE;
+            for (int i = 0; i < TILE; i++) {
+                int first = ik[i * TILE + k];
+                if (first == NO_PATH) {
+                    continue;
+                }
+                int hop = ikNext[i * TILE + k];
+                int iRow = i * TILE;
+                //first < NO_PATH and kj[...] <= NO_PATH, so the sum cannot overflow
+                for (int j = 0; j < TILE; j++) {
+                    int through = first + kj[kRow + j];
+                    if (through < d[iRow + j]) {
+                        d[iRow + j] = through;
+                        h[iRow + j] = hop;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Fill the matrices with one Dijkstra search per source. Each task fills whole rows
+     * of tiles, so no two tasks write to the same tile.
+     *
+     * @param rows the graph to measure
+     * @param dist the distance matrix, all NO_PATH
+     * @param next the next hop matrix, all -1
+     * @param pool the pool to run on
+     */
+    private static void searchFromEach(IntAdjacency rows, TiledIntMatrix dist, TiledIntMatrix next,
+                                       ForkJoinPool pool) {
+        int n = rows.vertexCount();
+        ParallelRange.forEach(pool, 0, dist.tiles(), 1, (lo, hi) -> {
+            Dijkstra engine = new Dijkstra(rows);
+            int[] hop = new int[n];
+            for (int s = lo * TILE; s < Math.min(n, hi * TILE); s++) {
+                engine.start(s);
+                while (engine.hasFrontier()) {
+                    int v = engine.settle();
+                    //a vertex is settled after its predecessor, whose first hop is known
+                    int p = engine.previous(v);
+                    hop[v] = p < 0 ? v : p == s ? v : hop[p];
+                    dist.set(s, v, (int) engine.distance(v));
+                    next.set(s, v, hop[v]);
+                }
+            }
+        });
+    }
+
+    /**
+     * Find the largest distance in a filled matrix, in parallel by rows of tiles.
+     *
+     * @param dist the filled distance matrix
+     * @param pool the pool to run on
+     * @return the largest distance below NO_PATH
+     */
+    private static long longest(TiledIntMatrix dist, ForkJoinPool pool) {
+        LongAccumulator longest = new LongAccumulator(Math::max, 0);
+        ParallelRange.forEach(pool, 0, dist.tiles(), 1, (lo, hi) -> {
+            int[] tile = new int[TILE_AREA];
+            int local = 0;
+            for (int ti = lo; ti < hi; ti++) {
+                for (int tj = 0; tj < dist.tiles(); tj++) {
+                    dist.read(ti, tj, tile);
+                    //padding outside the n vertices holds NO_PATH, so it never counts
+                    for (int d : tile) {
+                        if (d != NO_PATH && d > local) {
+                            local = d;
+                        }
+                    }
+                }
+            }
+            longest.accumulate(local);
+        });
+        return longest.get();
+    }
+}
@@ -0,0 +1,367 @@
+package graph;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Shortest path trees from a set of registered sources in a Graph, kept up to date as
+ * the graph changes instead of being recomputed, in the style of Ramalingam and Reps.
+ * When an edge is added or gets shorter, only the vertices it brings closer are
+ * visited, by a Dijkstra search seeded at its ends. When an edge of a tree is removed or
+ * gets longer, only the subtree hanging below it loses its distances; each of those
+ * vertices is seeded with its best distance through a neighbour outside the subtree,
+ * and a Dijkstra search settles the subtree again. Changes to edges that are not on
+ * a tree leave it untouched.
+ * The trees listen to the graph from creation until detach() is called.
+ *
+ * @param <V> represents a vertex type
+ * @param <E> represents an edge type
+ */
+public final class DynamicShortestPaths<V extends Vertex, E extends Edge<V>> implements GraphListener<V, E> {
+
+    /** Graph the trees span */
+    private final Graph<V, E> graph;
+
+    /** Tree of each registered source, keyed by source vertex id */
+    private final IntMap<Tree> trees = new IntMap<>();
+
+    // Representation Invariant
+    //      trees.get(s).source == s for every key s of trees, and s is the id of a vertex of graph.
+    //      each tree has a label for exactly the vertices with a path from its source, holding
+    //      the length of the shortest path and, except for the source, the id of the previous
+    //      vertex on one such path; following the previous vertices from any label reaches the source.
+    //
+    // Abstraction Function:
+    //      represents the shortest paths in graph from each source in trees to every vertex
+
+    /**
+     * The distance and previous vertex of a vertex reached from a source.
+     */
+    private static final class Label {
+
+        /** Length of the shortest path from the source */
+        private long dist;
+
+        /** Id of the previous vertex on a shortest path from the source, unused for the source */
+        private int prev;
+
+        /**
+         * Create a label.
+         *
+         * @param dist the length of the shortest path from the source
+         * @param prev the id of the previous vertex on that path
+         */
+        private Label(long dist, int prev) {
+            this.dist = dist;
+            this.prev = prev;
+        }
+    }
+
+    /**
+     * A vertex waiting to be settled by a repair, at the distance it was queued with.
+     */
+    private static final class Pending implements Comparable<Pending> {
+
+        /** Distance the vertex was queued with */
+        private final long dist;
+
+        /** Id of the vertex */
+        private final int id;
+
+        /**
+         * Create a queue entry.
+         *
+         * @param dist the distance the vertex is queued with
+         * @param id the id of the vertex
+         */
+        private Pending(long dist, int id) {
+            this.dist = dist;
+            this.id = id;
+        }
+
+        @Override
+        public int compareTo(Pending other) {
+            return Long.compare(dist, other.dist);
+        }
+    }
+
+    /**
+     * The shortest path tree of one source.
+     */
+    private final class Tree {
+
+        /** Id of the source */
+        private final int source;
+
+        /** Label of each vertex reached from the source, keyed by vertex id */
+        private final IntMap<Label> labels = new IntMap<>();
+
+        /**
+         * Create the complete tree of a source.
+         *
+         * @param source the id of the source
+         */
+        private Tree(int source) {
+            this.source = source;
+            labels.put(source, new Label(0, source));
+            PriorityQueue<Pending> queue = new PriorityQueue<>();
+            queue.add(new Pending(0, source));
+            settle(queue);
+        }
+
+        /**
+         * Lower the distances that an added or shortened edge u - w improves.
+         *
+         * @param u the id of one end of the edge
+         * @param w the id of the other end of the edge
+         * @param length the length of the edge
+         */
+        private void shorten(int u, int w, int length) {
+            PriorityQueue<Pending> queue = new PriorityQueue<>();
+            relax(u, w, length, queue);
+            relax(w, u, length, queue);
+            settle(queue);
+        }
+
+        /**
+         * Repair the tree after the edge u - w was removed or made longer.
+         *
+         * @param u the id of one end of the edge
+         * @param w the id of the other end of the edge
+         */
+        private void lengthen(int u, int w) {
+            int child;
+            if (hangsFrom(w, u)) {
+                child = w;
+            } else if (hangsFrom(u, w)) {
+                child = u;
+            } else {
+                //the edge was not on the tree, so no shortest path used it
+                return;
+            }
+
+            //every vertex below the edge in the tree loses its distance
+            List<Integer> orphans = new ArrayList<>();
+            orphans.add(child);
+            for (int i = 0; i < orphans.size(); i++) {
+                int x = orphans.get(i);
+                for (int y : graph.incidence(x).keySet()) {
+                    if (hangsFrom(y, x)) {
+                        orphans.add(y);
+                    }
+                }
+            }
+            for (int x : orphans) {
+                labels.remove(x);
+            }
+
+            //seed each orphan with its best way back in through a labelled neighbour
+            PriorityQueue<Pending> queue = new PriorityQueue<>();
+            for (int x : orphans) {
+                for (Map.Entry<Integer, E> incident : graph.incidence(x).entrySet()) {
+                    relax(incident.getKey(), x, incident.getValue().length(), queue);
+                }
+            }
+            settle(queue);
+        }
+
+        /**
+         * Check if a vertex hangs directly below another in the tree
+         *
+         * @param v the id of the possible child
+         * @param u the id of the possible parent
+         * @return true if v is labelled with u as its previous vertex and false otherwise
+         */
+        private boolean hangsFrom(int v, int u) {
+            Label label = labels.get(v);
+            return v != source && label != null && label.prev == u;
+        }
+
+        /**
+         * Offer the path through from to its neighbour to.
+         *
+         * @param from the id of a labelled vertex
+         * @param to the id of its neighbour
+         * @param length the length of the edge between them
+         * @param queue receives to if its distance was lowered
+         */
+        private void relax(int from, int to, int length, PriorityQueue<Pending> queue) {
+            Label lf = labels.get(from);
+            if (lf == null) {
+                return;
+            }
+            long d = lf.dist + length;
+            Label lt = labels.get(to);
+            if (lt == null) {
+                labels.put(to, new Label(d, from));
+                queue.add(new Pending(d, to));
+            } else if (d < lt.dist) {
+                lt.dist = d;
+                lt.prev = from;
+                queue.add(new Pending(d, to));
+            }
+        }
+
+        /**
+         * Run Dijkstra's algorithm from the queued vertices until nothing improves.
+         *
+         * @param queue the vertices whose distances were lowered
+         */
+        private void settle(PriorityQueue<Pending> queue) {
+            while (!queue.isEmpty()) {
+                Pending next = queue.poll();
+                Label label = labels.get(next.id);
+                //a later improvement queued the vertex again at a smaller distance
+                if (label == null || label.dist != next.dist) {
+                    continue;
+                }
+                for (Map.Entry<Integer, E> incident : graph.incidence(next.id).entrySet()) {
+                    relax(next.id, incident.getKey(), incident.getValue().length(), queue);
+                }
+            }
+        }
+    }
+
+    /**
+     * Create dynamic shortest paths with no sources, listening to graph.
+     *
+     * @param graph the graph to follow
+     */
+    public DynamicShortestPaths(Graph<V, E> graph) {
+        this.graph = graph;
+        graph.addListener(this);
+    }
+
+    /**
+     * Stop following the graph. The trees keep the paths they had.
+     */
+    public void detach() {
+        graph.removeListener(this);
+    }
+
+    /**
+     * Register a source and compute its shortest path tree.
+     *
+     * @param source the vertex to keep shortest paths from
+     * @return true if source was registered and false if it was already registered
+     *              or is not part of the graph
+     */
+    public boolean addSource(V source) {
+        if (!graph.vertex(source) || trees.containsKey(source.id())) {
+            return false;
+        }
+        trees.put(source.id(), new Tree(source.id()));
+        return true;
+    }
+
+    /**
+     * Forget a source and its shortest path tree.
+     *
+     * @param source the vertex to stop keeping shortest paths from
+     * @return true if source was registered and false otherwise
+     */
+    public boolean removeSource(V source) {
+        return source != null && trees.remove(source.id()) != null;
+    }
+
+    /**
+     * Obtain the length of the shortest path from a registered source to sink
+     *
+     * @param source a registered source
+     * @param sink   the end vertex
+     * @return the length of the shortest path from source to sink, or -1 if there is no
+     *              path, source is not registered or sink is not part of the graph
+     */
+    public long distance(V source, V sink) {
+        Tree tree = source == null ? null : trees.get(source.id());
+        if (tree == null || !graph.vertex(sink)) {
+            return -1;
+        }
+        Label label = tree.labels.get(sink.id());
+        return label == null ? -1 : label.dist;
+    }
+
+    /**
+     * Obtain the shortest path from a registered source to sink
+     *
+     * @param source a registered source
+     * @param sink   the end vertex
+     * @return the vertices, in order, on the shortest path from source to sink
+     *              (both end points are part of the list) and returns empty list
+     *              if no shortest path exists or source is not registered
+     */
+    public List<V> shortestPath(V source, V sink) {
+        List<V> path = new ArrayList<>();
+        Tree tree = source == null ? null : trees.get(source.id());
+        if (tree == null || !graph.vertex(sink) || tree.labels.get(sink.id()) == null) {
+            return path;
+        }
+        int v = sink.id();
+        path.add(sink);
+        while (v != tree.source) {
+            v = tree.labels.get(v).prev;
+            path.add(graph.vertexWithId(v));
+        }
+        //the walk above went from sink back to the source
+        for (int i = 0, j = path.size() - 1; i < j; i++, j--) {
+            path.set(j, path.set(i, path.get(j)));
+        }
+        return path;
+    }
+
+
+
+    ////////// methods from GraphListener Interface //////////
+    /**
+     * Extend every tree over the edge.
+     *
+     * @param e the added edge
+     */
+    @Override
+    public void edgeAdded(E e) {
+        for (Tree tree : trees.values()) {
+            tree.shorten(e.v1().id(), e.v2().id(), e.length());
+        }
+    }
+
+    /**
+     * Repair every tree that used the edge.
+     *
+     * @param e the removed edge
+     */
+    @Override
+    public void edgeRemoved(E e) {
+        for (Tree tree : trees.values()) {
+            tree.lengthen(e.v1().id(), e.v2().id());
+        }
+    }
+
+    /**
+     * Repair every tree for the new length of the edge.
+     *
+     * @param old the edge that was removed
+     * @param e   the edge that took its place
+     */
+    @Override
+    public void edgeReplaced(E old, E e) {
+        for (Tree tree : trees.values()) {
+            if (e.length() < old.length()) {
+                tree.shorten(e.v1().id(), e.v2().id(), e.length());
+            } else if (e.length() > old.length()) {
+                tree.lengthen(e.v1().id(), e.v2().id());
+            }
+        }
+    }
+
+    /**
+     * Forget the vertex if it was a source.
+     *
+     * @param v the removed vertex
+     */
+    @Override
+    public void vertexRemoved(V v) {
+        trees.remove(v.id());
+    }
+}
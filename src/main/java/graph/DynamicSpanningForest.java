@@ -0,0 +1,255 @@
+package graph;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A minimum spanning forest of a Graph that is kept up to date as the graph changes
+ * instead of being recomputed.
+ * The forest is held in link-cut trees, with every forest edge as a node between its two
+ * ends, so the longest edge on the forest path between two vertices is found in
+ * amortized O(log n) time. An added edge that joins two trees is linked; otherwise it
+ * replaces the longest edge on the cycle it closes if it is shorter. A removed forest
+ * edge splits its tree, and the shortest graph edge across the split takes its place,
+ * found by scanning the edges of the smaller half.
+ * The forest listens to the graph from creation until detach() is called.
+ *
+ * @param <V> represents a vertex type
+ * @param <E> represents an edge type
+ */
+public final class DynamicSpanningForest<V extends Vertex, E extends Edge<V>> implements GraphListener<V, E> {
+
+    /** Key of vertex nodes, below that of every edge */
+    private static final long VERTEX_KEY = -1;
+
+    /** Graph the forest spans */
+    private final Graph<V, E> graph;
+
+    /** Link-cut node of each vertex that has ever had a forest edge, keyed by vertex id */
+    private final IntMap<LinkCutForest.Node<E>> vertexNodes = new IntMap<>();
+
+    /** Link-cut node of each forest edge, keyed by the edge object stored in graph */
+    private final Map<E, LinkCutForest.Node<E>> forestEdges = new IdentityHashMap<>();
+
+    /** Sum of the lengths of the forest edges */
+    private long weight = 0;
+
+    // Representation Invariant
+    //      the keys of forestEdges are edges of graph that form a minimum spanning forest of it.
+    //      the link-cut forest joins the nodes of the two ends of each forest edge through
+    //      the node of the edge and has no other links.
+    //      weight is the sum of the lengths of the keys of forestEdges.
+    //
+    // Abstraction Function:
+    //      represents the minimum spanning forest forestEdges.keySet() of graph
+
+    /**
+     * Create the minimum spanning forest of graph and keep it up to date.
+     *
+     * @param graph the graph to follow
+     */
+    public DynamicSpanningForest(Graph<V, E> graph) {
+        this.graph = graph;
+        for (E e : graph.minimumSpanningTree()) {
+            link(e);
+        }
+        graph.addListener(this);
+    }
+
+    /**
+     * Stop following the graph. The forest keeps the edges it had.
+     */
+    public void detach() {
+        graph.removeListener(this);
+    }
+
+    /**
+     * Obtain the edges of the forest
+     *
+     * @return a list of edges, in no particular order, that forms a minimum spanning
+     *              tree of each component of the graph
+     */
+    public List<E> minimumSpanningTree() {
+        return new ArrayList<>(forestEdges.keySet());
+    }
+
+    /**
+     * Obtain the total length of the forest
+     *
+     * @return the sum of the lengths of the edges of the forest
+     */
+    public long weight() {
+        return weight;
+    }
+
+
+
+    ////////// methods from GraphListener Interface //////////
+    /**
+     * Add the edge to the forest if it joins two trees or shortens a cycle.
+     *
+     * @param e the added edge
+     */
+    @Override
+    public void edgeAdded(E e) {
+        if (forestEdges.containsKey(e)) {
+            return;
+        }
+        LinkCutForest.Node<E> u = node(e.v1());
+        LinkCutForest.Node<E> w = node(e.v2());
+        if (!LinkCutForest.connected(u, w)) {
+            link(e);
+            return;
+        }
+        LinkCutForest.Node<E> longest = LinkCutForest.pathMax(u, w);
+        if (longest.key > e.length()) {
+            cut(longest.item);
+            link(e);
+        }
+    }
+
+    /**
+     * Replace the edge in the forest by the shortest edge across the split it leaves.
+     *
+     * @param e the removed edge
+     */
+    @Override
+    public void edgeRemoved(E e) {
+        if (!forestEdges.containsKey(e)) {
+            return;
+        }
+        cut(e);
+        E replacement = shortestCrossing(e.v1().id(), e.v2().id());
+        if (replacement != null) {
+            link(replacement);
+        }
+    }
+
+    /**
+     * Treat the replacement as a removal followed by an addition.
+     *
+     * @param old the edge that was removed
+     * @param e   the edge that took its place
+     */
+    @Override
+    public void edgeReplaced(E old, E e) {
+        edgeRemoved(old);
+        edgeAdded(e);
+    }
+
+    /**
+     * Drop the node of the vertex, which no longer has any forest edge.
+     *
+     * @param v the removed vertex
+     */
+    @Override
+    public void vertexRemoved(V v) {
+        vertexNodes.remove(v.id());
+    }
+
+
+
+    ////////// helper methods //////////
+    /**
+     * Find the shortest graph edge joining the two trees that a cut split apart.
+     * Both trees are explored one vertex at a time in turn, so the work stops as soon as
+     * the smaller tree is known, and only the edges of that tree are scanned.
+     *
+     * @param a the id of a vertex of one tree
+     * @param b the id of a vertex of the other tree
+     * @return the shortest edge of graph with one end in each tree, or null if there is none
+     */
+    private E shortestCrossing(int a, int b) {
+        IntMap<Boolean> seenA = new IntMap<>();
+        IntMap<Boolean> seenB = new IntMap<>();
+        ArrayDeque<Integer> queueA = new ArrayDeque<>();
+        ArrayDeque<Integer> queueB = new ArrayDeque<>();
+        List<Integer> treeA = new ArrayList<>();
+        List<Integer> treeB = new ArrayList<>();
+        seenA.put(a, true);
+        seenB.put(b, true);
+        queueA.add(a);
+        queueB.add(b);
+        while (!queueA.isEmpty() && !queueB.isEmpty()) {
+            explore(queueA, seenA, treeA);
+            explore(queueB, seenB, treeB);
+        }
+        //a tree whose queue ran dry has been found completely
+        boolean smallerIsA = queueA.isEmpty();
+        List<Integer> smaller = smallerIsA ? treeA : treeB;
+        IntMap<Boolean> inSmaller = smallerIsA ? seenA : seenB;
+
+        E best = null;
+        for (int x : smaller) {
+            for (Map.Entry<Integer, E> incident : graph.incidence(x).entrySet()) {
+                E e = incident.getValue();
+                if (!inSmaller.containsKey(incident.getKey()) && (best == null || e.length() < best.length())) {
+                    best = e;
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Visit the next vertex of a tree search, queueing its unseen forest neighbours.
+     *
+     * @param queue the vertices found but not yet visited, is not empty
+     * @param seen the ids of the vertices found so far
+     * @param tree receives the visited vertex
+     */
+    private void explore(ArrayDeque<Integer> queue, IntMap<Boolean> seen, List<Integer> tree) {
+        int x = queue.poll();
+        tree.add(x);
+        for (Map.Entry<Integer, E> incident : graph.incidence(x).entrySet()) {
+            int y = incident.getKey();
+            if (forestEdges.containsKey(incident.getValue()) && !seen.containsKey(y)) {
+                seen.put(y, true);
+                queue.add(y);
+            }
+        }
+    }
+
+    /**
+     * Add an edge between two trees to the forest.
+     *
+     * @param e the edge to add
+     */
+    private void link(E e) {
+        LinkCutForest.Node<E> edgeNode = new LinkCutForest.Node<>(e, e.length());
+        LinkCutForest.link(node(e.v1()), edgeNode);
+        LinkCutForest.link(edgeNode, node(e.v2()));
+        forestEdges.put(e, edgeNode);
+        weight += e.length();
+    }
+
+    /**
+     * Remove an edge from the forest.
+     *
+     * @param e a forest edge
+     */
+    private void cut(E e) {
+        LinkCutForest.Node<E> edgeNode = forestEdges.remove(e);
+        LinkCutForest.cut(node(e.v1()), edgeNode);
+        LinkCutForest.cut(edgeNode, node(e.v2()));
+        weight -= e.length();
+    }
+
+    /**
+     * Obtain the link-cut node of a vertex, creating it if needed
+     *
+     * @param v a vertex of the graph
+     * @return the node of v
+     */
+    private LinkCutForest.Node<E> node(V v) {
+        LinkCutForest.Node<E> n = vertexNodes.get(v.id());
+        if (n == null) {
+            n = new LinkCutForest.Node<>(null, VERTEX_KEY);
+            vertexNodes.put(v.id(), n);
+        }
+        return n;
+    }
+}
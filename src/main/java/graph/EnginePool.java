@@ -0,0 +1,95 @@
+package graph;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * A pool of idle search engines. A query takes an engine, points it at its own rows
+ * and gives it back when done. The shared pools serve every snapshot, so engines
+ * outlive the short-lived snapshots a changing graph produces and their scratch space
+ * is reused rather than allocated again for every snapshot and thread.
+ * Idle engines forget the rows they last searched, so they keep no snapshot alive, and
+ * an engine taken for rows much smaller than its scratch space shrinks it; since idle
+ * engines are taken in turn, none keeps the scratch of a large graph for long while
+ * queries on smaller graphs go on.
+ * At most MAX_IDLE engines are kept; any engine returned beyond that is dropped.
+ *
+ * @param <T> represents an engine type
+ */
+final class EnginePool<T> {
+
+    /** Most engines kept idle in one pool */
+    private static final int MAX_IDLE = 2 * Runtime.getRuntime().availableProcessors();
+
+    /** Single-source engines for every snapshot */
+    static final EnginePool<Dijkstra> DIJKSTRA = new EnginePool<>(Dijkstra::new, Dijkstra::retarget);
+
+    /** Two-ended engines for every snapshot */
+    static final EnginePool<BidirectionalDijkstra> BIDIRECTIONAL =
+            new EnginePool<>(BidirectionalDijkstra::new, BidirectionalDijkstra::retarget);
+
+    /** Goal-directed engines for every snapshot */
+    static final EnginePool<AStar> A_STAR = new EnginePool<>(AStar::new, AStar::retarget);
+
+    /** Creates an engine for rows when no idle engine is left */
+    private final Function<IntAdjacency, T> create;
+
+    /** Points an engine at other rows, or at null when it goes idle */
+    private final BiConsumer<T, IntAdjacency> retarget;
+
+    /** Engines not in use by any query */
+    private final ConcurrentLinkedQueue<T> idle = new ConcurrentLinkedQueue<>();
+
+    /** Number of engines in idle, counted separately since the queue does not count cheaply */
+    private final AtomicInteger idleCount = new AtomicInteger();
+
+    // Representation Invariant
+    //      idle holds at most MAX_IDLE engines, none of them pointed at any rows, and
+    //      idleCount equals idle.size() whenever no acquire or release is in progress.
+    //
+    // Abstraction Function:
+    //      represents the set of engines in idle, free for any query to take
+
+    /**
+     * Create an empty pool.
+     *
+     * @param create creates an engine for the given rows
+     * @param retarget points an engine at the given rows, or at null
+     */
+    EnginePool(Function<IntAdjacency, T> create, BiConsumer<T, IntAdjacency> retarget) {
+        this.create = create;
+        this.retarget = retarget;
+    }
+
+    /**
+     * Take an engine for searching rows, which the caller alone uses until it releases it.
+     *
+     * @param rows the rows to search
+     * @return an engine pointed at rows
+     */
+    T acquire(IntAdjacency rows) {
+        T engine = idle.poll();
+        if (engine == null) {
+            return create.apply(rows);
+        }
+        idleCount.decrementAndGet();
+        retarget.accept(engine, rows);
+        return engine;
+    }
+
+    /**
+     * Give back an engine taken by acquire. The caller must not use it afterwards.
+     *
+     * @param engine the engine to give back
+     */
+    void release(T engine) {
+        retarget.accept(engine, null);
+        if (idleCount.incrementAndGet() <= MAX_IDLE) {
+            idle.offer(engine);
+        } else {
+            idleCount.decrementAndGet();
+        }
+    }
+}
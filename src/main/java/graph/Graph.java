@@ -1,6 +1,9 @@
 package graph;
 
+import java.lang.ref.WeakReference;
 import java.util.*;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 
 
 /**
@@ -11,19 +14,284 @@ import java.util.*;
  */
 public class Graph<V extends Vertex, E extends Edge<V>> implements ImGraph<V, E>, IGraph<V, E> {
 
-    /** Set of all vertices in graph */
-    private HashSet<V> vertexSet = new HashSet<>();
+    /** All vertices in graph, keyed by vertex id */
+    private IntMap<V> vertices = new IntMap<>();
 
-    /** Set of all edges in graph */
-    private HashSet<E> edgeSet = new HashSet<>();
+    /** Edges incident on each vertex, keyed by vertex id and then by the id of the other end */
+    private IntMap<Map<Integer, E>> adjacency = new IntMap<>();
+
+    /** Sum of the lengths of all edges in graph */
+    private int lengthSum = 0;
+
+    /** Latest snapshot of the graph, or null if the graph changed since it was taken */
+    private CsrGraph<V, E> snapshot = null;
+
+    /** Number of mutations made to the graph so far */
+    private long modifications = 0;
+
+    /** Current version of the graph, or null if no version is being kept up to date */
+    private GraphVersion<V, E> version = null;
+
+    /** Version most recently handed out by version(), which keeps version up to date */
+    private WeakReference<GraphVersion<V, E>> issued = new WeakReference<>(null);
+
+    /** Recently used shortest path trees, or null if trees are not cached */
+    private ShortestPathTreeCache<V, E> trees = null;
+
+    /** Listeners told about every mutation, in the order they were added */
+    private final List<GraphListener<V, E>> listeners = new ArrayList<>();
 
     // Representation Invariant
     //      E instanceof Edge<V> && V instanceof Vertex.
+    //      vertices.get(i).id() == i for every key i of vertices.
+    //      adjacency has exactly the same keys as vertices, and
+    //      adjacency.get(a).get(b) == adjacency.get(b).get(a) for every stored edge.
+    //      lengthSum is the sum of the lengths of all edges stored in adjacency.
+    //      snapshot is null or has exactly the vertices and edges of the graph.
+    //      trees is null or only holds trees computed at the current value of modifications.
+    //      version is null or has exactly the vertices and edges of the graph.
+    //      version is only derived on mutation while issued still refers to a version.
     //
     // Abstraction Function:
     //      represents a simple, undirected graph g where
-    //      g.vertexSet represents all the nodes in g and
-    //      g.edgeSet represents all the node-to-node connections that exist in g
+    //      g.vertices.values() represents all the nodes in g and
+    //      the edges stored in g.adjacency represent all the node-to-node
+    //      connections that exist in g
+
+
+
+    ////////// bulk loading //////////
+    /**
+     * Start building a graph from many vertices and edges at once.
+     *
+     * @param <V> represents a vertex type
+     * @param <E> represents an edge type
+     * @return an empty builder
+     */
+    public static <V extends Vertex, E extends Edge<V>> Builder<V, E> builder() {
+        return new Builder<>();
+    }
+
+    /**
+     * Collects vertices and edges and builds a graph of them in one go.
+     * Unlike repeated addVertex and addEdge calls, the builder sizes every table for
+     * its final contents up front and checks all vertices and edges in a single pass,
+     * and it can fill the tables of different vertices in parallel.
+     *
+     * @param <V> represents a vertex type
+     * @param <E> represents an edge type
+     */
+    public static final class Builder<V extends Vertex, E extends Edge<V>> {
+
+        /** Vertices to add, in the order given */
+        private final List<V> vertexList = new ArrayList<>();
+
+        /** Edges to add, in the order given */
+        private final List<E> edgeList = new ArrayList<>();
+
+        /** Pool to build on, or null to build on the calling thread */
+        private ForkJoinPool pool = null;
+
+        /**
+         * Create an empty builder.
+         */
+        private Builder() {
+        }
+
+        /**
+         * Add a vertex to the graph to build
+         *
+         * @param v the vertex
+         * @return this builder
+         */
+        public Builder<V, E> vertex(V v) {
+            vertexList.add(v);
+            return this;
+        }
+
+        /**
+         * Add vertices to the graph to build
+         *
+         * @param vs the vertices
+         * @return this builder
+         */
+        public Builder<V, E> vertices(Collection<? extends V> vs) {
+            vertexList.addAll(vs);
+            return this;
+        }
+
+        /**
+         * Add an edge to the graph to build
+         *
+         * @param e the edge
+         * @return this builder
+         */
+        public Builder<V, E> edge(E e) {
+            edgeList.add(e);
+            return this;
+        }
+
+        /**
+         * Add edges to the graph to build
+         *
+         * @param es the edges
+         * @return this builder
+         */
+        public Builder<V, E> edges(Collection<? extends E> es) {
+            edgeList.addAll(es);
+            return this;
+        }
+
+        /**
+         * Build on a pool instead of on the calling thread
+         *
+         * @param pool the pool to build on
+         * @return this builder
+         */
+        public Builder<V, E> parallel(ForkJoinPool pool) {
+            this.pool = pool;
+            return this;
+        }
+
+        /**
+         * Build a graph with all the vertices and edges added to this builder.
+         *
+         * @return a new graph
+         * @throws IllegalArgumentException if a vertex or edge is null, two vertices have
+         *              the same id, an end of an edge is not among the vertices, or two
+         *              edges connect the same vertices
+         */
+        public Graph<V, E> build() {
+            int n = vertexList.size();
+            int m = edgeList.size();
+
+            //sort the vertices by id, so that duplicates are adjacent and ends are found
+            // by binary search without a hash table
+            long[] keys = new long[n];
+            for (int i = 0; i < n; i++) {
+                V v = vertexList.get(i);
+                if (v == null) {
+                    throw new IllegalArgumentException("A vertex cannot be null");
+                }
+                keys[i] = (long) v.id() << 32 | i;
+            }
+            if (pool == null) {
+                Arrays.sort(keys);
+            } else {
+                //sorting from inside the pool forks the sort's subtasks into the pool
+                pool.submit(() -> Arrays.parallelSort(keys)).join();
+            }
+            int[] ids = new int[n];
+            List<V> sorted = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) {
+                ids[i] = (int) (keys[i] >> 32);
+                sorted.add(vertexList.get((int) keys[i]));
+                if (i > 0 && ids[i] == ids[i - 1]) {
+                    throw new IllegalArgumentException("Two vertices have the id " + ids[i]);
+                }
+            }
+
+            //find the index of both ends of every edge
+            int[] dense = CsrGraph.denseIndex(ids);
+            int[] ends = new int[2 * m];
+            forEach(m, (lo, hi) -> {
+                for (int k = lo; k < hi; k++) {
+                    E e = edgeList.get(k);
+                    if (e == null) {
+                        throw new IllegalArgumentException("An edge cannot be null");
+                    }
+                    ends[2 * k] = indexOf(ids, dense, sorted, e.v1());
+                    ends[2 * k + 1] = indexOf(ids, dense, sorted, e.v2());
+                }
+            });
+
+            //group the edges by end, as in a compressed sparse row layout
+            int[] start = new int[n + 1];
+            int lengthSum = 0;
+            for (int k = 0; k < m; k++) {
+                start[ends[2 * k] + 1]++;
+                start[ends[2 * k + 1] + 1]++;
+                lengthSum += edgeList.get(k).length();
+            }
+            for (int i = 0; i < n; i++) {
+                start[i + 1] += start[i];
+            }
+            //the id of the other end sits next to each arc, so filling a table reads it in order
+            int[] neighbour = new int[2 * m];
+            int[] edgeIndex = new int[2 * m];
+            int[] fill = Arrays.copyOf(start, n);
+            for (int end = 0; end < 2 * m; end++) {
+                int slot = fill[ends[end]]++;
+                neighbour[slot] = ids[ends[end ^ 1]];
+                edgeIndex[slot] = end >>> 1;
+            }
+
+            //each vertex's table is filled by one task only, so tables need no locking
+            List<Map<Integer, E>> tables = new ArrayList<>(Collections.nCopies(n, null));
+            forEach(n, (lo, hi) -> {
+                for (int i = lo; i < hi; i++) {
+                    int degree = start[i + 1] - start[i];
+                    Map<Integer, E> table = new HashMap<>((int) (degree / 0.75f) + 1);
+                    for (int slot = start[i]; slot < start[i + 1]; slot++) {
+                        E e = edgeList.get(edgeIndex[slot]);
+                        if (table.put(neighbour[slot], e) != null) {
+                            throw new IllegalArgumentException("Two edges connect " + e.v1() + " and " + e.v2());
+                        }
+                    }
+                    tables.set(i, table);
+                }
+            });
+
+            Graph<V, E> graph = new Graph<>();
+            graph.vertices = new IntMap<>(n);
+            graph.adjacency = new IntMap<>(n);
+            for (int i = 0; i < n; i++) {
+                graph.vertices.put(ids[i], sorted.get(i));
+                graph.adjacency.put(ids[i], tables.get(i));
+            }
+            graph.lengthSum = lengthSum;
+            return graph;
+        }
+
+        /**
+         * Run a loop over 0 to count - 1 in chunks, on the pool if there is one.
+         *
+         * @param count the number of iterations
+         * @param body the work to do on each chunk
+         */
+        private void forEach(int count, ParallelRange.Body body) {
+            if (pool == null) {
+                body.run(0, count);
+            } else {
+                ParallelRange.forEach(pool, 0, count, body);
+            }
+        }
+
+        /**
+         * Find the index of a vertex among the sorted vertices
+         *
+         * @param ids the ids of the sorted vertices, in increasing order
+         * @param dense the result of CsrGraph.denseIndex(ids)
+         * @param sorted the vertices sorted by id
+         * @param v an end of an edge
+         * @param <V> represents a vertex type
+         * @return the index of v in sorted
+         * @throws IllegalArgumentException if v is not among the sorted vertices
+         */
+        private static <V extends Vertex> int indexOf(int[] ids, int[] dense, List<V> sorted, V v) {
+            int i;
+            if (dense == null) {
+                i = Arrays.binarySearch(ids, v.id());
+            } else {
+                long offset = (long) v.id() - ids[0];
+                i = offset >= 0 && offset < dense.length ? dense[(int) offset] : -1;
+            }
+            if (i < 0 || (sorted.get(i) != v && !sorted.get(i).equals(v))) {
+                throw new IllegalArgumentException("The edge end " + v + " is not a vertex of the graph");
+            }
+            return i;
+        }
+    }
 
 
 
@@ -38,13 +306,19 @@ public class Graph<V extends Vertex, E extends Edge<V>> implements ImGraph<V, E>
         if (v == null) {
             return false;
         }
-        for (V ver: vertexSet) {
-            if (v.checkID(ver)) {
-                return false;
-            }
+        if (vertices.containsKey(v.id())) {
+            return false;
+        }
+        vertices.put(v.id(), v);
+        adjacency.put(v.id(), new HashMap<>());
+        if (versioned()) {
+            version = version.withVertex(v);
         }
-        vertexSet.add(v);
-        return vertexSet.contains(v);
+        changed();
+        for (GraphListener<V, E> listener : listeners) {
+            listener.vertexAdded(v);
+        }
+        return true;
     }
 
     /**
@@ -54,7 +328,11 @@ public class Graph<V extends Vertex, E extends Edge<V>> implements ImGraph<V, E>
      * @return true of v is part of the graph and false otherwise
      */
     public boolean vertex(V v) {
-        return vertexSet.contains(v);
+        if (v == null) {
+            return false;
+        }
+        V stored = vertices.get(v.id());
+        return stored != null && stored.equals(v);
     }
 
     /**
@@ -67,11 +345,20 @@ public class Graph<V extends Vertex, E extends Edge<V>> implements ImGraph<V, E>
         if (e == null) {
             return false;
         }
-        if (edgeSet.contains(e)) {
+        if (edge(e)) {
             return false;
         }
-        if (vertexSet.contains(e.v2()) && vertexSet.contains(e.v1())) {
-            edgeSet.add(e);
+        if (vertex(e.v2()) && vertex(e.v1())) {
+            adjacency.get(e.v1().id()).put(e.v2().id(), e);
+            adjacency.get(e.v2().id()).put(e.v1().id(), e);
+            lengthSum += e.length();
+            if (versioned()) {
+                version = version.withEdge(e);
+            }
+            changed();
+            for (GraphListener<V, E> listener : listeners) {
+                listener.edgeAdded(e);
+            }
             return true;
         }
         return false;
@@ -84,7 +371,10 @@ public class Graph<V extends Vertex, E extends Edge<V>> implements ImGraph<V, E>
      * @return true if e is an edge in the graoh and false otherwise
      */
     public boolean edge(E e) {
-        return edgeSet.contains(e);
+        if (e == null) {
+            return false;
+        }
+        return findEdge(e.v1(), e.v2()) != null;
     }
 
     /**
@@ -95,12 +385,7 @@ public class Graph<V extends Vertex, E extends Edge<V>> implements ImGraph<V, E>
      * @return true if the v1-v2 or v2-v1 edge is part of the graph and false otherwise
      */
     public boolean edge(V v1, V v2) {
-        for (E e : edgeSet) {
-            if (e.v1().equals(v1) && e.v2().equals(v2) || e.v1().equals(v2) && e.v2().equals(v1)) {
-                return true;
-            }
-        }
-        return false;
+        return findEdge(v1, v2) != null;
     }
 
     /**
@@ -112,15 +397,11 @@ public class Graph<V extends Vertex, E extends Edge<V>> implements ImGraph<V, E>
      *              and 0 otherwise
      */
     public int edgeLength(V v1, V v2) {
-        if (edge(v1, v2) || edge(v2, v1)) {
-            for (E e : edgeSet) {
-                if (e.v1().equals(v1) && e.v2().equals(v2)
-                        || e.v1().equals(v2) && e.v2().equals(v1)) {
-                    return e.length();
-                }
-            }
+        E e = findEdge(v1, v2);
+        if (e == null) {
+            return 0;
         }
-        return 0;
+        return e.length();
     }
 
     /**
@@ -129,11 +410,7 @@ public class Graph<V extends Vertex, E extends Edge<V>> implements ImGraph<V, E>
      * @return the sum of the lengths of all edges in the graph
      */
     public int edgeLengthSum() {
-        int sum = 0;
-        for (E e: edgeSet) {
-            sum += e.length();
-        }
-        return sum;
+        return lengthSum;
     }
 
     /**
@@ -143,11 +420,75 @@ public class Graph<V extends Vertex, E extends Edge<V>> implements ImGraph<V, E>
      * @return true if e was successfully removed and false otherwise
      */
     public boolean remove(E e) {
-        if (edge(e)) {
-            edgeSet.remove(e);
-            return true;
+        if (e == null) {
+            return false;
         }
-        return false;
+        E stored = findEdge(e.v1(), e.v2());
+        if (stored == null) {
+            return false;
+        }
+        adjacency.get(stored.v1().id()).remove(stored.v2().id());
+        adjacency.get(stored.v2().id()).remove(stored.v1().id());
+        lengthSum -= stored.length();
+        if (versioned()) {
+            version = version.withoutEdge(stored);
+        }
+        changed();
+        for (GraphListener<V, E> listener : listeners) {
+            listener.edgeRemoved(stored);
+        }
+        return true;
+    }
+
+    /**
+     * Replace the edge between the ends of e with e, for example to change its length.
+     *
+     * @param e the edge to put in place of the edge between its ends
+     * @return true if the edge was replaced and false if there was no edge between its ends
+     */
+    public boolean replace(E e) {
+        if (e == null) {
+            return false;
+        }
+        E stored = findEdge(e.v1(), e.v2());
+        if (stored == null) {
+            return false;
+        }
+        adjacency.get(e.v1().id()).put(e.v2().id(), e);
+        adjacency.get(e.v2().id()).put(e.v1().id(), e);
+        lengthSum += e.length() - stored.length();
+        if (versioned()) {
+            version = version.withEdge(e);
+        }
+        changed();
+        for (GraphListener<V, E> listener : listeners) {
+            listener.edgeReplaced(stored, e);
+        }
+        return true;
+    }
+
+    /**
+     * Rename a vertex of the graph that is keyed by id, and tell the listeners, so that
+     * for example a GraphLog keeps the new name across restarts.
+     * A vertex that is not keyed by id is identified by its name, so it cannot be renamed.
+     * The vertex object itself is renamed, so versions and snapshots taken earlier, which
+     * share it, report the new name too; a rename does not change the structure of the graph.
+     *
+     * @param v    the vertex to rename
+     * @param name the new name of the vertex
+     * @return true if v is a vertex of the graph keyed by id and was renamed, and false otherwise
+     */
+    public boolean rename(V v, String name) {
+        if (name == null || !vertex(v) || !v.isKeyedById()) {
+            return false;
+        }
+        V stored = vertices.get(v.id());
+        String old = stored.name();
+        stored.updateName(name);
+        for (GraphListener<V, E> listener : listeners) {
+            listener.vertexRenamed(stored, old);
+        }
+        return true;
     }
 
     /**
@@ -159,12 +500,25 @@ public class Graph<V extends Vertex, E extends Edge<V>> implements ImGraph<V, E>
      */
     public boolean remove(V v) {
         if (vertex(v)) {
-            vertexSet.remove(v);
-            for (E e: this.allEdges()) {
-                if (e.incident(v)) {
-                    edgeSet.remove(e);
+            if (!listeners.isEmpty()) {
+                //listeners hear of each edge going while the graph still has the vertex
+                for (E e : new ArrayList<>(adjacency.get(v.id()).values())) {
+                    remove(e);
                 }
             }
+            vertices.remove(v.id());
+            //detach every incident edge from the other end before dropping v's entry
+            for (E e: adjacency.remove(v.id()).values()) {
+                adjacency.get(e.distinctVertex(v).id()).remove(v.id());
+                lengthSum -= e.length();
+            }
+            if (versioned()) {
+                version = version.withoutVertex(v);
+            }
+            changed();
+            for (GraphListener<V, E> listener : listeners) {
+                listener.vertexRemoved(v);
+            }
             return true;
         }
         return false;
@@ -178,7 +532,7 @@ public class Graph<V extends Vertex, E extends Edge<V>> implements ImGraph<V, E>
      * @return a set of all vertices in the graph
      */
     public Set<V> allVertices() {
-        return new HashSet<>(vertexSet);
+        return new HashSet<>(vertices.values());
     }
 
     /**
@@ -189,13 +543,7 @@ public class Graph<V extends Vertex, E extends Edge<V>> implements ImGraph<V, E>
      * @return all edges incident on v
      */
     public Set<E> allEdges(V v) {
-        Set<E> thisESet = new HashSet<>();
-        for (E e : edgeSet) {
-            if (e.incident(v)) {
-                thisESet.add(e);
-            }
-        }
-        return thisESet;
+        return new HashSet<>(incidence(v).values());
     }
 
     /**
@@ -205,7 +553,26 @@ public class Graph<V extends Vertex, E extends Edge<V>> implements ImGraph<V, E>
      * @return all edges in the graph
      */
     public Set<E> allEdges() {
-        return new HashSet<>(edgeSet);
+        return new HashSet<>(edgeList());
+    }
+
+    /**
+     * List every edge of the graph once, without hashing them into a set
+     *
+     * @return all edges in the graph
+     */
+    private List<E> edgeList() {
+        List<E> edges = new ArrayList<>();
+        for (V v : vertices.values()) {
+            //each edge is stored under both of its ends, so keep only the copy under the smaller id
+            int id = v.id();
+            for (Map.Entry<Integer, E> incident : adjacency.get(id).entrySet()) {
+                if (id < incident.getKey()) {
+                    edges.add(incident.getValue());
+                }
+            }
+        }
+        return edges;
     }
 
     /**
@@ -217,10 +584,8 @@ public class Graph<V extends Vertex, E extends Edge<V>> implements ImGraph<V, E>
      */
     public Map<V, E> getNeighbours(V v) {
         Map<V, E> neighbourMap = new HashMap<>();
-        for (E e : edgeSet) {
-            if (e.incident(v)) {
-                neighbourMap.put(e.distinctVertex(v), e);
-            }
+        for (E e : incidence(v).values()) {
+            neighbourMap.put(e.distinctVertex(v), e);
         }
         return neighbourMap;
     }
@@ -230,6 +595,9 @@ public class Graph<V extends Vertex, E extends Edge<V>> implements ImGraph<V, E>
     ////////// methods from ImGraph Interface //////////
     /**
      * Compute the shortest path from source to sink, using Dijkstra's algorithm
+     * over a snapshot of the graph that is rebuilt only after the graph changes.
+     * The first query after a change rebuilds the whole snapshot, in O(V + E log E) time,
+     * so callers that alternate changes with single queries should batch their changes.
      *
      * @param source the start vertex
      * @param sink   the end vertex
@@ -238,156 +606,127 @@ public class Graph<V extends Vertex, E extends Edge<V>> implements ImGraph<V, E>
      *              if no shortest path exists
      */
     public List<V> shortestPath(V source, V sink) {
-
-        //check invalid inputs
-        if (source == sink) {
-            List<V> path = new ArrayList<>();
-            path.add(sink);
-            return path;
+        if (trees == null || source == null || source.equals(sink)) {
+            return freeze().shortestPath(source, sink);
         }
+        ShortestPathTree<V, E> tree = shortestPathTree(source);
+        return tree == null ? new ArrayList<>() : tree.pathTo(sink);
+    }
 
-        //initialize variables
-        Set<V> visitedNodes = new HashSet<>();
-        Map<V, Integer> nodeDist = new HashMap<>();
-        Map<V, V> prevNode = new HashMap<>();
-
-        //Initialize all nodeWeights to be infinity (represented by Integer.MAX_VALUE)
-        // except source vertex is set to a weight of 0
-        for (V v: vertexSet) {
-            if (v.equals(source)) {
-                nodeDist.put(source, 0);
-            } else {
-                nodeDist.put(v, Integer.MAX_VALUE);
-            }
-        }
-
-        //initialize priority queue with initial capacity of number of vertices in graph
-        // and ordering according to node distances in nodeDist
-        Comparator<V> comp = new Comparator<V>() {
-            @Override
-            public int compare(V v1, V v2) {
-                if (nodeDist.get(v1) < nodeDist.get(v2)) {
-                    return -1;
-                } else if (nodeDist.get(v1) > nodeDist.get(v2)) {
-                    return 1;
-                } else {
-                    return 0;
-                }
-            }
-        };
-
-        PriorityQueue<V> pq = new PriorityQueue<>(this.vertexSet.size(), comp);
-        pq.add(source);
-
-
-        //loop while priority queue is not empty
-        while (!pq.isEmpty()) {
-            //remove top node from pq with the smallest distance
-            V current = pq.poll();
-
-            //skip this node if already visited
-            if (!visitedNodes.contains(current)) {
-
-                //add current node to visited set
-                visitedNodes.add(current);
-
-                //update distances of all of current node's neighbours
-                Map<V, E> neighbours = getNeighbours(current);
-                for (V neighbour : neighbours.keySet()) {
-                    //update node distance only if new distance is shorter than existing dist
-                    int newDist = nodeDist.get(current) + neighbours.get(neighbour).length();
-                    if (newDist < nodeDist.get(neighbour)) {
-                        //if shorter distance found, replace dist in nodeDist map and update prevNode
-                        nodeDist.replace(neighbour, newDist);
+    /**
+     * Compute the shortest paths from source to each of sinks with one search over
+     * a snapshot of the graph
+     *
+     * @param source the start vertex
+     * @param sinks  the end vertices
+     * @return the shortest path from source to each sink, in the order of sinks
+     */
+    @Override
+    public List<List<V>> shortestPaths(V source, List<V> sinks) {
+        return freeze().shortestPaths(source, sinks);
+    }
 
-                        if (!prevNode.containsKey(neighbour)) {
-                            prevNode.put(neighbour, current);
-                        } else {
-                            prevNode.replace(neighbour, current);
-                        }
+    /**
+     * Compute the shortest path between each pair of vertices, searching once from each
+     * source over a snapshot of the graph, with the sources spread over executor.
+     * The snapshot is taken on the calling thread before any search starts.
+     *
+     * @param pairs    the source and sink of each query
+     * @param executor runs the search of each source
+     * @return the shortest path of each pair, in the order of pairs
+     */
+    @Override
+    public List<List<V>> shortestPaths(Collection<VertexPair<V>> pairs, Executor executor) {
+        return freeze().shortestPaths(pairs, executor);
+    }
 
-                        if(!visitedNodes.contains(neighbour))
-                            pq.add(neighbour);
-                    }
-                }
-            }
+    /**
+     * Compute the shortest paths from source to every vertex over a snapshot of the graph.
+     * If trees are cached, a tree computed since the last mutation is reused.
+     *
+     * @param source the start vertex
+     * @return the tree of shortest paths from source, or null if source is not part of the graph
+     */
+    public ShortestPathTree<V, E> shortestPathTree(V source) {
+        if (trees == null) {
+            return freeze().shortestPathTree(source);
         }
-
-        //output shortest path using prevNodes
-        List<V> path = new ArrayList<>();
-        path.add(sink);
-        V curr = sink;
-        while (curr != source) {
-            if (!prevNode.containsKey(curr)) {
-                return new ArrayList<V>();
-            }
-            curr = prevNode.get(curr);
-            path.add(curr);
+        if (!vertex(source)) {
+            return null;
         }
-        Collections.reverse(path);
-
-        return path;
+        ShortestPathTree<V, E> tree = trees.get(source.id(), modifications);
+        if (tree == null) {
+            tree = freeze().shortestPathTree(source);
+            trees.put(modifications, tree);
+        }
+        return tree;
     }
 
     /**
-     * Compute the minimum spanning tree of the graph.
+     * Cache the shortest path trees of the most recently used sources, so that repeated
+     * shortestPath calls from the same sources each cost one lookup until the graph changes.
+     * While trees are cached, shortestPath computes the whole tree of a source it has
+     * no tree for, instead of stopping at the sink.
      *
-     * @return a list of edges that forms a minimum spanning tree of the graph
+     * @param capacity the most trees to keep, or 0 to stop caching trees
      */
-    public List<E> minimumSpanningTree() {
-        List<E> mstEdges = new ArrayList<>();
-        List<Set<V>> unvisitedNodes = new ArrayList<>();
-        E shortestEdge = null;
-
-        for (V v: vertexSet) {
-            Set<V> thisNodeSet = new HashSet<>();
-            thisNodeSet.add(v);
-            unvisitedNodes.add(thisNodeSet);
-        }
+    public void cacheShortestPathTrees(int capacity) {
+        trees = capacity > 0 ? new ShortestPathTreeCache<>(capacity) : null;
+    }
 
-        List<E> allEdges = new ArrayList<>(edgeSet);
+    /**
+     * Compute the shortest path from source to sink, using Dijkstra's algorithm from
+     * both ends at once over a snapshot of the graph. As for shortestPath, the first
+     * query after a change rebuilds the snapshot.
+     *
+     * @param source the start vertex
+     * @param sink   the end vertex
+     * @return the vertices, in order, on a shortest path from source to sink
+     *              (both end points are part of the list) and returns empty list
+     *              if no shortest path exists
+     */
+    public List<V> bidirectionalShortestPath(V source, V sink) {
+        return freeze().bidirectionalShortestPath(source, sink);
+    }
 
-        //sort allEdges by length from shortest to longest
-        allEdges.sort(new Comparator<>() {
-            @Override
-            public int compare(E e1, E e2) {
-                return e1.length() - e2.length();
-            }
-        });
-
-        //add shortest edge to unvisitedNodes set only if the edge does not form a loop
-        // ie its two nodes are in different sets
-        // then merge the two sets that contain its two nodes
-        for (E e : allEdges) {
-            Set<V> v1Set = new HashSet<>();
-            Set<V> v2Set = new HashSet<>();
-            for (int i = 0; i < unvisitedNodes.size(); i++) {
-                if (unvisitedNodes.get(i).contains(e.v1())) {
-                    v1Set = unvisitedNodes.get(i);
-                }
-            }
+    /**
+     * Compute the shortest path from source to sink, using the A* algorithm guided
+     * by a heuristic over a snapshot of the graph
+     *
+     * @param source    the start vertex
+     * @param sink      the end vertex
+     * @param heuristic estimates the distance between vertices without ever exceeding it
+     * @return the vertices, in order, on a shortest path from source to sink
+     *              (both end points are part of the list) and returns empty list
+     *              if no shortest path exists
+     * @throws IllegalArgumentException if heuristic is Landmarks selected on a snapshot
+     *              taken before the graph last changed
+     */
+    public List<V> shortestPath(V source, V sink, Heuristic<V> heuristic) {
+        return freeze().shortestPath(source, sink, heuristic);
+    }
 
-            for (int j = 0; j < unvisitedNodes.size(); j++) {
-                if (unvisitedNodes.get(j).contains(e.v2())) {
-                    v2Set = unvisitedNodes.get(j);
-                }
-            }
+    /**
+     * Compute the minimum spanning tree of the graph, using union-find Kruskal on
+     * sparse graphs and indexed-heap Prim on dense ones over a snapshot of the graph.
+     *
+     * @return a list of edges, in order of non-decreasing length, that forms a
+     *              minimum spanning tree of each component of the graph
+     */
+    public List<E> minimumSpanningTree() {
+        return freeze().minimumSpanningTree();
+    }
 
-            if (!v1Set.equals(v2Set)) {
-                for (int i = 0; i < unvisitedNodes.size(); i++) {
-                    if (unvisitedNodes.get(i).equals(v1Set)) {
-                        for (int j = 0; j < unvisitedNodes.size(); j++) {
-                            if (unvisitedNodes.get(j).equals(v2Set)) {
-                                unvisitedNodes.get(i).addAll(unvisitedNodes.get(j));
-                                unvisitedNodes.remove(unvisitedNodes.get(j));
-                                mstEdges.add(e);
-                            }
-                        }
-                    }
-                }
-            }
-        }
-        return mstEdges;
+    /**
+     * Compute the minimum spanning tree of the graph using parallel Boruvka over a
+     * snapshot of the graph.
+     *
+     * @param pool the pool to run on
+     * @return a list of edges, in order of non-decreasing length, that forms a
+     *              minimum spanning tree of each component of the graph
+     */
+    public List<E> minimumSpanningTree(ForkJoinPool pool) {
+        return freeze().minimumSpanningTree(pool);
     }
 
 
@@ -416,41 +755,35 @@ public class Graph<V extends Vertex, E extends Edge<V>> implements ImGraph<V, E>
      *              if graph has multiple components)
      */
     public int diameter() {
-        Set<Integer> shortestPaths = new HashSet<>();
-        int diam = 0;
-
-        //add all vertices to a list
-        List<V> vertices = new ArrayList<>(vertexSet);
-
-        //calculate shortest path length for each vertices pair
-        for (V source: vertices) {
-            for (int i = 0; i < vertices.size(); i++) {
-                V sink = vertices.get(i);
-                int length = 0;
-                if (!sink.equals(source)) {
-                    List<V> shortestPath = shortestPath(source, sink);
-                    for (int j = 0; j < shortestPath.size() - 1; j++) {
-                        length += edgeLength(shortestPath.get(j), shortestPath.get(j + 1));
-                    }
-                    shortestPaths.add(length);
-                }
-
-            }
-        }
+        return freeze().diameter();
+    }
 
-        //find longest value in shortestPaths
-        for (int length: shortestPaths) {
-            if (length > diam) {
-                diam = length;
-            }
-        }
+    /**
+     * Compute the diameter of the graph to within a relative error over a snapshot
+     * of the graph.
+     *
+     * @param epsilon the allowed relative error, is >= 0
+     * @return a length d such that d <= diameter() <= (1 + epsilon) * d
+     */
+    public int approximateDiameter(double epsilon) {
+        return freeze().approximateDiameter(epsilon);
+    }
 
-        return diam;
+    /**
+     * Compute the diameter of the graph with one single-source search per vertex
+     * over a snapshot of the graph, spread over a pool.
+     *
+     * @param pool the pool to run on
+     * @return the diameter of the graph. (diameter of the largest component
+     *              if graph has multiple components)
+     */
+    public int diameter(ForkJoinPool pool) {
+        return freeze().diameter(pool);
     }
 
     /**
      * Finds the edge that connects two vertices if such an edge exists.
-     * This method may permit graph mutations to returned edge in edgeSet.
+     * This method may permit graph mutations to the returned edge.
      *
      * @param v1 one end of the edge
      * @param v2 the other end of the edge
@@ -458,13 +791,156 @@ public class Graph<V extends Vertex, E extends Edge<V>> implements ImGraph<V, E>
      *              if edge does not exist in graph
      */
     public E getEdge(V v1, V v2) {
-        if (edge(v1, v2)) {
-            for (E edge: edgeSet) {
-                if (edge.v1().equals(v1) && edge.v2().equals(v2)
-                        || edge.v1().equals(v2) && edge.v2().equals(v1)) {
-                    return edge;
-                }
+        return findEdge(v1, v2);
+    }
+
+
+
+    ////////// listeners //////////
+    /**
+     * Tell a listener about every later mutation of the graph.
+     *
+     * @param listener the listener to add
+     */
+    public void addListener(GraphListener<V, E> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Stop telling a listener about mutations of the graph.
+     *
+     * @param listener the listener to remove
+     * @return true if the listener was removed and false if it was not listening
+     */
+    public boolean removeListener(GraphListener<V, E> listener) {
+        return listeners.remove(listener);
+    }
+
+    /**
+     * Obtain the edges incident on the vertex with a given id.
+     * Access to this map does not permit graph mutations.
+     *
+     * @param id the id of the vertex
+     * @return a map from the id of each neighbour to the edge connecting it to the vertex,
+     *              or null if no vertex in the graph has that id
+     */
+    Map<Integer, E> incidence(int id) {
+        return adjacency.get(id);
+    }
+
+    /**
+     * Obtain the vertex with a given id
+     *
+     * @param id the id of the vertex
+     * @return the vertex in the graph with that id, or null if there is none
+     */
+    V vertexWithId(int id) {
+        return vertices.get(id);
+    }
+
+
+
+    ////////// snapshots //////////
+    /**
+     * Take an immutable compressed sparse row snapshot of the graph.
+     * Later mutations of this graph do not affect the snapshot, and the same
+     * snapshot is returned again until the graph changes.
+     *
+     * @return a snapshot with the vertices and edges currently in the graph
+     */
+    public CsrGraph<V, E> freeze() {
+        if (snapshot == null) {
+            snapshot = new CsrGraph<>(vertices.values(), edgeList());
+        }
+        return snapshot;
+    }
+
+
+    /**
+     * Take an immutable version of the graph, whose queries never wait for or hold up
+     * mutations of this graph.
+     * The first call copies the graph into persistent tries; from then on every mutation
+     * also derives the next version by copying O(log n) trie nodes, so each later call
+     * costs O(1) and versions share all structure that did not change between them.
+     * That per-mutation cost is only paid while the version last returned is still
+     * reachable; once it is collected, mutations stop deriving versions and the next
+     * call copies the graph again.
+     *
+     * @return the graph as it is now
+     */
+    public GraphVersion<V, E> version() {
+        if (!versioned()) {
+            GraphVersion<V, E> first = GraphVersion.empty();
+            for (V v : vertices.values()) {
+                first = first.withVertex(v);
             }
+            for (E e : allEdges()) {
+                first = first.withEdge(e);
+            }
+            version = first;
+        }
+        issued = new WeakReference<>(version);
+        return version;
+    }
+
+
+    ////////// helper methods //////////
+    /**
+     * Check if mutations should derive the next version, stopping once no caller holds
+     * the version last returned by version().
+     *
+     * @return true if version is kept up to date and false otherwise
+     */
+    private boolean versioned() {
+        if (version != null && issued.get() == null) {
+            version = null;
+        }
+        return version != null;
+    }
+
+    /**
+     * Record a mutation, so that the snapshot is rebuilt and no cached tree is served again.
+     */
+    private void changed() {
+        snapshot = null;
+        modifications++;
+        if (trees != null) {
+            trees.clear();
+        }
+    }
+
+    /**
+     * Finds the edges incident on v using the adjacency index.
+     *
+     * @param v the vertex of interest
+     * @return a map from the id of each neighbour of v to the edge connecting it to v,
+     *              or an empty map if v is not part of the graph
+     */
+    private Map<Integer, E> incidence(V v) {
+        if (!vertex(v)) {
+            return Collections.emptyMap();
+        }
+        return adjacency.get(v.id());
+    }
+
+    /**
+     * Finds the edge stored in the graph between v1 and v2 using the adjacency index.
+     *
+     * @param v1 one end of the edge
+     * @param v2 the other end of the edge
+     * @return the edge connecting v1 and v2, or null if there is no such edge in the graph
+     */
+    private E findEdge(V v1, V v2) {
+        if (v1 == null || v2 == null) {
+            return null;
+        }
+        Map<Integer, E> incident = adjacency.get(v1.id());
+        if (incident == null) {
+            return null;
+        }
+        E e = incident.get(v2.id());
+        if (e != null && e.incident(v1) && e.incident(v2)) {
+            return e;
         }
         return null;
     }
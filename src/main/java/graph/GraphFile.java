@@ -0,0 +1,299 @@
+package graph;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads and writes graphs in a binary file laid out like a compressed sparse row
+ * snapshot, so that a graph can be opened by mapping the file instead of rebuilding it.
+ * All numbers are little-endian, and every section starts at a multiple of 8 bytes:
+ * <ul>
+ * <li>a 72 byte header: the int MAGIC, the int format VERSION, the int number of
+ * vertices n, the int number of arcs (twice the number of edges), and the long
+ * positions of the six sections below, in order, followed by that of the keys section</li>
+ * <li>keys: one byte per vertex, 1 if the vertex is keyed by id and 0 if not</li>
+ * <li>ids: the n vertex ids as ints, in increasing order</li>
+ * <li>offsets: n + 1 ints; the arcs of the i-th vertex are the slots offsets[i]
+ * to offsets[i + 1] - 1 of the next two sections</li>
+ * <li>targets: the index of the far end of each arc as an int, increasing within each row</li>
+ * <li>lengths: the length of each arc as an int</li>
+ * <li>name offsets: n + 1 longs; the name of the i-th vertex is the bytes nameOffsets[i]
+ * to nameOffsets[i + 1] - 1 of the next section</li>
+ * <li>names: the names of the vertices, in UTF-8</li>
+ * </ul>
+ * Files of version 1 have a 64 byte header and no keys section, and are read as
+ * holding no vertex keyed by id.
+ */
+public final class GraphFile {
+
+    /** First int of every graph file, "GRPH" in ASCII */
+    static final int MAGIC = 0x48505247;
+
+    /** Version of the layout written by this class */
+    static final int VERSION = 2;
+
+    /** Oldest version of the layout that can still be read */
+    static final int FIRST_VERSION = 1;
+
+    /** Length of the header in bytes */
+    static final int HEADER_BYTES = 72;
+
+    /** Length of the header of the first version in bytes */
+    static final int FIRST_HEADER_BYTES = 64;
+
+    /** Size of the buffer the sections are written through */
+    private static final int BUFFER_BYTES = 1 << 20;
+
+    /**
+     * Not instantiable.
+     */
+    private GraphFile() {
+    }
+
+    /**
+     * Write a graph to a file, replacing the file if it exists.
+     * The file is written under a temporary name and then moved into place, so a reader
+     * never sees a partly written file.
+     *
+     * @param graph the graph to write
+     * @param path the file to write
+     * @throws IOException if the file cannot be written
+     */
+    public static void write(Graph<?, ?> graph, Path path) throws IOException {
+        write(graph.freeze(), path);
+    }
+
+    /**
+     * Write a snapshot of a graph to a file, replacing the file if it exists.
+     *
+     * @param graph the snapshot to write
+     * @param path the file to write
+     * @throws IOException if the file cannot be written
+     */
+    public static void write(CsrGraph<?, ?> graph, Path path) throws IOException {
+        int n = graph.vertexCount();
+        IntAdjacency rows = graph.adjacency();
+        int arcs = n == 0 ? 0 : rows.end(n - 1);
+        byte[][] names = new byte[n][];
+        long nameBytes = 0;
+        for (int i = 0; i < n; i++) {
+            names[i] = graph.vertex(i).name().getBytes(StandardCharsets.UTF_8);
+            nameBytes += names[i].length;
+        }
+
+        long keysAt = HEADER_BYTES;
+        long idsAt = align(keysAt + n);
+        long offsetsAt = align(idsAt + 4L * n);
+        long targetsAt = align(offsetsAt + 4L * (n + 1));
+        long lengthsAt = align(targetsAt + 4L * arcs);
+        long nameOffsetsAt = align(lengthsAt + 4L * arcs);
+        long namesAt = nameOffsetsAt + 8L * (n + 1);
+
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            Output out = new Output(channel);
+            out.putInt(MAGIC);
+            out.putInt(VERSION);
+            out.putInt(n);
+            out.putInt(arcs);
+            for (long at : new long[]{idsAt, offsetsAt, targetsAt, lengthsAt, nameOffsetsAt, namesAt, keysAt}) {
+                out.putLong(at);
+            }
+            for (int i = 0; i < n; i++) {
+                out.putByte(graph.vertex(i).isKeyedById() ? 1 : 0);
+            }
+            out.padTo(idsAt);
+            for (int i = 0; i < n; i++) {
+                out.putInt(graph.vertex(i).id());
+            }
+            out.padTo(offsetsAt);
+            for (int i = 0; i < n; i++) {
+                out.putInt(rows.begin(i));
+            }
+            out.putInt(arcs);
+            out.padTo(targetsAt);
+            for (int arc = 0; arc < arcs; arc++) {
+                out.putInt(rows.target(arc));
+            }
+            out.padTo(lengthsAt);
+            for (int arc = 0; arc < arcs; arc++) {
+                out.putInt(rows.length(arc));
+            }
+            out.padTo(nameOffsetsAt);
+            long at = 0;
+            for (int i = 0; i < n; i++) {
+                out.putLong(at);
+                at += names[i].length;
+            }
+            out.putLong(at);
+            for (byte[] name : names) {
+                out.putBytes(name);
+            }
+            out.flush();
+            channel.force(true);
+        }
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Open a graph file for queries. The file is mapped rather than read, so this takes
+     * about the same time for any size of file, and processes that open the same file
+     * share its pages. The graph keeps the file mapped until it is closed.
+     *
+     * @param path the file to open
+     * @return a read-only view of the graph in the file
+     * @throws IOException if the file cannot be read or is not a graph file of a version this class reads
+     */
+    public static MappedGraph open(Path path) throws IOException {
+        MappedFile file = new MappedFile(path);
+        try {
+            if (file.size() < FIRST_HEADER_BYTES || file.getInt(0) != MAGIC) {
+                throw new IOException(path + " is not a graph file");
+            }
+            int version = file.getInt(4);
+            if (version < FIRST_VERSION || version > VERSION) {
+                throw new IOException(path + " has format version " + version + ", expected "
+                        + FIRST_VERSION + " to " + VERSION);
+            }
+            if (version > FIRST_VERSION && file.size() < HEADER_BYTES) {
+                throw new IOException(path + " is truncated");
+            }
+            MappedGraph graph = new MappedGraph(file);
+            if (graph.endOfData() > file.size()) {
+                throw new IOException(path + " is truncated");
+            }
+            return graph;
+        } catch (IOException | RuntimeException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Round a position up to the next multiple of 8
+     *
+     * @param position a position in the file
+     * @return the first multiple of 8 at or after position
+     */
+    private static long align(long position) {
+        return (position + 7) & ~7L;
+    }
+
+    /**
+     * Writes numbers to a file sequentially through a buffer.
+     */
+    private static final class Output {
+
+        /** File written to */
+        private final FileChannel channel;
+
+        /** Bytes not yet written to the file */
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+
+        /** Number of bytes written to the file so far */
+        private long written = 0;
+
+        /**
+         * Create an output at the start of a file.
+         *
+         * @param channel the file to write
+         */
+        private Output(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        /**
+         * Append an int
+         *
+         * @param value the int
+         * @throws IOException if the file cannot be written
+         */
+        private void putInt(int value) throws IOException {
+            room(4);
+            buffer.putInt(value);
+        }
+
+        /**
+         * Append a long
+         *
+         * @param value the long
+         * @throws IOException if the file cannot be written
+         */
+        private void putLong(long value) throws IOException {
+            room(8);
+            buffer.putLong(value);
+        }
+
+        /**
+         * Append a byte
+         *
+         * @param value the byte, in the low 8 bits
+         * @throws IOException if the file cannot be written
+         */
+        private void putByte(int value) throws IOException {
+            room(1);
+            buffer.put((byte) value);
+        }
+
+        /**
+         * Append bytes
+         *
+         * @param bytes the bytes
+         * @throws IOException if the file cannot be written
+         */
+        private void putBytes(byte[] bytes) throws IOException {
+            for (int done = 0; done < bytes.length; ) {
+                room(1);
+                int n = Math.min(bytes.length - done, buffer.remaining());
+                buffer.put(bytes, done, n);
+                done += n;
+            }
+        }
+
+        /**
+         * Append zero bytes up to a position
+         *
+         * @param position the position of the next byte to append, at or after the current one
+         * @throws IOException if the file cannot be written
+         */
+        private void padTo(long position) throws IOException {
+            while (written + buffer.position() < position) {
+                room(1);
+                buffer.put((byte) 0);
+            }
+        }
+
+        /**
+         * Make room in the buffer
+         *
+         * @param bytes the number of bytes to make room for
+         * @throws IOException if the file cannot be written
+         */
+        private void room(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+        }
+
+        /**
+         * Write everything in the buffer to the file
+         *
+         * @throws IOException if the file cannot be written
+         */
+        private void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                written += channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+}
@@ -0,0 +1,620 @@
+package graph;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Loads a graph from two text files: a vertex file with one {@code id,name} line per
+ * vertex and an edge file with one {@code id1,id2,length} line per edge.
+ * Each file is split into regions at line boundaries, and the regions are mapped and
+ * parsed byte by byte on a pool, with no String made per line or per field other than
+ * vertex names. The graph is then assembled with Graph.builder().
+ * Lines that cannot be used are skipped and reported instead of stopping the import:
+ * lines that do not parse, vertices whose id was already used, and edges that join
+ * a vertex to itself, name a missing vertex, or repeat an earlier edge.
+ * Blank lines are ignored, and lines may end in "\n" or "\r\n".
+ */
+public final class GraphImporter {
+
+    /** Largest region parsed as one task */
+    private static final int MAX_REGION_BYTES = 64 << 20;
+
+    /** Smallest region worth parsing as a task of its own */
+    private static final int MIN_REGION_BYTES = 1 << 20;
+
+    /** Longest part of a malformed line kept in its report */
+    private static final int MAX_REPORTED_CHARS = 200;
+
+    /**
+     * Not instantiable.
+     */
+    private GraphImporter() {
+    }
+
+    /**
+     * A line of an input file that was skipped.
+     */
+    public static final class MalformedLine {
+
+        /** File holding the line */
+        private final Path file;
+
+        /** Number of the line in the file, counting from 1 */
+        private final long line;
+
+        /** Why the line was skipped */
+        private final String reason;
+
+        /** Text of the line, possibly shortened */
+        private final String text;
+
+        /**
+         * Create a report.
+         *
+         * @param file the file holding the line
+         * @param line the number of the line, counting from 1
+         * @param reason why the line was skipped
+         * @param text the text of the line
+         */
+        private MalformedLine(Path file, long line, String reason, String text) {
+            this.file = file;
+            this.line = line;
+            this.reason = reason;
+            this.text = text;
+        }
+
+        /**
+         * Obtain the file holding the line
+         *
+         * @return the file
+         */
+        public Path file() {
+            return file;
+        }
+
+        /**
+         * Obtain the number of the line
+         *
+         * @return the number of the line in its file, counting from 1
+         */
+        public long line() {
+            return line;
+        }
+
+        /**
+         * Obtain the reason the line was skipped
+         *
+         * @return a short description of what is wrong with the line
+         */
+        public String reason() {
+            return reason;
+        }
+
+        /**
+         * Obtain the text of the line
+         *
+         * @return the line, shortened if it is very long
+         */
+        public String text() {
+            return text;
+        }
+
+        @Override
+        public String toString() {
+            return file + ":" + line + ": " + reason + ": " + text;
+        }
+    }
+
+    /**
+     * The outcome of an import: the graph and the lines left out of it.
+     */
+    public static final class Result {
+
+        /** Graph of the usable lines */
+        private final Graph<Vertex, Edge<Vertex>> graph;
+
+        /** Lines that were skipped, by file and then by line number */
+        private final List<MalformedLine> malformed;
+
+        /**
+         * Create a result.
+         *
+         * @param graph the graph of the usable lines
+         * @param malformed the lines that were skipped
+         */
+        private Result(Graph<Vertex, Edge<Vertex>> graph, List<MalformedLine> malformed) {
+            this.graph = graph;
+            this.malformed = Collections.unmodifiableList(malformed);
+        }
+
+        /**
+         * Obtain the graph
+         *
+         * @return the graph of every usable line of the input files
+         */
+        public Graph<Vertex, Edge<Vertex>> graph() {
+            return graph;
+        }
+
+        /**
+         * Obtain the skipped lines
+         *
+         * @return the lines that were skipped, vertex file first, each file in line order
+         */
+        public List<MalformedLine> malformed() {
+            return malformed;
+        }
+    }
+
+    /**
+     * Load a graph from a vertex file and an edge file on the common pool.
+     *
+     * @param vertexFile the file of {@code id,name} lines
+     * @param edgeFile the file of {@code id1,id2,length} lines
+     * @return the graph and the lines that were skipped
+     * @throws IOException if a file cannot be read
+     */
+    public static Result load(Path vertexFile, Path edgeFile) throws IOException {
+        return load(vertexFile, edgeFile, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Load a graph from a vertex file and an edge file.
+     *
+     * @param vertexFile the file of {@code id,name} lines
+     * @param edgeFile the file of {@code id1,id2,length} lines
+     * @param pool the pool to parse and build on
+     * @return the graph and the lines that were skipped
+     * @throws IOException if a file cannot be read
+     */
+    public static Result load(Path vertexFile, Path edgeFile, ForkJoinPool pool) throws IOException {
+        List<MalformedLine> malformed = new ArrayList<>();
+        Region[] vertexRegions = parse(vertexFile, pool, true);
+        Region[] edgeRegions = parse(edgeFile, pool, false);
+
+        //keep the first vertex of each id
+        IntMap<Vertex> vertices = new IntMap<>(count(vertexRegions));
+        List<Vertex> vertexList = new ArrayList<>(count(vertexRegions));
+        for (Region region : vertexRegions) {
+            List<MalformedLine> problems = region.malformed(vertexFile);
+            for (int k = 0; k < region.count; k++) {
+                Vertex v = new Vertex(region.first[k], region.names.get(k));
+                if (vertices.containsKey(v.id())) {
+                    problems.add(region.report(vertexFile, k, "Duplicate vertex id"));
+                } else {
+                    vertices.put(v.id(), v);
+                    vertexList.add(v);
+                }
+            }
+            problems.sort((p, q) -> Long.compare(p.line(), q.line()));
+            malformed.addAll(problems);
+        }
+
+        //edges that repeat an earlier edge are rare, so find the repeated pairs first
+        // and only then look for their later copies
+        Set<Long> repeated = repeatedPairs(edgeRegions, pool);
+        Set<Long> seen = new HashSet<>();
+        List<Edge<Vertex>> edgeList = new ArrayList<>(count(edgeRegions));
+        for (Region region : edgeRegions) {
+            List<MalformedLine> problems = region.malformed(edgeFile);
+            for (int k = 0; k < region.count; k++) {
+                Vertex a = vertices.get(region.first[k]);
+                Vertex b = vertices.get(region.second[k]);
+                if (a == null || b == null) {
+                    problems.add(region.report(edgeFile, k, "Unknown vertex id"));
+                } else if (a == b) {
+                    problems.add(region.report(edgeFile, k, "Edge joins a vertex to itself"));
+                } else if (repeated.contains(pairKey(a.id(), b.id())) && !seen.add(pairKey(a.id(), b.id()))) {
+                    problems.add(region.report(edgeFile, k, "Duplicate edge"));
+                } else {
+                    edgeList.add(new Edge<>(a, b, region.lengths[k]));
+                }
+            }
+            problems.sort((p, q) -> Long.compare(p.line(), q.line()));
+            malformed.addAll(problems);
+        }
+
+        Graph<Vertex, Edge<Vertex>> graph = Graph.<Vertex, Edge<Vertex>>builder()
+                .vertices(vertexList).edges(edgeList).parallel(pool).build();
+        return new Result(graph, malformed);
+    }
+
+
+
+    ////////// helper methods //////////
+    /**
+     * Split a file into regions of whole lines and parse them on a pool.
+     *
+     * @param file the file to parse
+     * @param pool the pool to parse on
+     * @param vertexLines true to parse {@code id,name} lines and false to parse
+     *                    {@code id1,id2,length} lines
+     * @return the parsed regions, in file order, each knowing its first line number
+     * @throws IOException if the file cannot be read
+     */
+    private static Region[] parse(Path file, ForkJoinPool pool, boolean vertexLines) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long[] bounds = split(channel, pool.getParallelism());
+            Region[] regions = new Region[bounds.length - 1];
+            try {
+                ParallelRange.forEach(pool, 0, regions.length, 1, (lo, hi) -> {
+                    for (int r = lo; r < hi; r++) {
+                        try {
+                            MappedByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY,
+                                    bounds[r], bounds[r + 1] - bounds[r]);
+                            regions[r] = new Region(bytes, vertexLines);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            long line = 1;
+            for (Region region : regions) {
+                region.firstLine = line;
+                line += region.lines;
+            }
+            return regions;
+        }
+    }
+
+    /**
+     * Choose region boundaries that fall just after line ends.
+     *
+     * @param channel the file to split
+     * @param parallelism the number of threads that will parse the regions
+     * @return the positions where regions start, followed by the length of the file
+     * @throws IOException if the file cannot be read
+     */
+    private static long[] split(FileChannel channel, int parallelism) throws IOException {
+        long size = channel.size();
+        long target = Math.max(MIN_REGION_BYTES, Math.min(MAX_REGION_BYTES, size / (4L * parallelism) + 1));
+        List<Long> bounds = new ArrayList<>();
+        bounds.add(0L);
+        ByteBuffer probe = ByteBuffer.allocate(4096);
+        long at = target;
+        while (at < size) {
+            //move the boundary past the end of the line it falls in
+            long next = -1;
+            for (long p = at; next < 0 && p < size; p += probe.limit()) {
+                probe.clear();
+                if (channel.read(probe, p) <= 0) {
+                    break;
+                }
+                probe.flip();
+                for (int i = 0; i < probe.limit(); i++) {
+                    if (probe.get(i) == '\n') {
+                        next = p + i + 1;
+                        break;
+                    }
+                }
+            }
+            if (next < 0 || next >= size) {
+                break;
+            }
+            bounds.add(next);
+            at = Math.max(next, at) + target;
+        }
+        bounds.add(size);
+        long[] result = new long[bounds.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = bounds.get(i);
+        }
+        return result;
+    }
+
+    /**
+     * Find the vertex pairs joined by more than one edge line.
+     *
+     * @param regions the parsed edge regions
+     * @param pool the pool to sort on
+     * @return the keys of the repeated pairs
+     */
+    private static Set<Long> repeatedPairs(Region[] regions, ForkJoinPool pool) {
+        long[] keys = new long[count(regions)];
+        int n = 0;
+        for (Region region : regions) {
+            for (int k = 0; k < region.count; k++) {
+                keys[n++] = pairKey(region.first[k], region.second[k]);
+            }
+        }
+        //sorting from inside the pool forks the sort's subtasks into the pool
+        pool.submit(() -> Arrays.parallelSort(keys)).join();
+        Set<Long> repeated = new HashSet<>();
+        for (int i = 1; i < n; i++) {
+            if (keys[i] == keys[i - 1]) {
+                repeated.add(keys[i]);
+            }
+        }
+        return repeated;
+    }
+
+    /**
+     * Name an unordered pair of ids.
+     *
+     * @param a one id
+     * @param b another id
+     * @return the same key for (a, b) and (b, a), distinct for every other pair
+     */
+    private static long pairKey(int a, int b) {
+        return ((long) Math.min(a, b) << 32) | (Math.max(a, b) & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Count the records parsed from some regions
+     *
+     * @param regions the regions
+     * @return the total number of records in them
+     */
+    private static int count(Region[] regions) {
+        long total = 0;
+        for (Region region : regions) {
+            total += region.count;
+        }
+        if (total > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Too many lines to hold in one graph");
+        }
+        return (int) total;
+    }
+
+    /**
+     * The records parsed from one region of a file, held in primitive arrays.
+     */
+    private static final class Region {
+
+        /** Bytes of the region, which holds whole lines only */
+        private final ByteBuffer bytes;
+
+        /** Vertex id, or first end id, of each record */
+        private int[] first = new int[1024];
+
+        /** Second end id of each edge record */
+        private int[] second;
+
+        /** Length of each edge record */
+        private int[] lengths;
+
+        /** Name of each vertex record */
+        private final List<String> names;
+
+        /** Line number within the region of each record, counting from 0 */
+        private int[] lineOf = new int[1024];
+
+        /** Position of the start of the line of each record */
+        private int[] startOf = new int[1024];
+
+        /** Number of records */
+        private int count = 0;
+
+        /** Number of lines in the region */
+        private int lines = 0;
+
+        /** Line number within the region, start and end of each line that did not parse */
+        private final List<int[]> errors = new ArrayList<>();
+
+        /** Why each line that did not parse was rejected */
+        private final List<String> reasons = new ArrayList<>();
+
+        /** Number of the first line of the region in the whole file, counting from 1 */
+        private long firstLine;
+
+        /**
+         * Parse every line of a region.
+         *
+         * @param bytes the bytes of the region
+         * @param vertexLines true to parse {@code id,name} lines and false to parse
+         *                    {@code id1,id2,length} lines
+         */
+        private Region(ByteBuffer bytes, boolean vertexLines) {
+            this.bytes = bytes;
+            if (vertexLines) {
+                names = new ArrayList<>();
+            } else {
+                names = null;
+                second = new int[first.length];
+                lengths = new int[first.length];
+            }
+            int limit = bytes.limit();
+            int start = 0;
+            while (start < limit) {
+                int end = start;
+                while (end < limit && bytes.get(end) != '\n') {
+                    end++;
+                }
+                //leave out a carriage return before the line feed
+                int stop = end > start && bytes.get(end - 1) == '\r' ? end - 1 : end;
+                if (stop > start) {
+                    String problem = vertexLines ? vertexLine(start, stop) : edgeLine(start, stop);
+                    if (problem != null) {
+                        errors.add(new int[]{lines, start, stop});
+                        reasons.add(problem);
+                    }
+                }
+                lines++;
+                start = end + 1;
+            }
+        }
+
+        /**
+         * Parse an {@code id,name} line.
+         *
+         * @param start the position of the first byte of the line
+         * @param stop the position just past the last byte of the line
+         * @return null if the line was recorded, otherwise why it could not be parsed
+         */
+        private String vertexLine(int start, int stop) {
+            long id = number(start, stop);
+            int comma = (int) (id >>> 32);
+            if (comma < 0 || comma >= stop || bytes.get(comma) != ',') {
+                return "Expected a vertex id followed by a comma";
+            }
+            byte[] name = new byte[stop - comma - 1];
+            for (int i = 0; i < name.length; i++) {
+                name[i] = bytes.get(comma + 1 + i);
+            }
+            grow();
+            first[count] = (int) id;
+            names.add(new String(name, StandardCharsets.UTF_8));
+            startOf[count] = start;
+            lineOf[count++] = lines;
+            return null;
+        }
+
+        /**
+         * Parse an {@code id1,id2,length} line.
+         *
+         * @param start the position of the first byte of the line
+         * @param stop the position just past the last byte of the line
+         * @return null if the line was recorded, otherwise why it could not be parsed
+         */
+        private String edgeLine(int start, int stop) {
+            long a = number(start, stop);
+            int at = (int) (a >>> 32);
+            if (at < 0 || at >= stop || bytes.get(at) != ',') {
+                return "Expected a vertex id followed by a comma";
+            }
+            long b = number(at + 1, stop);
+            at = (int) (b >>> 32);
+            if (at < 0 || at >= stop || bytes.get(at) != ',') {
+                return "Expected a second vertex id followed by a comma";
+            }
+            long length = number(at + 1, stop);
+            at = (int) (length >>> 32);
+            if (at != stop) {
+                return "Expected a length at the end of the line";
+            }
+            if ((int) length < 0) {
+                return "Length cannot be negative";
+            }
+            grow();
+            first[count] = (int) a;
+            second[count] = (int) b;
+            lengths[count] = (int) length;
+            startOf[count] = start;
+            lineOf[count++] = lines;
+            return null;
+        }
+
+        /**
+         * Parse an int, allowing spaces around it.
+         *
+         * @param start the position to start at
+         * @param stop the end of the line
+         * @return the int in the low 32 bits and, in the high 32 bits, the position just past
+         *              it and any spaces after it, or -1 in the high bits if there is no int
+         *              that fits in 32 bits
+         */
+        private long number(int start, int stop) {
+            int at = start;
+            while (at < stop && bytes.get(at) == ' ') {
+                at++;
+            }
+            boolean negative = at < stop && bytes.get(at) == '-';
+            if (negative) {
+                at++;
+            }
+            int digitsFrom = at;
+            long value = 0;
+            while (at < stop) {
+                int digit = bytes.get(at) - '0';
+                if (digit < 0 || digit > 9) {
+                    break;
+                }
+                value = value * 10 + digit;
+                if (value > (long) Integer.MAX_VALUE + 1) {
+                    return -1L << 32;
+                }
+                at++;
+            }
+            if (at == digitsFrom) {
+                return -1L << 32;
+            }
+            value = negative ? -value : value;
+            if (value > Integer.MAX_VALUE) {
+                return -1L << 32;
+            }
+            while (at < stop && bytes.get(at) == ' ') {
+                at++;
+            }
+            return ((long) at << 32) | (value & 0xFFFFFFFFL);
+        }
+
+        /**
+         * Make room for one more record.
+         */
+        private void grow() {
+            if (count == first.length) {
+                int capacity = first.length * 2;
+                first = Arrays.copyOf(first, capacity);
+                lineOf = Arrays.copyOf(lineOf, capacity);
+                startOf = Arrays.copyOf(startOf, capacity);
+                if (second != null) {
+                    second = Arrays.copyOf(second, capacity);
+                    lengths = Arrays.copyOf(lengths, capacity);
+                }
+            }
+        }
+
+        /**
+         * Report the lines of the region that did not parse.
+         *
+         * @param file the file holding the region
+         * @return a report of each such line, in line order
+         */
+        private List<MalformedLine> malformed(Path file) {
+            List<MalformedLine> reports = new ArrayList<>();
+            for (int i = 0; i < errors.size(); i++) {
+                int[] error = errors.get(i);
+                reports.add(new MalformedLine(file, firstLine + error[0], reasons.get(i), text(error[1], error[2])));
+            }
+            return reports;
+        }
+
+        /**
+         * Report a record that parsed but cannot be used.
+         *
+         * @param file the file holding the region
+         * @param k the index of the record
+         * @param reason why the record cannot be used
+         * @return the report
+         */
+        private MalformedLine report(Path file, int k, String reason) {
+            int start = startOf[k];
+            int stop = start;
+            while (stop < bytes.limit() && bytes.get(stop) != '\n' && bytes.get(stop) != '\r') {
+                stop++;
+            }
+            return new MalformedLine(file, firstLine + lineOf[k], reason, text(start, stop));
+        }
+
+        /**
+         * Decode part of a line for a report.
+         *
+         * @param start the position of the first byte
+         * @param stop the position just past the last byte
+         * @return the text, cut short if it is very long
+         */
+        private String text(int start, int stop) {
+            byte[] raw = new byte[Math.min(stop - start, MAX_REPORTED_CHARS)];
+            for (int i = 0; i < raw.length; i++) {
+                raw[i] = bytes.get(start + i);
+            }
+            return new String(raw, StandardCharsets.UTF_8);
+        }
+    }
+}
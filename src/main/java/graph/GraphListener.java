@@ -0,0 +1,64 @@
+package graph;
+
+/**
+ * Receives the mutations of a Graph right after they happen, so that structures
+ * derived from the graph can be repaired instead of rebuilt.
+ * Removing a vertex is reported as the removal of each of its edges followed by
+ * the removal of the vertex itself.
+ *
+ * @param <V> represents a vertex type
+ * @param <E> represents an edge type
+ */
+public interface GraphListener<V extends Vertex, E extends Edge<V>> {
+
+    /**
+     * Called after a vertex was added to the graph
+     *
+     * @param v the added vertex
+     */
+    default void vertexAdded(V v) {
+    }
+
+    /**
+     * Called after a vertex, which no longer has any edges, was removed from the graph
+     *
+     * @param v the removed vertex
+     */
+    default void vertexRemoved(V v) {
+    }
+
+    /**
+     * Called after a vertex of the graph was renamed
+     *
+     * @param v   the renamed vertex, which already has its new name
+     * @param old the name the vertex had before
+     */
+    default void vertexRenamed(V v, String old) {
+    }
+
+    /**
+     * Called after an edge was added to the graph
+     *
+     * @param e the added edge
+     */
+    default void edgeAdded(E e) {
+    }
+
+    /**
+     * Called after an edge was removed from the graph
+     *
+     * @param e the removed edge
+     */
+    default void edgeRemoved(E e) {
+    }
+
+    /**
+     * Called after an edge was replaced by another edge between the same vertices,
+     * which may have a different length
+     *
+     * @param old the edge that was removed
+     * @param e   the edge that took its place
+     */
+    default void edgeReplaced(E old, E e) {
+    }
+}
@@ -0,0 +1,886 @@
+package graph;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * Keeps the mutations of a Graph across restarts with a write-ahead log and
+ * periodic snapshots, all in one directory.
+ * The log listens to the graph and appends a record of every mutation to an in-memory
+ * batch, which a background thread writes to the current log segment and forces to
+ * disk. The thread waits briefly for more records before it writes, and records that
+ * arrive while a force is in progress are written by the next one, so a single force
+ * commits a whole group of mutations. Queries never touch the log.
+ * Once the log holds twice as many records as the graph has vertices and edges, a new
+ * segment is started and the background thread is asked for a snapshot. That thread
+ * rebuilds the graph from the previous snapshot and the segments written since, writes it
+ * in the GraphFile format and deletes the segments it covers and the older snapshots
+ * that no MappedGraph has open, so mutations never wait for a snapshot and the graph itself is never read by the thread.
+ * Opening the directory loads the newest snapshot and replays the segments after it,
+ * stopping at the first record that was only partly written or fails its checksum.
+ * A mutation is durable once sync() returns after it, or once the background thread
+ * has forced it, which happens within a few milliseconds; mutations since the last
+ * force are lost if the process dies. The graph holds plain Vertex and Edge objects after a restart,
+ * with the ids, names, lengths and identity of those that were added. Renaming a vertex
+ * keyed by id with Graph.rename is logged; renaming it with Vertex.updateName bypasses
+ * the graph and is only kept by the next snapshot.
+ * If the log cannot be written, mutations still succeed in memory, and the failure is
+ * thrown by the next call to sync(), snapshot() or close().
+ * Like the graph, the log must be used from one thread at a time.
+ */
+public final class GraphLog implements GraphListener<Vertex, Edge<Vertex>>, AutoCloseable {
+
+    /** Type of the record of an added vertex */
+    private static final byte ADD_VERTEX = 1;
+
+    /** Type of the record of a removed vertex */
+    private static final byte REMOVE_VERTEX = 2;
+
+    /** Type of the record of an added edge */
+    private static final byte ADD_EDGE = 3;
+
+    /** Type of the record of a removed edge */
+    private static final byte REMOVE_EDGE = 4;
+
+    /** Type of the record of a replaced edge */
+    private static final byte REPLACE_EDGE = 5;
+
+    /** Type of the record of an added vertex keyed by id */
+    private static final byte ADD_KEYED_VERTEX = 6;
+
+    /** Type of the record of a renamed vertex */
+    private static final byte RENAME_VERTEX = 7;
+
+    /** Bytes before the payload of a record: its length and its checksum */
+    private static final int RECORD_HEADER_BYTES = 8;
+
+    /** How many times more records than the graph has vertices and edges the log holds before a snapshot */
+    private static final int RECORDS_PER_ELEMENT = 2;
+
+    /** Fewest records the log holds before a snapshot is taken, unless given otherwise */
+    private static final int SNAPSHOT_RECORDS = 1 << 20;
+
+    /** Longest time records wait for more records to be forced with them */
+    private static final long COMMIT_NANOS = TimeUnit.MILLISECONDS.toNanos(2);
+
+    /** Bytes of records that are written at once instead of waiting for more */
+    private static final int FLUSH_BYTES = 1 << 20;
+
+    /** Most bytes of records waiting to be written before mutations wait for the disk */
+    private static final int MAX_PENDING_BYTES = 64 << 20;
+
+    /** Size of the buffer segments are replayed through */
+    private static final int READ_BUFFER_BYTES = 1 << 20;
+
+    /** Directory of the segments and snapshots */
+    private final Path directory;
+
+    /** Graph whose mutations are logged */
+    private final Graph<Vertex, Edge<Vertex>> graph;
+
+    /** Fewest records the log holds before a snapshot is taken */
+    private final int snapshotRecords;
+
+    /** Guards the fields shared with the writer thread */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /** Signalled when there is something for the writer thread to do */
+    private final Condition work = lock.newCondition();
+
+    /** Signalled when records or snapshots become durable, or writing fails */
+    private final Condition synced = lock.newCondition();
+
+    /** Signalled when the writer thread takes the pending batches */
+    private final Condition room = lock.newCondition();
+
+    /** Batches waiting for the writer thread, oldest first */
+    private final Deque<Batch> batches = new ArrayDeque<>();
+
+    /** Number of bytes in batches */
+    private int pendingBytes = 0;
+
+    /** Number of mutations recorded since the directory was created */
+    private long sequence;
+
+    /** Number of mutations known to be on disk */
+    private long durable;
+
+    /** Number of mutations covered by the newest snapshot on disk */
+    private long snapshotted;
+
+    /** Reason the writer thread stopped, or null if it has not failed */
+    private IOException failure = null;
+
+    /** True when a thread waits for the pending batches to be forced */
+    private boolean urgent = false;
+
+    /** True once close() was called */
+    private boolean closing = false;
+
+    /** Number of the first mutation of the current segment, less one */
+    private long segment;
+
+    /** Number of records appended since the last snapshot */
+    private long sinceSnapshot;
+
+    /** Number of vertices and edges in graph */
+    private long elements;
+
+    /** Checksum of the record being appended */
+    private final CRC32 checksum = new CRC32();
+
+    /** Thread that writes and forces the batches */
+    private final Thread writer;
+
+    // Representation Invariant
+    //      snapshotted <= durable <= sequence, and segment <= sequence.
+    //      unless failure is set, the segment files on disk, in order, followed by batches
+    //      hold records snapshotted + 1 to sequence.
+    //      the snapshot file of snapshotted holds the graph after mutation snapshotted,
+    //      and graph is the result of applying the later records to it.
+    //      pendingBytes is the total size of batches.
+    //
+    // Abstraction Function:
+    //      represents the durable history of graph: the snapshot after mutation
+    //      snapshotted followed by the logged mutations up to durable, with those up to
+    //      sequence on their way to disk
+
+    /**
+     * Create a log for a recovered graph and start its writer thread.
+     *
+     * @param directory the directory of the segments and snapshots
+     * @param graph the recovered graph
+     * @param snapshotted the number of mutations covered by the snapshot graph was loaded from
+     * @param sequence the number of mutations recovered
+     * @param snapshotRecords the fewest records the log holds before a snapshot is taken
+     */
+    private GraphLog(Path directory, Graph<Vertex, Edge<Vertex>> graph, long snapshotted, long sequence,
+                     int snapshotRecords) {
+        this.directory = directory;
+        this.graph = graph;
+        this.snapshotRecords = snapshotRecords;
+        this.snapshotted = snapshotted;
+        this.sequence = sequence;
+        durable = sequence;
+        segment = sequence;
+        sinceSnapshot = sequence - snapshotted;
+        elements = graph.allVertices().size() + (long) graph.allEdges().size();
+        writer = new Thread(this::write, "graph-log-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Open the log in a directory, creating the directory if it does not exist, and
+     * recover the graph it holds.
+     *
+     * @param directory the directory of the log
+     * @return a log attached to the recovered graph
+     * @throws IOException if the directory cannot be read or records are missing from it
+     */
+    public static GraphLog open(Path directory) throws IOException {
+        return open(directory, SNAPSHOT_RECORDS);
+    }
+
+    /**
+     * Open the log in a directory, creating the directory if it does not exist, and
+     * recover the graph it holds.
+     *
+     * @param directory the directory of the log
+     * @param snapshotRecords the fewest records the log holds before a snapshot is taken
+     * @return a log attached to the recovered graph
+     * @throws IOException if the directory cannot be read or records are missing from it
+     * @throws IllegalArgumentException if snapshotRecords is not positive
+     */
+    public static GraphLog open(Path directory, int snapshotRecords) throws IOException {
+        if (snapshotRecords <= 0) {
+            throw new IllegalArgumentException("The number of records between snapshots must be positive");
+        }
+        Files.createDirectories(directory);
+
+        //load the newest snapshot that can be read
+        Graph<Vertex, Edge<Vertex>> graph = null;
+        long start = 0;
+        List<Long> snapshots = numbers(directory, "snapshot-", ".graph");
+        for (int i = snapshots.size() - 1; i >= 0 && graph == null; i--) {
+            try (MappedGraph snapshot = GraphFile.open(snapshotFile(directory, snapshots.get(i)))) {
+                graph = snapshot.toGraph();
+                start = snapshots.get(i);
+            } catch (IOException e) {
+                //an unreadable snapshot is skipped; replay finds out if its records are gone
+            }
+        }
+        if (graph == null) {
+            graph = new Graph<>();
+        }
+
+        long sequence = start;
+        for (long first : numbers(directory, "log-", ".wal")) {
+            if (first < start) {
+                continue;
+            }
+            if (first != sequence) {
+                throw new IOException("Records " + (sequence + 1) + " to " + first + " are missing from " + directory);
+            }
+            sequence += replay(logFile(directory, first), graph);
+        }
+        //the segment appended to next may exist and hold only a torn record
+        Files.deleteIfExists(logFile(directory, sequence));
+
+        GraphLog log = new GraphLog(directory, graph, start, sequence, snapshotRecords);
+        graph.addListener(log);
+        return log;
+    }
+
+    /**
+     * Obtain the graph whose mutations are logged
+     *
+     * @return the recovered graph
+     */
+    public Graph<Vertex, Edge<Vertex>> graph() {
+        return graph;
+    }
+
+    /**
+     * Wait until every mutation made so far is on disk.
+     *
+     * @throws IOException if the log could not be written
+     */
+    public void sync() throws IOException {
+        lock.lock();
+        try {
+            long target = sequence;
+            if (durable < target) {
+                urgent = true;
+                work.signal();
+            }
+            while (durable < target && failure == null) {
+                synced.awaitUninterruptibly();
+            }
+            if (durable < target) {
+                throw new IOException("The log could not be written", failure);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Snapshot the graph now and wait until the snapshot is on disk.
+     *
+     * @throws IOException if the log or the snapshot could not be written
+     * @throws IllegalStateException if the log was closed
+     */
+    public void snapshot() throws IOException {
+        lock.lock();
+        try {
+            if (closing) {
+                throw new IllegalStateException("The log is closed");
+            }
+        } finally {
+            lock.unlock();
+        }
+        roll();
+        lock.lock();
+        try {
+            long target = sequence;
+            urgent = true;
+            work.signal();
+            while (snapshotted < target && failure == null) {
+                synced.awaitUninterruptibly();
+            }
+            if (snapshotted < target) {
+                throw new IOException("The snapshot could not be written", failure);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stop logging the graph, after writing and forcing every mutation made so far.
+     *
+     * @throws IOException if the log could not be written
+     */
+    @Override
+    public void close() throws IOException {
+        graph.removeListener(this);
+        lock.lock();
+        try {
+            closing = true;
+            work.signal();
+        } finally {
+            lock.unlock();
+        }
+        boolean interrupted = false;
+        while (writer.isAlive()) {
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        sync();
+    }
+
+
+
+    ////////// methods from GraphListener Interface //////////
+    @Override
+    public void vertexAdded(Vertex v) {
+        append(v.isKeyedById() ? ADD_KEYED_VERTEX : ADD_VERTEX, v.id(), 0, 0, v.name().getBytes(StandardCharsets.UTF_8));
+        elements++;
+    }
+
+    @Override
+    public void vertexRemoved(Vertex v) {
+        append(REMOVE_VERTEX, v.id(), 0, 0, null);
+        elements--;
+    }
+
+    @Override
+    public void vertexRenamed(Vertex v, String old) {
+        append(RENAME_VERTEX, v.id(), 0, 0, v.name().getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public void edgeAdded(Edge<Vertex> e) {
+        append(ADD_EDGE, e.v1().id(), e.v2().id(), e.length(), null);
+        elements++;
+    }
+
+    @Override
+    public void edgeRemoved(Edge<Vertex> e) {
+        append(REMOVE_EDGE, e.v1().id(), e.v2().id(), 0, null);
+        elements--;
+    }
+
+    @Override
+    public void edgeReplaced(Edge<Vertex> old, Edge<Vertex> e) {
+        append(REPLACE_EDGE, e.v1().id(), e.v2().id(), e.length(), null);
+    }
+
+
+
+    ////////// helper methods //////////
+    /**
+     * Append the record of a mutation to the pending batches, and start a new segment
+     * with a snapshot if the log has grown large enough.
+     *
+     * @param type the type of the record
+     * @param a the id of the vertex, or of one end of the edge
+     * @param b the id of the other end of the edge, or 0
+     * @param length the length of the edge, or 0
+     * @param name the name of the added or renamed vertex, or null
+     */
+    private void append(byte type, int a, int b, int length, byte[] name) {
+        lock.lock();
+        try {
+            while (pendingBytes > MAX_PENDING_BYTES && failure == null) {
+                room.awaitUninterruptibly();
+            }
+            if (failure != null) {
+                //the mutation was made in memory but cannot be logged, which sync() reports
+                sequence++;
+                return;
+            }
+            Batch batch = batches.peekLast();
+            if (batch == null || batch.segment != segment) {
+                batch = new Batch(segment, false);
+                batches.add(batch);
+            }
+            int before = batch.size;
+            batch.record(type, a, b, length, name, checksum);
+            int added = batch.size - before;
+            pendingBytes += added;
+            batch.last = ++sequence;
+            //the writer needs waking only to start waiting for more records, or to stop
+            if (pendingBytes == added || pendingBytes >= FLUSH_BYTES) {
+                work.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+        //a snapshot costs about as much as the graph is large, so taking one only after
+        // a multiple of that many records keeps the cost per mutation constant
+        if (++sinceSnapshot >= snapshotRecords && sinceSnapshot > RECORDS_PER_ELEMENT * elements) {
+            roll();
+        }
+    }
+
+    /**
+     * Start a new segment, and ask the writer thread for a snapshot of the graph as
+     * it is at the start of the segment.
+     */
+    private void roll() {
+        lock.lock();
+        try {
+            segment = sequence;
+            Batch batch = new Batch(segment, true);
+            batch.last = sequence;
+            batches.add(batch);
+            work.signal();
+        } finally {
+            lock.unlock();
+        }
+        sinceSnapshot = 0;
+    }
+
+    /**
+     * Write and force the pending batches until the log is closed or writing fails.
+     * Runs on the writer thread.
+     */
+    private void write() {
+        FileChannel channel = null;
+        long open = -1;
+        try {
+            while (true) {
+                List<Batch> taken;
+                lock.lock();
+                try {
+                    long deadline = 0;
+                    boolean waiting = false;
+                    while (batches.isEmpty() || !closing && !urgent && pendingBytes < FLUSH_BYTES) {
+                        if (batches.isEmpty()) {
+                            if (closing) {
+                                return;
+                            }
+                            //whatever a waiting thread wanted forced was forced by the last round
+                            urgent = false;
+                            work.awaitUninterruptibly();
+                            continue;
+                        }
+                        //give later records a moment to join this group
+                        long now = System.nanoTime();
+                        if (!waiting) {
+                            waiting = true;
+                            deadline = now + COMMIT_NANOS;
+                        }
+                        if (now - deadline >= 0) {
+                            break;
+                        }
+                        try {
+                            work.awaitNanos(deadline - now);
+                        } catch (InterruptedException e) {
+                            //the writer thread is never interrupted
+                        }
+                    }
+                    urgent = false;
+                    taken = new ArrayList<>(batches);
+                    batches.clear();
+                    pendingBytes = 0;
+                    room.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+
+                for (Batch batch : taken) {
+                    if (batch.segment != open) {
+                        if (channel != null) {
+                            channel.force(false);
+                            channel.close();
+                        }
+                        channel = FileChannel.open(logFile(directory, batch.segment), StandardOpenOption.CREATE,
+                                StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+                        open = batch.segment;
+                        syncDirectory(directory);
+                    }
+                    ByteBuffer bytes = ByteBuffer.wrap(batch.bytes, 0, batch.size);
+                    while (bytes.hasRemaining()) {
+                        channel.write(bytes);
+                    }
+                }
+                channel.force(false);
+                lock.lock();
+                try {
+                    durable = taken.get(taken.size() - 1).last;
+                    synced.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+
+                //a later snapshot covers everything an earlier one would
+                long covered = -1;
+                for (Batch batch : taken) {
+                    if (batch.snapshot) {
+                        covered = batch.segment;
+                    }
+                }
+                if (covered >= 0) {
+                    lock.lock();
+                    long from;
+                    try {
+                        from = snapshotted;
+                    } finally {
+                        lock.unlock();
+                    }
+                    //the newest snapshot already holds the graph if nothing was recorded since
+                    if (covered > from) {
+                        writeSnapshot(from, covered);
+                    }
+                    lock.lock();
+                    try {
+                        snapshotted = covered;
+                        synced.signalAll();
+                    } finally {
+                        lock.unlock();
+                    }
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            lock.lock();
+            try {
+                failure = e instanceof IOException ? (IOException) e : new IOException(e);
+                synced.signalAll();
+                room.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        } finally {
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    //every record written was forced already
+                }
+            }
+        }
+    }
+
+    /**
+     * Rebuild the graph from the newest snapshot and the segments after it, write it as
+     * a new snapshot, then delete the segments and snapshots it covers.
+     * Runs on the writer thread, once every segment before the new snapshot is forced.
+     *
+     * @param from the number of mutations the newest snapshot covers
+     * @param covered the number of mutations the new snapshot covers, is > from
+     * @throws IOException if the snapshot could not be written, or the records it
+     *              covers could not be read
+     */
+    private void writeSnapshot(long from, long covered) throws IOException {
+        Graph<Vertex, Edge<Vertex>> rebuilt;
+        Path previous = snapshotFile(directory, from);
+        if (Files.exists(previous)) {
+            try (MappedGraph snapshot = GraphFile.open(previous)) {
+                rebuilt = snapshot.toGraph();
+            }
+        } else if (from == 0) {
+            rebuilt = new Graph<>();
+        } else {
+            throw new IOException("Snapshot " + previous + " is missing");
+        }
+        long sequence = from;
+        for (long first : numbers(directory, "log-", ".wal")) {
+            if (first < from || first >= covered) {
+                continue;
+            }
+            if (first != sequence) {
+                throw new IOException("Records " + (sequence + 1) + " to " + first + " are missing from " + directory);
+            }
+            sequence += replay(logFile(directory, first), rebuilt);
+        }
+        if (sequence != covered) {
+            throw new IOException("Records " + (sequence + 1) + " to " + covered + " are missing from " + directory);
+        }
+
+        GraphFile.write(rebuilt, snapshotFile(directory, covered));
+        syncDirectory(directory);
+        for (long first : numbers(directory, "log-", ".wal")) {
+            if (first < covered) {
+                Files.deleteIfExists(logFile(directory, first));
+            }
+        }
+        //a snapshot someone still has open, or that cannot be deleted yet, is retried next time
+        for (long older : numbers(directory, "snapshot-", ".graph")) {
+            Path file = snapshotFile(directory, older);
+            if (older < covered) {
+                try {
+                    MappedFile.deleteIfClosed(file);
+                } catch (IOException e) {
+                    //recovery uses the newest snapshot, so an older one left behind does no harm
+                }
+            }
+        }
+    }
+
+    /**
+     * Apply the records of a segment to a graph, up to the first record that is
+     * incomplete or damaged.
+     *
+     * @param file the segment
+     * @param graph the graph to apply the records to
+     * @return the number of records applied
+     * @throws IOException if the segment cannot be read
+     */
+    private static long replay(Path file, Graph<Vertex, Edge<Vertex>> graph) throws IOException {
+        long count = 0;
+        CRC32 checksum = new CRC32();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long left = channel.size();
+            ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.flip();
+            while (true) {
+                buffer = fill(channel, buffer, RECORD_HEADER_BYTES);
+                if (buffer.remaining() < RECORD_HEADER_BYTES) {
+                    return count;
+                }
+                int length = buffer.getInt(buffer.position());
+                int expected = buffer.getInt(buffer.position() + 4);
+                if (length <= 0 || length > left - RECORD_HEADER_BYTES) {
+                    return count;
+                }
+                buffer = fill(channel, buffer, RECORD_HEADER_BYTES + length);
+                buffer.position(buffer.position() + RECORD_HEADER_BYTES);
+                checksum.reset();
+                checksum.update(buffer.array(), buffer.position(), length);
+                if ((int) checksum.getValue() != expected) {
+                    return count;
+                }
+                int end = buffer.position() + length;
+                apply(buffer, length, graph);
+                buffer.position(end);
+                left -= RECORD_HEADER_BYTES + length;
+                count++;
+            }
+        }
+    }
+
+    /**
+     * Make sure a buffer holds a number of unread bytes, reading more from a file
+     * if it does not.
+     *
+     * @param channel the file to read from
+     * @param buffer the buffer, ready to be read from
+     * @param bytes the number of unread bytes wanted
+     * @return the buffer, or a larger one if bytes do not fit in it, ready to be read from,
+     *              holding at least bytes unread bytes unless the file ended first
+     * @throws IOException if the file cannot be read
+     */
+    private static ByteBuffer fill(FileChannel channel, ByteBuffer buffer, int bytes) throws IOException {
+        if (buffer.remaining() >= bytes) {
+            return buffer;
+        }
+        if (buffer.capacity() < bytes) {
+            ByteBuffer larger = ByteBuffer.allocate(bytes).order(ByteOrder.LITTLE_ENDIAN);
+            larger.put(buffer);
+            buffer = larger;
+        } else {
+            buffer.compact();
+        }
+        while (buffer.position() < bytes && channel.read(buffer) > 0) {
+            //keep reading until enough bytes arrived or the file ended
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Apply the mutation of one record to a graph.
+     *
+     * @param payload the buffer, positioned at the payload of the record
+     * @param length the length of the payload
+     * @param graph the graph to apply the mutation to
+     * @throws IOException if the record is of an unknown type
+     */
+    private static void apply(ByteBuffer payload, int length, Graph<Vertex, Edge<Vertex>> graph) throws IOException {
+        byte type = payload.get();
+        int a = payload.getInt();
+        switch (type) {
+            case ADD_VERTEX:
+                byte[] name = new byte[length - 5];
+                payload.get(name);
+                graph.addVertex(new Vertex(a, new String(name, StandardCharsets.UTF_8)));
+                break;
+            case ADD_KEYED_VERTEX:
+                byte[] keyedName = new byte[length - 5];
+                payload.get(keyedName);
+                graph.addVertex(Vertex.keyedById(a, new String(keyedName, StandardCharsets.UTF_8)));
+                break;
+            case RENAME_VERTEX:
+                byte[] newName = new byte[length - 5];
+                payload.get(newName);
+                graph.rename(graph.vertexWithId(a), new String(newName, StandardCharsets.UTF_8));
+                break;
+            case REMOVE_VERTEX:
+                graph.remove(graph.vertexWithId(a));
+                break;
+            case ADD_EDGE:
+                graph.addEdge(new Edge<>(graph.vertexWithId(a), graph.vertexWithId(payload.getInt()), payload.getInt()));
+                break;
+            case REMOVE_EDGE:
+                graph.remove(graph.getEdge(graph.vertexWithId(a), graph.vertexWithId(payload.getInt())));
+                break;
+            case REPLACE_EDGE:
+                graph.replace(new Edge<>(graph.vertexWithId(a), graph.vertexWithId(payload.getInt()), payload.getInt()));
+                break;
+            default:
+                throw new IOException("Unknown record type " + type);
+        }
+    }
+
+    /**
+     * List the numbers in the names of the files of one kind in a directory
+     *
+     * @param directory the directory
+     * @param prefix the start of the names of files of the kind
+     * @param suffix the end of the names of files of the kind
+     * @return the numbers between prefix and suffix, in increasing order
+     * @throws IOException if the directory cannot be read
+     */
+    private static List<Long> numbers(Path directory, String prefix, String suffix) throws IOException {
+        List<Long> numbers = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, prefix + "*" + suffix)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                try {
+                    numbers.add(Long.parseLong(name.substring(prefix.length(), name.length() - suffix.length())));
+                } catch (NumberFormatException e) {
+                    //not a file of the log
+                }
+            }
+        }
+        Collections.sort(numbers);
+        return numbers;
+    }
+
+    /**
+     * Name the segment whose first mutation follows a given one
+     *
+     * @param directory the directory of the log
+     * @param first the number of mutations before the segment
+     * @return the path of the segment
+     */
+    private static Path logFile(Path directory, long first) {
+        return directory.resolve(String.format("log-%020d.wal", first));
+    }
+
+    /**
+     * Name the snapshot taken after a given mutation
+     *
+     * @param directory the directory of the log
+     * @param covered the number of mutations the snapshot covers
+     * @return the path of the snapshot
+     */
+    private static Path snapshotFile(Path directory, long covered) {
+        return directory.resolve(String.format("snapshot-%020d.graph", covered));
+    }
+
+    /**
+     * Force the entries of a directory to disk, where the platform allows it,
+     * so that files created or renamed in it survive a crash.
+     *
+     * @param directory the directory
+     */
+    private static void syncDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            //some platforms cannot open directories; their file systems order this themselves
+        }
+    }
+
+    /**
+     * Records waiting to be appended to one segment, and possibly a snapshot to write
+     * once they are on disk.
+     */
+    private static final class Batch {
+
+        /** Number of mutations before the segment the records belong to */
+        private final long segment;
+
+        /** True if the graph after mutation segment is to be snapshotted after the records */
+        private final boolean snapshot;
+
+        /** Encoded records, little-endian */
+        private byte[] bytes = new byte[4096];
+
+        /** Number of bytes used */
+        private int size = 0;
+
+        /** Number of the last mutation recorded, or segment if none is */
+        private long last;
+
+        /**
+         * Create an empty batch.
+         *
+         * @param segment the number of mutations before the segment of the records
+         * @param snapshot true if the graph after mutation segment is to be snapshotted
+         */
+        private Batch(long segment, boolean snapshot) {
+            this.segment = segment;
+            this.snapshot = snapshot;
+            last = segment;
+        }
+
+        /**
+         * Append a record: the length of its payload, the checksum of its payload,
+         * and the payload, which is the type followed by the fields of that type.
+         *
+         * @param type the type of the record
+         * @param a the id of the vertex, or of one end of the edge
+         * @param b the id of the other end of the edge
+         * @param length the length of the edge
+         * @param name the name of the added or renamed vertex, or null if the record has no name
+         * @param checksum the checksum to compute the record's checksum with
+         */
+        private void record(byte type, int a, int b, int length, byte[] name, CRC32 checksum) {
+            int payload = 1 + 4 + (name != null ? name.length : type == REMOVE_VERTEX ? 0 : type == REMOVE_EDGE ? 4 : 8);
+            if (size + RECORD_HEADER_BYTES + payload > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(2 * bytes.length, size + RECORD_HEADER_BYTES + payload));
+            }
+            int start = size;
+            putInt(payload);
+            size += 4;
+            bytes[size++] = type;
+            putInt(a);
+            if (name != null) {
+                System.arraycopy(name, 0, bytes, size, name.length);
+                size += name.length;
+            } else if (type != REMOVE_VERTEX) {
+                putInt(b);
+                if (type != REMOVE_EDGE) {
+                    putInt(length);
+                }
+            }
+            checksum.reset();
+            checksum.update(bytes, start + RECORD_HEADER_BYTES, payload);
+            int sum = (int) checksum.getValue();
+            size = start + 4;
+            putInt(sum);
+            size = start + RECORD_HEADER_BYTES + payload;
+        }
+
+        /**
+         * Append an int, little-endian
+         *
+         * @param value the int
+         */
+        private void putInt(int value) {
+            bytes[size] = (byte) value;
+            bytes[size + 1] = (byte) (value >>> 8);
+            bytes[size + 2] = (byte) (value >>> 16);
+            bytes[size + 3] = (byte) (value >>> 24);
+            size += 4;
+        }
+    }
+}
@@ -0,0 +1,344 @@
+package graph;
+
+import java.util.*;
+
+/**
+ * An immutable version of a Graph, as it was at one moment.
+ * The vertices and the edges of each vertex are held in persistent tries, and a Graph
+ * derives its next version from the current one at each mutation by copying only the
+ * few trie nodes the mutation touches. Taking a version therefore costs nothing, and
+ * versions share all unchanged structure with each other. A version that is no longer
+ * referenced is garbage collected, along with whatever structure only it used.
+ * Whole-graph queries run over a compressed sparse row snapshot that the version builds
+ * the first time it is needed, on the thread that asks, without involving the Graph.
+ * A version fixes which vertices and edges the graph had, but holds the same Vertex
+ * objects as the graph: names are not part of a version, and a vertex renamed later
+ * reports its new name in every version that holds it.
+ *
+ * @param <V> represents a vertex type
+ * @param <E> represents an edge type
+ */
+public final class GraphVersion<V extends Vertex, E extends Edge<V>> implements ImGraph<V, E> {
+
+    /** All vertices of the version, keyed by vertex id */
+    private final PersistentIntMap<V> vertices;
+
+    /** Edges incident on each vertex, keyed by vertex id and then by the id of the other end */
+    private final PersistentIntMap<PersistentIntMap<E>> adjacency;
+
+    /** Sum of the lengths of all edges */
+    private final int lengthSum;
+
+    /** Number of edges */
+    private final int edgeCount;
+
+    /** Snapshot for whole-graph queries, or null until one is needed */
+    private volatile CsrGraph<V, E> snapshot = null;
+
+    // Representation Invariant
+    //      vertices.get(i).id() == i for every key i of vertices.
+    //      adjacency has exactly the same keys as vertices, and
+    //      adjacency.get(a).get(b) == adjacency.get(b).get(a) for every stored edge.
+    //      lengthSum is the sum of the lengths and edgeCount the number of the stored edges.
+    //      snapshot is null or has exactly the vertices and edges of the version.
+    //
+    // Abstraction Function:
+    //      represents the simple, undirected graph whose nodes are vertices.values()
+    //      and whose node-to-node connections are the edges stored in adjacency
+
+    /**
+     * Create a version.
+     *
+     * @param vertices the vertices, keyed by id
+     * @param adjacency the edges of each vertex, keyed by the ids of their ends
+     * @param lengthSum the sum of the lengths of the edges
+     * @param edgeCount the number of edges
+     */
+    private GraphVersion(PersistentIntMap<V> vertices, PersistentIntMap<PersistentIntMap<E>> adjacency,
+                         int lengthSum, int edgeCount) {
+        this.vertices = vertices;
+        this.adjacency = adjacency;
+        this.lengthSum = lengthSum;
+        this.edgeCount = edgeCount;
+    }
+
+    /**
+     * Obtain the version of a graph with no vertices
+     *
+     * @param <V> represents a vertex type
+     * @param <E> represents an edge type
+     * @return an empty version
+     */
+    static <V extends Vertex, E extends Edge<V>> GraphVersion<V, E> empty() {
+        return new GraphVersion<>(PersistentIntMap.empty(), PersistentIntMap.empty(), 0, 0);
+    }
+
+    /**
+     * Checks if a vertex is part of the version
+     *
+     * @param v vertex to check
+     * @return true of v is part of the version and false otherwise
+     */
+    public boolean vertex(V v) {
+        if (v == null) {
+            return false;
+        }
+        V stored = vertices.get(v.id());
+        return stored != null && stored.equals(v);
+    }
+
+    /**
+     * Check if v1-v2 or v2-v1 is an edge in the version
+     *
+     * @param v1 the first vertex of the edge
+     * @param v2 the second vertex of the edge
+     * @return true if the v1-v2 or v2-v1 edge is part of the version and false otherwise
+     */
+    public boolean edge(V v1, V v2) {
+        return getEdge(v1, v2) != null;
+    }
+
+    /**
+     * Determine the length on an edge in the version
+     *
+     * @param v1 the first vertex of the edge
+     * @param v2 the second vertex of the edge
+     * @return the length of the v1-v2 or v2-v1 edge, if this edge is part of the version
+     *              and 0 otherwise
+     */
+    public int edgeLength(V v1, V v2) {
+        E e = getEdge(v1, v2);
+        return e == null ? 0 : e.length();
+    }
+
+    /**
+     * Obtain the sum of the lengths of all edges in the version
+     *
+     * @return the sum of the lengths of all edges in the version
+     */
+    public int edgeLengthSum() {
+        return lengthSum;
+    }
+
+    /**
+     * Obtain the number of vertices in the version
+     *
+     * @return the number of vertices in the version
+     */
+    public int vertexCount() {
+        return vertices.size();
+    }
+
+    /**
+     * Obtain the number of edges in the version
+     *
+     * @return the number of edges in the version
+     */
+    public int edgeCount() {
+        return edgeCount;
+    }
+
+    /**
+     * Obtain a set of all vertices in the version
+     *
+     * @return a set of all vertices in the version
+     */
+    public Set<V> allVertices() {
+        return new HashSet<>(vertices.values());
+    }
+
+    /**
+     * Obtain a set of all edges in the version
+     *
+     * @return all edges in the version
+     */
+    public Set<E> allEdges() {
+        Set<E> edges = new HashSet<>();
+        for (V v : vertices.values()) {
+            //each edge is stored under both of its ends, so keep only the copy under the smaller id
+            for (E e : adjacency.get(v.id()).values()) {
+                if (v.id() < e.distinctVertex(v).id()) {
+                    edges.add(e);
+                }
+            }
+        }
+        return edges;
+    }
+
+    /**
+     * Obtain all the neighbours of vertex v
+     *
+     * @param v is the vertex whose neighbourhood we want.
+     * @return a map containing each vertex w that neighbors v and the edge between v and w.
+     */
+    public Map<V, E> getNeighbours(V v) {
+        Map<V, E> neighbourMap = new HashMap<>();
+        if (vertex(v)) {
+            for (E e : adjacency.get(v.id()).values()) {
+                neighbourMap.put(e.distinctVertex(v), e);
+            }
+        }
+        return neighbourMap;
+    }
+
+    /**
+     * Obtain a compressed sparse row snapshot of the version, building it on first use
+     *
+     * @return a snapshot with the vertices and edges of the version
+     */
+    public CsrGraph<V, E> freeze() {
+        CsrGraph<V, E> graph = snapshot;
+        if (graph == null) {
+            //two threads may both build it, and either result will do
+            graph = new CsrGraph<>(vertices.values(), allEdges());
+            snapshot = graph;
+        }
+        return graph;
+    }
+
+
+
+    ////////// methods from ImGraph Interface //////////
+    /**
+     * Compute the shortest path from source to sink over the snapshot of the version
+     *
+     * @param source the start vertex
+     * @param sink   the end vertex
+     * @return the vertices, in order, on the shortest path from source to sink
+     *              (both end points are part of the list) and returns empty list
+     *              if no shortest path exists
+     */
+    public List<V> shortestPath(V source, V sink) {
+        return freeze().shortestPath(source, sink);
+    }
+
+    /**
+     * Compute the shortest paths from source to each of sinks with one search over
+     * the snapshot of the version
+     *
+     * @param source the start vertex
+     * @param sinks  the end vertices
+     * @return the shortest path from source to each sink, in the order of sinks
+     */
+    @Override
+    public List<List<V>> shortestPaths(V source, List<V> sinks) {
+        return freeze().shortestPaths(source, sinks);
+    }
+
+    /**
+     * Compute the minimum spanning tree of the version over its snapshot
+     *
+     * @return a list of edges that forms a minimum spanning tree of each component
+     */
+    public List<E> minimumSpanningTree() {
+        return freeze().minimumSpanningTree();
+    }
+
+    /**
+     * Compute the length of a given path
+     *
+     * @param path is a List of Vertices that indicate the vertices of a given path (order matters)
+     * @return integer that represents the length of path
+     */
+    public int pathLength(List<V> path) {
+        int pathLength = 0;
+        for (int i = 0; i < path.size() - 1; i++) {
+            pathLength += edgeLength(path.get(i), path.get(i + 1));
+        }
+        return pathLength;
+    }
+
+    /**
+     * Compute the diameter of the version over its snapshot
+     *
+     * @return the diameter of the version. (diameter of the largest component
+     *              if it has multiple components)
+     */
+    public int diameter() {
+        return freeze().diameter();
+    }
+
+    /**
+     * Finds the edge that connects two vertices if such an edge exists.
+     *
+     * @param v1 one end of the edge
+     * @param v2 the other end of the edge
+     * @return the edge connecting v1 and v2, and returns null
+     *              if edge does not exist in the version
+     */
+    public E getEdge(V v1, V v2) {
+        if (v1 == null || v2 == null) {
+            return null;
+        }
+        PersistentIntMap<E> incident = adjacency.get(v1.id());
+        E e = incident == null ? null : incident.get(v2.id());
+        if (e != null && e.incident(v1) && e.incident(v2)) {
+            return e;
+        }
+        return null;
+    }
+
+
+
+    ////////// next versions //////////
+    /**
+     * Derive the version with a vertex added.
+     *
+     * @param v a vertex whose id is not in this version
+     * @return the next version
+     */
+    GraphVersion<V, E> withVertex(V v) {
+        return new GraphVersion<>(vertices.put(v.id(), v), adjacency.put(v.id(), PersistentIntMap.empty()),
+                lengthSum, edgeCount);
+    }
+
+    /**
+     * Derive the version with a vertex and its edges removed.
+     *
+     * @param v a vertex of this version
+     * @return the next version
+     */
+    GraphVersion<V, E> withoutVertex(V v) {
+        PersistentIntMap<PersistentIntMap<E>> next = adjacency.remove(v.id());
+        int sum = lengthSum;
+        int count = edgeCount;
+        for (E e : adjacency.get(v.id()).values()) {
+            int w = e.distinctVertex(v).id();
+            next = next.put(w, next.get(w).remove(v.id()));
+            sum -= e.length();
+            count--;
+        }
+        return new GraphVersion<>(vertices.remove(v.id()), next, sum, count);
+    }
+
+    /**
+     * Derive the version with an edge added, or put in place of the edge between its ends.
+     *
+     * @param e an edge between two vertices of this version
+     * @return the next version
+     */
+    GraphVersion<V, E> withEdge(E e) {
+        int a = e.v1().id();
+        int b = e.v2().id();
+        E old = adjacency.get(a).get(b);
+        PersistentIntMap<PersistentIntMap<E>> next = adjacency.put(a, adjacency.get(a).put(b, e));
+        next = next.put(b, next.get(b).put(a, e));
+        return old == null
+                ? new GraphVersion<>(vertices, next, lengthSum + e.length(), edgeCount + 1)
+                : new GraphVersion<>(vertices, next, lengthSum + e.length() - old.length(), edgeCount);
+    }
+
+    /**
+     * Derive the version with an edge removed.
+     *
+     * @param e an edge of this version
+     * @return the next version
+     */
+    GraphVersion<V, E> withoutEdge(E e) {
+        int a = e.v1().id();
+        int b = e.v2().id();
+        PersistentIntMap<PersistentIntMap<E>> next = adjacency.put(a, adjacency.get(a).remove(b));
+        next = next.put(b, next.get(b).remove(a));
+        return new GraphVersion<>(vertices, next, lengthSum - e.length(), edgeCount - 1);
+    }
+}
@@ -0,0 +1,21 @@
+package graph;
+
+/**
+ * Estimates the distance between two vertices for goal-directed shortest path search.
+ * An estimate must never exceed the length of the shortest path between the two
+ * vertices, or the search may return a path that is not the shortest.
+ *
+ * @param <V> represents a vertex type
+ */
+@FunctionalInterface
+public interface Heuristic<V extends Vertex> {
+
+    /**
+     * Estimate the distance from one vertex to another
+     *
+     * @param from the vertex the search has reached
+     * @param to   the vertex the search is looking for
+     * @return a lower bound on the length of the shortest path from from to to, which is >= 0
+     */
+    long estimate(V from, V to);
+}
@@ -1,7 +1,15 @@
 package graph;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 
 public interface ImGraph<V extends Vertex, E extends Edge<V>> {
 
@@ -14,6 +22,77 @@ public interface ImGraph<V extends Vertex, E extends Edge<V>> {
      */
     List<V> shortestPath(V source, V sink);
 
+    /**
+     * Compute the shortest paths from source to each of sinks.
+     * Implementations should share one search from source among all the sinks.
+     *
+     * @param source the start vertex
+     * @param sinks  the end vertices
+     * @return the shortest path from source to each sink, in the order of sinks,
+     *              each as shortestPath(source, sink) would return it
+     */
+    default List<List<V>> shortestPaths(V source, List<V> sinks) {
+        List<List<V>> paths = new ArrayList<>(sinks.size());
+        for (V sink : sinks) {
+            paths.add(shortestPath(source, sink));
+        }
+        return paths;
+    }
+
+    /**
+     * Compute the shortest path between each pair of vertices, on the common pool.
+     *
+     * @param pairs the source and sink of each query
+     * @return the shortest path of each pair, in the order of pairs
+     */
+    default List<List<V>> shortestPaths(Collection<VertexPair<V>> pairs) {
+        return shortestPaths(pairs, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Compute the shortest path between each pair of vertices.
+     * Pairs are grouped by source, so each source is searched from once for all of its
+     * sinks, and the groups run in parallel on executor. The graph must not change
+     * until this method returns.
+     *
+     * @param pairs    the source and sink of each query
+     * @param executor runs the search of each source
+     * @return the shortest path of each pair, in the order of pairs, each as
+     *              shortestPath(pair.source(), pair.sink()) would return it
+     */
+    default List<List<V>> shortestPaths(Collection<VertexPair<V>> pairs, Executor executor) {
+        //positions in pairs of the queries of each source, in order of first appearance
+        Map<V, List<Integer>> groups = new LinkedHashMap<>();
+        int position = 0;
+        for (VertexPair<V> pair : pairs) {
+            groups.computeIfAbsent(pair.source(), s -> new ArrayList<>()).add(position++);
+        }
+        List<V> sinks = new ArrayList<>(position);
+        for (VertexPair<V> pair : pairs) {
+            sinks.add(pair.sink());
+        }
+
+        //each group fills in only its own positions
+        List<List<V>> paths = new ArrayList<>(Collections.nCopies(position, null));
+        CompletableFuture<?>[] searches = new CompletableFuture<?>[groups.size()];
+        int g = 0;
+        for (Map.Entry<V, List<Integer>> group : groups.entrySet()) {
+            searches[g++] = CompletableFuture.runAsync(() -> {
+                List<Integer> positions = group.getValue();
+                List<V> groupSinks = new ArrayList<>(positions.size());
+                for (int i : positions) {
+                    groupSinks.add(sinks.get(i));
+                }
+                List<List<V>> found = shortestPaths(group.getKey(), groupSinks);
+                for (int i = 0; i < positions.size(); i++) {
+                    paths.set(positions.get(i), found.get(i));
+                }
+            }, executor);
+        }
+        CompletableFuture.allOf(searches).join();
+        return paths;
+    }
+
     /**
      * Compute the minimum spanning tree of the graph.
      * See https://en.wikipedia.org/wiki/Minimum_spanning_tree
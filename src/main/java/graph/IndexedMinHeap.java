@@ -0,0 +1,165 @@
+package graph;
+
+import java.util.Arrays;
+
+/**
+ * A binary min-heap of the ints 0 to capacity - 1, each with a long key, that
+ * supports decreasing the key of an item already in the heap.
+ */
+final class IndexedMinHeap {
+
+    /** Items in heap order: heap[0] has the smallest key */
+    private final int[] heap;
+
+    /** Key of each item in the heap */
+    private final long[] keys;
+
+    /** Position of each item in heap, or -1 if the item is not in the heap */
+    private final int[] position;
+
+    /** Number of items in the heap */
+    private int size = 0;
+
+    // Representation Invariant
+    //      0 <= size <= heap.length == keys.length == position.length.
+    //      position[heap[p]] == p for 0 <= p < size, and position[i] == -1 for every other item i.
+    //      keys[heap[(p - 1) / 2]] <= keys[heap[p]] for 0 < p < size.
+    //
+    // Abstraction Function:
+    //      represents the set of pairs {(heap[p], keys[heap[p]]) | 0 <= p < size}
+
+    /**
+     * Create an empty heap for the items 0 to capacity - 1.
+     *
+     * @param capacity the number of distinct items, is >= 0
+     */
+    IndexedMinHeap(int capacity) {
+        heap = new int[capacity];
+        keys = new long[capacity];
+        position = new int[capacity];
+        Arrays.fill(position, -1);
+    }
+
+    /**
+     * Check if the heap has no items
+     *
+     * @return true if the heap is empty and false otherwise
+     */
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Check if an item is in the heap
+     *
+     * @param item the item to check
+     * @return true if item is in the heap and false otherwise
+     */
+    boolean contains(int item) {
+        return position[item] >= 0;
+    }
+
+    /**
+     * Obtain the smallest key in the heap
+     *
+     * @return the key of the item that pollMin() would return, the heap is not empty
+     */
+    long minKey() {
+        return keys[heap[0]];
+    }
+
+    /**
+     * Add item with the given key, or lower its key if it is already in the heap.
+     * The key of an item already in the heap is never raised.
+     *
+     * @param item the item to add
+     * @param key the key of item
+     */
+    void offer(int item, long key) {
+        int p = position[item];
+        if (p < 0) {
+            p = size++;
+            heap[p] = item;
+            position[item] = p;
+        } else if (key >= keys[item]) {
+            return;
+        }
+        keys[item] = key;
+        siftUp(p);
+    }
+
+    /**
+     * Remove the item with the smallest key.
+     *
+     * @return the removed item, the heap is not empty
+     */
+    int pollMin() {
+        int min = heap[0];
+        position[min] = -1;
+        size--;
+        if (size > 0) {
+            heap[0] = heap[size];
+            position[heap[0]] = 0;
+            siftDown(0);
+        }
+        return min;
+    }
+
+    /**
+     * Remove all items from the heap, in time proportional to the number of items.
+     */
+    void clear() {
+        for (int p = 0; p < size; p++) {
+            position[heap[p]] = -1;
+        }
+        size = 0;
+    }
+
+    /**
+     * Move the item at position p up until its parent's key is not larger.
+     *
+     * @param p the position of the item to move
+     */
+    private void siftUp(int p) {
+        int item = heap[p];
+        long key = keys[item];
+        while (p > 0) {
+            int parent = (p - 1) >>> 1;
+            int up = heap[parent];
+            if (keys[up] <= key) {
+                break;
+            }
+            heap[p] = up;
+            position[up] = p;
+            p = parent;
+        }
+        heap[p] = item;
+        position[item] = p;
+    }
+
+    /**
+     * Move the item at position p down until neither child's key is smaller.
+     *
+     * @param p the position of the item to move
+     */
+    private void siftDown(int p) {
+        int item = heap[p];
+        long key = keys[item];
+        int half = size >>> 1;
+        while (p < half) {
+            int child = 2 * p + 1;
+            if (child + 1 < size && keys[heap[child + 1]] < keys[heap[child]]) {
+                child++;
+            }
+            int down = heap[child];
+            if (key <= keys[down]) {
+                break;
+            }
+            heap[p] = down;
+            position[down] = p;
+            p = child;
+        }
+        heap[p] = item;
+        position[item] = p;
+    }
+}
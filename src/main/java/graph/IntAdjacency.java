@@ -0,0 +1,48 @@
+package graph;
+
+/**
+ * Read-only view of an undirected graph whose vertices are numbered densely from 0,
+ * with the arcs leaving each vertex stored in a contiguous range of slots.
+ * Each undirected edge appears as two arcs, one in the range of each end.
+ */
+interface IntAdjacency {
+
+    /**
+     * Obtain the number of vertices
+     *
+     * @return the number of vertices, which are numbered 0 to vertexCount() - 1
+     */
+    int vertexCount();
+
+    /**
+     * Obtain the first arc slot of a vertex
+     *
+     * @param u the index of the vertex
+     * @return the slot of the first arc leaving u
+     */
+    int begin(int u);
+
+    /**
+     * Obtain the end of the arc slots of a vertex
+     *
+     * @param u the index of the vertex
+     * @return one past the slot of the last arc leaving u
+     */
+    int end(int u);
+
+    /**
+     * Obtain the far end of an arc
+     *
+     * @param arc the slot of the arc
+     * @return the index of the vertex the arc leads to
+     */
+    int target(int arc);
+
+    /**
+     * Obtain the length of an arc
+     *
+     * @param arc the slot of the arc
+     * @return the length of the edge behind the arc, which is >= 0
+     */
+    int length(int arc);
+}
@@ -0,0 +1,198 @@
+package graph;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A hash map from primitive int keys to non-null values, using open addressing
+ * with linear probing so that lookups neither box keys nor allocate entries.
+ *
+ * @param <T> represents the value type
+ */
+final class IntMap<T> {
+
+    /** Smallest table length, must be a power of two */
+    private static final int MIN_CAPACITY = 8;
+
+    /** Keys of the occupied slots */
+    private int[] keys;
+
+    /** Values of the occupied slots, null marks an empty slot */
+    private Object[] values;
+
+    /** Number of mappings in the map */
+    private int size = 0;
+
+    // Representation Invariant
+    //      keys.length == values.length, and both are a power of two >= MIN_CAPACITY.
+    //      size < values.length / 2 + 1 and size is the number of non-null values.
+    //      every key sits in the probe run that starts at slot(key) and has no empty slot
+    //      before it, and no key occurs in two occupied slots.
+    //
+    // Abstraction Function:
+    //      represents the map {keys[i] -> values[i] | values[i] != null}
+
+    /**
+     * Create an empty map.
+     */
+    IntMap() {
+        this(0);
+    }
+
+    /**
+     * Create an empty map that can hold expectedSize mappings without resizing.
+     *
+     * @param expectedSize the number of mappings the map is expected to hold, is >= 0
+     */
+    IntMap(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity / 2 < expectedSize) {
+            capacity <<= 1;
+        }
+        keys = new int[capacity];
+        values = new Object[capacity];
+    }
+
+    /**
+     * Obtain the number of mappings in the map
+     *
+     * @return the number of mappings in the map
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Check if the map has a value for key
+     *
+     * @param key the key to look up
+     * @return true if key is mapped to a value and false otherwise
+     */
+    boolean containsKey(int key) {
+        return values[find(key)] != null;
+    }
+
+    /**
+     * Obtain the value mapped to key
+     *
+     * @param key the key to look up
+     * @return the value mapped to key, or null if there is none
+     */
+    @SuppressWarnings("unchecked")
+    T get(int key) {
+        return (T) values[find(key)];
+    }
+
+    /**
+     * Map key to value, replacing any value already mapped to key.
+     *
+     * @param key the key to map
+     * @param value the value to map key to, is not null
+     * @return the value previously mapped to key, or null if there was none
+     */
+    @SuppressWarnings("unchecked")
+    T put(int key, T value) {
+        int slot = find(key);
+        T previous = (T) values[slot];
+        keys[slot] = key;
+        values[slot] = value;
+        if (previous == null && ++size > values.length / 2) {
+            resize(values.length << 1);
+        }
+        return previous;
+    }
+
+    /**
+     * Remove the mapping for key if one exists.
+     *
+     * @param key the key to remove
+     * @return the value that was mapped to key, or null if there was none
+     */
+    @SuppressWarnings("unchecked")
+    T remove(int key) {
+        int slot = find(key);
+        T previous = (T) values[slot];
+        if (previous == null) {
+            return null;
+        }
+        size--;
+
+        //shift later entries of the probe run back so that no run is broken by the hole
+        int mask = values.length - 1;
+        int hole = slot;
+        int next = (hole + 1) & mask;
+        while (values[next] != null) {
+            int home = slot(keys[next]);
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                keys[hole] = keys[next];
+                values[hole] = values[next];
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        values[hole] = null;
+        return previous;
+    }
+
+    /**
+     * Obtain all values in the map.
+     * Access to this list does not permit map mutations.
+     *
+     * @return a list of all values in the map, in no particular order
+     */
+    @SuppressWarnings("unchecked")
+    List<T> values() {
+        List<T> all = new ArrayList<>(size);
+        for (Object value : values) {
+            if (value != null) {
+                all.add((T) value);
+            }
+        }
+        return all;
+    }
+
+    /**
+     * Find the slot holding key, or the empty slot where key would be inserted.
+     *
+     * @param key the key to look up
+     * @return the index of that slot
+     */
+    private int find(int key) {
+        int mask = values.length - 1;
+        int slot = slot(key);
+        while (values[slot] != null && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Compute the first slot probed for key.
+     *
+     * @param key the key to hash
+     * @return the index of the home slot of key
+     */
+    private int slot(int key) {
+        int h = key * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & (values.length - 1);
+    }
+
+    /**
+     * Rehash all mappings into a table of the given length.
+     *
+     * @param capacity the new table length, a power of two
+     */
+    private void resize(int capacity) {
+        int[] oldKeys = keys;
+        Object[] oldValues = values;
+        keys = new int[capacity];
+        values = new Object[capacity];
+        for (int i = 0; i < oldValues.length; i++) {
+            if (oldValues[i] != null) {
+                int slot = find(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+}
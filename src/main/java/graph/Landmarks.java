@@ -0,0 +1,161 @@
+package graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Precomputed distances from a few landmark vertices to every vertex of a CsrGraph,
+ * for goal-directed shortest path search without any geometry (the ALT technique).
+ * By the triangle inequality, |d(L, t) - d(L, v)| never exceeds d(v, t) for any
+ * landmark L, so the largest such difference is an admissible and consistent
+ * estimate of the distance from v to t.
+ * Landmarks are only valid for the graph they were selected on; once the graph changes
+ * their distances may overestimate, so searches on any other snapshot reject them.
+ *
+ * @param <V> represents a vertex type
+ * @param <E> represents an edge type
+ */
+public final class Landmarks<V extends Vertex, E extends Edge<V>> implements Heuristic<V> {
+
+    /** Graph the landmarks were selected on */
+    private final CsrGraph<V, E> graph;
+
+    /** Dense index of each landmark */
+    private final int[] landmarks;
+
+    /** Distance from landmark l to vertex v at l * vertexCount + v, or Dijkstra.UNREACHED */
+    private final long[] distances;
+
+    // Representation Invariant
+    //      landmarks holds dense indices of graph, and
+    //      distances.length == landmarks.length * graph.vertexCount().
+    //      distances[l * n + v] is the exact distance in graph from landmarks[l] to v,
+    //      or Dijkstra.UNREACHED if there is no path.
+    //
+    // Abstraction Function:
+    //      represents the heuristic max over l of |d(l, to) - d(l, from)| on graph
+
+    /**
+     * Create landmarks with the given distances.
+     *
+     * @param graph the graph the landmarks were selected on
+     * @param landmarks the dense index of each landmark
+     * @param distances the distances from each landmark, as described for the field
+     */
+    private Landmarks(CsrGraph<V, E> graph, int[] landmarks, long[] distances) {
+        this.graph = graph;
+        this.landmarks = landmarks;
+        this.distances = distances;
+    }
+
+    /**
+     * Select landmarks on graph and compute the distance from each of them to every vertex.
+     * Landmarks are picked one by one as the vertex furthest from all landmarks picked so
+     * far, which spreads them around the edges of the graph where they bound best.
+     * This costs one single-source shortest path computation per landmark.
+     *
+     * @param graph the graph to select landmarks on
+     * @param count the number of landmarks to select, is >= 1
+     * @param <V> represents a vertex type
+     * @param <E> represents an edge type
+     * @return landmarks for graph, fewer than count if graph has fewer vertices
+     * @throws IllegalArgumentException if count distances per vertex do not fit in an array
+     */
+    public static <V extends Vertex, E extends Edge<V>> Landmarks<V, E> select(CsrGraph<V, E> graph, int count) {
+        int n = graph.vertexCount();
+        count = Math.min(count, n);
+        long size = (long) count * n;
+        if (size > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("too many landmarks for " + n + " vertices: " + count);
+        }
+        int[] landmarks = new int[count];
+        long[] distances = new long[(int) size];
+
+        //closest landmark distance of each vertex; unreachable vertices are furthest of all
+        long[] nearest = new long[n];
+        Arrays.fill(nearest, Dijkstra.UNREACHED);
+
+        Dijkstra engine = new Dijkstra(graph.adjacency());
+        int next = 0;
+        for (int l = 0; l < count; l++) {
+            landmarks[l] = next;
+            engine.run(next);
+            nearest[next] = 0;
+            for (int v = 0; v < n; v++) {
+                long d = engine.distance(v);
+                distances[(int) ((long) l * n + v)] = d;
+                if (d < nearest[v]) {
+                    nearest[v] = d;
+                }
+            }
+            for (int v = 0; v < n; v++) {
+                if (nearest[v] > nearest[next]) {
+                    next = v;
+                }
+            }
+        }
+        return new Landmarks<>(graph, landmarks, distances);
+    }
+
+    /**
+     * Obtain the landmark vertices
+     *
+     * @return the landmarks, in the order they were selected
+     */
+    public List<V> landmarks() {
+        List<V> list = new ArrayList<>(landmarks.length);
+        for (int l : landmarks) {
+            list.add(graph.vertex(l));
+        }
+        return list;
+    }
+
+    /**
+     * Estimate the distance from one vertex to another using the landmark distances
+     *
+     * @param from the vertex the search has reached
+     * @param to   the vertex the search is looking for
+     * @return a lower bound on the length of the shortest path from from to to,
+     *              or 0 if either vertex is not part of the graph
+     */
+    public long estimate(V from, V to) {
+        int u = graph.indexOf(from);
+        int t = graph.indexOf(to);
+        if (u < 0 || t < 0) {
+            return 0;
+        }
+        return bound(u, t);
+    }
+
+    /**
+     * Check if these landmarks were selected on a graph
+     *
+     * @param g the graph to check
+     * @return true if the landmarks were selected on g and false otherwise
+     */
+    boolean selectedOn(CsrGraph<?, ?> g) {
+        return g == graph;
+    }
+
+    /**
+     * Bound the distance between two vertices using the landmark distances
+     *
+     * @param u the dense index of one vertex
+     * @param t the dense index of the other vertex
+     * @return a lower bound on the distance between u and t, which is >= 0
+     */
+    long bound(int u, int t) {
+        long n = graph.vertexCount();
+        long best = 0;
+        for (int l = 0; l < landmarks.length; l++) {
+            long du = distances[(int) (l * n + u)];
+            long dt = distances[(int) (l * n + t)];
+            //a landmark in another component says nothing about u and t
+            if (du != Dijkstra.UNREACHED && dt != Dijkstra.UNREACHED) {
+                best = Math.max(best, Math.abs(dt - du));
+            }
+        }
+        return best;
+    }
+}
@@ -0,0 +1,300 @@
+package graph;
+
+/**
+ * Sleator-Tarjan link-cut trees: a forest of rooted trees supporting link, cut,
+ * connectivity and path-maximum queries in amortized O(log n) time each.
+ * Each tree is split into preferred paths, each held in a splay tree ordered by depth;
+ * every operation first exposes the path from a node to its root with access().
+ * Nodes carry a key, and every node knows the node of largest key in its splay subtree,
+ * so the largest key on a path is read off the root of the splay tree holding it.
+ */
+final class LinkCutForest {
+
+    /**
+     * A node of the forest.
+     *
+     * @param <T> represents the type of item the node stands for
+     */
+    static final class Node<T> {
+
+        /** Item the node stands for */
+        final T item;
+
+        /** Key of the node, compared by pathMax */
+        final long key;
+
+        /** Left child in the splay tree, holding shallower nodes */
+        private Node<T> left;
+
+        /** Right child in the splay tree, holding deeper nodes */
+        private Node<T> right;
+
+        /** Parent in the splay tree, or path parent if this is the root of its splay tree */
+        private Node<T> parent;
+
+        /** True if the children of every node in this splay subtree are to be swapped */
+        private boolean flipped;
+
+        /** Node of largest key in this splay subtree */
+        private Node<T> max = this;
+
+        /**
+         * Create a node in a tree of its own.
+         *
+         * @param item the item the node stands for
+         * @param key the key of the node
+         */
+        Node(T item, long key) {
+            this.item = item;
+            this.key = key;
+        }
+    }
+
+    /**
+     * Not instantiable.
+     */
+    private LinkCutForest() {
+    }
+
+    /**
+     * Check if two nodes are in the same tree
+     *
+     * @param u a node
+     * @param w another node
+     * @param <T> represents the type of item the nodes stand for
+     * @return true if a path joins u and w and false otherwise
+     */
+    static <T> boolean connected(Node<T> u, Node<T> w) {
+        return u == w || root(u) == root(w);
+    }
+
+    /**
+     * Join the trees of two nodes with an edge between them.
+     *
+     * @param u a node
+     * @param w a node in a different tree than u
+     * @param <T> represents the type of item the nodes stand for
+     */
+    static <T> void link(Node<T> u, Node<T> w) {
+        evert(u);
+        u.parent = w;
+    }
+
+    /**
+     * Remove the edge between two nodes.
+     *
+     * @param u a node
+     * @param w a node joined to u by an edge
+     * @param <T> represents the type of item the nodes stand for
+     */
+    static <T> void cut(Node<T> u, Node<T> w) {
+        evert(u);
+        access(w);
+        //w's splay tree is now exactly the path u - w, with u on its left
+        w.left.parent = null;
+        w.left = null;
+        update(w);
+    }
+
+    /**
+     * Find the node of largest key on the path between two nodes.
+     *
+     * @param u a node
+     * @param w a node in the same tree as u
+     * @param <T> represents the type of item the nodes stand for
+     * @return the node of largest key on the path from u to w, both included
+     */
+    static <T> Node<T> pathMax(Node<T> u, Node<T> w) {
+        evert(u);
+        access(w);
+        return w.max;
+    }
+
+    /**
+     * Make u the root of its tree.
+     *
+     * @param u the node to make the root
+     * @param <T> represents the type of item the node stands for
+     */
+    private static <T> void evert(Node<T> u) {
+        access(u);
+        u.flipped = !u.flipped;
+        push(u);
+    }
+
+    /**
+     * Find the root of the tree of u.
+     *
+     * @param u a node
+     * @param <T> represents the type of item the node stands for
+     * @return the root of the tree holding u
+     */
+    private static <T> Node<T> root(Node<T> u) {
+        access(u);
+        Node<T> r = u;
+        push(r);
+        while (r.left != null) {
+            r = r.left;
+            push(r);
+        }
+        splay(r);
+        return r;
+    }
+
+    /**
+     * Make the path from the root to u preferred and splay u to the root of its splay tree,
+     * leaving u without deeper nodes on its path.
+     *
+     * @param u the node to expose
+     * @param <T> represents the type of item the node stands for
+     */
+    private static <T> void access(Node<T> u) {
+        Node<T> last = null;
+        for (Node<T> x = u; x != null; x = x.parent) {
+            splay(x);
+            x.right = last;
+            update(x);
+            last = x;
+        }
+        splay(u);
+    }
+
+    /**
+     * Rotate x to the root of its splay tree.
+     *
+     * @param x the node to splay
+     * @param <T> represents the type of item the node stands for
+     */
+    private static <T> void splay(Node<T> x) {
+        pushFromTop(x);
+        while (!isSplayRoot(x)) {
+            Node<T> p = x.parent;
+            if (!isSplayRoot(p)) {
+                Node<T> g = p.parent;
+                boolean zigZig = (g.left == p) == (p.left == x);
+                rotate(zigZig ? p : x);
+            }
+            rotate(x);
+        }
+    }
+
+    /**
+     * Push pending flips down the splay tree path from the splay root to x.
+     * A node sees its own pending flip and those of all its splay ancestors, so the parity
+     * of the flips from a node up to the root tells how pushing from the top leaves it.
+     * That parity is found in one walk up, and the nodes are then pushed in a second walk
+     * up, without storing the path.
+     *
+     * @param x a node
+     * @param <T> represents the type of item the node stands for
+     */
+    private static <T> void pushFromTop(Node<T> x) {
+        boolean pending = false;
+        for (Node<T> y = x; ; y = y.parent) {
+            pending ^= y.flipped;
+            if (isSplayRoot(y)) {
+                break;
+            }
+        }
+        Node<T> below = null;
+        for (Node<T> y = x; ; y = y.parent) {
+            //pending is now the parity of the flips of y and all its ancestors
+            boolean own = y.flipped;
+            y.flipped = pending;
+            push(y);
+            //the node below was pushed already, so the flip just passed to it is spent
+            if (below != null) {
+                below.flipped = false;
+            }
+            pending ^= own;
+            if (isSplayRoot(y)) {
+                break;
+            }
+            below = y;
+        }
+    }
+
+    /**
+     * Rotate x above its splay parent.
+     *
+     * @param x a node that is not the root of its splay tree
+     * @param <T> represents the type of item the node stands for
+     */
+    private static <T> void rotate(Node<T> x) {
+        Node<T> p = x.parent;
+        Node<T> g = p.parent;
+        if (!isSplayRoot(p)) {
+            if (g.left == p) {
+                g.left = x;
+            } else {
+                g.right = x;
+            }
+        }
+        x.parent = g;
+        if (p.left == x) {
+            p.left = x.right;
+            if (x.right != null) {
+                x.right.parent = p;
+            }
+            x.right = p;
+        } else {
+            p.right = x.left;
+            if (x.left != null) {
+                x.left.parent = p;
+            }
+            x.left = p;
+        }
+        p.parent = x;
+        update(p);
+        update(x);
+    }
+
+    /**
+     * Check if x is the root of its splay tree
+     *
+     * @param x a node
+     * @param <T> represents the type of item the node stands for
+     * @return true if x has no splay parent and false otherwise
+     */
+    private static <T> boolean isSplayRoot(Node<T> x) {
+        return x.parent == null || (x.parent.left != x && x.parent.right != x);
+    }
+
+    /**
+     * Apply a pending flip of x to its children.
+     *
+     * @param x a node
+     * @param <T> represents the type of item the node stands for
+     */
+    private static <T> void push(Node<T> x) {
+        if (x.flipped) {
+            Node<T> t = x.left;
+            x.left = x.right;
+            x.right = t;
+            if (x.left != null) {
+                x.left.flipped = !x.left.flipped;
+            }
+            if (x.right != null) {
+                x.right.flipped = !x.right.flipped;
+            }
+            x.flipped = false;
+        }
+    }
+
+    /**
+     * Recompute the largest key node of the splay subtree of x from its children.
+     *
+     * @param x a node
+     * @param <T> represents the type of item the node stands for
+     */
+    private static <T> void update(Node<T> x) {
+        Node<T> max = x;
+        if (x.left != null && x.left.max.key > max.key) {
+            max = x.left.max;
+        }
+        if (x.right != null && x.right.max.key > max.key) {
+            max = x.right.max;
+        }
+        x.max = max;
+    }
+}
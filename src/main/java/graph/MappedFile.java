@@ -0,0 +1,209 @@
+package graph;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A read-only file mapped into memory, in chunks so that files larger than the
+ * 2GB a single mapping can cover are supported.
+ * Reads use absolute positions only, so any number of threads may read at once.
+ * Ints and longs must sit at positions that are multiples of their size, which keeps
+ * every one of them inside a single chunk.
+ * The file is open from construction until close(), which drops the mappings; reads
+ * after that throw IllegalStateException. Java cannot unmap a buffer other threads may
+ * still read, so the operating system releases the pages once the dropped mappings are
+ * garbage collected. Until close(), the file is counted as in use, and deleteIfClosed
+ * leaves it in place; a file is counted before it is opened, so it cannot be deleted
+ * between being opened and being counted.
+ */
+final class MappedFile implements AutoCloseable {
+
+    /** Number of open MappedFiles of each file, by absolute path, only used while holding its lock */
+    private static final Map<Path, Integer> OPEN = new HashMap<>();
+
+    /** Number of low bits of a position that address a byte within its chunk */
+    private static final int CHUNK_BITS = 30;
+
+    /** Mask of the bits of a position within its chunk */
+    private static final long CHUNK_MASK = (1L << CHUNK_BITS) - 1;
+
+    /** Absolute path of the file */
+    private final Path path;
+
+    /** Mapping of each chunk of the file, all but the last of length 1 << CHUNK_BITS, or null once closed */
+    private final AtomicReference<MappedByteBuffer[]> chunks = new AtomicReference<>();
+
+    /** Length of the file in bytes */
+    private final long size;
+
+    // Representation Invariant
+    //      chunks holds null, or an array whose entry c maps the bytes of the file from c << CHUNK_BITS up to
+    //      the next chunk or the end of the file, in little-endian order.
+    //      OPEN counts this file under path iff chunks does not hold null.
+    //
+    // Abstraction Function:
+    //      represents the sequence of the size bytes of a file, while chunks does not hold null
+
+    /**
+     * Map a whole file.
+     *
+     * @param path the file to map
+     * @throws IOException if the file cannot be opened or mapped
+     */
+    MappedFile(Path path) throws IOException {
+        this.path = path.toAbsolutePath().normalize();
+        synchronized (OPEN) {
+            OPEN.merge(this.path, 1, Integer::sum);
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            //the mappings stay valid after the channel is closed
+            size = channel.size();
+            int count = (int) ((size + CHUNK_MASK) >>> CHUNK_BITS);
+            MappedByteBuffer[] mapped = new MappedByteBuffer[count];
+            for (int c = 0; c < count; c++) {
+                long start = (long) c << CHUNK_BITS;
+                mapped[c] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(CHUNK_MASK + 1, size - start));
+                mapped[c].order(ByteOrder.LITTLE_ENDIAN);
+            }
+            chunks.set(mapped);
+        } catch (IOException | RuntimeException e) {
+            release(this.path);
+            throw e;
+        }
+    }
+
+    /**
+     * Check if a file is mapped by a MappedFile that is not closed
+     *
+     * @param path the file to check
+     * @return true if some MappedFile of path is open and false otherwise
+     */
+    static boolean isOpen(Path path) {
+        synchronized (OPEN) {
+            return OPEN.containsKey(path.toAbsolutePath().normalize());
+        }
+    }
+
+    /**
+     * Delete a file unless a MappedFile of it is open or being opened
+     *
+     * @param path the file to delete
+     * @return true if the file was deleted and false if it is open or does not exist
+     * @throws IOException if the file cannot be deleted
+     */
+    static boolean deleteIfClosed(Path path) throws IOException {
+        synchronized (OPEN) {
+            if (OPEN.containsKey(path.toAbsolutePath().normalize())) {
+                return false;
+            }
+            return Files.deleteIfExists(path);
+        }
+    }
+
+    /**
+     * Drop the mappings of the file. Closing a closed file does nothing, even if
+     * several threads close it at once.
+     * No thread may be reading the file while it is closed.
+     */
+    @Override
+    public void close() {
+        if (chunks.getAndSet(null) != null) {
+            release(path);
+        }
+    }
+
+    /**
+     * Obtain the length of the file
+     *
+     * @return the number of bytes in the file
+     */
+    long size() {
+        return size;
+    }
+
+    /**
+     * Read a byte
+     *
+     * @param position the position of the byte
+     * @return the byte stored at position
+     */
+    byte getByte(long position) {
+        return chunk(position).get((int) (position & CHUNK_MASK));
+    }
+
+    /**
+     * Read an int
+     *
+     * @param position the position of the int, a multiple of 4
+     * @return the int stored at position
+     */
+    int getInt(long position) {
+        return chunk(position).getInt((int) (position & CHUNK_MASK));
+    }
+
+    /**
+     * Read a long
+     *
+     * @param position the position of the long, a multiple of 8
+     * @return the long stored at position
+     */
+    long getLong(long position) {
+        return chunk(position).getLong((int) (position & CHUNK_MASK));
+    }
+
+    /**
+     * Read a run of bytes, which may cross from one chunk to the next
+     *
+     * @param position the position of the first byte
+     * @param length the number of bytes to read
+     * @return a new array holding the bytes
+     */
+    byte[] getBytes(long position, int length) {
+        byte[] bytes = new byte[length];
+        int done = 0;
+        while (done < length) {
+            long at = position + done;
+            MappedByteBuffer chunk = chunk(at);
+            int offset = (int) (at & CHUNK_MASK);
+            int n = Math.min(length - done, chunk.capacity() - offset);
+            //a duplicate has its own position, so other readers are not disturbed
+            chunk.duplicate().position(offset).get(bytes, done, n);
+            done += n;
+        }
+        return bytes;
+    }
+
+    /**
+     * Find the mapping a position lies in.
+     *
+     * @param position a position in the file
+     * @return the mapping of the chunk holding position
+     * @throws IllegalStateException if the file was closed
+     */
+    private MappedByteBuffer chunk(long position) {
+        MappedByteBuffer[] mapped = chunks.get();
+        if (mapped == null) {
+            throw new IllegalStateException("The file is closed");
+        }
+        return mapped[(int) (position >>> CHUNK_BITS)];
+    }
+
+    /**
+     * Stop counting one MappedFile of a file as open.
+     *
+     * @param path the absolute path of the file
+     */
+    private static void release(Path path) {
+        synchronized (OPEN) {
+            OPEN.computeIfPresent(path, (file, count) -> count == 1 ? null : count - 1);
+        }
+    }
+}
@@ -0,0 +1,370 @@
+package graph;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A read-only graph served straight from a mapped graph file, see GraphFile.
+ * Nothing is loaded when the graph is opened: searches read the rows from the mapped
+ * pages, which the operating system pages in on first use and shares between all
+ * processes that map the same file. Vertices and edges are created as queries
+ * return them, so they are equal to, but not the same objects as, those of the
+ * graph that was written.
+ * Any number of threads may query the graph at once.
+ * The graph keeps its file mapped until close(), which must not run while a query
+ * does; queries after close() throw IllegalStateException.
+ */
+public final class MappedGraph implements ImGraph<Vertex, Edge<Vertex>>, AutoCloseable {
+
+    /** The mapped file */
+    private final MappedFile file;
+
+    /** Number of vertices */
+    private final int n;
+
+    /** Number of arcs, twice the number of edges */
+    private final int arcs;
+
+    /** Position of the vertex ids */
+    private final long idsAt;
+
+    /** Position of the row offsets */
+    private final long offsetsAt;
+
+    /** Position of the arc targets */
+    private final long targetsAt;
+
+    /** Position of the arc lengths */
+    private final long lengthsAt;
+
+    /** Position of the name offsets */
+    private final long nameOffsetsAt;
+
+    /** Position of the names */
+    private final long namesAt;
+
+    /** Position of the keys, or -1 if the file is of the first version and has none */
+    private final long keysAt;
+
+    /** View of the rows for the search engines, which queries take from EnginePool */
+    private final IntAdjacency rows = new Rows();
+
+    // Representation Invariant
+    //      file holds a graph file whose header gives n, arcs and the section positions,
+    //      and whose sections lie within the file.
+    //
+    // Abstraction Function:
+    //      represents the graph stored in file
+
+    /**
+     * Read the header of a mapped graph file.
+     *
+     * @param file a mapped graph file of a version GraphFile reads
+     */
+    MappedGraph(MappedFile file) {
+        this.file = file;
+        n = file.getInt(8);
+        arcs = file.getInt(12);
+        idsAt = file.getLong(16);
+        offsetsAt = file.getLong(24);
+        targetsAt = file.getLong(32);
+        lengthsAt = file.getLong(40);
+        nameOffsetsAt = file.getLong(48);
+        namesAt = file.getLong(56);
+        keysAt = file.getInt(4) > GraphFile.FIRST_VERSION ? file.getLong(64) : -1;
+    }
+
+    /**
+     * Obtain the number of vertices in the graph
+     *
+     * @return the number of vertices in the graph
+     */
+    public int vertexCount() {
+        return n;
+    }
+
+    /**
+     * Obtain the number of edges in the graph
+     *
+     * @return the number of edges in the graph
+     */
+    public int edgeCount() {
+        return arcs / 2;
+    }
+
+    /**
+     * Checks if a vertex is part of the graph
+     *
+     * @param v vertex to check in the graph
+     * @return true of v is part of the graph and false otherwise
+     */
+    public boolean vertex(Vertex v) {
+        return indexOf(v) >= 0;
+    }
+
+    /**
+     * Drop the mapping of the file, after which the file may be deleted.
+     * Closing a closed graph does nothing.
+     */
+    @Override
+    public void close() {
+        file.close();
+    }
+
+
+
+    ////////// methods from ImGraph Interface //////////
+    /**
+     * Compute the shortest path from source to sink, using Dijkstra's algorithm
+     * over the mapped rows
+     *
+     * @param source the start vertex
+     * @param sink   the end vertex
+     * @return the vertices, in order, on the shortest path from source to sink
+     *              (both end points are part of the list) and returns empty list
+     *              if no shortest path exists
+     */
+    public List<Vertex> shortestPath(Vertex source, Vertex sink) {
+        if (source != null && source.equals(sink)) {
+            List<Vertex> path = new ArrayList<>();
+            path.add(sink);
+            return path;
+        }
+        int s = indexOf(source);
+        int t = indexOf(sink);
+        if (s < 0 || t < 0) {
+            return new ArrayList<>();
+        }
+        Dijkstra engine = EnginePool.DIJKSTRA.acquire(rows);
+        try {
+            engine.runTo(s, t);
+            List<Vertex> path = new ArrayList<>();
+            for (int i : engine.path(t)) {
+                path.add(vertex(i));
+            }
+            return path;
+        } finally {
+            EnginePool.DIJKSTRA.release(engine);
+        }
+    }
+
+    /**
+     * Compute a minimum spanning forest of the graph over the mapped rows
+     *
+     * @return a list of edges, in order of non-decreasing length, that forms a
+     *              minimum spanning tree of each component of the graph
+     */
+    public List<Edge<Vertex>> minimumSpanningTree() {
+        int[] forest = SpanningForest.minimum(rows);
+        List<Edge<Vertex>> edges = new ArrayList<>(forest.length);
+        for (int arc : forest) {
+            edges.add(edge(SpanningForest.source(rows, arc), arc));
+        }
+        return edges;
+    }
+
+    /**
+     * Compute the length of a given path
+     *
+     * @param path is a List of Vertices that indicate the vertices of a given path (order matters)
+     * @return integer that represents the length of path
+     */
+    public int pathLength(List<Vertex> path) {
+        int pathLength = 0;
+        for (int i = 0; i < path.size() - 1; i++) {
+            int arc = arc(indexOf(path.get(i)), indexOf(path.get(i + 1)));
+            if (arc >= 0) {
+                pathLength += rows.length(arc);
+            }
+        }
+        return pathLength;
+    }
+
+    /**
+     * Compute the diameter of the graph over the mapped rows
+     *
+     * @return the diameter of the graph. (diameter of the largest component
+     *              if graph has multiple components)
+     */
+    public int diameter() {
+        Dijkstra engine = EnginePool.DIJKSTRA.acquire(rows);
+        try {
+            return (int) BoundingDiameter.diameter(rows, engine, 0);
+        } finally {
+            EnginePool.DIJKSTRA.release(engine);
+        }
+    }
+
+    /**
+     * Finds the edge that connects two vertices if such an edge exists.
+     *
+     * @param v1 one end of the edge
+     * @param v2 the other end of the edge
+     * @return a new edge equal to the edge connecting v1 and v2, or null if
+     *              the edge does not exist in the graph
+     */
+    public Edge<Vertex> getEdge(Vertex v1, Vertex v2) {
+        int u = indexOf(v1);
+        int arc = arc(u, indexOf(v2));
+        return arc < 0 ? null : edge(u, arc);
+    }
+
+
+
+    ////////// helper methods //////////
+    /**
+     * Copy the graph into a new mutable graph
+     *
+     * @return a graph with vertices and edges equal to those of this graph
+     */
+    Graph<Vertex, Edge<Vertex>> toGraph() {
+        List<Vertex> vertices = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            vertices.add(vertex(i));
+        }
+        List<Edge<Vertex>> edges = new ArrayList<>(arcs / 2);
+        for (int u = 0; u < n; u++) {
+            //each edge is stored as an arc from both ends, so keep only the arc to the larger index
+            for (int arc = rows.begin(u); arc < rows.end(u); arc++) {
+                int w = rows.target(arc);
+                if (u < w) {
+                    edges.add(new Edge<>(vertices.get(u), vertices.get(w), rows.length(arc)));
+                }
+            }
+        }
+        return Graph.<Vertex, Edge<Vertex>>builder().vertices(vertices).edges(edges).build();
+    }
+
+    /**
+     * Give the end of the data sections, for checking that the file is complete
+     *
+     * @return the position just past the last name
+     */
+    long endOfData() {
+        return namesAt + file.getLong(nameOffsetsAt + 8L * n);
+    }
+
+    /**
+     * Create the vertex at a dense index.
+     *
+     * @param i the dense index, 0 <= i < n
+     * @return a vertex with the id and name stored at index i, keyed by id if it was
+     *              written keyed by id
+     */
+    private Vertex vertex(int i) {
+        int id = file.getInt(idsAt + 4L * i);
+        if (keysAt >= 0 && file.getByte(keysAt + i) != 0) {
+            return Vertex.keyedById(id, name(i));
+        }
+        return new Vertex(id, name(i));
+    }
+
+    /**
+     * Read the name of the vertex at a dense index.
+     *
+     * @param i the dense index, 0 <= i < n
+     * @return the name stored at index i
+     */
+    private String name(int i) {
+        long from = file.getLong(nameOffsetsAt + 8L * i);
+        long to = file.getLong(nameOffsetsAt + 8L * (i + 1));
+        return new String(file.getBytes(namesAt + from, (int) (to - from)), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Create the edge of an arc.
+     *
+     * @param u the dense index of the vertex the arc leaves
+     * @param arc the slot of the arc
+     * @return an edge between the ends of arc with its length
+     */
+    private Edge<Vertex> edge(int u, int arc) {
+        return new Edge<>(vertex(u), vertex(rows.target(arc)), rows.length(arc));
+    }
+
+    /**
+     * Find the dense index of a vertex of the graph.
+     *
+     * @param v the vertex to look up
+     * @return the dense index of v, or -1 if v is not part of the graph
+     */
+    private int indexOf(Vertex v) {
+        if (v == null) {
+            return -1;
+        }
+        int lo = 0;
+        int hi = n - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int id = file.getInt(idsAt + 4L * mid);
+            if (id < v.id()) {
+                lo = mid + 1;
+            } else if (id > v.id()) {
+                hi = mid - 1;
+            } else {
+                return vertex(mid).equals(v) ? mid : -1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Find the arc from u to w.
+     *
+     * @param u the dense index of one vertex, or -1
+     * @param w the dense index of the other vertex, or -1
+     * @return the slot of the arc from u to w, or -1 if there is no such arc
+     */
+    private int arc(int u, int w) {
+        if (u < 0 || w < 0) {
+            return -1;
+        }
+        //targets are sorted within each row
+        int lo = rows.begin(u);
+        int hi = rows.end(u) - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int target = rows.target(mid);
+            if (target < w) {
+                lo = mid + 1;
+            } else if (target > w) {
+                hi = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * The rows of the graph, read from the mapped file.
+     */
+    private final class Rows implements IntAdjacency {
+
+        @Override
+        public int vertexCount() {
+            return n;
+        }
+
+        @Override
+        public int begin(int u) {
+            return file.getInt(offsetsAt + 4L * u);
+        }
+
+        @Override
+        public int end(int u) {
+            return file.getInt(offsetsAt + 4L * (u + 1));
+        }
+
+        @Override
+        public int target(int arc) {
+            return file.getInt(targetsAt + 4L * arc);
+        }
+
+        @Override
+        public int length(int arc) {
+            return file.getInt(lengthsAt + 4L * arc);
+        }
+    }
+}
@@ -0,0 +1,761 @@
+package graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A mutable graph whose edges are held outside the Java heap, for graphs with more
+ * edges than a heap can comfortably hold.
+ * Every vertex is given a dense index, and the edges of each vertex are kept as a row
+ * of (index of the other end, length) pairs, sorted by index, in an off-heap arena. A
+ * row that fills up moves to a block twice its size, and the block it leaves is reused
+ * by later rows. No Edge object is stored: the edges returned by the methods below are
+ * created as they are returned, so they are equal to, but not the same objects as, the
+ * edges that were added. The heap holds only the vertices and a few arrays with one slot
+ * per vertex, so collection pauses do not grow with the number of edges.
+ * Whole-graph queries run over a compressed sparse row copy of the arena, also off the
+ * heap, which is taken the first time a query needs it after a mutation. That query
+ * therefore pays for copying every arc, so workloads that interleave single mutations
+ * with queries copy the whole arena each time and should batch their mutations.
+ */
+public final class OffHeapGraph implements ImGraph<Vertex, Edge<Vertex>>, IGraph<Vertex, Edge<Vertex>> {
+
+    /** Smallest length of the id table, must be a power of two */
+    private static final int MIN_TABLE = 8;
+
+    /** Fewest arcs a row is given room for */
+    private static final int MIN_ROW = 4;
+
+    /** Vertex at each dense index, or null if the index is free */
+    private Vertex[] vertices = new Vertex[MIN_TABLE];
+
+    /** Open addressing table of dense index + 1 by vertex id, 0 marks an empty slot */
+    private int[] table = new int[MIN_TABLE];
+
+    /** Number of dense indices ever handed out */
+    private int indices = 0;
+
+    /** Dense indices freed by removed vertices, to be handed out again */
+    private int[] freeIndices = new int[0];
+
+    /** Number of entries of freeIndices in use */
+    private int freeIndexCount = 0;
+
+    /** Number of vertices */
+    private int vertexCount = 0;
+
+    /** Arena slot of the first arc of the row of each dense index */
+    private long[] rowAt = new long[MIN_TABLE];
+
+    /** Number of arcs in the row of each dense index */
+    private int[] rowSize = new int[MIN_TABLE];
+
+    /** Number of arcs the block of the row of each dense index has room for, 0 if it has none */
+    private int[] rowCapacity = new int[MIN_TABLE];
+
+    /** Arc slots: the int at 2 * slot is the index of the far end, the next int the length */
+    private final OffHeapIntArray arena = new OffHeapIntArray();
+
+    /** Number of arena slots ever handed out */
+    private long arenaTop = 0;
+
+    /** Free blocks of the arena by log2 of their size, as stacks of their first slots */
+    private final long[][] freeBlocks = new long[Integer.SIZE][];
+
+    /** Number of entries in use of each stack of freeBlocks */
+    private final int[] freeBlockCount = new int[Integer.SIZE];
+
+    /** Number of arcs, twice the number of edges */
+    private long arcs = 0;
+
+    /** Sum of the lengths of all edges */
+    private int lengthSum = 0;
+
+    /** Compressed sparse row copy of the rows for queries, or null if the graph changed since */
+    private Rows rows = null;
+
+    /** Arcs of every query copy, overwritten by the next one so that off-heap space is reused */
+    private final OffHeapIntArray rowData = new OffHeapIntArray();
+
+    /** Search engine over the latest rows, or null before the first query */
+    private Dijkstra engine = null;
+
+    // Representation Invariant
+    //      vertices[i] is non-null for exactly the indices 0 <= i < indices that are not in
+    //      freeIndices[0 .. freeIndexCount), and vertexCount is the number of them.
+    //      table holds i + 1 for exactly those i, each in the probe run starting at the
+    //      home slot of vertices[i].id(), and is at most half full.
+    //      the row of each such i holds rowSize[i] <= rowCapacity[i] arcs sorted by target,
+    //      in the block of rowCapacity[i] slots at rowAt[i], where rowCapacity[i] is 0 or a
+    //      power of two. the row of i holds an arc to j of length l iff the row of j holds
+    //      an arc to i of length l. the blocks of the rows and freeBlocks do not overlap.
+    //      arcs is the total number of arcs and lengthSum the sum of the lengths of the
+    //      arcs from i to j with i < j.
+    //      rows is null or a copy of the rows, whose arcs are in rowData.
+    //
+    // Abstraction Function:
+    //      represents the simple, undirected graph whose nodes are the non-null entries of
+    //      vertices and which has an edge of length l between vertices[i] and vertices[j]
+    //      for every arc from i to j of length l in the row of i
+
+
+
+    ////////// methods from IGraph Interface //////////
+    /**
+     * Add a vertex to the graph and check if added successfully.
+     *
+     * @param v the vertex to add
+     * @return true if v was added successfully and false otherwise
+     */
+    public boolean addVertex(Vertex v) {
+        if (v == null || lookup(v.id()) >= 0) {
+            return false;
+        }
+        int i;
+        if (freeIndexCount > 0) {
+            i = freeIndices[--freeIndexCount];
+        } else {
+            if (indices == vertices.length) {
+                int grown = 2 * vertices.length;
+                vertices = Arrays.copyOf(vertices, grown);
+                rowAt = Arrays.copyOf(rowAt, grown);
+                rowSize = Arrays.copyOf(rowSize, grown);
+                rowCapacity = Arrays.copyOf(rowCapacity, grown);
+            }
+            i = indices++;
+        }
+        vertices[i] = v;
+        rowSize[i] = 0;
+        rowCapacity[i] = 0;
+        if (++vertexCount > table.length / 2) {
+            rehash(2 * table.length);
+        } else {
+            insertIndex(i);
+        }
+        changed();
+        return true;
+    }
+
+    /**
+     * Checks if a vertex is part of the graph
+     *
+     * @param v vertex to check in the graph
+     * @return true of v is part of the graph and false otherwise
+     */
+    public boolean vertex(Vertex v) {
+        return indexOf(v) >= 0;
+    }
+
+    /**
+     * Add an edge of the graph and check if added successfully.
+     *
+     * @param e the edge to add to the graph
+     * @return true if the edge was successfully added and false otherwise
+     */
+    public boolean addEdge(Edge<Vertex> e) {
+        if (e == null) {
+            return false;
+        }
+        int u = indexOf(e.v1());
+        int w = indexOf(e.v2());
+        if (u < 0 || w < 0) {
+            return false;
+        }
+        int at = find(u, w);
+        if (at >= 0) {
+            return false;
+        }
+        insert(u, -at - 1, w, e.length());
+        insert(w, -find(w, u) - 1, u, e.length());
+        arcs += 2;
+        lengthSum += e.length();
+        changed();
+        return true;
+    }
+
+    /**
+     * Check if an edge is part of the graph
+     *
+     * @param e the edge to check in the graph
+     * @return true if e is an edge in the graph and false otherwise
+     */
+    public boolean edge(Edge<Vertex> e) {
+        return e != null && edge(e.v1(), e.v2());
+    }
+
+    /**
+     * Check if v1-v2 or v2-v1 is an edge in the graph
+     *
+     * @param v1 the first vertex of the edge
+     * @param v2 the second vertex of the edge
+     * @return true if the v1-v2 or v2-v1 edge is part of the graph and false otherwise
+     */
+    public boolean edge(Vertex v1, Vertex v2) {
+        int u = indexOf(v1);
+        int w = indexOf(v2);
+        return u >= 0 && w >= 0 && find(u, w) >= 0;
+    }
+
+    /**
+     * Determine the length on an edge in the graph
+     *
+     * @param v1 the first vertex of the edge
+     * @param v2 the second vertex of the edge
+     * @return the length of the v1-v2 or v2-v1 edge, if this edge is part of the graph
+     *              and 0 otherwise
+     */
+    public int edgeLength(Vertex v1, Vertex v2) {
+        int u = indexOf(v1);
+        int w = indexOf(v2);
+        int at = u < 0 || w < 0 ? -1 : find(u, w);
+        return at < 0 ? 0 : lengthAt(u, at);
+    }
+
+    /**
+     * Obtain the sum of the lengths of all edges in the graph
+     *
+     * @return the sum of the lengths of all edges in the graph
+     */
+    public int edgeLengthSum() {
+        return lengthSum;
+    }
+
+    /**
+     * Remove an edge from the graph and check if removed successfully.
+     *
+     * @param e the edge to remove
+     * @return true if e was successfully removed and false otherwise
+     */
+    public boolean remove(Edge<Vertex> e) {
+        if (e == null) {
+            return false;
+        }
+        int u = indexOf(e.v1());
+        int w = indexOf(e.v2());
+        int at = u < 0 || w < 0 ? -1 : find(u, w);
+        if (at < 0) {
+            return false;
+        }
+        lengthSum -= lengthAt(u, at);
+        delete(u, at);
+        delete(w, find(w, u));
+        arcs -= 2;
+        changed();
+        return true;
+    }
+
+    /**
+     * Remove a vertex from the graph and check if removed successfully.
+     * Also remove all edges associated with that vertex if removed successfully.
+     *
+     * @param v the vertex to remove
+     * @return true if v was successfully removed and false otherwise
+     */
+    public boolean remove(Vertex v) {
+        int u = indexOf(v);
+        if (u < 0) {
+            return false;
+        }
+        //detach every incident edge from the other end before dropping u's row
+        for (int k = 0; k < rowSize[u]; k++) {
+            int w = targetAt(u, k);
+            lengthSum -= lengthAt(u, k);
+            delete(w, find(w, u));
+        }
+        arcs -= 2L * rowSize[u];
+        if (rowCapacity[u] > 0) {
+            release(rowAt[u], rowCapacity[u]);
+        }
+        rowSize[u] = 0;
+        rowCapacity[u] = 0;
+        removeIndex(u);
+        vertices[u] = null;
+        if (freeIndexCount == freeIndices.length) {
+            freeIndices = Arrays.copyOf(freeIndices, Math.max(MIN_TABLE, 2 * freeIndices.length));
+        }
+        freeIndices[freeIndexCount++] = u;
+        vertexCount--;
+        changed();
+        return true;
+    }
+
+    /**
+     * Obtain a set of all vertices in the graph.
+     * Access to this set does not permit graph mutations.
+     *
+     * @return a set of all vertices in the graph
+     */
+    public Set<Vertex> allVertices() {
+        Set<Vertex> all = new HashSet<>();
+        for (int i = 0; i < indices; i++) {
+            if (vertices[i] != null) {
+                all.add(vertices[i]);
+            }
+        }
+        return all;
+    }
+
+    /**
+     * Obtain a set of all edges incident on v.
+     * Access to this set does not permit graph mutations.
+     *
+     * @param v the vertex of interest
+     * @return all edges incident on v
+     */
+    public Set<Edge<Vertex>> allEdges(Vertex v) {
+        Set<Edge<Vertex>> edges = new HashSet<>();
+        int u = indexOf(v);
+        for (int k = 0; u >= 0 && k < rowSize[u]; k++) {
+            edges.add(new Edge<>(vertices[u], vertices[targetAt(u, k)], lengthAt(u, k)));
+        }
+        return edges;
+    }
+
+    /**
+     * Obtain a set of all edges in the graph.
+     * Access to this set does not permit graph mutations.
+     *
+     * @return all edges in the graph
+     */
+    public Set<Edge<Vertex>> allEdges() {
+        Set<Edge<Vertex>> edges = new HashSet<>();
+        for (int u = 0; u < indices; u++) {
+            //each edge is stored under both of its ends, so keep only the arc to the larger index
+            for (int k = 0; k < rowSize[u]; k++) {
+                int w = targetAt(u, k);
+                if (u < w) {
+                    edges.add(new Edge<>(vertices[u], vertices[w], lengthAt(u, k)));
+                }
+            }
+        }
+        return edges;
+    }
+
+    /**
+     * Obtain all the neighbours of vertex v
+     *
+     * @param v is the vertex whose neighbourhood we want.
+     * @return a map containing each vertex w that neighbors v and the edge between v and w.
+     */
+    public Map<Vertex, Edge<Vertex>> getNeighbours(Vertex v) {
+        Map<Vertex, Edge<Vertex>> neighbourMap = new HashMap<>();
+        int u = indexOf(v);
+        for (int k = 0; u >= 0 && k < rowSize[u]; k++) {
+            Vertex w = vertices[targetAt(u, k)];
+            neighbourMap.put(w, new Edge<>(vertices[u], w, lengthAt(u, k)));
+        }
+        return neighbourMap;
+    }
+
+    /**
+     * Obtain the number of vertices in the graph
+     *
+     * @return the number of vertices in the graph
+     */
+    public int vertexCount() {
+        return vertexCount;
+    }
+
+    /**
+     * Obtain the number of edges in the graph
+     *
+     * @return the number of edges in the graph
+     */
+    public long edgeCount() {
+        return arcs / 2;
+    }
+
+
+
+    ////////// methods from ImGraph Interface //////////
+    /**
+     * Compute the shortest path from source to sink, using Dijkstra's algorithm
+     * over the query copy of the rows
+     *
+     * @param source the start vertex
+     * @param sink   the end vertex
+     * @return the vertices, in order, on the shortest path from source to sink
+     *              (both end points are part of the list) and returns empty list
+     *              if no shortest path exists
+     */
+    public List<Vertex> shortestPath(Vertex source, Vertex sink) {
+        if (source != null && source.equals(sink)) {
+            List<Vertex> path = new ArrayList<>();
+            path.add(sink);
+            return path;
+        }
+        int s = indexOf(source);
+        int t = indexOf(sink);
+        if (s < 0 || t < 0) {
+            return new ArrayList<>();
+        }
+        rows();
+        engine.runTo(s, t);
+        List<Vertex> path = new ArrayList<>();
+        for (int i : engine.path(t)) {
+            path.add(vertices[i]);
+        }
+        return path;
+    }
+
+    /**
+     * Compute a minimum spanning forest of the graph over the query copy of the rows
+     *
+     * @return a list of edges, in order of non-decreasing length, that forms a
+     *              minimum spanning tree of each component of the graph
+     */
+    public List<Edge<Vertex>> minimumSpanningTree() {
+        Rows snapshot = rows();
+        int[] forest = SpanningForest.minimum(snapshot);
+        List<Edge<Vertex>> edges = new ArrayList<>(forest.length);
+        for (int arc : forest) {
+            edges.add(new Edge<>(vertices[SpanningForest.source(snapshot, arc)], vertices[snapshot.target(arc)],
+                    snapshot.length(arc)));
+        }
+        return edges;
+    }
+
+    /**
+     * Compute the length of a given path
+     *
+     * @param path is a List of Vertices that indicate the vertices of a given path (order matters)
+     * @return integer that represents the length of path
+     */
+    public int pathLength(List<Vertex> path) {
+        int pathLength = 0;
+        for (int i = 0; i < path.size() - 1; i++) {
+            pathLength += edgeLength(path.get(i), path.get(i + 1));
+        }
+        return pathLength;
+    }
+
+    /**
+     * Compute the diameter of the graph over the query copy of the rows
+     *
+     * @return the diameter of the graph. (diameter of the largest component
+     *              if graph has multiple components)
+     */
+    public int diameter() {
+        Rows snapshot = rows();
+        return (int) BoundingDiameter.diameter(snapshot, engine, 0);
+    }
+
+    /**
+     * Finds the edge that connects two vertices if such an edge exists.
+     *
+     * @param v1 one end of the edge
+     * @param v2 the other end of the edge
+     * @return a new edge equal to the edge connecting v1 and v2, or null if
+     *              the edge does not exist in the graph
+     */
+    public Edge<Vertex> getEdge(Vertex v1, Vertex v2) {
+        int u = indexOf(v1);
+        int w = indexOf(v2);
+        int at = u < 0 || w < 0 ? -1 : find(u, w);
+        return at < 0 ? null : new Edge<>(vertices[u], vertices[w], lengthAt(u, at));
+    }
+
+
+
+    ////////// helper methods //////////
+    /**
+     * Drop the query copy after a mutation.
+     */
+    private void changed() {
+        rows = null;
+    }
+
+    /**
+     * Obtain the query copy of the rows, taking it if the graph changed since the last one
+     *
+     * @return a copy of the rows in compressed sparse row form
+     */
+    private Rows rows() {
+        if (rows == null) {
+            rows = new Rows();
+            //the engine keeps its scratch space across copies, unless the graph shrank well below it
+            if (engine == null) {
+                engine = new Dijkstra(rows);
+            } else {
+                engine.retarget(rows);
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Find the dense index of a vertex of the graph.
+     *
+     * @param v the vertex to look up
+     * @return the dense index of v, or -1 if v is not part of the graph
+     */
+    private int indexOf(Vertex v) {
+        if (v == null) {
+            return -1;
+        }
+        int i = lookup(v.id());
+        return i >= 0 && vertices[i].equals(v) ? i : -1;
+    }
+
+    /**
+     * Find the dense index of the vertex with an id.
+     *
+     * @param id the id to look up
+     * @return the dense index of the vertex with that id, or -1 if there is none
+     */
+    private int lookup(int id) {
+        int mask = table.length - 1;
+        for (int slot = home(id); table[slot] != 0; slot = (slot + 1) & mask) {
+            if (vertices[table[slot] - 1].id() == id) {
+                return table[slot] - 1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Enter a dense index in the id table, which has room for it.
+     *
+     * @param i the dense index of a vertex that is not in the table
+     */
+    private void insertIndex(int i) {
+        int mask = table.length - 1;
+        int slot = home(vertices[i].id());
+        while (table[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        table[slot] = i + 1;
+    }
+
+    /**
+     * Remove a dense index from the id table.
+     *
+     * @param i the dense index of a vertex in the table
+     */
+    private void removeIndex(int i) {
+        int mask = table.length - 1;
+        int hole = home(vertices[i].id());
+        while (table[hole] != i + 1) {
+            hole = (hole + 1) & mask;
+        }
+        //shift later entries of the probe run back so that no run is broken by the hole
+        int next = (hole + 1) & mask;
+        while (table[next] != 0) {
+            int home = home(vertices[table[next] - 1].id());
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                table[hole] = table[next];
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        table[hole] = 0;
+    }
+
+    /**
+     * Rebuild the id table at a new length with every vertex in it.
+     *
+     * @param length the new length, a power of two
+     */
+    private void rehash(int length) {
+        table = new int[length];
+        for (int i = 0; i < indices; i++) {
+            if (vertices[i] != null) {
+                insertIndex(i);
+            }
+        }
+    }
+
+    /**
+     * Compute the first slot of the id table probed for an id.
+     *
+     * @param id the id to hash
+     * @return the index of the home slot of id
+     */
+    private int home(int id) {
+        int h = id * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & (table.length - 1);
+    }
+
+    /**
+     * Obtain the far end of an arc of a row
+     *
+     * @param u the dense index of the row
+     * @param k the position of the arc in the row
+     * @return the dense index of the far end of the arc
+     */
+    private int targetAt(int u, int k) {
+        return arena.get(2 * (rowAt[u] + k));
+    }
+
+    /**
+     * Obtain the length of an arc of a row
+     *
+     * @param u the dense index of the row
+     * @param k the position of the arc in the row
+     * @return the length of the arc
+     */
+    private int lengthAt(int u, int k) {
+        return arena.get(2 * (rowAt[u] + k) + 1);
+    }
+
+    /**
+     * Find the arc to a vertex in a row.
+     *
+     * @param u the dense index of the row
+     * @param w the dense index of the far end
+     * @return the position of the arc to w in the row of u if there is one, otherwise
+     *              -(p + 1) where p is the position an arc to w would be inserted at
+     */
+    private int find(int u, int w) {
+        int lo = 0;
+        int hi = rowSize[u] - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int target = targetAt(u, mid);
+            if (target < w) {
+                lo = mid + 1;
+            } else if (target > w) {
+                hi = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(lo + 1);
+    }
+
+    /**
+     * Insert an arc into a row, moving the row to a larger block if it is full.
+     *
+     * @param u the dense index of the row
+     * @param k the position to insert at, keeping the row sorted
+     * @param w the dense index of the far end
+     * @param length the length of the arc
+     */
+    private void insert(int u, int k, int w, int length) {
+        int size = rowSize[u];
+        if (size == rowCapacity[u]) {
+            int capacity = Math.max(MIN_ROW, 2 * size);
+            long at = allocate(capacity);
+            arena.move(2 * rowAt[u], 2 * at, 2L * size);
+            if (rowCapacity[u] > 0) {
+                release(rowAt[u], rowCapacity[u]);
+            }
+            rowAt[u] = at;
+            rowCapacity[u] = capacity;
+        }
+        long slot = 2 * (rowAt[u] + k);
+        arena.move(slot, slot + 2, 2L * (size - k));
+        arena.set(slot, w);
+        arena.set(slot + 1, length);
+        rowSize[u] = size + 1;
+    }
+
+    /**
+     * Delete an arc from a row.
+     *
+     * @param u the dense index of the row
+     * @param k the position of the arc in the row
+     */
+    private void delete(int u, int k) {
+        long slot = 2 * (rowAt[u] + k);
+        arena.move(slot + 2, slot, 2L * (rowSize[u] - k - 1));
+        rowSize[u]--;
+    }
+
+    /**
+     * Obtain a block of arena slots, reusing a free block of the same size if there is one.
+     *
+     * @param capacity the number of slots, a power of two
+     * @return the first slot of the block
+     */
+    private long allocate(int capacity) {
+        int size = Integer.numberOfTrailingZeros(capacity);
+        if (freeBlockCount[size] > 0) {
+            return freeBlocks[size][--freeBlockCount[size]];
+        }
+        long at = arenaTop;
+        arenaTop += capacity;
+        arena.ensureCapacity(2 * arenaTop);
+        return at;
+    }
+
+    /**
+     * Return a block of arena slots for reuse.
+     *
+     * @param at the first slot of the block
+     * @param capacity the number of slots, a power of two
+     */
+    private void release(long at, int capacity) {
+        int size = Integer.numberOfTrailingZeros(capacity);
+        long[] stack = freeBlocks[size];
+        if (stack == null || freeBlockCount[size] == stack.length) {
+            stack = stack == null ? new long[MIN_TABLE] : Arrays.copyOf(stack, 2 * stack.length);
+            freeBlocks[size] = stack;
+        }
+        stack[freeBlockCount[size]++] = at;
+    }
+
+    /**
+     * A compressed sparse row copy of the rows, with the arcs outside the heap.
+     * Dense indices of removed vertices are kept as rows with no arcs.
+     */
+    private final class Rows implements IntAdjacency {
+
+        /** First arc of each row, followed by the number of arcs */
+        private final int[] offsets;
+
+        /** Target of each arc at twice its slot, and its length just after */
+        private final OffHeapIntArray data = rowData;
+
+        /**
+         * Copy the rows of the graph into rowData, growing it if the graph has more arcs than
+         * any earlier copy. The previous copy is no longer valid afterwards.
+         *
+         * @throws IllegalStateException if the graph has more arcs than an int can count
+         */
+        private Rows() {
+            if (arcs > Integer.MAX_VALUE) {
+                throw new IllegalStateException("Queries cannot run on more than " + Integer.MAX_VALUE + " arcs");
+            }
+            offsets = new int[indices + 1];
+            data.ensureCapacity(2 * arcs);
+            long slot = 0;
+            for (int u = 0; u < indices; u++) {
+                offsets[u] = (int) (slot / 2);
+                OffHeapIntArray.copy(arena, 2 * rowAt[u], data, slot, 2L * rowSize[u]);
+                slot += 2L * rowSize[u];
+            }
+            offsets[indices] = (int) (slot / 2);
+        }
+
+        @Override
+        public int vertexCount() {
+            return offsets.length - 1;
+        }
+
+        @Override
+        public int begin(int u) {
+            return offsets[u];
+        }
+
+        @Override
+        public int end(int u) {
+            return offsets[u + 1];
+        }
+
+        @Override
+        public int target(int arc) {
+            return data.get(2L * arc);
+        }
+
+        @Override
+        public int length(int arc) {
+            return data.get(2L * arc + 1);
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package graph;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+
+/**
+ * A growable array of ints held outside the Java heap, in direct buffers.
+ * The garbage collector sees only the few buffer objects, never the ints, so the array
+ * adds nothing to collection pauses however large it grows. The ints are split over
+ * chunks so that the array can hold more than the 2^31 ints a single buffer can, and is
+ * indexed by long. A chunk's memory is returned when the array is garbage collected.
+ * Runs of ints are copied in bulk, one buffer transfer per chunk they span, except
+ * for runs so short that setting up a transfer costs more than copying int by int.
+ */
+final class OffHeapIntArray {
+
+    /** Number of low bits of an index that address an int within its chunk */
+    private static final int CHUNK_BITS = 28;
+
+    /** Number of ints in every chunk but the last */
+    private static final int CHUNK_INTS = 1 << CHUNK_BITS;
+
+    /** Mask of the bits of an index within its chunk */
+    private static final long CHUNK_MASK = CHUNK_INTS - 1;
+
+    /** Fewest ints the last chunk is allocated with */
+    private static final int MIN_INTS = 1 << 12;
+
+    /** Shortest run copied with buffer transfers rather than int by int */
+    private static final int BULK_INTS = 8;
+
+    /** Most ints a run moved onto itself is staged through at a time */
+    private static final int BOUNCE_INTS = 1 << 13;
+
+    /** Ints of each chunk */
+    private IntBuffer[] chunks = new IntBuffer[0];
+
+    /** Number of ints the chunks hold */
+    private long capacity = 0;
+
+    /** Heap space a run moved onto itself is staged through, or null until one is */
+    private int[] bounce = null;
+
+    // Representation Invariant
+    //      every chunk but the last holds CHUNK_INTS ints, and the last holds at most as many.
+    //      capacity is the total number of ints in chunks.
+    //
+    // Abstraction Function:
+    //      represents the sequence of capacity ints held in chunks, in order
+
+    /**
+     * Obtain the number of ints the array can hold
+     *
+     * @return the capacity of the array
+     */
+    long capacity() {
+        return capacity;
+    }
+
+    /**
+     * Read an int
+     *
+     * @param index the index of the int, 0 <= index < capacity()
+     * @return the int at index
+     */
+    int get(long index) {
+        return chunks[(int) (index >>> CHUNK_BITS)].get((int) (index & CHUNK_MASK));
+    }
+
+    /**
+     * Write an int
+     *
+     * @param index the index of the int, 0 <= index < capacity()
+     * @param value the int to store at index
+     */
+    void set(long index, int value) {
+        chunks[(int) (index >>> CHUNK_BITS)].put((int) (index & CHUNK_MASK), value);
+    }
+
+    /**
+     * Grow the array, keeping its contents, so that it holds at least a number of ints.
+     * New ints are 0.
+     *
+     * @param ints the number of ints the array must hold
+     */
+    void ensureCapacity(long ints) {
+        while (capacity < ints) {
+            int last = chunks.length - 1;
+            if (last >= 0 && chunks[last].capacity() < CHUNK_INTS) {
+                //the last chunk is partial, so replace it with one at least twice as large
+                IntBuffer old = chunks[last];
+                long wanted = ints - ((long) last << CHUNK_BITS);
+                IntBuffer grown = allocate((int) Math.min(CHUNK_INTS, Math.max(2L * old.capacity(), wanted)));
+                old.clear();
+                grown.put(old);
+                chunks[last] = grown;
+                capacity += grown.capacity() - old.capacity();
+            } else {
+                IntBuffer[] more = new IntBuffer[chunks.length + 1];
+                System.arraycopy(chunks, 0, more, 0, chunks.length);
+                more[chunks.length] = allocate((int) Math.min(CHUNK_INTS, Math.max(MIN_INTS, ints - capacity)));
+                capacity += more[chunks.length].capacity();
+                chunks = more;
+            }
+        }
+    }
+
+    /**
+     * Copy a run of ints within the array. The source and destination may overlap.
+     *
+     * @param from the index of the first int to copy
+     * @param to the index to copy it to
+     * @param count the number of ints to copy
+     */
+    void move(long from, long to, long count) {
+        if (count < BULK_INTS) {
+            if (to < from) {
+                for (long i = 0; i < count; i++) {
+                    set(to + i, get(from + i));
+                }
+            } else {
+                for (long i = count - 1; i >= 0; i--) {
+                    set(to + i, get(from + i));
+                }
+            }
+        } else if (Math.abs(to - from) >= count) {
+            copy(this, from, this, to, count);
+        } else {
+            //a buffer transfer onto itself is not defined, so stage the run through the heap,
+            // in blocks taken from the end it moves towards so none is overwritten before it is read
+            if (bounce == null) {
+                bounce = new int[BOUNCE_INTS];
+            }
+            for (long done = 0; done < count; ) {
+                int n = (int) Math.min(BOUNCE_INTS, count - done);
+                long offset = to < from ? done : count - done - n;
+                transfer(from + offset, bounce, n, false);
+                transfer(to + offset, bounce, n, true);
+                done += n;
+            }
+        }
+    }
+
+    /**
+     * Copy a run of ints from one array to another, or to a part of the same array
+     * that does not overlap the run.
+     *
+     * @param source the array to copy from
+     * @param from the index of the first int to copy
+     * @param target the array to copy to
+     * @param to the index to copy it to
+     * @param count the number of ints to copy
+     */
+    static void copy(OffHeapIntArray source, long from, OffHeapIntArray target, long to, long count) {
+        if (count < BULK_INTS) {
+            for (long i = 0; i < count; i++) {
+                target.set(to + i, source.get(from + i));
+            }
+            return;
+        }
+        while (count > 0) {
+            IntBuffer in = source.span(from, count);
+            IntBuffer out = target.span(to, in.remaining());
+            int n = out.remaining();
+            in.limit(in.position() + n);
+            out.put(in);
+            from += n;
+            to += n;
+            count -= n;
+        }
+    }
+
+    /**
+     * Copy a run of ints between the array and the heap.
+     *
+     * @param index the index of the first int in the array
+     * @param ints the heap array, whose first n ints are copied
+     * @param n the number of ints to copy
+     * @param store true to copy from ints into the array, false to copy the other way
+     */
+    private void transfer(long index, int[] ints, int n, boolean store) {
+        int done = 0;
+        while (done < n) {
+            IntBuffer span = span(index + done, n - done);
+            int length = span.remaining();
+            if (store) {
+                span.put(ints, done, length);
+            } else {
+                span.get(ints, done, length);
+            }
+            done += length;
+        }
+    }
+
+    /**
+     * View the part of a run of ints that lies in the chunk of its first int.
+     *
+     * @param index the index of the first int of the run
+     * @param count the number of ints in the run, is > 0
+     * @return a view of the chunk positioned at index, holding between 1 and count ints
+     */
+    private IntBuffer span(long index, long count) {
+        IntBuffer chunk = chunks[(int) (index >>> CHUNK_BITS)].duplicate();
+        int offset = (int) (index & CHUNK_MASK);
+        chunk.position(offset);
+        chunk.limit((int) Math.min(chunk.capacity(), offset + count));
+        return chunk;
+    }
+
+    /**
+     * Allocate a zeroed chunk outside the heap.
+     *
+     * @param ints the number of ints in the chunk
+     * @return the chunk
+     */
+    private static IntBuffer allocate(int ints) {
+        return ByteBuffer.allocateDirect(4 * ints).order(ByteOrder.nativeOrder()).asIntBuffer();
+    }
+}
@@ -0,0 +1,99 @@
+package graph;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Splits a range of ints into chunks and processes them in parallel on a ForkJoinPool.
+ */
+final class ParallelRange extends RecursiveAction {
+
+    /**
+     * Work done on one chunk of a range.
+     */
+    @FunctionalInterface
+    interface Body {
+
+        /**
+         * Process the ints from lo to hi - 1.
+         *
+         * @param lo the first int of the chunk
+         * @param hi one past the last int of the chunk
+         */
+        void run(int lo, int hi);
+    }
+
+    /** Version of the serialized form, declared since RecursiveAction is Serializable */
+    private static final long serialVersionUID = 1L;
+
+    /** Work to do on each chunk */
+    private final Body body;
+
+    /** First int of the range */
+    private final int lo;
+
+    /** One past the last int of the range */
+    private final int hi;
+
+    /** Largest chunk processed without splitting further */
+    private final int grain;
+
+    /**
+     * Create a task that processes a range.
+     *
+     * @param body the work to do on each chunk
+     * @param lo the first int of the range
+     * @param hi one past the last int of the range
+     * @param grain the largest chunk processed without splitting, is >= 1
+     */
+    private ParallelRange(Body body, int lo, int hi, int grain) {
+        this.body = body;
+        this.lo = lo;
+        this.hi = hi;
+        this.grain = grain;
+    }
+
+    /**
+     * Process the ints from lo to hi - 1 in parallel chunks, returning once all are done.
+     * The chunks are sized so that each worker of pool gets several of them.
+     *
+     * @param pool the pool to run the chunks on
+     * @param lo the first int of the range
+     * @param hi one past the last int of the range
+     * @param body the work to do on each chunk
+     */
+    static void forEach(ForkJoinPool pool, int lo, int hi, Body body) {
+        forEach(pool, lo, hi, Math.max(1024, (hi - lo) / (8 * pool.getParallelism())), body);
+    }
+
+    /**
+     * Process the ints from lo to hi - 1 in parallel chunks of at most grain ints,
+     * returning once all are done.
+     *
+     * @param pool the pool to run the chunks on
+     * @param lo the first int of the range
+     * @param hi one past the last int of the range
+     * @param grain the largest chunk processed without splitting, is >= 1
+     * @param body the work to do on each chunk
+     */
+    static void forEach(ForkJoinPool pool, int lo, int hi, int grain, Body body) {
+        if (hi <= lo) {
+            return;
+        }
+        if (hi - lo <= grain) {
+            body.run(lo, hi);
+            return;
+        }
+        pool.invoke(new ParallelRange(body, lo, hi, grain));
+    }
+
+    @Override
+    protected void compute() {
+        if (hi - lo <= grain) {
+            body.run(lo, hi);
+            return;
+        }
+        int mid = (lo + hi) >>> 1;
+        invokeAll(new ParallelRange(body, lo, mid, grain), new ParallelRange(body, mid, hi, grain));
+    }
+}
@@ -0,0 +1,291 @@
+package graph;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An immutable map from primitive int keys to non-null values, held in a 32-way trie
+ * on the bits of the key (a hash array mapped trie without the hash).
+ * Adding or removing a mapping copies only the at most seven trie nodes on the path
+ * to the key and shares every other node with the original map, so many versions
+ * of a large map can be kept at little more than the cost of their differences.
+ *
+ * @param <T> represents the value type
+ */
+final class PersistentIntMap<T> {
+
+    /** Number of key bits consumed by each level of the trie */
+    private static final int BITS = 5;
+
+    /** Mask of the key bits of one level */
+    private static final int MASK = (1 << BITS) - 1;
+
+    /** The map with no mappings */
+    private static final PersistentIntMap<?> EMPTY = new PersistentIntMap<>(null, 0);
+
+    /** Root of the trie, or null if the map is empty */
+    private final Node root;
+
+    /** Number of mappings in the map */
+    private final int size;
+
+    // Representation Invariant
+    //      size is the number of leaves in the trie under root.
+    //      every leaf under a node reached by following the slots s0, s1, ... sk has
+    //      a key whose i-th group of BITS bits from the bottom is si.
+    //      every node but the root has at least one slot, and no node but the root
+    //      has a single slot holding a leaf.
+    //
+    // Abstraction Function:
+    //      represents the map {leaf.key -> leaf.value | leaf is a leaf in the trie under root}
+
+    /**
+     * A key and its value.
+     */
+    private static final class Leaf {
+
+        /** Key of the mapping */
+        private final int key;
+
+        /** Value of the mapping */
+        private final Object value;
+
+        /**
+         * Create a mapping.
+         *
+         * @param key the key
+         * @param value the value
+         */
+        private Leaf(int key, Object value) {
+            this.key = key;
+            this.value = value;
+        }
+    }
+
+    /**
+     * An inner node of the trie, holding only its occupied slots.
+     */
+    private static final class Node {
+
+        /** Bit s is set if slot s is occupied */
+        private final int bitmap;
+
+        /** Content of the occupied slots in increasing slot order, each a Leaf or a Node */
+        private final Object[] slots;
+
+        /**
+         * Create a node.
+         *
+         * @param bitmap the occupied slots
+         * @param slots the content of the occupied slots
+         */
+        private Node(int bitmap, Object[] slots) {
+            this.bitmap = bitmap;
+            this.slots = slots;
+        }
+
+        /**
+         * Find the position in slots of a slot
+         *
+         * @param bit the bit of the slot
+         * @return the number of occupied slots before it
+         */
+        private int index(int bit) {
+            return Integer.bitCount(bitmap & (bit - 1));
+        }
+    }
+
+    /**
+     * Create a map.
+     *
+     * @param root the root of the trie
+     * @param size the number of mappings in the trie
+     */
+    private PersistentIntMap(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    /**
+     * Obtain the empty map
+     *
+     * @param <T> represents the value type
+     * @return a map with no mappings
+     */
+    @SuppressWarnings("unchecked")
+    static <T> PersistentIntMap<T> empty() {
+        return (PersistentIntMap<T>) EMPTY;
+    }
+
+    /**
+     * Obtain the number of mappings in the map
+     *
+     * @return the number of mappings in the map
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Obtain the value of a key
+     *
+     * @param key the key to look up
+     * @return the value mapped to key, or null if there is none
+     */
+    @SuppressWarnings("unchecked")
+    T get(int key) {
+        Node node = root;
+        for (int shift = 0; node != null; shift += BITS) {
+            int bit = 1 << ((key >>> shift) & MASK);
+            if ((node.bitmap & bit) == 0) {
+                return null;
+            }
+            Object slot = node.slots[node.index(bit)];
+            if (slot instanceof Leaf) {
+                Leaf leaf = (Leaf) slot;
+                return leaf.key == key ? (T) leaf.value : null;
+            }
+            node = (Node) slot;
+        }
+        return null;
+    }
+
+    /**
+     * Obtain a map with a key mapped to a value and otherwise the same mappings as this map
+     *
+     * @param key the key
+     * @param value the value, not null
+     * @return the new map
+     */
+    PersistentIntMap<T> put(int key, T value) {
+        boolean added = get(key) == null;
+        Leaf leaf = new Leaf(key, value);
+        Node node = root == null ? new Node(0, new Object[0]) : root;
+        return new PersistentIntMap<>(put(node, leaf, 0), added ? size + 1 : size);
+    }
+
+    /**
+     * Obtain a map without a key and otherwise the same mappings as this map
+     *
+     * @param key the key
+     * @return the new map, or this map if key has no value
+     */
+    PersistentIntMap<T> remove(int key) {
+        if (get(key) == null) {
+            return this;
+        }
+        Object slot = remove(root, key, 0);
+        Node node;
+        if (slot == null) {
+            node = null;
+        } else if (slot instanceof Leaf) {
+            node = new Node(1 << (((Leaf) slot).key & MASK), new Object[]{slot});
+        } else {
+            node = (Node) slot;
+        }
+        return new PersistentIntMap<>(node, size - 1);
+    }
+
+    /**
+     * Obtain all values of the map
+     *
+     * @return a list of the values of the map, in no particular order
+     */
+    List<T> values() {
+        List<T> values = new ArrayList<>(size);
+        if (root != null) {
+            collect(root, values);
+        }
+        return values;
+    }
+
+
+
+    ////////// helper methods //////////
+    /**
+     * Copy the path from node to the slot of a leaf, placing the leaf there.
+     *
+     * @param node the node at the current level
+     * @param leaf the mapping to place
+     * @param shift the number of key bits consumed above node
+     * @return the copy of node holding the leaf
+     */
+    private static Node put(Node node, Leaf leaf, int shift) {
+        int bit = 1 << ((leaf.key >>> shift) & MASK);
+        int i = node.index(bit);
+        if ((node.bitmap & bit) == 0) {
+            Object[] slots = new Object[node.slots.length + 1];
+            System.arraycopy(node.slots, 0, slots, 0, i);
+            slots[i] = leaf;
+            System.arraycopy(node.slots, i, slots, i + 1, node.slots.length - i);
+            return new Node(node.bitmap | bit, slots);
+        }
+        Object slot = node.slots[i];
+        Object replacement;
+        if (slot instanceof Node) {
+            replacement = put((Node) slot, leaf, shift + BITS);
+        } else if (((Leaf) slot).key == leaf.key) {
+            replacement = leaf;
+        } else {
+            //two keys share this slot, so push the old one down a level
+            Leaf old = (Leaf) slot;
+            Node below = new Node(1 << ((old.key >>> (shift + BITS)) & MASK), new Object[]{old});
+            replacement = put(below, leaf, shift + BITS);
+        }
+        Object[] slots = node.slots.clone();
+        slots[i] = replacement;
+        return new Node(node.bitmap, slots);
+    }
+
+    /**
+     * Copy the path from node to the slot of a key, removing the key.
+     *
+     * @param node the node at the current level, which holds key below it
+     * @param key the key to remove
+     * @param shift the number of key bits consumed above node
+     * @return the copy of node without the key, a single leaf that is all that is left
+     *              of it, or null if nothing is left of it
+     */
+    private static Object remove(Node node, int key, int shift) {
+        int bit = 1 << ((key >>> shift) & MASK);
+        int i = node.index(bit);
+        Object slot = node.slots[i];
+        Object replacement = slot instanceof Leaf ? null : remove((Node) slot, key, shift + BITS);
+        if (replacement == null) {
+            if (node.slots.length == 1) {
+                return null;
+            }
+            if (node.slots.length == 2 && node.slots[1 - i] instanceof Leaf) {
+                return node.slots[1 - i];
+            }
+            Object[] slots = new Object[node.slots.length - 1];
+            System.arraycopy(node.slots, 0, slots, 0, i);
+            System.arraycopy(node.slots, i + 1, slots, i, slots.length - i);
+            return new Node(node.bitmap & ~bit, slots);
+        }
+        if (replacement instanceof Leaf && node.slots.length == 1) {
+            //the level below shrank to one leaf, which this level need not hold either
+            return replacement;
+        }
+        Object[] slots = node.slots.clone();
+        slots[i] = replacement;
+        return new Node(node.bitmap, slots);
+    }
+
+    /**
+     * Add the values of the leaves under a node to a list.
+     *
+     * @param node a node of the trie
+     * @param values receives the values
+     */
+    @SuppressWarnings("unchecked")
+    private void collect(Node node, List<T> values) {
+        for (Object slot : node.slots) {
+            if (slot instanceof Leaf) {
+                values.add((T) ((Leaf) slot).value);
+            } else {
+                collect((Node) slot, values);
+            }
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package graph;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The shortest paths from one source to every vertex of a CsrGraph, as the distance
+ * and the previous vertex on a shortest path of each vertex.
+ * A tree answers any number of path and distance queries from its source without
+ * searching again.
+ *
+ * @param <V> represents a vertex type
+ * @param <E> represents an edge type
+ */
+public final class ShortestPathTree<V extends Vertex, E extends Edge<V>> {
+
+    /** Graph the tree was computed on */
+    private final CsrGraph<V, E> graph;
+
+    /** Dense index of the source */
+    private final int source;
+
+    /** Distance from the source to each vertex, or Dijkstra.UNREACHED */
+    private final long[] dist;
+
+    /** Previous vertex on a shortest path from the source to each vertex, or -1 */
+    private final int[] prev;
+
+    // Representation Invariant
+    //      dist.length == prev.length == graph.vertexCount() and 0 <= source < dist.length.
+    //      dist[source] == 0 and prev[source] == -1. dist[v] is the length of the shortest path
+    //      from source to v, or Dijkstra.UNREACHED and prev[v] == -1 if there is none.
+    //      otherwise prev[v] is a neighbour of v with dist[v] == dist[prev[v]] + the length of
+    //      the edge between them, and following prev from v reaches source.
+    //
+    // Abstraction Function:
+    //      represents the shortest paths in graph from vertex source to every vertex
+
+    /**
+     * Create a tree from the state of a search engine that has searched the whole graph.
+     *
+     * @param graph the graph that was searched
+     * @param engine the engine after running from the source over graph
+     */
+    ShortestPathTree(CsrGraph<V, E> graph, Dijkstra engine) {
+        int n = graph.vertexCount();
+        this.graph = graph;
+        this.source = engine.source();
+        this.dist = new long[n];
+        this.prev = new int[n];
+        for (int v = 0; v < n; v++) {
+            dist[v] = engine.distance(v);
+            prev[v] = dist[v] == Dijkstra.UNREACHED ? -1 : engine.previous(v);
+        }
+    }
+
+    /**
+     * Obtain the source of the tree
+     *
+     * @return the vertex every path of the tree starts at
+     */
+    public V source() {
+        return graph.vertex(source);
+    }
+
+    /**
+     * Obtain the length of the shortest path from the source to sink
+     *
+     * @param sink the end vertex
+     * @return the length of the shortest path from the source to sink, or -1 if there is
+     *              no path or sink is not part of the graph
+     */
+    public long distance(V sink) {
+        int t = graph.indexOf(sink);
+        if (t < 0 || dist[t] == Dijkstra.UNREACHED) {
+            return -1;
+        }
+        return dist[t];
+    }
+
+    /**
+     * Obtain the shortest path from the source to sink
+     *
+     * @param sink the end vertex
+     * @return the vertices, in order, on the shortest path from the source to sink
+     *              (both end points are part of the list) and returns empty list
+     *              if no shortest path exists
+     */
+    public List<V> pathTo(V sink) {
+        int t = graph.indexOf(sink);
+        List<V> path = new ArrayList<>();
+        if (t < 0 || dist[t] == Dijkstra.UNREACHED) {
+            return path;
+        }
+        for (int v = t; v >= 0; v = prev[v]) {
+            path.add(graph.vertex(v));
+        }
+        //the walk above went from sink back to the source
+        for (int i = 0, j = path.size() - 1; i < j; i++, j--) {
+            path.set(j, path.set(i, path.get(j)));
+        }
+        return path;
+    }
+}
@@ -0,0 +1,100 @@
+package graph;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded cache of shortest path trees keyed by source vertex id, evicting the least
+ * recently used tree once it is full.
+ * All cached trees were computed at the same modification count of the graph. The graph
+ * clears the cache as soon as it changes, so no outdated tree, or the snapshot it refers
+ * to, is kept alive; a cache used at a different count is emptied as well.
+ *
+ * @param <V> represents a vertex type
+ * @param <E> represents an edge type
+ */
+final class ShortestPathTreeCache<V extends Vertex, E extends Edge<V>> {
+
+    /** Most trees the cache holds */
+    private final int capacity;
+
+    /** Cached trees keyed by source vertex id, least recently used first */
+    private final LinkedHashMap<Integer, ShortestPathTree<V, E>> trees;
+
+    /** Modification count of the graph that every tree in trees was computed at */
+    private long version = 0;
+
+    // Representation Invariant
+    //      capacity >= 1 and trees.size() <= capacity.
+    //      trees.get(id).source().id() == id for every key id of trees.
+    //
+    // Abstraction Function:
+    //      represents the trees of each source in trees, all valid only at version
+
+    /**
+     * Create an empty cache.
+     *
+     * @param capacity the most trees the cache may hold, is >= 1
+     */
+    ShortestPathTreeCache(int capacity) {
+        this.capacity = capacity;
+        this.trees = new LinkedHashMap<Integer, ShortestPathTree<V, E>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, ShortestPathTree<V, E>> eldest) {
+                return size() > ShortestPathTreeCache.this.capacity;
+            }
+        };
+    }
+
+    /**
+     * Look up the tree of a source, emptying the cache if the graph changed since its
+     * trees were computed.
+     *
+     * @param sourceId the id of the source vertex
+     * @param version the current modification count of the graph
+     * @return the cached tree of the source at version, or null if there is none
+     */
+    ShortestPathTree<V, E> get(int sourceId, long version) {
+        advance(version);
+        return trees.get(sourceId);
+    }
+
+    /**
+     * Cache the tree of a source, evicting the least recently used tree if the cache is full.
+     *
+     * @param version the modification count of the graph the tree was computed on
+     * @param tree the tree to cache
+     */
+    void put(long version, ShortestPathTree<V, E> tree) {
+        advance(version);
+        trees.put(tree.source().id(), tree);
+    }
+
+    /**
+     * Drop every tree, once the graph they were computed on has changed.
+     */
+    void clear() {
+        trees.clear();
+    }
+
+    /**
+     * Obtain the number of cached trees
+     *
+     * @return the number of trees the cache holds
+     */
+    int size() {
+        return trees.size();
+    }
+
+    /**
+     * Drop every tree if the graph is no longer at the version they were computed at.
+     *
+     * @param version the current modification count of the graph
+     */
+    private void advance(long version) {
+        if (version != this.version) {
+            trees.clear();
+            this.version = version;
+        }
+    }
+}
@@ -0,0 +1,361 @@
+package graph;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.IntPredicate;
+
+/**
+ * Minimum spanning forest algorithms over an IntAdjacency.
+ * Each undirected edge is named by its arc from the end with the smaller index,
+ * and forests are reported as the arcs of their edges in order of non-decreasing
+ * length, with ties in order of arc slot.
+ */
+final class SpanningForest {
+
+    /** Average degree at and above which Prim's algorithm is used instead of Kruskal's */
+    static final int DENSE_DEGREE = 32;
+
+    private SpanningForest() {
+    }
+
+    /**
+     * Compute a minimum spanning forest, using Prim's algorithm on dense graphs and
+     * Kruskal's algorithm on sparse ones.
+     *
+     * @param graph the graph to span
+     * @return the arcs of the forest's edges, in order of length
+     */
+    static int[] minimum(IntAdjacency graph) {
+        int n = graph.vertexCount();
+        long arcs = n == 0 ? 0 : graph.end(n - 1);
+        if (n > 0 && arcs / n >= DENSE_DEGREE) {
+            return prim(graph);
+        }
+        return kruskal(graph);
+    }
+
+    /**
+     * Compute a minimum spanning forest using Kruskal's algorithm with union-find.
+     *
+     * @param graph the graph to span
+     * @return the arcs of the forest's edges, in order of length
+     */
+    static int[] kruskal(IntAdjacency graph) {
+        int n = graph.vertexCount();
+        long[] order = new long[n == 0 ? 0 : graph.end(n - 1) / 2];
+        int count = 0;
+        for (int u = 0; u < n; u++) {
+            for (int arc = graph.begin(u), end = graph.end(u); arc < end; arc++) {
+                if (u < graph.target(arc)) {
+                    order[count++] = key(graph, arc);
+                }
+            }
+        }
+        Arrays.sort(order);
+
+        DisjointSets components = new DisjointSets(n);
+        int[] forest = new int[Math.max(n - 1, 0)];
+        int size = 0;
+        for (long key : order) {
+            int arc = (int) key;
+            if (components.union(source(graph, arc), graph.target(arc))) {
+                forest[size++] = arc;
+                if (size == forest.length) {
+                    break;
+                }
+            }
+        }
+        return Arrays.copyOf(forest, size);
+    }
+
+    /**
+     * Compute a minimum spanning forest using Prim's algorithm with an indexed heap,
+     * growing one tree from each vertex not yet spanned.
+     *
+     * @param graph the graph to span
+     * @return the arcs of the forest's edges, in order of length
+     */
+    static int[] prim(IntAdjacency graph) {
+        int n = graph.vertexCount();
+        boolean[] spanned = new boolean[n];
+        int[] bestArc = new int[n];
+        int[] bestFrom = new int[n];
+        IndexedMinHeap heap = new IndexedMinHeap(n);
+        long[] chosen = new long[Math.max(n - 1, 0)];
+        int size = 0;
+
+        for (int root = 0; root < n; root++) {
+            if (spanned[root]) {
+                continue;
+            }
+            bestArc[root] = -1;
+            heap.offer(root, 0);
+            while (!heap.isEmpty()) {
+                int u = heap.pollMin();
+                spanned[u] = true;
+                if (bestArc[u] >= 0) {
+                    chosen[size++] = key(graph, canonical(graph, bestArc[u], bestFrom[u], u));
+                }
+                for (int arc = graph.begin(u), end = graph.end(u); arc < end; arc++) {
+                    int w = graph.target(arc);
+                    int length = graph.length(arc);
+                    if (!spanned[w] && (!heap.contains(w) || length < graph.length(bestArc[w]))) {
+                        bestArc[w] = arc;
+                        bestFrom[w] = u;
+                        heap.offer(w, length);
+                    }
+                }
+            }
+        }
+
+        Arrays.sort(chosen, 0, size);
+        int[] forest = new int[size];
+        for (int i = 0; i < size; i++) {
+            forest[i] = (int) chosen[i];
+        }
+        return forest;
+    }
+
+    /**
+     * Compute a minimum spanning forest using Boruvka's algorithm in parallel.
+     * Every round, each component picks its lightest outgoing edge in one parallel pass
+     * over the edges, the picked edges merge the components, and edges that no longer
+     * join two components are filtered out in parallel. Each round at least halves the
+     * number of components that still have outgoing edges.
+     * Edges are compared by length and then by arc slot, the same total order Kruskal's
+     * algorithm uses, so both return the same forest.
+     *
+     * @param graph the graph to span
+     * @param pool the pool to run on
+     * @return the arcs of the forest's edges, in order of length
+     */
+    static int[] boruvka(IntAdjacency graph, ForkJoinPool pool) {
+        int n = graph.vertexCount();
+
+        //list each edge once, by its arc from the smaller end, in order of arc slot
+        int[] start = new int[n + 1];
+        ParallelRange.forEach(pool, 0, n, (lo, hi) -> {
+            for (int u = lo; u < hi; u++) {
+                int count = 0;
+                for (int arc = graph.begin(u), end = graph.end(u); arc < end; arc++) {
+                    if (u < graph.target(arc)) {
+                        count++;
+                    }
+                }
+                start[u + 1] = count;
+            }
+        });
+        for (int u = 0; u < n; u++) {
+            start[u + 1] += start[u];
+        }
+        int m = start[n];
+        int[] from = new int[m];
+        int[] to = new int[m];
+        int[] arcOf = new int[m];
+        ParallelRange.forEach(pool, 0, n, (lo, hi) -> {
+            for (int u = lo; u < hi; u++) {
+                int e = start[u];
+                for (int arc = graph.begin(u), end = graph.end(u); arc < end; arc++) {
+                    if (u < graph.target(arc)) {
+                        from[e] = u;
+                        to[e] = graph.target(arc);
+                        arcOf[e] = arc;
+                        e++;
+                    }
+                }
+            }
+        });
+
+        //edges are keyed by length and then index, which orders them as their arc slots do
+        DisjointSets sets = new DisjointSets(n);
+        int[] component = new int[n];
+        AtomicLongArray lightest = new AtomicLongArray(n);
+        ParallelRange.forEach(pool, 0, n, (lo, hi) -> {
+            for (int v = lo; v < hi; v++) {
+                component[v] = v;
+                lightest.set(v, Long.MAX_VALUE);
+            }
+        });
+        int[] roots = new int[n];
+        for (int v = 0; v < n; v++) {
+            roots[v] = v;
+        }
+        int rootCount = n;
+        int[] active = new int[m];
+        for (int e = 0; e < m; e++) {
+            active[e] = e;
+        }
+        int activeCount = m;
+        long[] chosen = new long[Math.max(n - 1, 0)];
+        int size = 0;
+
+        while (activeCount > 0) {
+            int[] edges = active;
+            ParallelRange.forEach(pool, 0, activeCount, (lo, hi) -> {
+                for (int i = lo; i < hi; i++) {
+                    int e = edges[i];
+                    long key = ((long) graph.length(arcOf[e]) << 32) | e;
+                    lower(lightest, component[from[e]], key);
+                    lower(lightest, component[to[e]], key);
+                }
+            });
+
+            //merge along the picked edges; two components may pick the same edge
+            int kept = 0;
+            for (int i = 0; i < rootCount; i++) {
+                int r = roots[i];
+                long key = lightest.get(r);
+                if (key != Long.MAX_VALUE) {
+                    lightest.set(r, Long.MAX_VALUE);
+                    int e = (int) key;
+                    if (sets.union(from[e], to[e])) {
+                        chosen[size++] = key;
+                    }
+                }
+            }
+            for (int i = 0; i < rootCount; i++) {
+                if (sets.root(roots[i]) == roots[i]) {
+                    roots[kept++] = roots[i];
+                }
+            }
+            rootCount = kept;
+            ParallelRange.forEach(pool, 0, n, (lo, hi) -> {
+                for (int v = lo; v < hi; v++) {
+                    component[v] = sets.root(v);
+                }
+            });
+
+            active = filter(pool, edges, activeCount, e -> component[from[e]] != component[to[e]]);
+            activeCount = active.length;
+        }
+
+        Arrays.sort(chosen, 0, size);
+        int[] forest = new int[size];
+        for (int i = 0; i < size; i++) {
+            forest[i] = arcOf[(int) chosen[i]];
+        }
+        return forest;
+    }
+
+    /**
+     * Lower the value at index i to key if key is smaller, atomically.
+     *
+     * @param values the values
+     * @param i the index of the value to lower
+     * @param key the candidate value
+     */
+    private static void lower(AtomicLongArray values, int i, long key) {
+        long current = values.get(i);
+        while (key < current && !values.compareAndSet(i, current, key)) {
+            current = values.get(i);
+        }
+    }
+
+    /**
+     * Keep the ints of a prefix of an array that pass a test, in parallel and in order.
+     *
+     * @param pool the pool to run on
+     * @param values the ints to filter
+     * @param count the length of the prefix of values to filter
+     * @param keep the test
+     * @return the ints of values[0] to values[count - 1] that pass keep, in the same order
+     */
+    private static int[] filter(ForkJoinPool pool, int[] values, int count, IntPredicate keep) {
+        int chunk = Math.max(4096, count / (8 * pool.getParallelism()));
+        int chunks = (count + chunk - 1) / chunk;
+        int[] kept = new int[chunks + 1];
+        ParallelRange.forEach(pool, 0, chunks, 1, (lo, hi) -> {
+            for (int c = lo; c < hi; c++) {
+                int total = 0;
+                for (int i = c * chunk, end = Math.min(count, i + chunk); i < end; i++) {
+                    if (keep.test(values[i])) {
+                        total++;
+                    }
+                }
+                kept[c + 1] = total;
+            }
+        });
+        for (int c = 0; c < chunks; c++) {
+            kept[c + 1] += kept[c];
+        }
+        int[] result = new int[kept[chunks]];
+        ParallelRange.forEach(pool, 0, chunks, 1, (lo, hi) -> {
+            for (int c = lo; c < hi; c++) {
+                int out = kept[c];
+                for (int i = c * chunk, end = Math.min(count, i + chunk); i < end; i++) {
+                    if (keep.test(values[i])) {
+                        result[out++] = values[i];
+                    }
+                }
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Pack the length and slot of an arc into one sort key.
+     *
+     * @param graph the graph holding the arc
+     * @param arc the slot of the arc
+     * @return a key that orders arcs by length and then by slot
+     */
+    private static long key(IntAdjacency graph, int arc) {
+        return ((long) graph.length(arc) << 32) | arc;
+    }
+
+    /**
+     * Name an edge by its arc from the end with the smaller index.
+     *
+     * @param graph the graph holding the arc
+     * @param arc the slot of an arc of the edge
+     * @param from the index of the vertex arc leaves
+     * @param to the index of the vertex arc leads to
+     * @return the slot of the arc of the same edge that leaves the end with the smaller index
+     */
+    private static int canonical(IntAdjacency graph, int arc, int from, int to) {
+        if (from < to) {
+            return arc;
+        }
+        return reverse(graph, to, from);
+    }
+
+    /**
+     * Find the arc from one vertex to another.
+     *
+     * @param graph the graph holding the arc
+     * @param from the index of the vertex the arc leaves
+     * @param to the index of the vertex the arc leads to
+     * @return the slot of the arc
+     */
+    private static int reverse(IntAdjacency graph, int from, int to) {
+        for (int arc = graph.begin(from), end = graph.end(from); arc < end; arc++) {
+            if (graph.target(arc) == to) {
+                return arc;
+            }
+        }
+        throw new IllegalStateException("Arc without a reverse arc");
+    }
+
+    /**
+     * Find the vertex an arc leaves.
+     *
+     * @param graph the graph holding the arc
+     * @param arc the slot of the arc
+     * @return the index of the vertex whose row holds arc
+     */
+    static int source(IntAdjacency graph, int arc) {
+        int lo = 0;
+        int hi = graph.vertexCount() - 1;
+        //the row holding arc is the last one that begins at or before it
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (graph.begin(mid) <= arc) {
+                lo = mid;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return lo;
+    }
+}
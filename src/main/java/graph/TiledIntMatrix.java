@@ -0,0 +1,160 @@
+package graph;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+/**
+ * A square matrix of ints stored as TILE x TILE tiles, each tile contiguous, so that
+ * blocked algorithms touch one small run of memory per tile.
+ * Each row of tiles is one int[] on the heap, or one direct buffer outside the heap
+ * for matrices too large for the heap, so no single array or buffer grows with the
+ * square of the matrix size.
+ */
+final class TiledIntMatrix {
+
+    /** Number of rows and columns in a tile */
+    static final int TILE = 64;
+
+    /** Number of ints in a tile */
+    static final int TILE_AREA = TILE * TILE;
+
+    /** Number of tiles along each side */
+    private final int tiles;
+
+    /** Each row of tiles on the heap, or null if the matrix is stored off the heap */
+    private final int[][] heapRows;
+
+    /** Each row of tiles off the heap, or null if the matrix is stored on the heap */
+    private final IntBuffer[] directRows;
+
+    // Representation Invariant
+    //      exactly one of heapRows and directRows is null, and the other has length tiles
+    //      with every element holding tiles * TILE_AREA ints.
+    //
+    // Abstraction Function:
+    //      represents the (tiles * TILE) x (tiles * TILE) matrix whose entry (i, j) is at
+    //      position (j / TILE) * TILE_AREA + (i % TILE) * TILE + j % TILE of row i / TILE
+
+    /**
+     * Create a matrix with every entry set to fill.
+     *
+     * @param size the least number of rows and columns, is >= 0
+     * @param fill the initial value of every entry
+     * @param offHeap true to store the matrix in direct buffers and false to use the heap
+     */
+    TiledIntMatrix(int size, int fill, boolean offHeap) {
+        tiles = (size + TILE - 1) / TILE;
+        int rowLength = tiles * TILE_AREA;
+        if (offHeap) {
+            heapRows = null;
+            directRows = new IntBuffer[tiles];
+            for (int t = 0; t < tiles; t++) {
+                IntBuffer row = ByteBuffer.allocateDirect(rowLength * Integer.BYTES)
+                        .order(ByteOrder.nativeOrder()).asIntBuffer();
+                for (int p = 0; p < rowLength; p++) {
+                    row.put(p, fill);
+                }
+                directRows[t] = row;
+            }
+        } else {
+            directRows = null;
+            heapRows = new int[tiles][rowLength];
+            for (int[] row : heapRows) {
+                Arrays.fill(row, fill);
+            }
+        }
+    }
+
+    /**
+     * Obtain the number of tiles along each side
+     *
+     * @return the number of tiles in each row and each column of tiles
+     */
+    int tiles() {
+        return tiles;
+    }
+
+    /**
+     * Check where the matrix is stored
+     *
+     * @return true if the matrix is stored off the heap and false otherwise
+     */
+    boolean isOffHeap() {
+        return directRows != null;
+    }
+
+    /**
+     * Obtain an entry
+     *
+     * @param i the row of the entry
+     * @param j the column of the entry
+     * @return the entry at (i, j)
+     */
+    int get(int i, int j) {
+        int p = position(i, j);
+        return heapRows != null ? heapRows[i / TILE][p] : directRows[i / TILE].get(p);
+    }
+
+    /**
+     * Replace an entry. Threads may set entries concurrently if they lie in different tiles.
+     *
+     * @param i the row of the entry
+     * @param j the column of the entry
+     * @param value the new entry at (i, j)
+     */
+    void set(int i, int j, int value) {
+        int p = position(i, j);
+        if (heapRows != null) {
+            heapRows[i / TILE][p] = value;
+        } else {
+            directRows[i / TILE].put(p, value);
+        }
+    }
+
+    /**
+     * Copy a tile out of the matrix, row by row.
+     *
+     * @param ti the row of the tile
+     * @param tj the column of the tile
+     * @param tile receives the TILE_AREA entries of the tile
+     */
+    void read(int ti, int tj, int[] tile) {
+        if (heapRows != null) {
+            System.arraycopy(heapRows[ti], tj * TILE_AREA, tile, 0, TILE_AREA);
+        } else {
+            IntBuffer view = directRows[ti].duplicate();
+            view.position(tj * TILE_AREA);
+            view.get(tile, 0, TILE_AREA);
+        }
+    }
+
+    /**
+     * Copy a tile into the matrix, row by row.
+     *
+     * @param ti the row of the tile
+     * @param tj the column of the tile
+     * @param tile the TILE_AREA new entries of the tile
+     */
+    void write(int ti, int tj, int[] tile) {
+        if (heapRows != null) {
+            System.arraycopy(tile, 0, heapRows[ti], tj * TILE_AREA, TILE_AREA);
+        } else {
+            IntBuffer view = directRows[ti].duplicate();
+            view.position(tj * TILE_AREA);
+            view.put(tile, 0, TILE_AREA);
+        }
+    }
+
+    /**
+     * Locate an entry within its row of tiles.
+     *
+     * @param i the row of the entry
+     * @param j the column of the entry
+     * @return the position of (i, j) in row i / TILE of tiles
+     */
+    private static int position(int i, int j) {
+        return (j / TILE) * TILE_AREA + (i % TILE) * TILE + j % TILE;
+    }
+}
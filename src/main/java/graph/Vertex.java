@@ -3,11 +3,21 @@ package graph;
 /**
  * Represents a graph vertex. Each vertex has an associated id and name.
  * No two vertices in the same graph should have the same id.
+ * A vertex is identified either by its id and name together, or, if it was created with
+ * keyedById, by its id alone. A vertex keyed by id hashes without looking at its name,
+ * from a hash code computed once, so it can be renamed while it is in a hash set or map.
+ * A vertex keyed by id is never equal to one that is not.
  */
 public class Vertex {
     private final int id;
     private String name;
 
+    /** True if the vertex is identified by its id alone */
+    private final boolean keyedById;
+
+    /** Hash code of a vertex keyed by id, 0 otherwise */
+    private final int hash;
+
     /**
      * Create a new vertex
      *
@@ -15,14 +25,46 @@ public class Vertex {
      * @param name is a name for the vertex
      */
     public Vertex(int id, String name) {
+        this(id, name, false);
+    }
+
+    /**
+     * Create a new vertex
+     *
+     * @param id         is a numeric identifier for the vertex
+     * @param name       is a name for the vertex
+     * @param keyedById  true to identify the vertex by its id alone, and false to identify
+     *                   it by its id and name
+     */
+    protected Vertex(int id, String name, boolean keyedById) {
         this.id = id;
         this.name = name;
+        this.keyedById = keyedById;
+        //spread the bits of the id so that consecutive ids do not share low bits
+        this.hash = keyedById ? (id * 0x9E3779B9) ^ (id >>> 16) : 0;
+    }
+
+    /**
+     * Create a vertex identified by its id alone, which can be renamed safely
+     *
+     * @param id   is a numeric identifier for the vertex
+     * @param name is a name for the vertex
+     * @return a new vertex keyed by id
+     */
+    public static Vertex keyedById(int id, String name) {
+        return new Vertex(id, name, true);
     }
 
     @Override
     public boolean equals(Object o) {
+        if (o == this) {
+            return true;
+        }
         if (o instanceof Vertex) {
             Vertex other = (Vertex) o;
+            if (keyedById || other.keyedById) {
+                return keyedById == other.keyedById && other.id == this.id;
+            }
             if (other.id == this.id && other.name.equals(this.name)) {
                 return true;
             }
@@ -32,6 +74,9 @@ public class Vertex {
 
     @Override
     public int hashCode() {
+        if (keyedById) {
+            return hash;
+        }
         return name.hashCode() + id;
     }
 
@@ -49,7 +94,18 @@ public class Vertex {
     }
 
     /**
-     * Update the vertex name
+     * Check if the vertex is identified by its id alone
+     *
+     * @return true if the vertex was created keyed by id and false otherwise
+     */
+    public boolean isKeyedById() {
+        return keyedById;
+    }
+
+    /**
+     * Update the vertex name. A vertex that is not keyed by id must not be renamed while
+     * it is in a hash set or map, since its hash code changes with its name.
+     * A vertex of a Graph is better renamed with Graph.rename, which tells its listeners.
      *
      * @param name the new vertex name
      */
@@ -0,0 +1,66 @@
+package graph;
+
+import java.util.Objects;
+
+/**
+ * Represents an ordered pair of vertices, such as the source and sink of a
+ * shortest path query.
+ *
+ * @param <V> represents a vertex type
+ */
+public final class VertexPair<V extends Vertex> {
+
+    /** First vertex of the pair */
+    private final V source;
+
+    /** Second vertex of the pair */
+    private final V sink;
+
+    /**
+     * Create a pair of vertices
+     *
+     * @param source the first vertex
+     * @param sink   the second vertex
+     */
+    public VertexPair(V source, V sink) {
+        this.source = source;
+        this.sink = sink;
+    }
+
+    /**
+     * Obtain the first vertex of the pair
+     *
+     * @return the source
+     */
+    public V source() {
+        return source;
+    }
+
+    /**
+     * Obtain the second vertex of the pair
+     *
+     * @return the sink
+     */
+    public V sink() {
+        return sink;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o instanceof VertexPair<?>) {
+            VertexPair<?> other = (VertexPair<?>) o;
+            return Objects.equals(source, other.source) && Objects.equals(sink, other.sink);
+        }
+        return false;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Objects.hashCode(source) + Objects.hashCode(sink);
+    }
+
+    @Override
+    public String toString() {
+        return "(" + source + ", " + sink + ")";
+    }
+}
@@ -0,0 +1,129 @@
+package graph;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures how the reads of a ConcurrentGraph scale with the number of reader threads
+ * while one writer keeps replacing edges. Not a unit test: run its main method on an
+ * otherwise idle machine with several cores, and compare the reads per second of each
+ * row with the first.
+ */
+public final class ConcurrentGraphBenchmark {
+
+    /** Number of vertices of the benchmark graph */
+    private static final int VERTICES = 2000;
+
+    /** Number of edges added to the benchmark graph */
+    private static final int EDGES = 6000;
+
+    /** Milliseconds each measurement runs for */
+    private static final long WINDOW_MILLIS = 2000;
+
+    /** Milliseconds of reads run before the measurements, so the JIT compiles them */
+    private static final long WARM_UP_MILLIS = 3000;
+
+    private ConcurrentGraphBenchmark() {
+    }
+
+    /**
+     * Print the reads per second of 1, 2, 4, ... reader threads, up to the number of cores.
+     *
+     * @param args ignored
+     * @throws InterruptedException if interrupted while waiting for the threads
+     */
+    public static void main(String[] args) throws InterruptedException {
+        ConcurrentGraph<Vertex, Edge<Vertex>> g = new ConcurrentGraph<>();
+        List<Vertex> vertices = new ArrayList<>();
+        Random random = new Random(5);
+        for (int i = 0; i < VERTICES; i++) {
+            vertices.add(new Vertex(i, "V" + i));
+            g.addVertex(vertices.get(i));
+        }
+        for (int i = 0; i < EDGES; i++) {
+            int a = random.nextInt(VERTICES);
+            g.addEdge(new Edge<>(vertices.get(a), vertices.get(other(a, random)), 1 + random.nextInt(9)));
+        }
+
+        int cores = Runtime.getRuntime().availableProcessors();
+        readThroughput(g, vertices, cores, WARM_UP_MILLIS);
+        double single = 0;
+        System.out.printf("%8s %14s %8s%n", "readers", "reads/s", "speedup");
+        for (int readers = 1; readers <= cores; readers *= 2) {
+            double throughput = readThroughput(g, vertices, readers, WINDOW_MILLIS);
+            if (readers == 1) {
+                single = throughput;
+            }
+            System.out.printf("%8d %14.0f %8.2f%n", readers, throughput, throughput / single);
+        }
+    }
+
+    /**
+     * Count the reads per second a number of reader threads make on g while one
+     * writer keeps replacing edges of g. Every 64th read is a shortest path query,
+     * the others look up an edge and a neighbourhood.
+     *
+     * @param g        the graph to read
+     * @param vertices the vertices of g
+     * @param readers  the number of reader threads
+     * @param millis   how long to measure for
+     * @return the reads per second of all readers together
+     * @throws InterruptedException if interrupted while waiting for the threads
+     */
+    private static double readThroughput(ConcurrentGraph<Vertex, Edge<Vertex>> g, List<Vertex> vertices,
+                                         int readers, long millis) throws InterruptedException {
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicLong reads = new AtomicLong();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t <= readers; t++) {
+            boolean writer = t == readers;
+            Random random = new Random(t);
+            threads.add(new Thread(() -> {
+                long done = 0;
+                while (running.get()) {
+                    int i = random.nextInt(VERTICES);
+                    Vertex a = vertices.get(i);
+                    Vertex b = vertices.get(other(i, random));
+                    if (writer) {
+                        g.replace(new Edge<>(a, b, 1 + random.nextInt(9)));
+                        try {
+                            Thread.sleep(1);
+                        } catch (InterruptedException e) {
+                            return;
+                        }
+                    } else if (done++ % 64 == 63) {
+                        g.shortestPath(a, b);
+                    } else {
+                        g.edge(a, b);
+                        g.getNeighbours(a);
+                    }
+                }
+                reads.addAndGet(done);
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        long start = System.nanoTime();
+        Thread.sleep(millis);
+        running.set(false);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        return reads.get() * 1e9 / (System.nanoTime() - start);
+    }
+
+    /**
+     * Pick a random vertex other than a given one
+     *
+     * @param i      the index of the vertex to avoid
+     * @param random the source of randomness
+     * @return the index of another vertex
+     */
+    private static int other(int i, Random random) {
+        return (i + 1 + random.nextInt(VERTICES - 1)) % VERTICES;
+    }
+}
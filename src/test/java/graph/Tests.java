@@ -3,7 +3,20 @@ package graph;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
 
 import static org.junit.Assert.*;
 
@@ -390,4 +403,1399 @@ public class Tests {
         assertEquals(6, g.diameter());
     }
 
-}
\ No newline at end of file
+    //test that edge lookups stay consistent after removing vertices and edges
+    @Test
+    public void testNeighboursAfterRemove() {
+        Vertex v1 = new Vertex(1, "A");
+        Vertex v2 = new Vertex(2, "B");
+        Vertex v3 = new Vertex(3, "C");
+        Vertex v2copy = new Vertex(2, "not B");
+
+        Edge<Vertex> e1 = new Edge<>(v1, v2, 4);
+        Edge<Vertex> e2 = new Edge<>(v2, v3, 6);
+        Edge<Vertex> e3 = new Edge<>(v1, v3, 8);
+
+        Graph<Vertex, Edge<Vertex>> g = new Graph<>();
+        g.addVertex(v1);
+        g.addVertex(v2);
+        g.addVertex(v3);
+        g.addEdge(e1);
+        g.addEdge(e2);
+        g.addEdge(e3);
+
+        //a vertex that only shares its id with a graph vertex has no edges
+        assertFalse(g.edge(v1, v2copy));
+        assertEquals(new HashMap<>(), g.getNeighbours(v2copy));
+
+        assertTrue(g.remove(e3));
+        assertFalse(g.edge(v3, v1));
+        assertEquals(0, g.edgeLength(v1, v3));
+        assertEquals(10, g.edgeLengthSum());
+
+        assertTrue(g.remove(v2));
+        assertEquals(new HashMap<>(), g.getNeighbours(v1));
+        assertEquals(new HashSet<>(), g.allEdges(v3));
+        assertEquals(0, g.edgeLengthSum());
+    }
+
+    //test adding and removing many vertices by id
+    @Test
+    public void testManyVertices() {
+        Graph<Vertex, Edge<Vertex>> g = new Graph<>();
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(g.addVertex(new Vertex(i * 7, "V" + i)));
+        }
+        for (int i = 0; i < 1000; i++) {
+            assertFalse(g.addVertex(new Vertex(i * 7, "copy")));
+        }
+        assertEquals(1000, g.allVertices().size());
+
+        for (int i = 0; i < 1000; i += 2) {
+            assertTrue(g.remove(new Vertex(i * 7, "V" + i)));
+        }
+        assertEquals(500, g.allVertices().size());
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i % 2 == 1, g.vertex(new Vertex(i * 7, "V" + i)));
+        }
+
+        //removed ids can be reused
+        assertTrue(g.addVertex(new Vertex(0, "new")));
+        assertTrue(g.vertex(new Vertex(0, "new")));
+    }
+
+    //test that a frozen snapshot answers queries like the graph it was taken from
+    @Test
+    public void testFreeze() {
+        Vertex v1 = new Vertex(1, "A");
+        Vertex v2 = new Vertex(2, "B");
+        Vertex v3 = new Vertex(3, "C");
+        Vertex v4 = new Vertex(4, "D");
+        Vertex v5 = new Vertex(5, "E");
+
+        Edge<Vertex> e1 = new Edge<>(v1, v2, 1);
+        Edge<Vertex> e2 = new Edge<>(v2, v3, 2);
+        Edge<Vertex> e3 = new Edge<>(v1, v3, 4);
+        Edge<Vertex> e4 = new Edge<>(v2, v4, 5);
+        Edge<Vertex> e5 = new Edge<>(v3, v4, 6);
+
+        Graph<Vertex, Edge<Vertex>> g = new Graph<>();
+        g.addVertex(v1);
+        g.addVertex(v2);
+        g.addVertex(v3);
+        g.addVertex(v4);
+        g.addVertex(v5);
+        g.addEdge(e1);
+        g.addEdge(e2);
+        g.addEdge(e3);
+        g.addEdge(e4);
+        g.addEdge(e5);
+
+        CsrGraph<Vertex, Edge<Vertex>> frozen = g.freeze();
+        g.remove(e1);
+
+        assertEquals(5, frozen.vertexCount());
+        assertEquals(5, frozen.edgeCount());
+        assertEquals(e1, frozen.getEdge(v2, v1));
+        assertNull(frozen.getEdge(v1, v4));
+        assertNull(frozen.getEdge(v1, v5));
+
+        List<Vertex> expectedPath = new ArrayList<>();
+        expectedPath.add(v1);
+        expectedPath.add(v2);
+        expectedPath.add(v3);
+        assertEquals(expectedPath, frozen.shortestPath(v1, v3));
+        assertEquals(3, frozen.pathLength(expectedPath));
+        assertEquals(new ArrayList<>(), frozen.shortestPath(v1, v5));
+        assertEquals(6, frozen.diameter());
+
+        List<Edge<Vertex>> expectedMST = new ArrayList<>();
+        expectedMST.add(e1);
+        expectedMST.add(e2);
+        expectedMST.add(e4);
+        assertEquals(expectedMST, frozen.minimumSpanningTree());
+    }
+
+    //test that Graph.shortestPath sees mutations made after earlier queries
+    @Test
+    public void testShortestPathAfterMutation() {
+        Vertex v1 = new Vertex(1, "A");
+        Vertex v2 = new Vertex(2, "B");
+        Vertex v3 = new Vertex(3, "C");
+        Vertex v4 = new Vertex(4, "D");
+
+        Edge<Vertex> e1 = new Edge<>(v1, v2, 1);
+        Edge<Vertex> e2 = new Edge<>(v2, v3, 1);
+        Edge<Vertex> e3 = new Edge<>(v1, v3, 5);
+
+        Graph<Vertex, Edge<Vertex>> g = new Graph<>();
+        g.addVertex(v1);
+        g.addVertex(v2);
+        g.addVertex(v3);
+        g.addEdge(e1);
+        g.addEdge(e2);
+        g.addEdge(e3);
+
+        assertEquals(List.of(v1, v2, v3), g.shortestPath(v1, v3));
+
+        g.remove(e2);
+        assertEquals(List.of(v1, v3), g.shortestPath(v1, v3));
+
+        assertEquals(new ArrayList<>(), g.shortestPath(v1, v4));
+        g.addVertex(v4);
+        g.addEdge(new Edge<>(v3, v4, 2));
+        assertEquals(List.of(v1, v3, v4), g.shortestPath(v1, v4));
+
+        g.remove(v3);
+        assertEquals(new ArrayList<>(), g.shortestPath(v1, v4));
+    }
+
+    //test that the first and second queries after each change return the same path
+    @Test
+    public void testShortestPathBetweenMutations() {
+        Graph<Vertex, Edge<Vertex>> g = new Graph<>();
+        List<Vertex> vertices = new ArrayList<>();
+        Random random = new Random(17);
+        for (int i = 0; i < 60; i++) {
+            vertices.add(new Vertex(i, "V" + i));
+            g.addVertex(vertices.get(i));
+        }
+        for (int i = 0; i < 200; i++) {
+            Vertex a = vertices.get(random.nextInt(60));
+            Vertex b = vertices.get(random.nextInt(60));
+            if (a != b) {
+                g.addEdge(new Edge<>(a, b, 1 + random.nextInt(4)));
+            }
+            Vertex source = vertices.get(random.nextInt(60));
+            Vertex sink = vertices.get(random.nextInt(60));
+            List<Vertex> first = i % 2 == 0 ? g.shortestPath(source, sink) : g.bidirectionalShortestPath(source, sink);
+            List<Vertex> second = i % 2 == 0 ? g.shortestPath(source, sink) : g.bidirectionalShortestPath(source, sink);
+            assertEquals(first, second);
+            assertEquals(g.pathLength(g.freeze().shortestPath(source, sink)), g.pathLength(first));
+            if (!first.isEmpty()) {
+                assertEquals(source, first.get(0));
+                assertEquals(sink, first.get(first.size() - 1));
+            }
+        }
+    }
+
+    //test that the bidirectional search finds the same paths on a ladder-shaped graph
+    @Test
+    public void testBidirectionalShortestPath() {
+        Graph<Vertex, Edge<Vertex>> g = new Graph<>();
+        List<Vertex> top = new ArrayList<>();
+        List<Vertex> bottom = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            top.add(new Vertex(i, "T" + i));
+            bottom.add(new Vertex(100 + i, "B" + i));
+            g.addVertex(top.get(i));
+            g.addVertex(bottom.get(i));
+            g.addEdge(new Edge<>(top.get(i), bottom.get(i), 3));
+            if (i > 0) {
+                g.addEdge(new Edge<>(top.get(i - 1), top.get(i), 2));
+                g.addEdge(new Edge<>(bottom.get(i - 1), bottom.get(i), 1));
+            }
+        }
+        Vertex isolated = new Vertex(500, "X");
+        g.addVertex(isolated);
+
+        List<Vertex> path = g.bidirectionalShortestPath(top.get(0), top.get(19));
+        assertEquals(25, g.pathLength(path));
+        assertEquals(g.shortestPath(top.get(0), top.get(19)), path);
+        assertEquals(top.get(0), path.get(0));
+        assertEquals(top.get(19), path.get(path.size() - 1));
+
+        assertEquals(List.of(bottom.get(4)), g.bidirectionalShortestPath(bottom.get(4), bottom.get(4)));
+        assertEquals(new ArrayList<>(), g.bidirectionalShortestPath(top.get(0), isolated));
+    }
+
+    //test goal-directed search on a grid with a distance heuristic and with landmarks
+    @Test
+    public void testGoalDirectedShortestPath() {
+        Graph<Vertex, Edge<Vertex>> g = new Graph<>();
+        Vertex[][] grid = new Vertex[10][10];
+        for (int x = 0; x < 10; x++) {
+            for (int y = 0; y < 10; y++) {
+                grid[x][y] = new Vertex(10 * x + y, x + "," + y);
+                g.addVertex(grid[x][y]);
+                if (x > 0) {
+                    g.addEdge(new Edge<>(grid[x - 1][y], grid[x][y], 2 + (x * y) % 3));
+                }
+                if (y > 0) {
+                    g.addEdge(new Edge<>(grid[x][y - 1], grid[x][y], 2 + (x + y) % 2));
+                }
+            }
+        }
+
+        //every edge is at least 2 long, so twice the grid distance never overestimates
+        Heuristic<Vertex> manhattan = (a, b) ->
+                2 * (Math.abs(a.id() / 10 - b.id() / 10) + Math.abs(a.id() % 10 - b.id() % 10));
+        Landmarks<Vertex, Edge<Vertex>> landmarks = Landmarks.select(g.freeze(), 4);
+        assertEquals(4, landmarks.landmarks().size());
+
+        for (int i = 0; i < 100; i += 7) {
+            Vertex source = grid[i / 10][i % 10];
+            Vertex sink = grid[9 - i / 10][(i * 3) % 10];
+            int expected = g.pathLength(g.shortestPath(source, sink));
+
+            List<Vertex> path = g.shortestPath(source, sink, manhattan);
+            assertEquals(expected, g.pathLength(path));
+            assertEquals(sink, path.get(path.size() - 1));
+
+            path = g.shortestPath(source, sink, landmarks);
+            assertEquals(expected, g.pathLength(path));
+            assertEquals(source, path.get(0));
+            assertTrue(landmarks.estimate(source, sink) <= expected);
+        }
+
+        //a shortcut makes the old landmark distances overestimate, so they are refused
+        g.addEdge(new Edge<>(grid[0][0], grid[9][9], 1));
+        try {
+            g.shortestPath(grid[0][0], grid[9][9], landmarks);
+            fail();
+        } catch (IllegalArgumentException e) {
+            //expected
+        }
+        landmarks = Landmarks.select(g.freeze(), 4);
+        assertEquals(Arrays.asList(grid[0][0], grid[9][9]), g.shortestPath(grid[0][0], grid[9][9], landmarks));
+    }
+
+    //test that a contraction hierarchy gives the same distances and valid paths as Dijkstra
+    @Test
+    public void testContractionHierarchy() {
+        Graph<Vertex, Edge<Vertex>> g = new Graph<>();
+        Vertex[][] grid = new Vertex[12][12];
+        for (int x = 0; x < 12; x++) {
+            for (int y = 0; y < 12; y++) {
+                grid[x][y] = new Vertex(12 * x + y, x + "," + y);
+                g.addVertex(grid[x][y]);
+                if (x > 0) {
+                    g.addEdge(new Edge<>(grid[x - 1][y], grid[x][y], 1 + (7 * x + 3 * y) % 5));
+                }
+                if (y > 0) {
+                    g.addEdge(new Edge<>(grid[x][y - 1], grid[x][y], 1 + (x * y) % 4));
+                }
+            }
+        }
+        Vertex isolated = new Vertex(1000, "X");
+        g.addVertex(isolated);
+
+        ContractionHierarchy<Vertex, Edge<Vertex>> ch = ContractionHierarchy.build(g.freeze());
+        for (int i = 0; i < 144; i += 5) {
+            Vertex source = grid[i / 12][i % 12];
+            Vertex sink = grid[(i * 7) % 12][11 - i % 12];
+            int expected = g.pathLength(g.shortestPath(source, sink));
+            assertEquals(expected, ch.distance(source, sink));
+
+            List<Vertex> path = ch.shortestPath(source, sink);
+            assertEquals(expected, g.pathLength(path));
+            assertEquals(source, path.get(0));
+            assertEquals(sink, path.get(path.size() - 1));
+            for (int j = 0; j < path.size() - 1; j++) {
+                assertTrue(g.edge(path.get(j), path.get(j + 1)));
+            }
+        }
+        assertEquals(-1, ch.distance(grid[0][0], isolated));
+        assertEquals(new ArrayList<>(), ch.shortestPath(isolated, grid[0][0]));
+    }
+
+    //test that sparse and dense graphs with two components both give a minimum spanning forest
+    @Test
+    public void testMinimumSpanningForest() {
+        for (int size : new int[] {10, 80}) {
+            Graph<Vertex, Edge<Vertex>> g = new Graph<>();
+            List<Vertex> vertices = new ArrayList<>();
+            for (int i = 0; i < 2 * size; i++) {
+                vertices.add(new Vertex(i, "V" + i));
+                g.addVertex(vertices.get(i));
+            }
+            //two complete components; the path i, i + 1, ... of length-1 edges is their lightest tree
+            int expectedLength = 0;
+            for (int c = 0; c < 2; c++) {
+                for (int i = c * size; i < (c + 1) * size; i++) {
+                    for (int j = i + 1; j < (c + 1) * size; j++) {
+                        int length = j == i + 1 ? 1 : 2 + (i * j) % 7;
+                        g.addEdge(new Edge<>(vertices.get(i), vertices.get(j), length));
+                    }
+                }
+                expectedLength += size - 1;
+            }
+
+            List<Edge<Vertex>> mst = g.minimumSpanningTree();
+            assertEquals(2 * size - 2, mst.size());
+            int length = 0;
+            for (Edge<Vertex> e : mst) {
+                length += e.length();
+                assertEquals(1, e.length());
+            }
+            assertEquals(expectedLength, length);
+        }
+    }
+
+    @Test
+    public void testParallelMinimumSpanningForest() {
+        Graph<Vertex, Edge<Vertex>> g = new Graph<>();
+        List<Vertex> vertices = new ArrayList<>();
+        int size = 3000;
+        for (int i = 0; i < size; i++) {
+            vertices.add(new Vertex(i, "V" + i));
+            g.addVertex(vertices.get(i));
+        }
+        //many equal lengths, so the forest depends on how ties are broken
+        Random random = new Random(3);
+        for (int i = 0; i < 4 * size; i++) {
+            Vertex a = vertices.get(random.nextInt(size));
+            Vertex b = vertices.get(random.nextInt(size));
+            if (!a.equals(b) && !g.edge(a, b)) {
+                g.addEdge(new Edge<>(a, b, 1 + random.nextInt(4)));
+            }
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            assertEquals(g.minimumSpanningTree(), g.minimumSpanningTree(pool));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testParallelDiameter() {
+        Graph<Vertex, Edge<Vertex>> g = new Graph<>();
+        List<Vertex> vertices = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            vertices.add(new Vertex(i, "V" + i));
+            g.addVertex(vertices.get(i));
+        }
+        //a path of 400 vertices and a separate cycle of 100 vertices
+        for (int i = 0; i + 1 < 400; i++) {
+            g.addEdge(new Edge<>(vertices.get(i), vertices.get(i + 1), 2));
+        }
+        for (int i = 400; i < 500; i++) {
+            g.addEdge(new Edge<>(vertices.get(i), vertices.get(i + 1 < 500 ? i + 1 : 400), 1));
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            assertEquals(798, g.diameter(pool));
+            assertEquals(798, g.diameter());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testBoundedDiameter() {
+        Graph<Vertex, Edge<Vertex>> g = new Graph<>();
+        int side = 30;
+        Vertex[] grid = new Vertex[side * side];
+        for (int i = 0; i < grid.length; i++) {
+            grid[i] = new Vertex(i, "V" + i);
+            g.addVertex(grid[i]);
+        }
+        for (int i = 0; i < side; i++) {
+            for (int j = 0; j < side; j++) {
+                if (j + 1 < side) {
+                    g.addEdge(new Edge<>(grid[i * side + j], grid[i * side + j + 1], 1));
+                }
+                if (i + 1 < side) {
+                    g.addEdge(new Edge<>(grid[i * side + j], grid[(i + 1) * side + j], 1));
+                }
+            }
+        }
+
+        assertEquals(58, g.diameter());
+        assertEquals(58, g.approximateDiameter(0));
+        int approximate = g.approximateDiameter(0.5);
+        assertTrue(approximate <= 58 && 58 <= 1.5 * approximate);
+        try {
+            g.approximateDiameter(-1);
+            fail();
+        } catch (IllegalArgumentException e) {
+            //expected
+        }
+    }
+
+    @Test
+    public void testDistanceMatrix() {
+        Graph<Vertex, Edge<Vertex>> g = new Graph<>();
+        List<Vertex> vertices = new ArrayList<>();
+        for (int i = 0; i < 150; i++) {
+            vertices.add(new Vertex(i, "V" + i));
+            g.addVertex(vertices.get(i));
+        }
+        //a dense part, a sparse ring, and one isolated vertex
+        Random random = new Random(5);
+        for (int i = 0; i < 100; i++) {
+            for (int j = i + 1; j < 100; j++) {
+                if (random.nextInt(3) == 0) {
+                    g.addEdge(new Edge<>(vertices.get(i), vertices.get(j), random.nextInt(30)));
+                }
+            }
+        }
+        for (int i = 100; i < 149; i++) {
+            g.addEdge(new Edge<>(vertices.get(i), vertices.get(i + 1 < 149 ? i + 1 : 100), 1 + random.nextInt(5)));
+        }
+
+        CsrGraph<Vertex, Edge<Vertex>> frozen = g.freeze();
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            for (DistanceMatrix<Vertex, Edge<Vertex>> matrix : Arrays.asList(DistanceMatrix.compute(frozen),
+                    DistanceMatrix.compute(frozen, pool, 0))) {
+                assertEquals(frozen.diameter(), matrix.diameter());
+                for (Vertex a : vertices) {
+                    for (Vertex b : vertices) {
+                        List<Vertex> expected = frozen.shortestPath(a, b);
+                        List<Vertex> path = matrix.shortestPath(a, b);
+                        if (expected.isEmpty()) {
+                            assertEquals(-1, matrix.distance(a, b));
+                            assertTrue(path.isEmpty());
+                        } else {
+                            assertEquals(g.pathLength(expected), matrix.distance(a, b));
+                            assertEquals(g.pathLength(expected), g.pathLength(path));
+                            assertEquals(b, path.get(path.size() - 1));
+                        }
+                    }
+                }
+            }
+            assertTrue(DistanceMatrix.compute(frozen, pool, 0).isOffHeap());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testCachedShortestPathTrees() {
+        Graph<Vertex, Edge<Vertex>> g = new Graph<>();
+        List<Vertex> vertices = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            vertices.add(new Vertex(i, "V" + i));
+            g.addVertex(vertices.get(i));
+        }
+        for (int i = 0; i + 1 < 6; i++) {
+            g.addEdge(new Edge<>(vertices.get(i), vertices.get(i + 1), 2));
+        }
+        g.cacheShortestPathTrees(2);
+
+        Vertex a = vertices.get(0);
+        Vertex f = vertices.get(5);
+        assertEquals(vertices, g.shortestPath(a, f));
+        assertSame(g.shortestPathTree(a), g.shortestPathTree(a));
+
+        //a cached tree must not survive a mutation
+        Edge<Vertex> shortcut = new Edge<>(a, f, 3);
+        g.addEdge(shortcut);
+        assertEquals(Arrays.asList(a, f), g.shortestPath(a, f));
+        assertEquals(3, g.shortestPathTree(a).distance(f));
+        g.remove(shortcut);
+        assertEquals(vertices, g.shortestPath(a, f));
+        g.remove(vertices.get(2));
+        assertTrue(g.shortestPath(a, f).isEmpty());
+        assertEquals(-1, g.shortestPathTree(a).distance(f));
+
+        //the least recently used tree is evicted once the cache is full
+        ShortestPathTree<Vertex, Edge<Vertex>> first = g.shortestPathTree(a);
+        g.shortestPathTree(vertices.get(1));
+        g.shortestPathTree(vertices.get(3));
+        assertNotSame(first, g.shortestPathTree(a));
+        assertNull(g.shortestPathTree(vertices.get(2)));
+    }
+
+    @Test
+    public void testDynamicShortestPaths() {
+        Graph<Vertex, Edge<Vertex>> g = new Graph<>();
+        List<Vertex> vertices = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            vertices.add(new Vertex(i, "V" + i));
+            g.addVertex(vertices.get(i));
+        }
+        Vertex a = vertices.get(0);
+        Vertex e = vertices.get(4);
+        for (int i = 0; i + 1 < 5; i++) {
+            g.addEdge(new Edge<>(vertices.get(i), vertices.get(i + 1), 1));
+        }
+        DynamicShortestPaths<Vertex, Edge<Vertex>> paths = new DynamicShortestPaths<>(g);
+        assertTrue(paths.addSource(a));
+        assertFalse(paths.addSource(a));
+        assertEquals(4, paths.distance(a, e));
+
+        g.addEdge(new Edge<>(a, e, 2));
+        assertEquals(2, paths.distance(a, e));
+        assertEquals(Arrays.asList(a, e), paths.shortestPath(a, e));
+
+        //lengthening the shortcut past the path moves the tree back onto the path
+        g.replace(new Edge<>(a, e, 9));
+        assertEquals(4, paths.distance(a, e));
+        assertEquals(vertices, paths.shortestPath(a, e));
+
+        g.remove(new Edge<>(vertices.get(1), vertices.get(2)));
+        assertEquals(9, paths.distance(a, e));
+        assertEquals(10, paths.distance(a, vertices.get(3)));
+        g.remove(e);
+        assertEquals(-1, paths.distance(a, vertices.get(3)));
+        assertTrue(paths.shortestPath(a, vertices.get(2)).isEmpty());
+
+        paths.detach();
+        g.addEdge(new Edge<>(a, vertices.get(2), 1));
+        assertEquals(-1, paths.distance(a, vertices.get(2)));
+    }
+
+    @Test
+    public void testDynamicSpanningForest() {
+        Graph<Vertex, Edge<Vertex>> g = new Graph<>();
+        List<Vertex> vertices = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            vertices.add(new Vertex(i, "V" + i));
+            g.addVertex(vertices.get(i));
+        }
+        Vertex a = vertices.get(0);
+        Vertex b = vertices.get(1);
+        Vertex c = vertices.get(2);
+        Vertex d = vertices.get(3);
+        g.addEdge(new Edge<>(a, b, 4));
+        g.addEdge(new Edge<>(b, c, 5));
+        DynamicSpanningForest<Vertex, Edge<Vertex>> forest = new DynamicSpanningForest<>(g);
+        assertEquals(9, forest.weight());
+
+        //closing the cycle a - b - c with a shorter edge swaps out its longest edge
+        Edge<Vertex> ac = new Edge<>(a, c, 1);
+        g.addEdge(ac);
+        assertEquals(5, forest.weight());
+        assertFalse(forest.minimumSpanningTree().contains(new Edge<>(b, c)));
+        g.addEdge(new Edge<>(c, d, 2));
+        assertEquals(7, forest.weight());
+
+        //removing a forest edge brings back the shortest edge across the split
+        g.remove(ac);
+        assertEquals(11, forest.weight());
+        assertTrue(forest.minimumSpanningTree().contains(new Edge<>(b, c)));
+        g.replace(new Edge<>(a, b, 1));
+        assertEquals(8, forest.weight());
+        g.remove(c);
+        assertEquals(1, forest.weight());
+        assertEquals(1, forest.minimumSpanningTree().size());
+
+        //many links and cuts rerooting the same trees agree with a forest computed afresh
+        Random random = new Random(29);
+        for (int i = 4; i < 40; i++) {
+            vertices.add(new Vertex(i, "V" + i));
+            g.addVertex(vertices.get(i));
+        }
+        for (int i = 0; i < 1500; i++) {
+            Vertex u = vertices.get(4 + random.nextInt(36));
+            Vertex w = vertices.get(4 + random.nextInt(36));
+            if (u == w) {
+                continue;
+            }
+            if (random.nextInt(3) == 0) {
+                g.remove(new Edge<>(u, w));
+            } else if (!g.addEdge(new Edge<>(u, w, random.nextInt(50)))) {
+                g.replace(new Edge<>(u, w, random.nextInt(50)));
+            }
+            if (i % 50 == 0) {
+                long expected = 0;
+                for (Edge<Vertex> e : g.minimumSpanningTree()) {
+                    expected += e.length();
+                }
+                assertEquals(expected, forest.weight());
+            }
+        }
+    }
+
+    @Test
+    public void testBatchShortestPaths() {
+        Graph<Vertex, Edge<Vertex>> g = new Graph<>();
+        List<Vertex> vertices = new ArrayList<>();
+        for (int i = 0; i < 60; i++) {
+            vertices.add(new Vertex(i, "V" + i));
+            g.addVertex(vertices.get(i));
+        }
+        Random random = new Random(9);
+        for (int i = 0; i < 150; i++) {
+            int a = random.nextInt(50);
+            int b = random.nextInt(50);
+            if (a != b) {
+                g.addEdge(new Edge<>(vertices.get(a), vertices.get(b), random.nextInt(20)));
+            }
+        }
+        Vertex absent = new Vertex(99, "V99");
+
+        List<VertexPair<Vertex>> pairs = new ArrayList<>();
+        for (int i = 0; i < 400; i++) {
+            pairs.add(new VertexPair<>(vertices.get(random.nextInt(8)), vertices.get(random.nextInt(60))));
+        }
+        pairs.add(new VertexPair<>(absent, vertices.get(0)));
+        pairs.add(new VertexPair<>(vertices.get(0), absent));
+        pairs.add(new VertexPair<>(vertices.get(3), vertices.get(3)));
+
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            List<List<Vertex>> paths = g.shortestPaths(pairs, executor);
+            assertEquals(pairs.size(), paths.size());
+            for (int i = 0; i < pairs.size(); i++) {
+                List<Vertex> expected = g.shortestPath(pairs.get(i).source(), pairs.get(i).sink());
+                List<Vertex> path = paths.get(i);
+                assertEquals(expected.isEmpty(), path.isEmpty());
+                if (!path.isEmpty()) {
+                    assertEquals(pairs.get(i).source(), path.get(0));
+                    assertEquals(pairs.get(i).sink(), path.get(path.size() - 1));
+                    assertEquals(g.pathLength(expected), g.pathLength(path));
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testAsyncGraph() throws Exception {
+        Graph<Vertex, Edge<Vertex>> g = new Graph<>();
+        List<Vertex> vertices = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            vertices.add(new Vertex(i, "V" + i));
+            g.addVertex(vertices.get(i));
+        }
+        for (int i = 0; i + 1 < 20; i++) {
+            g.addEdge(new Edge<>(vertices.get(i), vertices.get(i + 1), 2));
+        }
+
+        try (AsyncGraph<Vertex, Edge<Vertex>> async = AsyncGraph.withVirtualThreads(g, 2)) {
+            CompletableFuture<Integer> diameter = async.diameterAsync();
+            CompletableFuture<List<Vertex>> path = async.shortestPathAsync(vertices.get(0), vertices.get(5));
+            //queries see the graph as it was when they were submitted
+            g.addEdge(new Edge<>(vertices.get(0), vertices.get(19), 1));
+            CompletableFuture<Integer> after = async.diameterAsync();
+            CompletableFuture<List<Edge<Vertex>>> tree = async.minimumSpanningTreeAsync();
+
+            assertEquals(38, (int) diameter.get());
+            assertEquals(6, path.get().size());
+            assertEquals(19, (int) after.get());
+            assertEquals(19, tree.get().size());
+            List<List<Vertex>> paths = async.shortestPathsAsync(Arrays.asList(
+                    new VertexPair<>(vertices.get(0), vertices.get(19)),
+                    new VertexPair<>(vertices.get(0), vertices.get(1)))).get();
+            assertEquals(2, paths.get(0).size());
+            assertEquals(2, paths.get(1).size());
+        }
+        try {
+            new AsyncGraph<>(g, Runnable::run, 0);
+            fail();
+        } catch (IllegalArgumentException e) {
+            //expected
+        }
+    }
+
+    @Test
+    public void testConcurrentGraph() throws Exception {
+        ConcurrentGraph<Vertex, Edge<Vertex>> g = new ConcurrentGraph<>(8);
+        List<Vertex> vertices = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            vertices.add(new Vertex(i, "V" + i));
+            g.addVertex(vertices.get(i));
+        }
+        assertFalse(g.addVertex(new Vertex(3, "V3")));
+
+        //writers add, change and remove edges and vertices while readers query the graph
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            boolean writer = t < 2;
+            Random random = new Random(t);
+            threads.add(new Thread(() -> {
+                try {
+                    for (int i = 0; i < 3000; i++) {
+                        Vertex a = vertices.get(random.nextInt(40));
+                        Vertex b = vertices.get(random.nextInt(40));
+                        if (writer) {
+                            int op = random.nextInt(10);
+                            if (op == 0) {
+                                g.remove(a);
+                                g.addVertex(a);
+                            } else if (a != b && op < 6) {
+                                g.addEdge(new Edge<>(a, b, 1 + random.nextInt(9)));
+                            } else if (a != b && op < 8) {
+                                g.replace(new Edge<>(a, b, 1 + random.nextInt(9)));
+                            } else if (a != b) {
+                                g.remove(new Edge<>(a, b));
+                            }
+                        } else {
+                            for (Map.Entry<Vertex, Edge<Vertex>> entry : g.getNeighbours(a).entrySet()) {
+                                assertTrue(entry.getValue().incident(a));
+                                assertTrue(entry.getValue().incident(entry.getKey()));
+                            }
+                            g.edge(a, b);
+                            List<Vertex> path = g.shortestPath(a, b);
+                            if (!path.isEmpty()) {
+                                assertEquals(a, path.get(0));
+                                assertEquals(b, path.get(path.size() - 1));
+                            }
+                        }
+                    }
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertNull(failure.get());
+
+        int sum = 0;
+        for (Edge<Vertex> e : g.allEdges()) {
+            sum += e.length();
+            assertEquals(e, g.getNeighbours(e.v1()).get(e.v2()));
+            assertEquals(e, g.getNeighbours(e.v2()).get(e.v1()));
+        }
+        assertEquals(sum, g.edgeLengthSum());
+        assertEquals(g.allEdges().size(), g.freeze().edgeCount());
+        assertEquals(40, g.allVertices().size());
+    }
+
+    //test that readers of a concurrent graph all finish while a writer keeps changing it;
+    // how reads scale with cores is measured by ConcurrentGraphBenchmark instead
+    @Test
+    public void testConcurrentGraphReadsDuringWrites() throws Exception {
+        ConcurrentGraph<Vertex, Edge<Vertex>> g = new ConcurrentGraph<>();
+        List<Vertex> vertices = new ArrayList<>();
+        Random random = new Random(5);
+        for (int i = 0; i < 500; i++) {
+            vertices.add(new Vertex(i, "V" + i));
+            g.addVertex(vertices.get(i));
+        }
+        for (int i = 0; i < 1500; i++) {
+            int a = random.nextInt(500);
+            g.addEdge(new Edge<>(vertices.get(a), vertices.get((a + 1 + random.nextInt(499)) % 500), 1 + random.nextInt(9)));
+        }
+
+        AtomicBoolean writing = new AtomicBoolean(true);
+        AtomicLong reads = new AtomicLong();
+        AtomicLong writes = new AtomicLong();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread writer = new Thread(() -> {
+            Random r = new Random(0);
+            while (writing.get()) {
+                int i = r.nextInt(500);
+                g.replace(new Edge<>(vertices.get(i), vertices.get((i + 1 + r.nextInt(499)) % 500), 1 + r.nextInt(9)));
+                writes.incrementAndGet();
+            }
+        });
+        List<Thread> readers = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            Random r = new Random(t + 1);
+            readers.add(new Thread(() -> {
+                try {
+                    for (int done = 0; done < 2000; done++) {
+                        int i = r.nextInt(500);
+                        Vertex a = vertices.get(i);
+                        Vertex b = vertices.get((i + 1 + r.nextInt(499)) % 500);
+                        if (done % 64 == 63) {
+                            List<Vertex> path = g.shortestPath(a, b);
+                            assertTrue(path.isEmpty() || path.get(0).equals(a) && path.get(path.size() - 1).equals(b));
+                        } else {
+                            Edge<Vertex> e = g.getEdge(a, b);
+                            assertTrue(e == null || e.incident(a) && e.incident(b));
+                            g.getNeighbours(a);
+                        }
+                        reads.incrementAndGet();
+                    }
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            }));
+        }
+        writer.start();
+        for (Thread thread : readers) {
+            thread.start();
+        }
+        for (Thread thread : readers) {
+            thread.join();
+        }
+        writing.set(false);
+        writer.join();
+        assertNull(failure.get());
+        assertEquals(4 * 2000, reads.get());
+        assertTrue(writes.get() > 0);
+    }
+
+    @Test
+    public void testGraphVersions() {
+        Graph<Vertex, Edge<Vertex>> g = new Graph<>();
+        Vertex a = new Vertex(1, "A");
+        Vertex b = new Vertex(2, "B");
+        Vertex c = new Vertex(3, "C");
+        g.addVertex(a);
+        g.addVertex(b);
+        g.addEdge(new Edge<>(a, b, 4));
+        GraphVersion<Vertex, Edge<Vertex>> first = g.version();
+        assertSame(first, g.version());
+
+        g.addVertex(c);
+        g.addEdge(new Edge<>(b, c, 3));
+        g.replace(new Edge<>(a, b, 1));
+        GraphVersion<Vertex, Edge<Vertex>> second = g.version();
+        g.remove(b);
+
+        //each version keeps the graph as it was when it was taken
+        assertFalse(first.vertex(c));
+        assertEquals(4, first.edgeLength(a, b));
+        assertEquals(4, first.diameter());
+        assertEquals(1, second.edgeLength(b, a));
+        assertEquals(4, second.edgeLengthSum());
+        assertEquals(Arrays.asList(a, b, c), second.shortestPath(a, c));
+        assertEquals(2, second.minimumSpanningTree().size());
+        GraphVersion<Vertex, Edge<Vertex>> third = g.version();
+        assertEquals(2, third.vertexCount());
+        assertEquals(0, third.edgeCount());
+        assertTrue(third.getNeighbours(a).isEmpty());
+
+        //once no version is held, mutations stop deriving them and the next one is rebuilt
+        third = null;
+        System.gc();
+        g.addVertex(b);
+        g.addEdge(new Edge<>(a, b, 6));
+        GraphVersion<Vertex, Edge<Vertex>> fourth = g.version();
+        assertEquals(3, fourth.vertexCount());
+        assertEquals(6, fourth.edgeLength(a, b));
+        assertSame(fourth, g.version());
+    }
+
+    @Test
+    public void testGraphBuilder() {
+        List<Vertex> vertices = new ArrayList<>();
+        List<Edge<Vertex>> edges = new ArrayList<>();
+        Random random = new Random(11);
+        for (int i = 0; i < 300; i++) {
+            vertices.add(new Vertex(300 - 2 * i, "V" + i));
+        }
+        for (int i = 0; i < 299; i++) {
+            edges.add(new Edge<>(vertices.get(i), vertices.get(i + 1), random.nextInt(10)));
+            edges.add(new Edge<>(vertices.get(i), vertices.get((i + 7 + random.nextInt(100)) % 300), random.nextInt(10)));
+        }
+        Graph<Vertex, Edge<Vertex>> expected = new Graph<>();
+        vertices.forEach(expected::addVertex);
+        edges.removeIf(e -> !expected.addEdge(e));
+
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            for (Graph.Builder<Vertex, Edge<Vertex>> builder : Arrays.asList(Graph.<Vertex, Edge<Vertex>>builder(),
+                    Graph.<Vertex, Edge<Vertex>>builder().parallel(pool))) {
+                Graph<Vertex, Edge<Vertex>> g = builder.vertices(vertices).edges(edges).build();
+                assertEquals(expected.allVertices(), g.allVertices());
+                assertEquals(expected.allEdges(), g.allEdges());
+                assertEquals(expected.edgeLengthSum(), g.edgeLengthSum());
+                assertEquals(expected.diameter(), g.diameter());
+                //the built graph is an ordinary mutable graph
+                assertTrue(g.remove(vertices.get(0)));
+                assertTrue(g.addVertex(vertices.get(0)));
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        Vertex a = new Vertex(1, "A");
+        Vertex b = new Vertex(2, "B");
+        List<Graph.Builder<Vertex, Edge<Vertex>>> invalid = Arrays.asList(
+                Graph.<Vertex, Edge<Vertex>>builder().vertex(a).vertex(new Vertex(1, "C")),
+                Graph.<Vertex, Edge<Vertex>>builder().vertex(a).edge(new Edge<>(a, b)),
+                Graph.<Vertex, Edge<Vertex>>builder().vertex(a).vertex(b).edge(new Edge<>(a, b)).edge(new Edge<>(b, a, 3)));
+        for (Graph.Builder<Vertex, Edge<Vertex>> builder : invalid) {
+            try {
+                builder.build();
+                fail();
+            } catch (IllegalArgumentException e) {
+                //expected
+            }
+        }
+    }
+
+    @Test
+    public void testGraphFile() throws Exception {
+        Graph<Vertex, Edge<Vertex>> g = new Graph<>();
+        List<Vertex> vertices = new ArrayList<>();
+        Random random = new Random(13);
+        for (int i = 0; i < 120; i++) {
+            vertices.add(new Vertex(random.nextInt(), "V\u00e9" + i));
+            g.addVertex(vertices.get(i));
+        }
+        for (int i = 0; i < 300; i++) {
+            Vertex a = vertices.get(random.nextInt(100));
+            Vertex b = vertices.get(random.nextInt(100));
+            if (a != b) {
+                g.addEdge(new Edge<>(a, b, random.nextInt(40)));
+            }
+        }
+
+        Path path = Files.createTempFile("graph", ".bin");
+        try {
+            GraphFile.write(g, path);
+            try (MappedGraph mapped = GraphFile.open(path)) {
+                assertEquals(120, mapped.vertexCount());
+                assertEquals(g.allEdges().size(), mapped.edgeCount());
+                assertEquals(g.diameter(), mapped.diameter());
+                assertEquals(new HashSet<>(g.minimumSpanningTree()).size(), mapped.minimumSpanningTree().size());
+                int weight = 0;
+                for (Edge<Vertex> e : mapped.minimumSpanningTree()) {
+                    weight += e.length();
+                }
+                int expected = 0;
+                for (Edge<Vertex> e : g.minimumSpanningTree()) {
+                    expected += e.length();
+                }
+                assertEquals(expected, weight);
+                for (int i = 0; i < 50; i++) {
+                    Vertex a = vertices.get(random.nextInt(120));
+                    Vertex b = vertices.get(random.nextInt(120));
+                    List<Vertex> path1 = g.shortestPath(a, b);
+                    List<Vertex> path2 = mapped.shortestPath(a, b);
+                    assertEquals(path1.isEmpty(), path2.isEmpty());
+                    assertEquals(g.pathLength(path1), mapped.pathLength(path2));
+                    assertEquals(g.getEdge(a, b), mapped.getEdge(a, b));
+                    assertEquals(g.edgeLength(a, b), mapped.getEdge(a, b) == null ? 0 : mapped.getEdge(a, b).length());
+                }
+                assertFalse(mapped.vertex(new Vertex(vertices.get(0).id(), "other")));
+            }
+
+            //the file is only rewritten once no mapping of it is left
+            Files.write(path, new byte[]{1, 2, 3});
+            try {
+                GraphFile.open(path);
+                fail();
+            } catch (IOException e) {
+                //expected
+            }
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    @Test
+    public void testGraphImporter() throws Exception {
+        Path vertexFile = Files.createTempFile("vertices", ".csv");
+        Path edgeFile = Files.createTempFile("edges", ".csv");
+        try {
+            Files.write(vertexFile, ("1,A\n2,B\r\n3,C \u00e9\n\nx,D\n4,D\n2,B again\n5\n")
+                    .getBytes(StandardCharsets.UTF_8));
+            Files.write(edgeFile, ("1,2,5\n2,3,7\n3, 4 ,1\n1,4\n1,9,2\n2,1,6\n4,4,1\n"
+                    + "1,3,-2\n1,3,99999999999\n")
+                    .getBytes(StandardCharsets.UTF_8));
+            GraphImporter.Result result = GraphImporter.load(vertexFile, edgeFile);
+            Graph<Vertex, Edge<Vertex>> g = result.graph();
+
+            Vertex a = new Vertex(1, "A");
+            Vertex c = new Vertex(3, "C \u00e9");
+            Vertex d = new Vertex(4, "D");
+            assertEquals(4, g.allVertices().size());
+            assertTrue(g.vertex(c));
+            assertEquals(3, g.allEdges().size());
+            assertEquals(13, g.pathLength(g.shortestPath(a, d)));
+
+            List<Long> lines = new ArrayList<>();
+            for (GraphImporter.MalformedLine line : result.malformed()) {
+                lines.add(line.line());
+            }
+            assertEquals(Arrays.asList(5L, 7L, 8L, 4L, 5L, 6L, 7L, 8L, 9L), lines);
+            assertEquals(vertexFile, result.malformed().get(0).file());
+            assertEquals("x,D", result.malformed().get(0).text());
+            assertEquals("Duplicate edge", result.malformed().get(5).reason());
+        } finally {
+            Files.deleteIfExists(vertexFile);
+            Files.deleteIfExists(edgeFile);
+        }
+    }
+
+    @Test
+    public void testGraphLog() throws Exception {
+        Path directory = Files.createTempDirectory("graphlog");
+        try {
+            Random random = new Random(17);
+            Graph<Vertex, Edge<Vertex>> expected = new Graph<>();
+            List<Vertex> vertices = new ArrayList<>();
+            for (int round = 0; round < 3; round++) {
+                try (GraphLog log = GraphLog.open(directory, 50)) {
+                    Graph<Vertex, Edge<Vertex>> g = log.graph();
+                    assertEquals(expected.allVertices(), g.allVertices());
+                    assertEquals(expected.allEdges(), g.allEdges());
+                    assertEquals(expected.edgeLengthSum(), g.edgeLengthSum());
+                    for (int i = 0; i < 300; i++) {
+                        int choice = random.nextInt(10);
+                        if (choice < 3 || vertices.size() < 2) {
+                            Vertex v = new Vertex(random.nextInt(1000), "v\u00e9" + i);
+                            if (g.addVertex(v)) {
+                                expected.addVertex(v);
+                                vertices.add(v);
+                            }
+                        } else if (choice < 8) {
+                            Vertex a = vertices.get(random.nextInt(vertices.size()));
+                            Vertex b = vertices.get(random.nextInt(vertices.size()));
+                            if (a != b) {
+                                Edge<Vertex> e = new Edge<>(a, b, random.nextInt(20));
+                                if (!g.addEdge(e)) {
+                                    g.replace(e);
+                                    expected.replace(e);
+                                } else {
+                                    expected.addEdge(e);
+                                }
+                            }
+                        } else {
+                            Vertex v = vertices.remove(random.nextInt(vertices.size()));
+                            g.remove(v);
+                            expected.remove(v);
+                        }
+                    }
+                    if (round == 1) {
+                        log.snapshot();
+                    }
+                }
+            }
+
+            //a torn record at the end of the log is dropped
+            long records;
+            try (GraphLog log = GraphLog.open(directory, 1000)) {
+                log.graph().addVertex(new Vertex(5000, "last"));
+                log.sync();
+                records = log.graph().allVertices().size();
+            }
+            Path segment = null;
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "log-*.wal")) {
+                for (Path file : files) {
+                    if (segment == null || file.compareTo(segment) > 0) {
+                        segment = file;
+                    }
+                }
+            }
+            byte[] bytes = Files.readAllBytes(segment);
+            Files.write(segment, Arrays.copyOf(bytes, bytes.length - 3));
+            try (GraphLog log = GraphLog.open(directory)) {
+                assertEquals(records - 1, log.graph().allVertices().size());
+                assertEquals(expected.allEdges(), log.graph().allEdges());
+                assertFalse(log.graph().vertex(new Vertex(5000, "last")));
+            }
+        } finally {
+            try (Stream<Path> files = Files.walk(directory)) {
+                files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+            }
+        }
+    }
+
+    @Test
+    public void testOffHeapGraph() {
+        Random random = new Random(23);
+        Graph<Vertex, Edge<Vertex>> g = new Graph<>();
+        OffHeapGraph offHeap = new OffHeapGraph();
+        List<Vertex> vertices = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            int choice = random.nextInt(20);
+            if (choice < 4 || vertices.size() < 2) {
+                Vertex v = new Vertex(random.nextInt(200), "v" + random.nextInt(2));
+                boolean added = g.addVertex(v);
+                assertEquals(added, offHeap.addVertex(v));
+                if (added) {
+                    vertices.add(v);
+                }
+            } else if (choice < 19) {
+                Vertex a = vertices.get(random.nextInt(vertices.size()));
+                Vertex b = vertices.get(random.nextInt(vertices.size()));
+                if (a == b) {
+                    continue;
+                }
+                Edge<Vertex> e = new Edge<>(a, b, random.nextInt(30));
+                if (choice < 15) {
+                    assertEquals(g.addEdge(e), offHeap.addEdge(e));
+                } else {
+                    assertEquals(g.remove(e), offHeap.remove(e));
+                }
+                assertEquals(g.getEdge(a, b), offHeap.getEdge(a, b));
+                assertEquals(g.edgeLength(a, b), offHeap.edgeLength(a, b));
+                if (i % 25 == 0) {
+                    //each query after a change copies the rows again over the previous copy
+                    assertEquals(g.pathLength(g.shortestPath(a, b)), offHeap.pathLength(offHeap.shortestPath(a, b)));
+                }
+            } else {
+                Vertex v = vertices.remove(random.nextInt(vertices.size()));
+                assertEquals(g.remove(v), offHeap.remove(v));
+                assertFalse(offHeap.vertex(v));
+            }
+        }
+        assertEquals(g.allVertices(), offHeap.allVertices());
+        assertEquals(g.allEdges(), offHeap.allEdges());
+        assertEquals(g.allEdges().size(), offHeap.edgeCount());
+        assertEquals(g.edgeLengthSum(), offHeap.edgeLengthSum());
+        assertEquals(g.diameter(), offHeap.diameter());
+        for (Vertex v : vertices) {
+            assertEquals(g.getNeighbours(v), offHeap.getNeighbours(v));
+        }
+        for (int i = 0; i < 50; i++) {
+            Vertex a = vertices.get(random.nextInt(vertices.size()));
+            Vertex b = vertices.get(random.nextInt(vertices.size()));
+            assertEquals(g.pathLength(g.shortestPath(a, b)), offHeap.pathLength(offHeap.shortestPath(a, b)));
+        }
+        int expected = 0;
+        for (Edge<Vertex> e : g.minimumSpanningTree()) {
+            expected += e.length();
+        }
+        int weight = 0;
+        for (Edge<Vertex> e : offHeap.minimumSpanningTree()) {
+            weight += e.length();
+        }
+        assertEquals(expected, weight);
+    }
+
+    @Test
+    public void testVertexKeyedById() throws Exception {
+        Vertex a = Vertex.keyedById(1, "a");
+        assertTrue(a.isKeyedById());
+        assertEquals(Vertex.keyedById(1, "other"), a);
+        assertEquals(Vertex.keyedById(1, "other").hashCode(), a.hashCode());
+        assertFalse(new Vertex(1, "a").equals(a));
+        assertFalse(a.equals(new Vertex(1, "a")));
+        Set<Vertex> set = new HashSet<>();
+        set.add(a);
+        a.updateName("renamed");
+        assertTrue(set.contains(a));
+
+        Graph<Vertex, Edge<Vertex>> g = new Graph<>();
+        List<Vertex> vertices = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            vertices.add(Vertex.keyedById(i, "v" + i));
+            g.addVertex(vertices.get(i));
+        }
+        for (int i = 0; i + 1 < 10; i++) {
+            g.addEdge(new Edge<>(vertices.get(i), vertices.get(i + 1), i + 1));
+        }
+        vertices.get(4).updateName("moved");
+        assertTrue(g.vertex(Vertex.keyedById(4, "any name")));
+        assertFalse(g.vertex(new Vertex(4, "moved")));
+        assertEquals(45, g.pathLength(g.shortestPath(Vertex.keyedById(0, ""), Vertex.keyedById(9, ""))));
+        assertEquals(5, g.edgeLength(Vertex.keyedById(4, ""), Vertex.keyedById(5, "")));
+
+        Path path = Files.createTempFile("keyed", ".bin");
+        try {
+            GraphFile.write(g, path);
+            try (MappedGraph mapped = GraphFile.open(path)) {
+                assertTrue(mapped.vertex(Vertex.keyedById(3, "x")));
+                assertFalse(mapped.vertex(new Vertex(3, "v3")));
+                Edge<Vertex> e = mapped.getEdge(Vertex.keyedById(4, ""), Vertex.keyedById(5, ""));
+                assertTrue(e.v1().isKeyedById());
+                assertEquals("moved", e.v1().name());
+                assertEquals(45, mapped.pathLength(mapped.shortestPath(vertices.get(0), vertices.get(9))));
+            }
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    //test that renaming a keyed vertex through the graph survives a restart, with and without a snapshot
+    @Test
+    public void testGraphLogKeepsRenames() throws Exception {
+        Path directory = Files.createTempDirectory("graphlog");
+        try {
+            try (GraphLog log = GraphLog.open(directory)) {
+                Graph<Vertex, Edge<Vertex>> g = log.graph();
+                Vertex a = Vertex.keyedById(1, "a");
+                Vertex b = new Vertex(2, "b");
+                g.addVertex(a);
+                g.addVertex(b);
+                g.addEdge(new Edge<>(a, b, 3));
+                GraphVersion<Vertex, Edge<Vertex>> before = g.version();
+                assertTrue(g.rename(Vertex.keyedById(1, ""), "renamed"));
+                assertEquals("renamed", a.name());
+                //versions fix the structure only, and share the renamed vertex
+                assertSame(before, g.version());
+                assertEquals("renamed", before.getEdge(a, b).v1().name());
+                assertTrue(before.vertex(Vertex.keyedById(1, "a")));
+                assertEquals(1, before.edgeCount());
+                assertFalse(g.rename(b, "other"));
+                assertFalse(g.rename(Vertex.keyedById(3, ""), "missing"));
+            }
+            try (GraphLog log = GraphLog.open(directory)) {
+                Graph<Vertex, Edge<Vertex>> g = log.graph();
+                assertEquals("renamed", g.getEdge(Vertex.keyedById(1, ""), new Vertex(2, "b")).v1().name());
+                g.rename(Vertex.keyedById(1, ""), "again");
+                log.snapshot();
+                g.rename(Vertex.keyedById(1, ""), "after snapshot");
+            }
+            try (GraphLog log = GraphLog.open(directory)) {
+                Graph<Vertex, Edge<Vertex>> g = log.graph();
+                assertEquals("after snapshot", g.getNeighbours(new Vertex(2, "b")).keySet().iterator().next().name());
+            }
+        } finally {
+            try (Stream<Path> files = Files.walk(directory)) {
+                files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+            }
+        }
+    }
+
+    @Test
+    public void testShortestPathTreeCacheDropsStaleTrees() {
+        Graph<Vertex, Edge<Vertex>> g = new Graph<>();
+        List<Vertex> vertices = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            vertices.add(new Vertex(i, "V" + i));
+            g.addVertex(vertices.get(i));
+        }
+        ShortestPathTreeCache<Vertex, Edge<Vertex>> cache = new ShortestPathTreeCache<>(8);
+        long version = 0;
+        for (int i = 0; i + 1 < 8; i++) {
+            cache.put(version, g.freeze().shortestPathTree(vertices.get(i)));
+            g.addEdge(new Edge<>(vertices.get(i), vertices.get(i + 1), 1));
+            version++;
+        }
+        //every put after a mutation drops the trees of all other sources
+        assertEquals(1, cache.size());
+        for (int i = 0; i < 4; i++) {
+            cache.put(version, g.freeze().shortestPathTree(vertices.get(i)));
+        }
+        assertEquals(4, cache.size());
+        assertNotNull(cache.get(2, version));
+        g.addEdge(new Edge<>(vertices.get(0), vertices.get(7), 1));
+        version++;
+        assertNull(cache.get(5, version));
+        assertEquals(0, cache.size());
+
+        //the graph clears its own cache on mutation, without waiting for the next query
+        cache.put(version, g.freeze().shortestPathTree(vertices.get(3)));
+        cache.clear();
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testEnginesAreSharedAcrossSnapshots() {
+        Graph<Vertex, Edge<Vertex>> g = new Graph<>();
+        List<Vertex> vertices = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            vertices.add(new Vertex(i, "V" + i));
+            g.addVertex(vertices.get(i));
+        }
+        for (int i = 0; i + 1 < 50; i++) {
+            g.addEdge(new Edge<>(vertices.get(i), vertices.get(i + 1), 1));
+        }
+        Graph<Vertex, Edge<Vertex>> small = new Graph<>();
+        Vertex a = new Vertex(100, "a");
+        Vertex b = new Vertex(101, "b");
+        small.addVertex(a);
+        small.addVertex(b);
+        small.addEdge(new Edge<>(a, b, 7));
+
+        //engines move between snapshots of different sizes, and between mutations
+        for (int round = 0; round < 5; round++) {
+            assertEquals(49 - round, g.pathLength(g.shortestPath(vertices.get(round), vertices.get(49))));
+            assertEquals(Arrays.asList(a, b), small.freeze().bidirectionalShortestPath(a, b));
+            assertEquals(7, small.freeze().shortestPathTree(a).distance(b));
+            g.remove(g.getEdge(vertices.get(round), vertices.get(round + 1)));
+            g.addEdge(new Edge<>(vertices.get(round), vertices.get(round + 1), 1));
+            assertEquals(49, g.diameter());
+        }
+        EnginePool<Dijkstra> pool = new EnginePool<>(Dijkstra::new, Dijkstra::retarget);
+        Dijkstra engine = pool.acquire(small.freeze().adjacency());
+        pool.release(engine);
+        CsrGraph<Vertex, Edge<Vertex>> large = g.freeze();
+        assertSame(engine, pool.acquire(large.adjacency()));
+        assertEquals(49, engine.runTo(0, 49));
+    }
+
+    @Test
+    public void testGraphLogReportsFailuresOnSync() throws Exception {
+        Path directory = Files.createTempDirectory("graphlog");
+        GraphLog log = GraphLog.open(directory);
+        //with the directory gone, the log cannot be written
+        Files.delete(directory);
+        Graph<Vertex, Edge<Vertex>> g = log.graph();
+        assertTrue(g.addVertex(new Vertex(1, "a")));
+        try {
+            log.sync();
+            fail("sync must report the failed write");
+        } catch (IOException expected) {
+            //the failure surfaces here rather than in the mutation
+        }
+        assertTrue(g.addVertex(new Vertex(2, "b")));
+        assertTrue(g.addEdge(new Edge<>(new Vertex(1, "a"), new Vertex(2, "b"), 3)));
+        assertEquals(3, g.edgeLengthSum());
+        try {
+            log.close();
+            fail("close must report the failed write");
+        } catch (IOException expected) {
+            //the mutations since the failure are not logged
+        }
+    }
+
+    @Test
+    public void testMappedGraphClose() throws Exception {
+        Path directory = Files.createTempDirectory("graphlog");
+        try (GraphLog log = GraphLog.open(directory)) {
+            Graph<Vertex, Edge<Vertex>> g = log.graph();
+            Vertex a = new Vertex(1, "a");
+            Vertex b = new Vertex(2, "b");
+            g.addVertex(a);
+            g.addVertex(b);
+            log.snapshot();
+            Path first = directory.resolve(String.format("snapshot-%020d.graph", 2));
+            MappedGraph mapped = GraphFile.open(first);
+            assertTrue(MappedFile.isOpen(first));
+
+            //a snapshot that is open is kept
+            g.addEdge(new Edge<>(a, b, 4));
+            log.snapshot();
+            assertTrue(Files.exists(first));
+            assertEquals(2, mapped.vertexCount());
+
+            //closing one graph twice only gives up its own hold on the file
+            MappedGraph again = GraphFile.open(first);
+            mapped.close();
+            mapped.close();
+            assertTrue(MappedFile.isOpen(first));
+            again.close();
+            assertFalse(MappedFile.isOpen(first));
+            try {
+                mapped.shortestPath(a, b);
+                fail("a closed graph must not be queried");
+            } catch (IllegalStateException expected) {
+                //the mapping was dropped
+            }
+
+            //once closed, it is deleted by the next snapshot
+            g.remove(g.getEdge(a, b));
+            log.snapshot();
+            assertFalse(Files.exists(first));
+        } finally {
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+                for (Path file : files) {
+                    Files.delete(file);
+                }
+            }
+            Files.delete(directory);
+        }
+    }
+
+    @Test
+    public void testOffHeapIntArrayMove() {
+        Random random = new Random(29);
+        int size = 40_000;
+        OffHeapIntArray array = new OffHeapIntArray();
+        array.ensureCapacity(size);
+        int[] expected = new int[size];
+        for (int i = 0; i < size; i++) {
+            expected[i] = random.nextInt();
+            array.set(i, expected[i]);
+        }
+        //short and long runs, moved by a little or a lot in either direction
+        for (int round = 0; round < 200; round++) {
+            int count = random.nextBoolean() ? random.nextInt(100) : random.nextInt(size / 2);
+            int from = random.nextInt(size - count + 1);
+            int to = random.nextBoolean()
+                    ? Math.max(0, Math.min(size - count, from + random.nextInt(9) - 4))
+                    : random.nextInt(size - count + 1);
+            array.move(from, to, count);
+            System.arraycopy(expected, from, expected, to, count);
+        }
+        OffHeapIntArray copy = new OffHeapIntArray();
+        copy.ensureCapacity(size + 3);
+        OffHeapIntArray.copy(array, 0, copy, 3, size);
+        for (int i = 0; i < size; i++) {
+            assertEquals(expected[i], array.get(i));
+            assertEquals(expected[i], copy.get(i + 3));
+        }
+    }
+}